@@ -0,0 +1,51 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-account operations: creating accounts and reading them back by id.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AccountsRepositoryBenchmark {
+
+    @Param({"in-memory", "primitive", "mapped"})
+    public String store;
+
+    @Param({"100000"})
+    public int accountCount;
+
+    private AccountsRepository repository;
+
+    private final AtomicLong nextId = new AtomicLong();
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        repository = Repositories.createWithAccounts(store, accountCount);
+    }
+
+    @Benchmark
+    public void createAccount() {
+        repository.createAccount(new Account("New-" + nextId.incrementAndGet(), Repositories.INITIAL_BALANCE));
+    }
+
+    @Benchmark
+    public Account getAccount() {
+        return repository.getAccount(Repositories.accountId(ThreadLocalRandom.current().nextInt(accountCount)));
+    }
+}
@@ -0,0 +1,55 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers between accounts drawn from a Zipf distribution, so a handful of hot accounts take part in most
+ * transfers. Run with several threads ({@code -PjmhThreads=N}) to see the effect of contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContendedTransferBenchmark {
+
+    @Param({"in-memory", "primitive", "mapped", "sharded"})
+    public String store;
+
+    @Param({"10000"})
+    public int accountCount;
+
+    @Param({"0.99", "1.5"})
+    public double zipfExponent;
+
+    private AccountsRepository repository;
+
+    private ZipfGenerator accounts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = Repositories.createWithAccounts(store, accountCount);
+        accounts = new ZipfGenerator(accountCount, zipfExponent);
+    }
+
+    @Benchmark
+    public TransferResult transfer() {
+        final int from = accounts.next();
+        int to = accounts.next();
+        if (to == from) {
+            to = (from + 1) % accountCount;
+        }
+        return repository.transfer(Repositories.accountId(from), Repositories.accountId(to), BigDecimal.ONE);
+    }
+}
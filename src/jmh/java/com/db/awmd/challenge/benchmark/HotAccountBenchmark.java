@@ -0,0 +1,80 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.repository.AccountsRepositoryPrimitive;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Every benchmark thread pays into the same account from its own payer account, so all contention is on the
+ * receiving balance. Run with increasing {@code -t} to see how credit throughput scales with threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HotAccountBenchmark {
+
+    private static final int MAX_THREADS = 512;
+
+    private static final String HOT_ACCOUNT_ID = "Hot";
+
+    private static final BigDecimal ONE_CENT = new BigDecimal("0.01");
+
+    @State(Scope.Benchmark)
+    public static class Accounts {
+
+        @Param({"false", "true"})
+        public boolean striped;
+
+        AccountsRepositoryPrimitive repository;
+
+        final AtomicInteger nextPayer = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            repository = (AccountsRepositoryPrimitive) Repositories.createWithAccounts("primitive", MAX_THREADS);
+            repository.createAccount(new Account(HOT_ACCOUNT_ID, BigDecimal.ZERO));
+            if (striped) {
+                repository.markStriped(HOT_ACCOUNT_ID);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Payer {
+
+        String accountId;
+
+        @Setup(Level.Trial)
+        public void setUp(Accounts accounts) {
+            accountId = Repositories.accountId(accounts.nextPayer.getAndIncrement());
+        }
+    }
+
+    /**
+     * Reads both balances back, which for a striped account means summing every cell.
+     */
+    @Benchmark
+    public TransferResult transferToHotAccount(Accounts accounts, Payer payer) {
+        return accounts.repository.transfer(payer.accountId, HOT_ACCOUNT_ID, ONE_CENT);
+    }
+
+    /**
+     * Returns the new balance, which for a striped account means summing every cell.
+     */
+    @Benchmark
+    public Account creditHotAccount(Accounts accounts) {
+        return accounts.repository.creditAmount(HOT_ACCOUNT_ID, BigDecimal.ONE);
+    }
+}
@@ -0,0 +1,75 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.journal.DurabilityMode;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Transfer throughput of the in-memory repository for each journal durability mode. Group commit only pays off
+ * with several threads, so run with {@code -PjmhThreads=N}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JournalBenchmark {
+
+    @Param({"NONE", "ASYNC", "GROUP_COMMIT", "PER_OP_FSYNC"})
+    public DurabilityMode durability;
+
+    @Param({"1000"})
+    public int accountCount;
+
+    private Path directory;
+
+    private TransferJournal journal;
+
+    private AccountsRepositoryInMemory repository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal-benchmark");
+        journal = new TransferJournal(durability, directory.toString(), 1000, 512, 64 * 1024 * 1024);
+        repository = new AccountsRepositoryInMemory(journal);
+        repository.recover();
+        for (int i = 0; i < accountCount; i++) {
+            repository.createAccount(new Account(Repositories.accountId(i), Repositories.INITIAL_BALANCE));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public TransferResult transfer() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int from = random.nextInt(accountCount);
+        final int to = (from + 1 + random.nextInt(accountCount - 1)) % accountCount;
+        return repository.transfer(Repositories.accountId(from), Repositories.accountId(to), BigDecimal.ONE);
+    }
+}
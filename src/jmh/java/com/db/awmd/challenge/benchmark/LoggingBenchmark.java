@@ -0,0 +1,142 @@
+package com.db.awmd.challenge.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import com.db.awmd.challenge.logging.SamplingTurboFilter;
+import com.db.awmd.challenge.model.TransferCommand;
+import com.db.awmd.challenge.service.TransferAuditLog;
+import com.db.awmd.challenge.service.TransferService;
+import com.db.awmd.challenge.web.AccountsController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency of a service transfer plus the controller's status line under the old and the new logging setup:
+ * <ul>
+ * <li>{@code sync}: every INFO line written synchronously, as with the default console logging</li>
+ * <li>{@code async}: lines handed to an {@link AsyncAppender}, transfers also written to the audit log</li>
+ * <li>{@code async-sampled}: as {@code async}, keeping 1% of the transfer path's INFO lines</li>
+ * </ul>
+ * Lines go to a temporary file rather than the console so the benchmark output stays readable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LoggingBenchmark {
+
+    private static final int ACCOUNTS = 1024;
+
+    private static final org.slf4j.Logger controllerLog = LoggerFactory.getLogger(AccountsController.class);
+
+    @Param({"sync", "async", "async-sampled"})
+    public String logging;
+
+    private final AtomicInteger nextTransfer = new AtomicInteger();
+
+    private Path directory;
+
+    private TransferAuditLog transferAuditLog;
+
+    private TransferService transferService;
+
+    private TransferCommand[] commands;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("logging-benchmark");
+        configureLogging(directory.resolve("application.log").toString());
+
+        if (logging.equals("sync")) {
+            transferAuditLog = TransferAuditLog.disabled();
+        } else {
+            transferAuditLog = new TransferAuditLog(directory.resolve("transfer-audit.jsonl").toString(), 65536);
+            transferAuditLog.start();
+        }
+        transferService = Repositories.transferService(Repositories.createWithAccounts("in-memory", ACCOUNTS),
+                transferAuditLog);
+
+        commands = new TransferCommand[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            commands[i] = new TransferCommand(Repositories.accountId(i), Repositories.accountId((i + 1) % ACCOUNTS),
+                    BigDecimal.ONE);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        transferAuditLog.stop();
+        ((LoggerContext) LoggerFactory.getILoggerFactory()).reset();
+        Files.walk(directory).sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+    }
+
+    @Benchmark
+    public boolean transfer() {
+        final boolean requestStatus = transferService.transferAmount(
+                commands[nextTransfer.getAndIncrement() & (ACCOUNTS - 1)]);
+        controllerLog.info("Amount transfer status : {}", requestStatus);
+        return requestStatus;
+    }
+
+    private void configureLogging(String file) {
+        final LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        context.reset();
+
+        final PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d{yyyy-MM-dd HH:mm:ss.SSS} %5p [%t] %-40.40logger{39} : %m%n");
+        encoder.start();
+
+        final FileAppender<ILoggingEvent> fileAppender = new FileAppender<>();
+        fileAppender.setContext(context);
+        fileAppender.setFile(file);
+        fileAppender.setEncoder(encoder);
+        fileAppender.start();
+
+        Appender<ILoggingEvent> appender = fileAppender;
+        if (!logging.equals("sync")) {
+            final AsyncAppender asyncAppender = new AsyncAppender();
+            asyncAppender.setContext(context);
+            asyncAppender.setQueueSize(8192);
+            asyncAppender.setDiscardingThreshold(0);
+            asyncAppender.setNeverBlock(true);
+            asyncAppender.addAppender(fileAppender);
+            asyncAppender.start();
+            appender = asyncAppender;
+        }
+
+        if (logging.equals("async-sampled")) {
+            final SamplingTurboFilter filter = new SamplingTurboFilter();
+            filter.setContext(context);
+            filter.addLoggerName(AccountsController.class.getName());
+            filter.addLoggerName(TransferService.class.getName());
+            filter.setRate(0.01);
+            filter.start();
+            context.addTurboFilter(filter);
+        }
+
+        final Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.INFO);
+        root.addAppender(appender);
+    }
+}
@@ -0,0 +1,55 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.repository.AccountsRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A mix of balance reads and transfers over uniformly chosen accounts. Sweep the thread count with
+ * {@code -PjmhThreads=1}, {@code 2}, ... {@code N} and compare the JSON results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MixedWorkloadBenchmark {
+
+    @Param({"in-memory", "primitive"})
+    public String store;
+
+    @Param({"10000"})
+    public int accountCount;
+
+    @Param({"50", "90", "99"})
+    public int readPercent;
+
+    private AccountsRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = Repositories.createWithAccounts(store, accountCount);
+    }
+
+    @Benchmark
+    public Object readOrTransfer() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final String from = Repositories.accountId(random.nextInt(accountCount));
+
+        if (random.nextInt(100) < readPercent) {
+            return repository.getAccount(from);
+        }
+
+        String to = Repositories.accountId(random.nextInt(accountCount));
+        return from.equals(to) ? null : repository.transfer(from, to, BigDecimal.ONE);
+    }
+}
@@ -0,0 +1,94 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.admission.TransferAdmission;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.engine.ShardedTransferEngine;
+import com.db.awmd.challenge.fx.FxRates;
+import com.db.awmd.challenge.fx.RateTable;
+import com.db.awmd.challenge.ledger.TransferLedger;
+import com.db.awmd.challenge.metrics.MetricsRegistry;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryMapped;
+import com.db.awmd.challenge.repository.AccountsRepositoryPrimitive;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.TransferAuditLog;
+import com.db.awmd.challenge.service.TransferCompletionExecutor;
+import com.db.awmd.challenge.service.TransferService;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+
+/**
+ * Builds the objects under test for the benchmarks, keyed by the same names as the {@code accounts.store} property.
+ */
+final class Repositories {
+
+    static final BigDecimal INITIAL_BALANCE = BigDecimal.valueOf(1_000_000_000L);
+
+    /**
+     * Room for every account the benchmarks create within one trial; the file is sparse, so unused room costs no disk.
+     */
+    private static final int MAPPED_MAX_ACCOUNTS = 1 << 24;
+
+    private Repositories() {
+    }
+
+    static AccountsRepository create(String store) {
+        switch (store) {
+            case "in-memory":
+                return new AccountsRepositoryInMemory();
+            case "primitive":
+                return new AccountsRepositoryPrimitive();
+            case "mapped":
+                return new AccountsRepositoryMapped(tempFile().toPath(), MAPPED_MAX_ACCOUNTS);
+            case "sharded":
+                // Shard threads are daemons and each trial runs in its own fork, so the engine is never stopped.
+                final ShardedTransferEngine engine = new ShardedTransferEngine(0, 16384);
+                engine.start();
+                return engine;
+            default:
+                throw new IllegalArgumentException("Unknown account store " + store);
+        }
+    }
+
+    static AccountsRepository createWithAccounts(String store, int accountCount) {
+        final AccountsRepository repository = create(store);
+        for (int i = 0; i < accountCount; i++) {
+            repository.createAccount(new Account(accountId(i), INITIAL_BALANCE));
+        }
+        return repository;
+    }
+
+    private static File tempFile() {
+        try {
+            final File file = File.createTempFile("accounts-benchmark", ".dat");
+            file.deleteOnExit();
+            return file;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    static String accountId(int index) {
+        return "Id-" + index;
+    }
+
+    /**
+     * A transfer service whose notifications are dropped by a dispatcher that is never started, so the
+     * measurement covers the transfer itself and the enqueue but no delivery.
+     */
+    static TransferService transferService(AccountsRepository repository) {
+        return transferService(repository, TransferAuditLog.disabled());
+    }
+
+    static TransferService transferService(AccountsRepository repository, TransferAuditLog transferAuditLog) {
+        final NotificationDispatcher dispatcher = new NotificationDispatcher((account, description) -> {
+        }, 1024, NotificationDispatcher.OverflowPolicy.DROP_OLDEST, 256, 0);
+        return new TransferService(dispatcher, repository, new MetricsRegistry(), transferAuditLog, Runnable::run,
+                TransferCompletionExecutor.direct(), TransferLedger.disabled(), TransferAdmission.disabled(),
+                new FxRates(RateTable.of(Account.DEFAULT_CURRENCY)));
+    }
+}
@@ -0,0 +1,82 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.schedule.TimingWheel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of booking a transfer and cancelling it again while {@code pending} others wait, in the timing wheel of the
+ * transfer scheduler and in a {@link DelayQueue}, whose cancel has to search the queue.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ScheduleBenchmark {
+
+    /**
+     * Deadlines are spread over a day of 100 ms ticks.
+     */
+    private static final int HORIZON_TICKS = 864_000;
+
+    @Param({"10000", "1000000"})
+    private int pending;
+
+    private TimingWheel<Object> wheel;
+
+    private DelayQueue<DelayedTransfer> delayQueue;
+
+    @Setup
+    public void setUp() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        wheel = new TimingWheel<>(0);
+        delayQueue = new DelayQueue<>();
+        for (int i = 0; i < pending; i++) {
+            final long deadline = 1 + random.nextInt(HORIZON_TICKS);
+            wheel.schedule(deadline, this);
+            delayQueue.add(new DelayedTransfer(deadline));
+        }
+    }
+
+    @Benchmark
+    public boolean timingWheel() {
+        final long deadline = 1 + ThreadLocalRandom.current().nextInt(HORIZON_TICKS);
+        return wheel.cancel(wheel.schedule(deadline, this));
+    }
+
+    @Benchmark
+    public boolean delayQueue() {
+        final DelayedTransfer transfer = new DelayedTransfer(1 + ThreadLocalRandom.current().nextInt(HORIZON_TICKS));
+        delayQueue.add(transfer);
+        return delayQueue.remove(transfer);
+    }
+
+    private static final class DelayedTransfer implements Delayed {
+
+        private final long deadline;
+
+        private DelayedTransfer(long deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline * 100, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deadline, ((DelayedTransfer) other).deadline);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.repository.AccountsRepository;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Duration of a full collection with every account of a store loaded, which is what the heap-resident stores pay
+ * in pause time. The heap the accounts retain is reported alongside, as the secondary result
+ * {@code retainedHeapMegabytes}. Give the fork enough heap for the in-memory store, for example
+ * {@code -jvmArgs -Xmx4g}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class StoreFootprintBenchmark {
+
+    @Param({"in-memory", "primitive", "mapped"})
+    public String store;
+
+    @Param({"5000000"})
+    public int accountCount;
+
+    private AccountsRepository repository;
+
+    /**
+     * The retained heap divided by the number of measurement iterations, as JMH adds up what each one reports.
+     */
+    private double retainedMegabytesPerIteration;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkParams params) {
+        System.gc();
+        final long before = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        repository = Repositories.createWithAccounts(store, accountCount);
+        System.gc();
+        final long retainedBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() - before;
+        retainedMegabytesPerIteration = (double) retainedBytes / (1 << 20) / params.getMeasurement().getCount();
+    }
+
+    @Benchmark
+    public AccountsRepository fullGc(Footprint footprint) {
+        System.gc();
+        footprint.retainedHeapMegabytes = retainedMegabytesPerIteration;
+        return repository;
+    }
+
+    /**
+     * Reported with the results, so it lands in the same results file. JMH zeroes it before each iteration, so the
+     * benchmark sets it again on every call.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public double retainedHeapMegabytes;
+    }
+}
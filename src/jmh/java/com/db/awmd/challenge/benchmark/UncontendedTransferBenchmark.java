@@ -0,0 +1,84 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.model.TransferCommand;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.TransferService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Every benchmark thread moves money back and forth between its own pair of accounts, so no two threads ever
+ * touch the same account.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UncontendedTransferBenchmark {
+
+    private static final int MAX_THREADS = 512;
+
+    @State(Scope.Benchmark)
+    public static class Accounts {
+
+        @Param({"in-memory", "primitive", "mapped", "sharded"})
+        public String store;
+
+        AccountsRepository repository;
+
+        TransferService transferService;
+
+        final AtomicInteger nextPair = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            repository = Repositories.createWithAccounts(store, 2 * MAX_THREADS);
+            transferService = Repositories.transferService(repository);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Pair {
+
+        TransferCommand forward;
+
+        TransferCommand backward;
+
+        boolean flip;
+
+        @Setup(Level.Trial)
+        public void setUp(Accounts accounts) {
+            final int pair = accounts.nextPair.getAndIncrement();
+            final String first = Repositories.accountId(2 * pair);
+            final String second = Repositories.accountId(2 * pair + 1);
+            forward = new TransferCommand(first, second, BigDecimal.ONE);
+            backward = new TransferCommand(second, first, BigDecimal.ONE);
+        }
+
+        TransferCommand next() {
+            flip = !flip;
+            return flip ? forward : backward;
+        }
+    }
+
+    @Benchmark
+    public TransferResult repositoryTransfer(Accounts accounts, Pair pair) {
+        final TransferCommand command = pair.next();
+        return accounts.repository.transfer(command.getFromAccountId(), command.getToAccountId(), command.getAmount());
+    }
+
+    @Benchmark
+    public boolean serviceTransfer(Accounts accounts, Pair pair) {
+        return accounts.transferService.transferAmount(pair.next());
+    }
+}
@@ -0,0 +1,63 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.model.TransferCommand;
+import com.db.awmd.challenge.wire.TransferFrameCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of turning a transfer on the wire into a validated {@link TransferCommand}: Jackson and Bean
+ * Validation for the JSON endpoint against the binary frame decoder and its hand-written checks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WireCodecBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Validator validator;
+
+    private byte[] json;
+
+    private ByteBuffer frame;
+
+    @Setup
+    public void setUp() {
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        json = "{\"fromAccountId\":\"Id-12345\",\"toAccountId\":\"Id-67890\",\"amount\":1234.56}"
+                .getBytes(StandardCharsets.UTF_8);
+
+        final TransferCommand command = new TransferCommand("Id-12345", "Id-67890", new BigDecimal("1234.56"));
+        frame = ByteBuffer.allocate(TransferFrameCodec.requestSize(command));
+        TransferFrameCodec.encodeRequest(frame, 1, command);
+        frame.flip();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<TransferCommand>> json() throws IOException {
+        return validator.validate(objectMapper.readValue(json, TransferCommand.class));
+    }
+
+    @Benchmark
+    public String binary() {
+        frame.position(TransferFrameCodec.LENGTH_BYTES + 8);
+        return TransferFrameCodec.validate(TransferFrameCodec.decodeRequest(frame));
+    }
+}
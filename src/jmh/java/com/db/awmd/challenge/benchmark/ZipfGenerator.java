@@ -0,0 +1,30 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Samples indexes in {@code [0, size)} where index {@code k} is drawn with probability proportional to
+ * {@code 1 / (k + 1)^exponent}, so the first few accounts are hot.
+ */
+final class ZipfGenerator {
+
+    private final double[] cumulative;
+
+    ZipfGenerator(int size, double exponent) {
+        cumulative = new double[size];
+        double sum = 0;
+        for (int k = 0; k < size; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < size; k++) {
+            cumulative[k] /= sum;
+        }
+    }
+
+    int next() {
+        final int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+        return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+    }
+}
@@ -0,0 +1,124 @@
+package com.db.awmd.challenge.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the requests in flight at a limit that follows the observed latency, in the manner of the gradient
+ * limiters of TCP Vegas. Latencies are averaged over windows of about {@code limit} samples. A slowly moving
+ * long-term average stands for the latency without queueing. While a window's average stays within the tolerance
+ * of it and the limit is actually being used, the limit grows by a fraction of its square root per window; when the
+ * average rises above it, the limit shrinks in proportion to the rise.
+ * <p>
+ * Acquiring is a CAS on the in-flight count. The window statistics are approximate under concurrent releases,
+ * which only blurs the latency estimate.
+ */
+public final class ConcurrencyLimiter {
+
+    private static final double TOLERANCE = 1.5;
+
+    private static final double SMOOTHING = 0.2;
+
+    private static final double LONG_TERM_SMOOTHING = 0.05;
+
+    private static final int MIN_WINDOW = 10;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong windowSamples = new AtomicLong();
+
+    private final AtomicLong windowNanos = new AtomicLong();
+
+    private volatile double limit;
+
+    private volatile int windowSize;
+
+    private volatile int maxInFlight;
+
+    /**
+     * Guarded by this limiter, which is only locked to close a window.
+     */
+    private double longTermNanos;
+
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.windowSize = Math.max(MIN_WINDOW, (int) limit);
+    }
+
+    /**
+     * A limiter that admits everything.
+     */
+    public static ConcurrencyLimiter unlimited() {
+        return new ConcurrencyLimiter(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            final int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                if (current + 1 > maxInFlight) {
+                    maxInFlight = current + 1;
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ends a request admitted by {@link #tryAcquire()} that took {@code latencyNanos}.
+     */
+    public void release(long latencyNanos) {
+        inFlight.decrementAndGet();
+        windowNanos.addAndGet(latencyNanos);
+        final long samples = windowSamples.incrementAndGet();
+        if (samples >= windowSize && windowSamples.compareAndSet(samples, 0)) {
+            update((double) windowNanos.getAndSet(0) / samples);
+        }
+    }
+
+    /**
+     * Returns a permit without a latency sample, for a request refused after it was admitted here.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void update(double averageNanos) {
+        longTermNanos = longTermNanos == 0 ? averageNanos
+                : longTermNanos * (1 - LONG_TERM_SMOOTHING) + averageNanos * LONG_TERM_SMOOTHING;
+
+        final double current = limit;
+        final double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longTermNanos / averageNanos));
+        final double target;
+        if (gradient < 1.0) {
+            target = current * gradient;
+        } else if (maxInFlight * 2L >= current) {
+            target = current + Math.sqrt(current);
+        } else {
+            // Far below the limit the window says nothing about whether more would be better.
+            target = current;
+        }
+        final double next = Math.max(minLimit, Math.min(maxLimit, current * (1 - SMOOTHING) + target * SMOOTHING));
+
+        limit = next;
+        windowSize = Math.max(MIN_WINDOW, (int) next);
+        maxInFlight = 0;
+    }
+}
@@ -0,0 +1,160 @@
+package com.db.awmd.challenge.admission;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets kept as the generic cell rate algorithm: a bucket is a single {@code long}, the time at which it
+ * will be full again, and taking a token is one CAS that pushes that time forward by one emission interval. A
+ * request is refused while the time lies more than the burst tolerance in the future.
+ * <p>
+ * Keyed buckets are created on first use. A bucket whose time has passed is full, which is exactly the state a new
+ * bucket starts in, so once {@code maxKeys} are tracked the idle ones are dropped without changing any
+ * decision. A request racing with the removal of its bucket may go uncounted. Each new key over the limit looks at
+ * no more than {@value #EVICTION_SAMPLE} buckets, resuming where the last look stopped; if none of them is idle,
+ * the new key is refused until the first of them will be.
+ */
+public final class RateLimiter {
+
+    static final int EVICTION_SAMPLE = 64;
+
+    private final long intervalNanos;
+
+    private final long toleranceNanos;
+
+    private final int maxKeys;
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    private final AtomicLong global = new AtomicLong(Long.MIN_VALUE / 2);
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * Where the next look for idle buckets starts; only used by the thread that set {@link #evicting}.
+     */
+    private Iterator<AtomicLong> evictionCursor;
+
+    /**
+     * @param permitsPerSecond sustained rate per bucket, 0 or less for no limit
+     * @param burst requests a full bucket admits at once
+     */
+    public RateLimiter(double permitsPerSecond, int burst, int maxKeys) {
+        this.intervalNanos = permitsPerSecond > 0 ? Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond)) : 0;
+        this.toleranceNanos = intervalNanos * Math.max(0, burst - 1);
+        this.maxKeys = maxKeys;
+    }
+
+    public static RateLimiter unlimited() {
+        return new RateLimiter(0, 1, 0);
+    }
+
+    public boolean isEnabled() {
+        return intervalNanos > 0;
+    }
+
+    /**
+     * Takes a token from the bucket of {@code key}.
+     *
+     * @return 0 if admitted, otherwise how many nanoseconds to wait before the bucket admits a request
+     */
+    public long tryAcquire(String key, long nowNanos) {
+        if (!isEnabled()) {
+            return 0;
+        }
+
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxKeys) {
+                final long wait = evictIdle(nowNanos);
+                if (wait > 0) {
+                    return wait;
+                }
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(nowNanos));
+        }
+        return tryAcquire(bucket, nowNanos);
+    }
+
+    /**
+     * Takes a token from the single bucket shared by all keys.
+     */
+    public long tryAcquire(long nowNanos) {
+        return isEnabled() ? tryAcquire(global, nowNanos) : 0;
+    }
+
+    /**
+     * Returns the token of a request admitted here but refused further on.
+     */
+    public void release(String key) {
+        final AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            bucket.addAndGet(-intervalNanos);
+        }
+    }
+
+    public void release() {
+        global.addAndGet(-intervalNanos);
+    }
+
+    public int getTrackedKeys() {
+        return buckets.size();
+    }
+
+    private long tryAcquire(AtomicLong bucket, long nowNanos) {
+        while (true) {
+            final long fullAt = bucket.get();
+            final long start = Math.max(fullAt, nowNanos);
+            final long wait = start - toleranceNanos - nowNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, start + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Drops the idle buckets among the next {@value #EVICTION_SAMPLE}.
+     *
+     * @return 0 if there is room for another bucket, otherwise how many nanoseconds until a bucket looked at is idle
+     */
+    private long evictIdle(long nowNanos) {
+        if (!evicting.compareAndSet(false, true)) {
+            // Another thread is making room; only one bucket's emission interval is a fair guess at when it has.
+            return intervalNanos;
+        }
+        try {
+            long soonestIdle = Long.MAX_VALUE;
+            boolean restarted = false;
+            for (int i = 0; i < EVICTION_SAMPLE; i++) {
+                if (evictionCursor == null || !evictionCursor.hasNext()) {
+                    if (restarted) {
+                        break;
+                    }
+                    evictionCursor = buckets.values().iterator();
+                    restarted = true;
+                    if (!evictionCursor.hasNext()) {
+                        break;
+                    }
+                }
+                final long fullAt = evictionCursor.next().get();
+                if (fullAt <= nowNanos) {
+                    evictionCursor.remove();
+                } else {
+                    soonestIdle = Math.min(soonestIdle, fullAt - nowNanos);
+                }
+            }
+            if (buckets.size() < maxKeys) {
+                return 0;
+            }
+            return soonestIdle == Long.MAX_VALUE ? intervalNanos : soonestIdle;
+        } finally {
+            evicting.set(false);
+        }
+    }
+}
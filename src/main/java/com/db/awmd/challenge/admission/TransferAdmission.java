@@ -0,0 +1,115 @@
+package com.db.awmd.challenge.admission;
+
+import com.db.awmd.challenge.exception.TransferThrottledException;
+import com.db.awmd.challenge.model.AdmissionMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether a transfer may go ahead before it touches the store. A source account over its rate is refused
+ * first, so a runaway client spends its own budget and not the global one; then the global rate and the adaptive
+ * concurrency limit protect the store as a whole. A transfer refused at a later stage gives back what it took at
+ * the earlier ones.
+ */
+@Component
+public class TransferAdmission {
+
+    /**
+     * Retry hint for a transfer refused by the concurrency limit, which frees up as soon as transfers complete.
+     */
+    private static final long CONCURRENCY_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final RateLimiter accountRateLimiter;
+
+    private final RateLimiter globalRateLimiter;
+
+    private final ConcurrencyLimiter concurrencyLimiter;
+
+    private final LongAdder admitted = new LongAdder();
+
+    private final LongAdder accountRateLimited = new LongAdder();
+
+    private final LongAdder globalRateLimited = new LongAdder();
+
+    private final LongAdder concurrencyLimited = new LongAdder();
+
+    @Autowired
+    public TransferAdmission(@Value("${transfer.rate-limit.per-account:1000}") final double perAccountRate,
+                             @Value("${transfer.rate-limit.per-account-burst:100}") final int perAccountBurst,
+                             @Value("${transfer.rate-limit.global:0}") final double globalRate,
+                             @Value("${transfer.rate-limit.global-burst:1000}") final int globalBurst,
+                             @Value("${transfer.rate-limit.max-tracked-accounts:100000}") final int maxTrackedAccounts,
+                             @Value("${transfer.concurrency-limit.initial:64}") final int initialLimit,
+                             @Value("${transfer.concurrency-limit.min:8}") final int minLimit,
+                             @Value("${transfer.concurrency-limit.max:1024}") final int maxLimit) {
+        this(new RateLimiter(perAccountRate, perAccountBurst, maxTrackedAccounts),
+                new RateLimiter(globalRate, globalBurst, 0),
+                initialLimit > 0 ? new ConcurrencyLimiter(initialLimit, minLimit, maxLimit) : ConcurrencyLimiter.unlimited());
+    }
+
+    public TransferAdmission(RateLimiter accountRateLimiter, RateLimiter globalRateLimiter,
+                             ConcurrencyLimiter concurrencyLimiter) {
+        this.accountRateLimiter = accountRateLimiter;
+        this.globalRateLimiter = globalRateLimiter;
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Admits every transfer.
+     */
+    public static TransferAdmission disabled() {
+        return new TransferAdmission(RateLimiter.unlimited(), RateLimiter.unlimited(), ConcurrencyLimiter.unlimited());
+    }
+
+    /**
+     * Admits a transfer from {@code fromAccountId}, which must be followed by {@link #completed(long)} once it is
+     * done, whatever its outcome.
+     *
+     * @return the admission time to pass to {@link #completed(long)}
+     * @throws TransferThrottledException if the transfer is refused
+     */
+    public long admit(String fromAccountId) {
+        final long now = System.nanoTime();
+
+        final long accountWait = accountRateLimiter.tryAcquire(fromAccountId, now);
+        if (accountWait > 0) {
+            accountRateLimited.increment();
+            throw new TransferThrottledException(
+                    String.format("Too many transfers from account %s", fromAccountId), accountWait);
+        }
+
+        final long globalWait = globalRateLimiter.tryAcquire(now);
+        if (globalWait > 0) {
+            accountRateLimiter.release(fromAccountId);
+            globalRateLimited.increment();
+            throw new TransferThrottledException("Too many transfers", globalWait);
+        }
+
+        if (!concurrencyLimiter.tryAcquire()) {
+            accountRateLimiter.release(fromAccountId);
+            globalRateLimiter.release();
+            concurrencyLimited.increment();
+            throw new TransferThrottledException("Too many transfers in progress", CONCURRENCY_RETRY_NANOS);
+        }
+
+        admitted.increment();
+        return now;
+    }
+
+    /**
+     * Ends a transfer admitted at {@code admittedAt}, feeding its latency to the concurrency limit.
+     */
+    public void completed(long admittedAt) {
+        concurrencyLimiter.release(System.nanoTime() - admittedAt);
+    }
+
+    public AdmissionMetrics getMetrics() {
+        return new AdmissionMetrics(admitted.sum(), accountRateLimited.sum(), globalRateLimited.sum(),
+                concurrencyLimited.sum(), concurrencyLimiter.getLimit(), concurrencyLimiter.getInFlight(),
+                accountRateLimiter.getTrackedKeys());
+    }
+}
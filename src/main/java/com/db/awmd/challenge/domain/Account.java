@@ -1,6 +1,7 @@
 package com.db.awmd.challenge.domain;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import org.hibernate.validator.constraints.NotEmpty;
@@ -8,10 +9,18 @@ import org.hibernate.validator.constraints.NotEmpty;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
 
 @Data
 public class Account {
 
+    /**
+     * Currency of accounts created without one.
+     */
+    public static final Currency DEFAULT_CURRENCY = Currency.getInstance("EUR");
+
     @NotNull
     @NotEmpty
     private final String accountId;
@@ -20,15 +29,100 @@ public class Account {
     @Min(value = 0, message = "Initial balance must be positive.")
     private BigDecimal balance;
 
+    /**
+     * Fixed when the account is created; the balance is always held in it.
+     */
+    private final Currency currency;
+
+    /**
+     * Changes whenever the balance does. The in-memory store uses the sequence number of the last journal record
+     * applied to this account, or a count of changes when journaling is off; other stores document their own.
+     */
+    @JsonIgnore
+    private final long version;
+
+    /**
+     * Funds set aside for later capture, which transfers cannot touch. Only the in-memory store places holds.
+     */
+    @JsonIgnore
+    private final List<Hold> holds;
+
+    /**
+     * The sum of {@link #holds}.
+     */
+    @JsonIgnore
+    private final BigDecimal heldBalance;
+
     public Account(String accountId) {
-        this.accountId = accountId;
-        this.balance = BigDecimal.ZERO;
+        this(accountId, BigDecimal.ZERO);
+    }
+
+    public Account(String accountId, BigDecimal balance) {
+        this(accountId, balance, DEFAULT_CURRENCY, 0);
     }
 
     @JsonCreator
     public Account(@JsonProperty("accountId") String accountId,
-                   @JsonProperty("balance") BigDecimal balance) {
+                   @JsonProperty("balance") BigDecimal balance,
+                   @JsonProperty("currency") Currency currency) {
+        this(accountId, balance, currency, 0);
+    }
+
+    public Account(String accountId, BigDecimal balance, long version) {
+        this(accountId, balance, DEFAULT_CURRENCY, version);
+    }
+
+    public Account(String accountId, BigDecimal balance, Currency currency, long version) {
+        this(accountId, balance, currency, version, Collections.emptyList());
+    }
+
+    /**
+     * @param holds not copied, so it must not change afterwards
+     */
+    public Account(String accountId, BigDecimal balance, Currency currency, long version, List<Hold> holds) {
         this.accountId = accountId;
         this.balance = balance;
+        this.currency = currency == null ? DEFAULT_CURRENCY : currency;
+        this.version = version;
+        this.holds = holds;
+        BigDecimal held = BigDecimal.ZERO;
+        for (Hold hold : holds) {
+            held = held.add(hold.getAmount());
+        }
+        this.heldBalance = held;
+    }
+
+    /**
+     * What transfers may still take: the balance less what is on hold.
+     */
+    @JsonIgnore
+    public BigDecimal getAvailableBalance() {
+        return holds.isEmpty() ? balance : balance.subtract(heldBalance);
+    }
+
+    /**
+     * The same account with another balance and version, keeping its holds.
+     */
+    public Account withBalance(BigDecimal balance, long version) {
+        return new Account(accountId, balance, currency, version, holds);
+    }
+
+    /**
+     * The same account with another balance, holds and version.
+     */
+    public Account withHolds(BigDecimal balance, List<Hold> holds, long version) {
+        return new Account(accountId, balance, currency, version, holds);
+    }
+
+    /**
+     * The hold with the given id, or {@code null}.
+     */
+    public Hold getHold(String holdId) {
+        for (Hold hold : holds) {
+            if (hold.getHoldId().equals(holdId)) {
+                return hold;
+            }
+        }
+        return null;
     }
 }
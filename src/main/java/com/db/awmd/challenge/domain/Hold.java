@@ -0,0 +1,37 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Funds of an account set aside for a later capture. {@code amount} is what is still held: a partial capture
+ * lowers it, and the hold is gone once it is fully captured, released or past {@code expiresAtMillis}.
+ */
+@Data
+public class Hold {
+
+    private final String holdId;
+
+    private final BigDecimal amount;
+
+    @JsonIgnore
+    private final long expiresAtMillis;
+
+    public String getExpiresAt() {
+        return Instant.ofEpochMilli(expiresAtMillis).toString();
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return expiresAtMillis <= nowMillis;
+    }
+
+    /**
+     * The same hold with less left on it.
+     */
+    public Hold withAmount(BigDecimal amount) {
+        return new Hold(holdId, amount, expiresAtMillis);
+    }
+}
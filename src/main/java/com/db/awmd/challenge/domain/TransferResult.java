@@ -0,0 +1,14 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+/**
+ * State of both accounts right after a transfer has been applied.
+ */
+@Data
+public class TransferResult {
+
+    private final Account fromAccount;
+
+    private final Account toAccount;
+}
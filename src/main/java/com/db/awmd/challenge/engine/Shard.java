@@ -0,0 +1,319 @@
+package com.db.awmd.challenge.engine;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.exception.AccountCreditException;
+import com.db.awmd.challenge.exception.AccountDebitException;
+import com.db.awmd.challenge.exception.AccountNotPresentException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.repository.AccountIdLog;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * One partition of the accounts, mutated only by its own thread. Clients submit tasks through a bounded ring
+ * buffer; other shards send the later phases of cross-shard transfers through an unbounded queue, which is drained
+ * first and never blocks the sender, so two busy shards cannot deadlock waiting on each other.
+ * <p>
+ * Account values are immutable and replaced on every change, so any thread can read them without going through
+ * the shard.
+ */
+@Slf4j
+final class Shard implements Runnable {
+
+    private static final int SPINS_BEFORE_YIELD = 100;
+
+    private static final int YIELDS_BEFORE_PARK = 100;
+
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * Funds taken from an account by the first phase of a cross-shard transfer, until the credit side commits or
+     * aborts.
+     */
+    private static final class Reservation {
+
+        final String accountId;
+
+        final BigDecimal amount;
+
+        Reservation(String accountId, BigDecimal amount) {
+            this.accountId = accountId;
+            this.amount = amount;
+        }
+    }
+
+    private final int index;
+
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+
+    private final RingBuffer<Consumer<Shard>> inbox;
+
+    private final AccountIdLog accountIds;
+
+    private final Queue<Consumer<Shard>> peerInbox = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Only touched by the shard thread.
+     */
+    private final Map<Long, Reservation> reservations = new HashMap<>();
+
+    private volatile boolean running;
+
+    private volatile boolean parked;
+
+    private volatile Thread thread;
+
+    Shard(int index, int ringSize, AccountIdLog accountIds) {
+        this.index = index;
+        this.inbox = new RingBuffer<>(ringSize);
+        this.accountIds = accountIds;
+    }
+
+    void start() {
+        running = true;
+        thread = new Thread(this, "transfer-shard-" + index);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the shard after running whatever is still queued.
+     */
+    void stop() throws InterruptedException {
+        running = false;
+        final Thread shardThread = thread;
+        if (shardThread != null) {
+            LockSupport.unpark(shardThread);
+            shardThread.join(TimeUnit.SECONDS.toMillis(5));
+            thread = null;
+        }
+    }
+
+    Account getAccount(String accountId) {
+        return accounts.get(accountId);
+    }
+
+    /**
+     * Queues a task from a client thread, waiting for room when the ring buffer is full.
+     */
+    void submit(Consumer<Shard> task) {
+        if (!running) {
+            throw new IllegalStateException("Shard " + index + " is not running");
+        }
+        while (!inbox.offer(task)) {
+            Thread.yield();
+        }
+        wake();
+    }
+
+    /**
+     * Queues a task from another shard's thread.
+     */
+    void send(Consumer<Shard> task) {
+        peerInbox.add(task);
+        wake();
+    }
+
+    @Override
+    public void run() {
+        int idle = 0;
+        while (running || !inbox.isEmpty() || !peerInbox.isEmpty()) {
+            Consumer<Shard> task = peerInbox.poll();
+            if (task == null) {
+                task = inbox.poll();
+            }
+
+            if (task != null) {
+                idle = 0;
+                execute(task);
+            } else if (++idle <= SPINS_BEFORE_YIELD) {
+                // Busy-spin: new work usually arrives within microseconds under load.
+            } else if (idle <= SPINS_BEFORE_YIELD + YIELDS_BEFORE_PARK) {
+                Thread.yield();
+            } else {
+                parked = true;
+                if (inbox.isEmpty() && peerInbox.isEmpty()) {
+                    // Bounded, in case a wake-up raced with going to sleep.
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                parked = false;
+            }
+        }
+    }
+
+    void create(Account account, CompletableFuture<Void> result) {
+        if (accounts.putIfAbsent(account.getAccountId(), account) != null) {
+            result.completeExceptionally(new DuplicateAccountIdException(
+                    "Account id " + account.getAccountId() + " already exists!"));
+        } else {
+            accountIds.append(account.getAccountId());
+            result.complete(null);
+        }
+    }
+
+    void clear(CompletableFuture<Void> result) {
+        accounts.clear();
+        reservations.clear();
+        result.complete(null);
+    }
+
+    void debit(String accountId, BigDecimal amount, CompletableFuture<Account> result) {
+        final Account account = accounts.get(accountId);
+        if (account == null) {
+            result.completeExceptionally(debitAccountNotPresent(accountId));
+            return;
+        }
+
+        final Account debitedAccount = account.withBalance(balanceAfterDebit(account, amount), account.getVersion() + 1);
+        accounts.put(accountId, debitedAccount);
+        result.complete(debitedAccount);
+    }
+
+    void credit(String accountId, BigDecimal amount, CompletableFuture<Account> result) {
+        final Account account = accounts.get(accountId);
+        if (account == null) {
+            result.completeExceptionally(creditAccountNotPresent(accountId));
+            return;
+        }
+
+        final Account creditedAccount = account.withBalance(account.getBalance().add(amount), account.getVersion() + 1);
+        accounts.put(accountId, creditedAccount);
+        result.complete(creditedAccount);
+    }
+
+    /**
+     * A transfer between two accounts of this shard, validated and applied in one step.
+     */
+    void transfer(String fromAccountId, String toAccountId, BigDecimal debitAmount, BigDecimal creditAmount,
+                  CompletableFuture<TransferResult> result) {
+        final Account fromAccount = accounts.get(fromAccountId);
+        if (fromAccount == null) {
+            result.completeExceptionally(debitAccountNotPresent(fromAccountId));
+            return;
+        }
+
+        final Account toAccount = accounts.get(toAccountId);
+        if (toAccount == null) {
+            result.completeExceptionally(creditAccountNotPresent(toAccountId));
+            return;
+        }
+
+        final BigDecimal fromBalance = balanceAfterDebit(fromAccount, debitAmount);
+        if (fromAccountId.equals(toAccountId)) {
+            result.complete(new TransferResult(fromAccount, toAccount));
+            return;
+        }
+
+        final Account debitedAccount = fromAccount.withBalance(fromBalance, fromAccount.getVersion() + 1);
+        final Account creditedAccount = toAccount.withBalance(toAccount.getBalance().add(creditAmount),
+                toAccount.getVersion() + 1);
+        accounts.put(fromAccountId, debitedAccount);
+        accounts.put(toAccountId, creditedAccount);
+        result.complete(new TransferResult(debitedAccount, creditedAccount));
+    }
+
+    /**
+     * First phase of a cross-shard transfer: validates the debit side and takes the amount out of the account,
+     * then hands the credit side to {@code toShard}.
+     */
+    void reserve(long transferId, String fromAccountId, String toAccountId, BigDecimal debitAmount,
+                 BigDecimal creditAmount, Shard toShard, CompletableFuture<TransferResult> result) {
+        final Account fromAccount = accounts.get(fromAccountId);
+        if (fromAccount == null) {
+            result.completeExceptionally(debitAccountNotPresent(fromAccountId));
+            return;
+        }
+
+        final Account debitedAccount = fromAccount.withBalance(balanceAfterDebit(fromAccount, debitAmount),
+                fromAccount.getVersion() + 1);
+        accounts.put(fromAccountId, debitedAccount);
+        reservations.put(transferId, new Reservation(fromAccountId, debitAmount));
+        toShard.send(shard -> shard.applyReserved(transferId, debitedAccount, toAccountId, creditAmount, this, result));
+    }
+
+    /**
+     * Second phase, on the credit side: applies the credit and commits the reservation, or aborts it when the
+     * account does not exist.
+     */
+    private void applyReserved(long transferId, Account debitedAccount, String toAccountId, BigDecimal amount,
+                               Shard fromShard, CompletableFuture<TransferResult> result) {
+        final Account toAccount = accounts.get(toAccountId);
+        if (toAccount == null) {
+            fromShard.send(shard -> shard.abort(transferId, creditAccountNotPresent(toAccountId), result));
+            return;
+        }
+
+        final Account creditedAccount = toAccount.withBalance(toAccount.getBalance().add(amount), toAccount.getVersion() + 1);
+        accounts.put(toAccountId, creditedAccount);
+        fromShard.send(shard -> shard.commit(transferId));
+        result.complete(new TransferResult(debitedAccount, creditedAccount));
+    }
+
+    private void commit(long transferId) {
+        reservations.remove(transferId);
+    }
+
+    /**
+     * Returns the reserved amount before failing the transfer, so the caller never sees the money in flight.
+     */
+    private void abort(long transferId, RuntimeException cause, CompletableFuture<TransferResult> result) {
+        final Reservation reservation = reservations.remove(transferId);
+        if (reservation != null) {
+            accounts.computeIfPresent(reservation.accountId,
+                    (id, account) -> account.withBalance(account.getBalance().add(reservation.amount),
+                            account.getVersion() + 1));
+        }
+        result.completeExceptionally(cause);
+    }
+
+    private void execute(Consumer<Shard> task) {
+        try {
+            task.accept(this);
+        } catch (RuntimeException re) {
+            // Tasks complete their own futures; this only guards the shard thread against a bug in one of them.
+            log.error("Exception while running a task on shard {}.", index, re);
+        }
+    }
+
+    private void wake() {
+        if (parked) {
+            final Thread shardThread = thread;
+            if (shardThread != null) {
+                LockSupport.unpark(shardThread);
+            }
+        }
+    }
+
+    private static BigDecimal balanceAfterDebit(Account account, BigDecimal amount) {
+        final BigDecimal newBalance = account.getBalance().subtract(amount);
+
+        if (newBalance.compareTo(BigDecimal.ZERO) < 0) {
+            throw new AccountDebitException(
+                    String.format("After debit, account will have balance of %s. Account cannot have negative balance",
+                            newBalance));
+        }
+
+        return newBalance;
+    }
+
+    private static AccountDebitException debitAccountNotPresent(String fromAccountId) {
+        Throwable accountNotPresentException = new AccountNotPresentException(String.format("Account with id %s is not present.", fromAccountId));
+        return new AccountDebitException(String.format("Account with id %s is not present.", fromAccountId), accountNotPresentException);
+    }
+
+    private static AccountCreditException creditAccountNotPresent(String toAccountId) {
+        Throwable accountNotPresentException = new AccountNotPresentException(String.format("Account with id %s is not present.", toAccountId));
+        return new AccountCreditException(String.format("Exception while crediting the account with key %s", toAccountId), accountNotPresentException);
+    }
+}
@@ -0,0 +1,200 @@
+package com.db.awmd.challenge.engine;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.repository.AccountIdLog;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Account store that partitions accounts across shards by id hash, each shard owned by a single thread, so no
+ * account is ever guarded by a lock. Transfers within a shard are applied in one step. Transfers across shards use
+ * two phases: the debit shard validates and reserves the amount, then the credit shard applies the credit and
+ * commits, or has the debit shard abort and return the amount if the credit account does not exist.
+ * <p>
+ * While a cross-shard transfer is in flight its amount has left the debit account but not yet reached the credit
+ * account. The returned future only completes once the transfer has committed or aborted.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "accounts.store", havingValue = "sharded")
+public class ShardedTransferEngine implements AccountsRepository {
+
+    private final Shard[] shards;
+
+    private final AtomicLong nextTransferId = new AtomicLong();
+
+    private final AccountIdLog accountIds = new AccountIdLog();
+
+    @Autowired
+    public ShardedTransferEngine(@Value("${accounts.sharded.shards:0}") final int shardCount,
+                                 @Value("${accounts.sharded.ring-size:16384}") final int ringSize) {
+        final int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i, ringSize, accountIds);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        for (Shard shard : shards) {
+            shard.start();
+        }
+        log.info("Started transfer engine with {} shards", shards.length);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (Shard shard : shards) {
+            shard.stop();
+        }
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        await(this.<Void>submit(shardOf(account.getAccountId()), (shard, result) -> shard.create(account, result)));
+    }
+
+    /**
+     * Queues the whole batch before waiting, so the shards create accounts in parallel.
+     */
+    @Override
+    public void createAccounts(List<Account> accounts, ObjIntConsumer<RuntimeException> rejected) {
+        final List<CompletableFuture<Void>> created = new ArrayList<>(accounts.size());
+        for (Account account : accounts) {
+            created.add(this.<Void>submit(shardOf(account.getAccountId()), (shard, result) -> shard.create(account, result)));
+        }
+        for (int i = 0; i < created.size(); i++) {
+            try {
+                await(created.get(i));
+            } catch (DuplicateAccountIdException daie) {
+                rejected.accept(daie, i);
+            }
+        }
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        return shardOf(accountId).getAccount(accountId);
+    }
+
+    @Override
+    public void clearAccounts() {
+        final CompletableFuture<?>[] cleared = new CompletableFuture<?>[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            cleared[i] = this.<Void>submit(shards[i], Shard::clear);
+        }
+        await(CompletableFuture.allOf(cleared));
+        accountIds.clear();
+    }
+
+    @Override
+    public int getAccountCount() {
+        return accountIds.size();
+    }
+
+    @Override
+    public List<Account> getAccounts(int from, int limit) {
+        return accountIds.page(from, limit, this::getAccount);
+    }
+
+    @Override
+    public Account debitAmount(String fromAccountId, BigDecimal amount) {
+        return await(this.<Account>submit(shardOf(fromAccountId),
+                (shard, result) -> shard.debit(fromAccountId, amount, result)));
+    }
+
+    @Override
+    public Account creditAmount(String toAccountId, BigDecimal amount) {
+        return await(this.<Account>submit(shardOf(toAccountId),
+                (shard, result) -> shard.credit(toAccountId, amount, result)));
+    }
+
+    @Override
+    public TransferResult transfer(String fromAccountId, String toAccountId, BigDecimal amount) {
+        return await(transferAsync(fromAccountId, toAccountId, amount));
+    }
+
+    @Override
+    public TransferResult transfer(String fromAccountId, String toAccountId, BigDecimal debitAmount,
+                                   BigDecimal creditAmount) {
+        return await(transferAsync(fromAccountId, toAccountId, debitAmount, creditAmount));
+    }
+
+    @Override
+    public boolean isAsync() {
+        return true;
+    }
+
+    @Override
+    public CompletableFuture<TransferResult> transferAsync(String fromAccountId, String toAccountId, BigDecimal amount) {
+        return transferAsync(fromAccountId, toAccountId, amount, amount);
+    }
+
+    @Override
+    public CompletableFuture<TransferResult> transferAsync(String fromAccountId, String toAccountId,
+                                                           BigDecimal debitAmount, BigDecimal creditAmount) {
+        final Shard fromShard = shardOf(fromAccountId);
+        final Shard toShard = shardOf(toAccountId);
+        if (fromShard == toShard) {
+            return submit(fromShard,
+                    (shard, result) -> shard.transfer(fromAccountId, toAccountId, debitAmount, creditAmount, result));
+        }
+
+        final long transferId = nextTransferId.incrementAndGet();
+        return submit(fromShard, (shard, result) -> shard.reserve(transferId, fromAccountId, toAccountId,
+                debitAmount, creditAmount, toShard, result));
+    }
+
+    int getShardCount() {
+        return shards.length;
+    }
+
+    Shard shardOf(String accountId) {
+        final int hash = accountId.hashCode();
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+    }
+
+    /**
+     * Runs {@code task} on the shard's thread. A task that throws fails its future.
+     */
+    private <T> CompletableFuture<T> submit(Shard shard, BiConsumer<Shard, CompletableFuture<T>> task) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        shard.submit(owner -> {
+            try {
+                task.accept(owner, result);
+            } catch (RuntimeException re) {
+                result.completeExceptionally(re);
+            }
+        });
+        return result;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ce) {
+            if (ce.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ce.getCause();
+            }
+            throw ce;
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.db.awmd.challenge.exception;
 
 public class AccountCreditException extends RuntimeException {
+    public AccountCreditException(String message) {
+        super(message);
+    }
+
     public AccountCreditException(String message, Throwable throwable) {
         super(message, throwable);
     }
@@ -0,0 +1,12 @@
+package com.db.awmd.challenge.exception;
+
+public class AccountStoreException extends RuntimeException {
+
+    public AccountStoreException(String message) {
+        super(message);
+    }
+
+    public AccountStoreException(String message, Throwable throwable) {
+        super(message, throwable);
+    }
+}
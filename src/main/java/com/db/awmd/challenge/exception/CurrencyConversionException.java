@@ -0,0 +1,11 @@
+package com.db.awmd.challenge.exception;
+
+/**
+ * A transfer between accounts in different currencies for which the current rate table has no rate.
+ */
+public class CurrencyConversionException extends RuntimeException {
+
+    public CurrencyConversionException(String message) {
+        super(message);
+    }
+}
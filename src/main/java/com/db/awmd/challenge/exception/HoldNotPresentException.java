@@ -0,0 +1,8 @@
+package com.db.awmd.challenge.exception;
+
+public class HoldNotPresentException extends RuntimeException {
+
+    public HoldNotPresentException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.db.awmd.challenge.exception;
+
+public class JournalException extends RuntimeException {
+
+    public JournalException(String message) {
+        super(message);
+    }
+
+    public JournalException(String message, Throwable throwable) {
+        super(message, throwable);
+    }
+}
@@ -0,0 +1,8 @@
+package com.db.awmd.challenge.exception;
+
+public class ReadOnlyReplicaException extends RuntimeException {
+
+    public ReadOnlyReplicaException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.exception;
+
+import lombok.Getter;
+
+/**
+ * A transfer refused before it reached the store, because its source account or the service as a whole is over
+ * its limit.
+ */
+public class TransferThrottledException extends RuntimeException {
+
+    /**
+     * How long the client should wait before retrying.
+     */
+    @Getter
+    private final long retryAfterNanos;
+
+    public TransferThrottledException(String message, long retryAfterNanos) {
+        super(message);
+        this.retryAfterNanos = retryAfterNanos;
+    }
+}
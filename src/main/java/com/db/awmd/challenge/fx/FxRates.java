@@ -0,0 +1,72 @@
+package com.db.awmd.challenge.fx;
+
+import com.db.awmd.challenge.exception.CurrencyConversionException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The exchange rates transfers between currencies convert with. The rates are one immutable {@link RateTable},
+ * replaced as a whole by {@link #publish(RateTable)}: a conversion reads the current table once and uses it
+ * throughout, so it never locks, never sees half an update, and a transfer already converting keeps the rates it
+ * started with.
+ * <p>
+ * The initial table has the {@code fx.base} currency and the rates in {@code fx.rates}, written as
+ * {@code USD=1.0842,GBP=0.8571}.
+ */
+@Slf4j
+@Component
+public class FxRates {
+
+    private volatile RateTable table;
+
+    @Autowired
+    public FxRates(@Value("${fx.base:EUR}") final String base,
+                   @Value("${fx.rates:}") final String rates) {
+        this(new RateTable(Currency.getInstance(base), parse(rates)));
+    }
+
+    public FxRates(RateTable table) {
+        this.table = table;
+    }
+
+    public RateTable getTable() {
+        return table;
+    }
+
+    public void publish(RateTable table) {
+        this.table = table;
+        log.info("Published exchange rates for {} currencies against {}", table.getRates().size(), table.getBase());
+    }
+
+    /**
+     * Converts {@code amount} with the current rates.
+     *
+     * @throws CurrencyConversionException if there is no rate between the two currencies
+     */
+    public BigDecimal convert(BigDecimal amount, Currency from, Currency to) {
+        return table.convert(amount, from, to);
+    }
+
+    private static Map<Currency, BigDecimal> parse(String rates) {
+        final Map<Currency, BigDecimal> parsed = new LinkedHashMap<>();
+        for (String quote : rates.split(",")) {
+            if (quote.trim().isEmpty()) {
+                continue;
+            }
+            final int separator = quote.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Exchange rate " + quote + " is not CURRENCY=RATE");
+            }
+            parsed.put(Currency.getInstance(quote.substring(0, separator).trim()),
+                    new BigDecimal(quote.substring(separator + 1).trim()));
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,119 @@
+package com.db.awmd.challenge.fx;
+
+import com.db.awmd.challenge.exception.CurrencyConversionException;
+import com.db.awmd.challenge.model.ExchangeRates;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable set of exchange rates, each quoted as units of a currency per one unit of the base currency. The
+ * cross rate of every pair of quoted currencies is worked out when the table is built, so a conversion is two map
+ * lookups, one multiplication and one rounding.
+ * <p>
+ * Converted amounts are rounded half-even to the target currency's minor unit.
+ */
+public final class RateTable {
+
+    private final Currency base;
+
+    private final Map<Currency, BigDecimal> rates;
+
+    /**
+     * Row and column of each currency in {@link #crossRates}. {@link Currency} instances are canonical, so lookups
+     * hash by identity.
+     */
+    private final Map<Currency, Integer> indexes;
+
+    /**
+     * {@code crossRates[from][to]}: units of {@code to} per unit of {@code from}.
+     */
+    private final BigDecimal[][] crossRates;
+
+    /**
+     * @throws IllegalArgumentException if a rate is not positive
+     */
+    public RateTable(Currency base, Map<Currency, BigDecimal> rates) {
+        final Map<Currency, BigDecimal> quoted = new LinkedHashMap<>();
+        quoted.put(base, BigDecimal.ONE);
+        rates.forEach((currency, rate) -> {
+            if (rate == null || rate.signum() <= 0) {
+                throw new IllegalArgumentException("Rate of " + currency + " must be positive");
+            }
+            if (!currency.equals(base)) {
+                quoted.put(currency, rate);
+            }
+        });
+
+        this.base = base;
+        this.rates = Collections.unmodifiableMap(quoted);
+        this.indexes = new HashMap<>(quoted.size() * 2);
+        final BigDecimal[] perBase = quoted.values().toArray(new BigDecimal[0]);
+        for (Currency currency : quoted.keySet()) {
+            indexes.put(currency, indexes.size());
+        }
+        this.crossRates = new BigDecimal[perBase.length][perBase.length];
+        for (int from = 0; from < perBase.length; from++) {
+            for (int to = 0; to < perBase.length; to++) {
+                crossRates[from][to] = from == to ? BigDecimal.ONE : perBase[to].divide(perBase[from], MathContext.DECIMAL128);
+            }
+        }
+    }
+
+    /**
+     * A table that only knows {@code base}.
+     */
+    public static RateTable of(Currency base) {
+        return new RateTable(base, Collections.emptyMap());
+    }
+
+    public static RateTable of(ExchangeRates exchangeRates) {
+        return new RateTable(exchangeRates.getBase(), exchangeRates.getRates());
+    }
+
+    public Currency getBase() {
+        return base;
+    }
+
+    /**
+     * Units of each currency per unit of the base currency, the base included.
+     */
+    public Map<Currency, BigDecimal> getRates() {
+        return rates;
+    }
+
+    public ExchangeRates toExchangeRates() {
+        return new ExchangeRates(base, rates);
+    }
+
+    /**
+     * Units of {@code to} per unit of {@code from}, or {@code null} if either is not quoted.
+     */
+    public BigDecimal rate(Currency from, Currency to) {
+        final Integer fromIndex = indexes.get(from);
+        final Integer toIndex = indexes.get(to);
+        return fromIndex == null || toIndex == null ? null : crossRates[fromIndex][toIndex];
+    }
+
+    /**
+     * @throws CurrencyConversionException if either currency is not quoted
+     */
+    public BigDecimal convert(BigDecimal amount, Currency from, Currency to) {
+        if (from.equals(to)) {
+            return amount;
+        }
+
+        final BigDecimal rate = rate(from, to);
+        if (rate == null) {
+            throw new CurrencyConversionException(String.format("No exchange rate from %s to %s", from, to));
+        }
+        final int digits = to.getDefaultFractionDigits();
+        return amount.multiply(rate).setScale(digits >= 0 ? digits : amount.scale(), RoundingMode.HALF_EVEN);
+    }
+}
@@ -0,0 +1,24 @@
+package com.db.awmd.challenge.journal;
+
+/**
+ * How far a mutation must have reached before the repository call that made it returns.
+ */
+public enum DurabilityMode {
+    /**
+     * Nothing is journaled; balances are lost on restart.
+     */
+    NONE,
+    /**
+     * Records are written by a background thread without fsync. A crash can lose the most recent mutations.
+     */
+    ASYNC,
+    /**
+     * Callers wait until their record is fsynced. Concurrent records share one fsync, bounded by the configured
+     * maximum latency and batch size.
+     */
+    GROUP_COMMIT,
+    /**
+     * Every caller fsyncs the journal itself before returning.
+     */
+    PER_OP_FSYNC
+}
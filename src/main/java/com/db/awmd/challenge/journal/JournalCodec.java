@@ -0,0 +1,208 @@
+package com.db.awmd.challenge.journal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Binary layout of a journal record:
+ * <pre>
+ * int   body length
+ * int   CRC32 of the body
+ * long  sequence
+ * byte  type
+ * short account id length, account id (UTF-8)
+ * short to-account id length, to-account id (UTF-8, empty unless a transfer)
+ * int   amount scale
+ * short unscaled amount length, unscaled amount (two's complement)
+ * </pre>
+ * followed, only in records that have a currency, a credit amount or a hold, by
+ * <pre>
+ * short currency length, currency (ASCII, empty unless a creation)
+ * int   credit amount scale
+ * short unscaled credit amount length, unscaled credit amount (empty unless a transfer between currencies)
+ * </pre>
+ * and then, only in records about a hold, by
+ * <pre>
+ * short hold id length, hold id (UTF-8)
+ * long  hold expiry (epoch milliseconds, 0 unless a hold is placed)
+ * </pre>
+ * The length and checksum let a reader stop cleanly at a record torn by a crash. Records written before the
+ * trailing parts existed simply end earlier.
+ */
+final class JournalCodec {
+
+    private static final int HEADER_BYTES = 8;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private JournalCodec() {
+    }
+
+    /**
+     * The variable-length parts of a record, encoded before the journal lock is taken.
+     */
+    static final class Payload {
+
+        final JournalRecord.Type type;
+
+        final byte[] accountId;
+
+        final byte[] toAccountId;
+
+        final int scale;
+
+        final byte[] unscaled;
+
+        final byte[] currency;
+
+        final int creditScale;
+
+        final byte[] creditUnscaled;
+
+        final byte[] holdId;
+
+        final long expiresAtMillis;
+
+        Payload(JournalRecord.Type type, String accountId, String toAccountId, BigDecimal amount,
+                String currency, BigDecimal creditAmount, String holdId, long expiresAtMillis) {
+            this.type = type;
+            this.accountId = accountId.getBytes(StandardCharsets.UTF_8);
+            this.toAccountId = toAccountId == null ? EMPTY : toAccountId.getBytes(StandardCharsets.UTF_8);
+            this.scale = amount.scale();
+            this.unscaled = amount.unscaledValue().toByteArray();
+            this.currency = currency == null ? null : currency.getBytes(StandardCharsets.US_ASCII);
+            this.creditScale = creditAmount == null ? 0 : creditAmount.scale();
+            this.creditUnscaled = creditAmount == null ? null : creditAmount.unscaledValue().toByteArray();
+            this.holdId = holdId == null ? null : holdId.getBytes(StandardCharsets.UTF_8);
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        private boolean hasExtension() {
+            return currency != null || creditUnscaled != null || holdId != null;
+        }
+
+        int encodedSize() {
+            return HEADER_BYTES + bodySize();
+        }
+
+        private int bodySize() {
+            final int size = 8 + 1 + 2 + accountId.length + 2 + toAccountId.length + 4 + 2 + unscaled.length;
+            if (!hasExtension()) {
+                return size;
+            }
+            final int extended = size + 2 + length(currency) + 4 + 2 + length(creditUnscaled);
+            return holdId == null ? extended : extended + 2 + holdId.length + 8;
+        }
+
+        private static int length(byte[] bytes) {
+            return bytes == null ? 0 : bytes.length;
+        }
+    }
+
+    static void encode(ByteBuffer buffer, long sequence, Payload payload) {
+        final int bodySize = payload.bodySize();
+        final int start = buffer.position();
+
+        buffer.putInt(bodySize);
+        buffer.putInt(0);
+        buffer.putLong(sequence);
+        buffer.put((byte) payload.type.ordinal());
+        buffer.putShort((short) payload.accountId.length);
+        buffer.put(payload.accountId);
+        buffer.putShort((short) payload.toAccountId.length);
+        buffer.put(payload.toAccountId);
+        buffer.putInt(payload.scale);
+        buffer.putShort((short) payload.unscaled.length);
+        buffer.put(payload.unscaled);
+        if (payload.hasExtension()) {
+            putBytes(buffer, payload.currency);
+            buffer.putInt(payload.creditScale);
+            putBytes(buffer, payload.creditUnscaled);
+            if (payload.holdId != null) {
+                putBytes(buffer, payload.holdId);
+                buffer.putLong(payload.expiresAtMillis);
+            }
+        }
+
+        final CRC32 crc = new CRC32();
+        final ByteBuffer body = buffer.duplicate();
+        body.position(start + HEADER_BYTES).limit(start + HEADER_BYTES + bodySize);
+        crc.update(body);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /**
+     * Reads the record at the buffer's position, or returns {@code null} without consuming anything when the
+     * remaining bytes do not hold a complete, intact record.
+     */
+    static JournalRecord decode(ByteBuffer buffer) {
+        final int start = buffer.position();
+        if (buffer.remaining() < HEADER_BYTES) {
+            return null;
+        }
+
+        final int bodySize = buffer.getInt(start);
+        if (bodySize <= 0 || bodySize > buffer.remaining() - HEADER_BYTES) {
+            return null;
+        }
+
+        final CRC32 crc = new CRC32();
+        final ByteBuffer body = buffer.duplicate();
+        body.position(start + HEADER_BYTES).limit(start + HEADER_BYTES + bodySize);
+        crc.update(body);
+        if ((int) crc.getValue() != buffer.getInt(start + 4)) {
+            return null;
+        }
+
+        buffer.position(start + HEADER_BYTES);
+        final long sequence = buffer.getLong();
+        final JournalRecord.Type type = JournalRecord.Type.values()[buffer.get()];
+        final String accountId = readString(buffer);
+        final String toAccountId = readString(buffer);
+        final int scale = buffer.getInt();
+        final byte[] unscaled = new byte[buffer.getShort()];
+        buffer.get(unscaled);
+
+        String currency = null;
+        BigDecimal creditAmount = null;
+        String holdId = null;
+        long expiresAtMillis = 0;
+        final int end = start + HEADER_BYTES + bodySize;
+        if (buffer.position() < end) {
+            final byte[] currencyBytes = readBytes(buffer);
+            final int creditScale = buffer.getInt();
+            final byte[] creditUnscaled = readBytes(buffer);
+            currency = currencyBytes.length == 0 ? null : new String(currencyBytes, StandardCharsets.US_ASCII);
+            creditAmount = creditUnscaled.length == 0 ? null : new BigDecimal(new BigInteger(creditUnscaled), creditScale);
+        }
+        if (buffer.position() < end) {
+            holdId = readString(buffer);
+            expiresAtMillis = buffer.getLong();
+        }
+
+        return new JournalRecord(sequence, type, accountId, toAccountId.isEmpty() ? null : toAccountId,
+                new BigDecimal(new BigInteger(unscaled), scale), currency, creditAmount, holdId, expiresAtMillis);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) 0);
+        } else {
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        return new String(readBytes(buffer), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,47 @@
+package com.db.awmd.challenge.journal;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * One applied mutation. {@code toAccountId} is only set for transfers and captures, {@code currency} (an ISO 4217
+ * code) only for creations, and {@code creditAmount} only for transfers and captures between accounts in different
+ * currencies, where it is what the credited account received. {@code holdId} is set for the hold records, and
+ * {@code expiresAtMillis} only for {@link Type#HOLD}.
+ * <p>
+ * A hold sets {@code amount} aside on the account, a capture moves {@code amount} of the hold to
+ * {@code toAccountId}, and a release, also written when a hold expires, gives back the {@code amount} still held.
+ */
+@Data
+public class JournalRecord {
+
+    public enum Type {
+        CREATE, DEBIT, CREDIT, TRANSFER, HOLD, CAPTURE, RELEASE
+    }
+
+    private final long sequence;
+
+    private final Type type;
+
+    private final String accountId;
+
+    private final String toAccountId;
+
+    private final BigDecimal amount;
+
+    private final String currency;
+
+    private final BigDecimal creditAmount;
+
+    private final String holdId;
+
+    private final long expiresAtMillis;
+
+    /**
+     * The amount the credited account of a transfer or capture received.
+     */
+    public BigDecimal getCreditedAmount() {
+        return creditAmount != null ? creditAmount : amount;
+    }
+}
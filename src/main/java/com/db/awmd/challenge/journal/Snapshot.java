@@ -0,0 +1,225 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Hold;
+import com.db.awmd.challenge.exception.JournalException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * A snapshot file found by {@link SnapshotStore#latest()}. Only the header and block table are read up front; the
+ * accounts are decoded by {@link #forEachAccount(Consumer)}.
+ */
+public final class Snapshot {
+
+    private final Path path;
+
+    private final int formatVersion;
+
+    private final long boundarySequence;
+
+    private final long accountCount;
+
+    private final long[] blockOffsets;
+
+    private final int[] blockAccounts;
+
+    private final int[] blockCrcs;
+
+    /**
+     * Position in the snapshot of each block's first account.
+     */
+    private final int[] blockStarts;
+
+    private Snapshot(Path path, int formatVersion, long boundarySequence, long accountCount,
+                     long[] blockOffsets, int[] blockAccounts, int[] blockCrcs) {
+        this.path = path;
+        this.formatVersion = formatVersion;
+        this.boundarySequence = boundarySequence;
+        this.accountCount = accountCount;
+        this.blockOffsets = blockOffsets;
+        this.blockAccounts = blockAccounts;
+        this.blockCrcs = blockCrcs;
+        this.blockStarts = new int[blockAccounts.length];
+        for (int i = 1; i < blockAccounts.length; i++) {
+            blockStarts[i] = blockStarts[i - 1] + blockAccounts[i - 1];
+        }
+    }
+
+    static Snapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < SnapshotStore.HEADER_BYTES + SnapshotStore.TRAILER_BYTES) {
+                throw corrupt(path);
+            }
+
+            final ByteBuffer header = read(channel, 0, SnapshotStore.HEADER_BYTES);
+            final ByteBuffer trailer = read(channel, size - SnapshotStore.TRAILER_BYTES, SnapshotStore.TRAILER_BYTES);
+            if (header.getInt() != SnapshotStore.MAGIC || trailer.getInt(SnapshotStore.TRAILER_BYTES - 4) != SnapshotStore.MAGIC) {
+                throw corrupt(path);
+            }
+            final int formatVersion = header.getInt();
+            if (formatVersion < 1 || formatVersion > SnapshotStore.FORMAT_VERSION) {
+                throw corrupt(path);
+            }
+
+            final long boundarySequence = header.getLong();
+            final int blockCount = trailer.getInt();
+            final long accountCount = trailer.getLong();
+            final long footerOffset = trailer.getLong();
+
+            final ByteBuffer footer = read(channel, footerOffset, blockCount * SnapshotStore.FOOTER_ENTRY_BYTES);
+            final long[] blockOffsets = new long[blockCount + 1];
+            final int[] blockAccounts = new int[blockCount];
+            final int[] blockCrcs = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                blockOffsets[i] = footer.getLong();
+                blockAccounts[i] = footer.getInt();
+                blockCrcs[i] = footer.getInt();
+            }
+            blockOffsets[blockCount] = footerOffset;
+
+            return new Snapshot(path, formatVersion, boundarySequence, accountCount, blockOffsets, blockAccounts, blockCrcs);
+        }
+    }
+
+    /**
+     * Every journal record before this sequence is reflected in the snapshot.
+     */
+    public long getBoundarySequence() {
+        return boundarySequence;
+    }
+
+    public long getAccountCount() {
+        return accountCount;
+    }
+
+    /**
+     * Decodes every account and hands it to {@code action}. Blocks are memory-mapped and decoded in parallel, so the
+     * action must be thread-safe.
+     */
+    public void forEachAccount(Consumer<Account> action) {
+        forEachAccount((account, position) -> action.accept(account));
+    }
+
+    /**
+     * Like {@link #forEachAccount(Consumer)}, but also hands over each account's position in the snapshot, which is
+     * the order the accounts were created in for snapshots written since version 4.
+     */
+    public void forEachAccount(ObjIntConsumer<Account> action) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            IntStream.range(0, blockAccounts.length).parallel().forEach(block -> {
+                try {
+                    final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, blockOffsets[block],
+                            blockOffsets[block + 1] - blockOffsets[block]);
+                    decodeBlock(buffer, block, action);
+                } catch (IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            throw new JournalException("Cannot read snapshot " + path, e);
+        }
+    }
+
+    private void decodeBlock(ByteBuffer buffer, int block, ObjIntConsumer<Account> action) {
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if ((int) crc.getValue() != blockCrcs[block]) {
+            throw corrupt(path);
+        }
+
+        byte[] scratch = new byte[64];
+        final byte[] currencyCode = new byte[SnapshotStore.CURRENCY_BYTES];
+        Currency currency = Account.DEFAULT_CURRENCY;
+        for (int i = 0; i < blockAccounts[block]; i++) {
+            final int idLength = buffer.getShort();
+            if (scratch.length < idLength) {
+                scratch = new byte[idLength];
+            }
+            buffer.get(scratch, 0, idLength);
+            final String accountId = new String(scratch, 0, idLength, StandardCharsets.UTF_8);
+
+            final BigDecimal balance = readDecimal(buffer);
+            final long version = buffer.getLong();
+            if (formatVersion >= 2) {
+                buffer.get(currencyCode);
+                // Accounts mostly share a few currencies, so only look one up when it differs from the last.
+                if (!sameCode(currency, currencyCode)) {
+                    currency = Currency.getInstance(new String(currencyCode, StandardCharsets.US_ASCII));
+                }
+            }
+            List<Hold> holds = Collections.emptyList();
+            final int holdCount = formatVersion >= 3 ? buffer.getShort() : 0;
+            if (holdCount > 0) {
+                holds = new ArrayList<>(holdCount);
+                for (int h = 0; h < holdCount; h++) {
+                    final byte[] holdId = new byte[buffer.getShort()];
+                    buffer.get(holdId);
+                    final BigDecimal amount = readDecimal(buffer);
+                    holds.add(new Hold(new String(holdId, StandardCharsets.UTF_8), amount, buffer.getLong()));
+                }
+                holds = Collections.unmodifiableList(holds);
+            }
+            action.accept(new Account(accountId, balance, currency, version, holds), blockStarts[block] + i);
+        }
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer buffer) {
+        final int scale = buffer.getInt();
+        final int unscaledLength = buffer.getShort();
+        if (unscaledLength <= 8) {
+            // Sign-extend the two's complement bytes straight into a long, skipping BigInteger.
+            long unscaled = unscaledLength == 0 ? 0 : buffer.get();
+            for (int b = 1; b < unscaledLength; b++) {
+                unscaled = (unscaled << 8) | (buffer.get() & 0xFF);
+            }
+            return BigDecimal.valueOf(unscaled, scale);
+        }
+        final byte[] unscaled = new byte[unscaledLength];
+        buffer.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static boolean sameCode(Currency currency, byte[] code) {
+        final String current = currency.getCurrencyCode();
+        for (int i = 0; i < code.length; i++) {
+            if (current.charAt(i) != code[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of snapshot");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static JournalException corrupt(Path path) {
+        return new JournalException("Snapshot " + path + " is truncated or corrupt");
+    }
+}
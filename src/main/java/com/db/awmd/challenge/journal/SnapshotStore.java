@@ -0,0 +1,264 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Hold;
+import com.db.awmd.challenge.exception.JournalException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes binary snapshots of every account. A snapshot file is named after its boundary sequence: it
+ * reflects every journal record before that sequence, and possibly some after it, which replay recognises through
+ * {@link Account#getVersion()}.
+ * <p>
+ * Layout, all integers big-endian:
+ * <pre>
+ * int   magic, int format version, long boundary sequence
+ * block*        up to {@value #ACCOUNTS_PER_BLOCK} accounts, each:
+ *               short id length, id (UTF-8), int scale, short unscaled length, unscaled (two's complement),
+ *               long version, currency (3 bytes, ASCII ISO 4217 code), short hold count, holds
+ * hold          short id length, id (UTF-8), int scale, short unscaled length, unscaled, long expiry (epoch millis)
+ * footer        per block: long offset, int account count, int CRC32 of the block
+ * trailer       int block count, long account count, long footer offset, int magic
+ * </pre>
+ * Accounts are written in the order they were created, which recovery restores for paging; versions 1 to 3 lack
+ * that order. The block table lets a reader map and decode blocks in parallel. Version 1 snapshots, written before
+ * accounts had a currency, lack the currency and are read with {@link Account#DEFAULT_CURRENCY}; versions 1 and 2,
+ * written before holds existed, lack the hold count.
+ */
+@Slf4j
+@Component
+public class SnapshotStore {
+
+    static final int ACCOUNTS_PER_BLOCK = 65536;
+
+    static final int MAGIC = 0x534E4150;
+
+    static final int FORMAT_VERSION = 4;
+
+    static final int CURRENCY_BYTES = 3;
+
+    static final int HEADER_BYTES = 16;
+
+    static final int FOOTER_ENTRY_BYTES = 16;
+
+    static final int TRAILER_BYTES = 24;
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private final Path directory;
+
+    @Autowired
+    public SnapshotStore(@Value("${journal.snapshot.directory:data/snapshots}") final String directory) {
+        this.directory = directory.isEmpty() ? null : Paths.get(directory);
+    }
+
+    /**
+     * A store that never holds a snapshot.
+     */
+    public static SnapshotStore disabled() {
+        return new SnapshotStore("");
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * The most recent snapshot, or {@code null} when there is none.
+     */
+    public Snapshot latest() {
+        if (!isEnabled() || !Files.isDirectory(directory)) {
+            return null;
+        }
+
+        try {
+            final List<Path> snapshots = snapshots();
+            return snapshots.isEmpty() ? null : Snapshot.open(snapshots.get(snapshots.size() - 1));
+        } catch (IOException ioe) {
+            throw new JournalException("Cannot read snapshots in " + directory, ioe);
+        }
+    }
+
+    /**
+     * Writes the accounts, in creation order, to a new snapshot and, once it is safely on disk, deletes the older ones.
+     */
+    public void write(long boundarySequence, Iterator<Account> accounts) {
+        final Path target = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, boundarySequence, SNAPSHOT_SUFFIX));
+        final Path temporary = directory.resolve(target.getFileName() + ".tmp");
+
+        try {
+            Files.createDirectories(directory);
+            final long start = System.nanoTime();
+            final long accountCount;
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                accountCount = new Writer(channel).write(boundarySequence, accounts);
+                channel.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+
+            for (Path snapshot : snapshots()) {
+                if (!snapshot.equals(target)) {
+                    Files.delete(snapshot);
+                }
+            }
+            log.info("Wrote snapshot of {} accounts at sequence {} in {} ms", accountCount, boundarySequence,
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException ioe) {
+            throw new JournalException("Cannot write snapshot " + target, ioe);
+        }
+    }
+
+    /**
+     * Deletes every snapshot.
+     */
+    public void reset() {
+        if (!isEnabled() || !Files.isDirectory(directory)) {
+            return;
+        }
+
+        try {
+            for (Path snapshot : snapshots()) {
+                Files.delete(snapshot);
+            }
+        } catch (IOException ioe) {
+            throw new JournalException("Cannot reset snapshots in " + directory, ioe);
+        }
+    }
+
+    private List<Path> snapshots() throws IOException {
+        final List<Path> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path snapshot : stream) {
+                snapshots.add(snapshot);
+            }
+        }
+        // Names carry zero-padded boundary sequences, so lexical order is sequence order.
+        Collections.sort(snapshots);
+        return snapshots;
+    }
+
+    /**
+     * Streams accounts into a snapshot file through one reusable buffer.
+     */
+    private static final class Writer {
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+
+        private ByteBuffer footer = ByteBuffer.allocate(64 * FOOTER_ENTRY_BYTES);
+
+        private final CRC32 crc = new CRC32();
+
+        private long position;
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        long write(long boundarySequence, Iterator<Account> accounts) throws IOException {
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(boundarySequence);
+            drain();
+
+            long accountCount = 0;
+            int blockCount = 0;
+            while (accounts.hasNext()) {
+                final long blockOffset = position;
+                crc.reset();
+                int blockAccounts = 0;
+                while (blockAccounts < ACCOUNTS_PER_BLOCK && accounts.hasNext()) {
+                    put(accounts.next());
+                    blockAccounts++;
+                }
+                drain();
+                addFooterEntry(blockOffset, blockAccounts, (int) crc.getValue());
+                accountCount += blockAccounts;
+                blockCount++;
+            }
+
+            final long footerOffset = position;
+            footer.flip();
+            buffer.put(footer);
+            drain();
+            buffer.putInt(blockCount).putLong(accountCount).putLong(footerOffset).putInt(MAGIC);
+            drain();
+            return accountCount;
+        }
+
+        private void put(Account account) throws IOException {
+            final byte[] id = account.getAccountId().getBytes(StandardCharsets.UTF_8);
+            final byte[] unscaled = account.getBalance().unscaledValue().toByteArray();
+            if (buffer.remaining() < 2 + id.length + 4 + 2 + unscaled.length + 8 + CURRENCY_BYTES + 2) {
+                drain();
+            }
+            buffer.putShort((short) id.length).put(id)
+                    .putInt(account.getBalance().scale())
+                    .putShort((short) unscaled.length).put(unscaled)
+                    .putLong(account.getVersion());
+            final String currency = account.getCurrency().getCurrencyCode();
+            for (int i = 0; i < CURRENCY_BYTES; i++) {
+                buffer.put((byte) currency.charAt(i));
+            }
+            buffer.putShort((short) account.getHolds().size());
+            for (Hold hold : account.getHolds()) {
+                put(hold);
+            }
+        }
+
+        private void put(Hold hold) throws IOException {
+            final byte[] id = hold.getHoldId().getBytes(StandardCharsets.UTF_8);
+            final byte[] unscaled = hold.getAmount().unscaledValue().toByteArray();
+            if (buffer.remaining() < 2 + id.length + 4 + 2 + unscaled.length + 8) {
+                drain();
+            }
+            buffer.putShort((short) id.length).put(id)
+                    .putInt(hold.getAmount().scale())
+                    .putShort((short) unscaled.length).put(unscaled)
+                    .putLong(hold.getExpiresAtMillis());
+        }
+
+        private void addFooterEntry(long blockOffset, int blockAccounts, int blockCrc) {
+            if (footer.remaining() < FOOTER_ENTRY_BYTES) {
+                final ByteBuffer larger = ByteBuffer.allocate(footer.capacity() * 2);
+                footer.flip();
+                larger.put(footer);
+                footer = larger;
+            }
+            footer.putLong(blockOffset).putInt(blockAccounts).putInt(blockCrc);
+        }
+
+        /**
+         * Writes out the buffer. Its bytes also go into the checksum, which is reset at the start of every block.
+         */
+        private void drain() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
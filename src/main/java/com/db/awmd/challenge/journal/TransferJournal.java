@@ -0,0 +1,610 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.exception.JournalException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Append-only journal of account mutations, split into segment files named after the first sequence number they
+ * hold. Appenders encode their record into a shared buffer and get a sequence number back; the buffer is written
+ * to the current segment by a background flusher (or by the caller itself in {@link DurabilityMode#PER_OP_FSYNC}),
+ * so many concurrent records share one write and one fsync.
+ * <p>
+ * Records must be appended in the order the mutations were applied to any single account, which the repository
+ * guarantees by appending while it holds that account's lock. Waiting for durability happens after the lock is
+ * released, through {@link #awaitDurable(long)}.
+ * <p>
+ * A failed write stops the journal for good: the batch is not retried, nothing after it is written, and every
+ * later append and wait fails, so no record is reported durable past a gap. The mutations of the failed batch may
+ * already be visible, so the node has to be restarted, which recovers the accounts from what was written. Only
+ * {@link #reset()} and {@link #continueAfter(long)}, which start an empty journal, clear the failure.
+ */
+@Slf4j
+@Component
+public class TransferJournal {
+
+    private static final String SEGMENT_PREFIX = "journal-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final DurabilityMode durabilityMode;
+
+    private final Path directory;
+
+    private final long maxLatencyNanos;
+
+    private final int maxBatchRecords;
+
+    private final long segmentSizeBytes;
+
+    private final Object writeLock = new Object();
+
+    private final Object durableMonitor = new Object();
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+
+    private ByteBuffer writing = ByteBuffer.allocate(64 * 1024);
+
+    private int pendingRecords;
+
+    private int waitingAppenders;
+
+    private long firstPendingNanos;
+
+    private long appendedSequence;
+
+    private volatile long durableSequence;
+
+    private volatile JournalException failure;
+
+    private FileChannel channel;
+
+    private long segmentBytes;
+
+    private volatile boolean running;
+
+    private Thread flusherThread;
+
+    @Autowired
+    public TransferJournal(@Value("${journal.durability:NONE}") final DurabilityMode durabilityMode,
+                           @Value("${journal.directory:data/journal}") final String directory,
+                           @Value("${journal.group-commit.max-latency-micros:2000}") final long maxLatencyMicros,
+                           @Value("${journal.group-commit.max-batch:512}") final int maxBatchRecords,
+                           @Value("${journal.segment-size-bytes:67108864}") final long segmentSizeBytes) {
+        this.durabilityMode = durabilityMode;
+        this.directory = Paths.get(directory);
+        this.maxLatencyNanos = TimeUnit.MICROSECONDS.toNanos(maxLatencyMicros);
+        this.maxBatchRecords = maxBatchRecords;
+        this.segmentSizeBytes = segmentSizeBytes;
+    }
+
+    /**
+     * A journal that records nothing.
+     */
+    public static TransferJournal disabled() {
+        return new TransferJournal(DurabilityMode.NONE, ".", 0, 1, Long.MAX_VALUE);
+    }
+
+    public boolean isEnabled() {
+        return durabilityMode != DurabilityMode.NONE;
+    }
+
+    public DurabilityMode getDurabilityMode() {
+        return durabilityMode;
+    }
+
+    /**
+     * Reads the record at the buffer's position, as written to a segment or handed to a {@link Listener}. Returns
+     * {@code null} without consuming anything when the remaining bytes do not hold a complete, intact record.
+     */
+    public static JournalRecord decode(ByteBuffer buffer) {
+        return JournalCodec.decode(buffer);
+    }
+
+    /**
+     * The sequence of the last record written to the current segment, or handed to listeners.
+     */
+    public long getWrittenSequence() {
+        return durableSequence;
+    }
+
+    /**
+     * Replays every intact record to {@code replayHandler}, in sequence order, then opens a fresh segment for
+     * appending. Segments that only hold records up to {@code coveredSequence}, which a snapshot already reflects,
+     * are skipped. A torn or corrupt record ends the replay of its segment, and the next segment must start right
+     * after the last record replayed, as the one opened after a crash does; any other gap fails with a
+     * {@link JournalException} rather than apply later records over the missing ones. New records are numbered after
+     * the larger of {@code coveredSequence} and the last replayed sequence.
+     */
+    public synchronized void open(long coveredSequence, Consumer<JournalRecord> replayHandler) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(directory);
+            long lastSequence = coveredSequence;
+            final List<Path> segments = segments();
+            for (int i = 0; i < segments.size(); i++) {
+                if (i + 1 < segments.size() && firstSequenceOf(segments.get(i + 1)) <= coveredSequence + 1) {
+                    continue;
+                }
+                final long firstSequence = firstSequenceOf(segments.get(i));
+                if (firstSequence > lastSequence + 1) {
+                    throw new JournalException(String.format("Journal in %s is missing records %d to %d before %s",
+                            directory, lastSequence + 1, firstSequence - 1, segments.get(i).getFileName()));
+                }
+                lastSequence = Math.max(lastSequence, replaySegment(segments.get(i), replayHandler));
+            }
+            appendedSequence = lastSequence;
+            durableSequence = lastSequence;
+            openSegment(lastSequence + 1);
+            log.info("Opened {} journal in {} at sequence {}", durabilityMode, directory, lastSequence);
+        } catch (IOException ioe) {
+            throw new JournalException("Cannot open journal in " + directory, ioe);
+        }
+
+        running = true;
+        if (durabilityMode != DurabilityMode.PER_OP_FSYNC) {
+            flusherThread = new Thread(this::flushLoop, "journal-flusher");
+            flusherThread.setDaemon(true);
+            flusherThread.start();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        if (flusherThread != null) {
+            flusherThread.join(TimeUnit.SECONDS.toMillis(5));
+            flusherThread = null;
+        }
+        if (isEnabled()) {
+            flushPending();
+            synchronized (writeLock) {
+                closeChannel();
+            }
+        }
+    }
+
+    /**
+     * Adds a record to the journal and returns its sequence number, or {@code 0} when journaling is disabled.
+     * The record is not durable until {@link #awaitDurable(long)} returns for that sequence.
+     */
+    public long append(JournalRecord.Type type, String accountId, String toAccountId, BigDecimal amount) {
+        return append(type, accountId, toAccountId, amount, null, null);
+    }
+
+    /**
+     * Same as {@link #append(JournalRecord.Type, String, String, BigDecimal)}, for a record that also carries the
+     * currency of a created account or the credited amount of a transfer between currencies.
+     */
+    public long append(JournalRecord.Type type, String accountId, String toAccountId, BigDecimal amount,
+                       String currency, BigDecimal creditAmount) {
+        return append(type, accountId, toAccountId, amount, currency, creditAmount, null, 0);
+    }
+
+    /**
+     * Same as {@link #append(JournalRecord.Type, String, String, BigDecimal, String, BigDecimal)}, for a record
+     * that also concerns a hold.
+     */
+    public long append(JournalRecord.Type type, String accountId, String toAccountId, BigDecimal amount,
+                       String currency, BigDecimal creditAmount, String holdId, long expiresAtMillis) {
+        if (!isEnabled()) {
+            return 0;
+        }
+
+        final JournalCodec.Payload payload = new JournalCodec.Payload(type, accountId, toAccountId, amount,
+                currency, creditAmount, holdId, expiresAtMillis);
+        synchronized (this) {
+            if (!running) {
+                throw new JournalException("Journal is not open");
+            }
+            checkNotFailed();
+
+            ensurePendingCapacity(payload.encodedSize());
+            final long sequence = ++appendedSequence;
+            JournalCodec.encode(pending, sequence, payload);
+
+            if (pendingRecords++ == 0) {
+                firstPendingNanos = System.nanoTime();
+                notifyAll();
+            } else if (pendingRecords >= maxBatchRecords) {
+                notifyAll();
+            }
+            return sequence;
+        }
+    }
+
+    /**
+     * Blocks until the record with the given sequence number is as durable as the configured mode promises.
+     */
+    public void awaitDurable(long sequence) {
+        switch (durabilityMode) {
+            case NONE:
+            case ASYNC:
+                return;
+            case PER_OP_FSYNC:
+                if (durableSequence < sequence) {
+                    flushPending();
+                }
+                break;
+            case GROUP_COMMIT:
+                waitForFlusher(sequence);
+                break;
+            default:
+                throw new IllegalStateException("Unknown durability mode " + durabilityMode);
+        }
+
+        if (durableSequence < sequence) {
+            throw failure != null ? failure : new JournalException("Journal record " + sequence + " was not written");
+        }
+    }
+
+    /**
+     * Drops every segment and starts again from an empty journal.
+     */
+    public void reset() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        synchronized (writeLock) {
+            final long lastSequence;
+            synchronized (this) {
+                lastSequence = appendedSequence;
+            }
+            reset(lastSequence);
+        }
+    }
+
+    /**
+     * Drops every segment and numbers new records after {@code lastSequence}, so that a node taking over from the
+     * primary it replicated carries on with the primary's numbering.
+     */
+    public void continueAfter(long lastSequence) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        synchronized (writeLock) {
+            reset(lastSequence);
+        }
+    }
+
+    /**
+     * Starts {@code listener} on every batch written from now on, and returns the last sequence written before it,
+     * so that the listener sees exactly the records after that.
+     */
+    public long addListener(Listener listener) {
+        synchronized (writeLock) {
+            listeners.add(listener);
+            return durableSequence;
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sees the records as they are written, batch by batch and in sequence order. Called with the journal's write
+     * lock held, so it must hand the work off rather than block.
+     */
+    public interface Listener {
+
+        /**
+         * @param records whole encoded records, readable with {@link #decode(ByteBuffer)} and only valid during the
+         *                call
+         */
+        void written(ByteBuffer records, long lastSequence);
+
+        /**
+         * The journal was emptied, so the records seen so far no longer lead to the accounts.
+         */
+        void reset(long lastSequence);
+    }
+
+    /**
+     * Called with the write lock held.
+     */
+    private void reset(long lastSequence) {
+        synchronized (this) {
+            pending.clear();
+            pendingRecords = 0;
+            appendedSequence = lastSequence;
+        }
+        try {
+            closeChannel();
+            for (Path segment : segments()) {
+                Files.delete(segment);
+            }
+            openSegment(lastSequence + 1);
+        } catch (IOException ioe) {
+            throw new JournalException("Cannot reset journal in " + directory, ioe);
+        }
+        durableSequence = lastSequence;
+        failure = null;
+        for (Listener listener : listeners) {
+            listener.reset(lastSequence);
+        }
+    }
+
+    /**
+     * Writes out whatever is pending and starts a new segment, returning the sequence number it starts at. Every
+     * record before that sequence lives in an older segment.
+     */
+    public long roll() {
+        final long boundary;
+        synchronized (writeLock) {
+            synchronized (this) {
+                if (!running) {
+                    throw new JournalException("Journal is not open");
+                }
+                checkNotFailed();
+                if (pendingRecords > 0) {
+                    writeBatch(swapPending());
+                }
+                checkNotFailed();
+                boundary = appendedSequence + 1;
+            }
+            try {
+                closeChannel();
+                openSegment(boundary);
+            } catch (IOException ioe) {
+                failure = new JournalException("Cannot roll journal in " + directory, ioe);
+                throw failure;
+            }
+        }
+
+        synchronized (durableMonitor) {
+            durableMonitor.notifyAll();
+        }
+        return boundary;
+    }
+
+    /**
+     * Deletes the segments that only hold records before {@code boundary}, as returned by {@link #roll()}.
+     */
+    public void truncateBefore(long boundary) {
+        synchronized (writeLock) {
+            try {
+                for (Path segment : segments()) {
+                    if (firstSequenceOf(segment) < boundary) {
+                        Files.delete(segment);
+                    }
+                }
+            } catch (IOException ioe) {
+                throw new JournalException("Cannot truncate journal in " + directory, ioe);
+            }
+        }
+    }
+
+    private void waitForFlusher(long sequence) {
+        synchronized (this) {
+            if (++waitingAppenders >= pendingRecords) {
+                notifyAll();
+            }
+        }
+        try {
+            synchronized (durableMonitor) {
+                while (durableSequence < sequence && failure == null && running) {
+                    durableMonitor.wait();
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new JournalException("Interrupted while waiting for journal record " + sequence, ie);
+        } finally {
+            synchronized (this) {
+                waitingAppenders--;
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    while (running && !flushDue()) {
+                        if (pendingRecords == 0) {
+                            wait();
+                        } else {
+                            final long remaining = maxLatencyNanos - (System.nanoTime() - firstPendingNanos);
+                            TimeUnit.NANOSECONDS.timedWait(this, Math.max(remaining, 1));
+                        }
+                    }
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (!running && pendingRecords == 0) {
+                    return;
+                }
+            }
+            flushPending();
+        }
+    }
+
+    /**
+     * A batch is flushed once it is full, once its oldest record has waited the maximum latency, or as soon as
+     * every pending record's appender is already waiting for it, since no further record can join the batch then.
+     * Called with the append lock held.
+     */
+    private boolean flushDue() {
+        return pendingRecords > 0
+                && (pendingRecords >= maxBatchRecords
+                || waitingAppenders >= pendingRecords
+                || System.nanoTime() - firstPendingNanos >= maxLatencyNanos);
+    }
+
+    private void flushPending() {
+        synchronized (writeLock) {
+            final long batchSequence;
+            synchronized (this) {
+                if (pendingRecords == 0) {
+                    return;
+                }
+                batchSequence = swapPending();
+            }
+            writeBatch(batchSequence);
+        }
+
+        synchronized (durableMonitor) {
+            durableMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Moves the pending records to the write buffer and returns the last sequence among them. Called with both the
+     * write lock and the append lock held.
+     */
+    private long swapPending() {
+        final ByteBuffer filled = pending;
+        pending = writing;
+        writing = filled;
+        pending.clear();
+        pendingRecords = 0;
+        return appendedSequence;
+    }
+
+    /**
+     * Called with the write lock held. Once a write has failed, batches are discarded unwritten.
+     */
+    private void writeBatch(long batchSequence) {
+        if (failure != null) {
+            writing.clear();
+            return;
+        }
+
+        try {
+            writing.flip();
+            final ByteBuffer batch = listeners.isEmpty() ? null : writing.asReadOnlyBuffer();
+            while (writing.hasRemaining()) {
+                segmentBytes += channel.write(writing);
+            }
+            if (durabilityMode != DurabilityMode.ASYNC) {
+                channel.force(false);
+            }
+            if (segmentBytes >= segmentSizeBytes) {
+                closeChannel();
+                openSegment(batchSequence + 1);
+            }
+            durableSequence = batchSequence;
+            if (batch != null) {
+                for (Listener listener : listeners) {
+                    listener.written(batch.duplicate(), batchSequence);
+                }
+            }
+        } catch (IOException ioe) {
+            log.error("Exception while writing the journal.", ioe);
+            failure = new JournalException("Cannot write journal in " + directory, ioe);
+        } finally {
+            writing.clear();
+        }
+    }
+
+    private void checkNotFailed() {
+        final JournalException current = failure;
+        if (current != null) {
+            throw new JournalException("Journal stopped after a failed write", current);
+        }
+    }
+
+    /**
+     * Closes the current segment underneath the writer, so that the next write fails. For tests only.
+     */
+    void closeSegment() throws IOException {
+        synchronized (writeLock) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Called with the append lock held.
+     */
+    private void ensurePendingCapacity(int bytes) {
+        if (pending.remaining() < bytes) {
+            final ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+
+    private long replaySegment(Path segment, Consumer<JournalRecord> replayHandler) throws IOException {
+        long lastSequence = 0;
+        try (FileChannel segmentChannel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, segmentChannel.size());
+            JournalRecord record;
+            while ((record = JournalCodec.decode(buffer)) != null) {
+                replayHandler.accept(record);
+                lastSequence = record.getSequence();
+            }
+            if (buffer.hasRemaining()) {
+                log.warn("Ignoring {} trailing bytes of torn journal segment {}", buffer.remaining(), segment);
+            }
+        }
+        return lastSequence;
+    }
+
+    private List<Path> segments() throws IOException {
+        final List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path segment : stream) {
+                segments.add(segment);
+            }
+        }
+        // Names carry zero-padded start sequences, so lexical order is sequence order.
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        final String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        final Path segment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        segmentBytes = 0;
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ioe) {
+                log.warn("Exception while closing journal segment.", ioe);
+            }
+            channel = null;
+        }
+    }
+}
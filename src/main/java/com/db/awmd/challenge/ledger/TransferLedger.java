@@ -0,0 +1,336 @@
+package com.db.awmd.challenge.ledger;
+
+import com.db.awmd.challenge.model.LedgerEntry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Append-only history of completed transfers, with an index of the events each account took part in.
+ * <p>
+ * Events are stored column by column in chunks of {@value #CHUNK_SIZE}: timestamp and the unscaled debited and
+ * credited amounts as longs, both account ids as ints into a table of ids, both currencies as shorts into a table of
+ * currencies, and the amounts' scales as bytes. The credited amount differs from the debited one only between
+ * accounts in different currencies. That is {@value #BYTES_PER_EVENT} bytes per event, plus 4 bytes in the index of
+ * each of the two accounts, so 46 bytes and at most 54 while index arrays are doubling. Each distinct account costs
+ * its id and a small index object on top. With {@code ledger.off-heap} the chunks are direct buffers, which keeps a
+ * large history out of the garbage collector's way. Once {@code ledger.max-events} events are held, further transfers
+ * are counted as dropped and not recorded.
+ * <p>
+ * Appends are serialized; reads take no lock. An event is written in full before it is added to an account's index,
+ * so readers never see a partial event.
+ */
+@Slf4j
+@Component
+public class TransferLedger {
+
+    static final int CHUNK_SIZE = 1 << 14;
+
+    static final int BYTES_PER_EVENT = 38;
+
+    private static final int CHUNK_SHIFT = 14;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final int TIMESTAMPS = 0;
+
+    private static final int AMOUNTS = TIMESTAMPS + CHUNK_SIZE * 8;
+
+    private static final int CREDIT_AMOUNTS = AMOUNTS + CHUNK_SIZE * 8;
+
+    private static final int FROM_ACCOUNTS = CREDIT_AMOUNTS + CHUNK_SIZE * 8;
+
+    private static final int TO_ACCOUNTS = FROM_ACCOUNTS + CHUNK_SIZE * 4;
+
+    private static final int CURRENCIES = TO_ACCOUNTS + CHUNK_SIZE * 4;
+
+    private static final int CREDIT_CURRENCIES = CURRENCIES + CHUNK_SIZE * 2;
+
+    private static final int SCALES = CREDIT_CURRENCIES + CHUNK_SIZE * 2;
+
+    private static final int CREDIT_SCALES = SCALES + CHUNK_SIZE;
+
+    private static final int CHUNK_BYTES = CREDIT_SCALES + CHUNK_SIZE;
+
+    /**
+     * Scale of an amount that does not fit its amount column; such amounts are kept in {@link #largeAmounts} or
+     * {@link #largeCreditAmounts}.
+     */
+    private static final byte LARGE_AMOUNT = Byte.MIN_VALUE;
+
+    /**
+     * Index of an unknown currency.
+     */
+    private static final short NO_CURRENCY = -1;
+
+    private final int maxEvents;
+
+    private final boolean offHeap;
+
+    private final Map<String, History> histories = new ConcurrentHashMap<>();
+
+    private final Map<Integer, BigDecimal> largeAmounts = new ConcurrentHashMap<>();
+
+    private final Map<Integer, BigDecimal> largeCreditAmounts = new ConcurrentHashMap<>();
+
+    private final Map<Currency, Short> currencyIndexes = new ConcurrentHashMap<>();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile ByteBuffer[] chunks = new ByteBuffer[16];
+
+    private volatile String[] accountIds = new String[1024];
+
+    private volatile Currency[] currencies = new Currency[16];
+
+    private volatile int size;
+
+    private int accountCount;
+
+    private int currencyCount;
+
+    private long lastTimestamp;
+
+    @Autowired
+    public TransferLedger(@Value("${ledger.max-events:1000000}") final int maxEvents,
+                          @Value("${ledger.off-heap:false}") final boolean offHeap) {
+        this.maxEvents = maxEvents;
+        this.offHeap = offHeap;
+        log.info("Transfer ledger holds up to {} events {}", maxEvents, offHeap ? "off the heap" : "on the heap");
+    }
+
+    /**
+     * A ledger that records nothing.
+     */
+    public static TransferLedger disabled() {
+        return new TransferLedger(0, false);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Timestamps are taken here and never go backwards, even if the clock does.
+     *
+     * @param amount what was debited, in {@code currency}
+     * @param creditAmount what was credited, in {@code creditCurrency}
+     */
+    public void record(String fromAccountId, String toAccountId, BigDecimal amount, Currency currency,
+                       BigDecimal creditAmount, Currency creditCurrency) {
+        if (maxEvents == 0) {
+            return;
+        }
+
+        synchronized (this) {
+            final int position = size;
+            if (position >= maxEvents) {
+                dropped.increment();
+                return;
+            }
+
+            final History from = history(fromAccountId);
+            final History to = history(toAccountId);
+            final ByteBuffer chunk = chunkFor(position);
+            final int row = position & CHUNK_MASK;
+            lastTimestamp = Math.max(lastTimestamp, System.currentTimeMillis());
+            chunk.putLong(TIMESTAMPS + row * 8, lastTimestamp);
+            putAmount(chunk, AMOUNTS, SCALES, row, amount, position, largeAmounts);
+            putAmount(chunk, CREDIT_AMOUNTS, CREDIT_SCALES, row, creditAmount, position, largeCreditAmounts);
+            chunk.putInt(FROM_ACCOUNTS + row * 4, from.accountIndex);
+            chunk.putInt(TO_ACCOUNTS + row * 4, to.accountIndex);
+            chunk.putShort(CURRENCIES + row * 2, currencyIndex(currency));
+            chunk.putShort(CREDIT_CURRENCIES + row * 2, currencyIndex(creditCurrency));
+
+            from.add(position);
+            if (to != from) {
+                to.add(position);
+            }
+            size = position + 1;
+        }
+    }
+
+    /**
+     * Up to {@code limit} transfers from or to the account with a timestamp in {@code [fromMillis, toMillis)},
+     * oldest first.
+     */
+    public List<LedgerEntry> transfers(String accountId, long fromMillis, long toMillis, int limit) {
+        final History history = histories.get(accountId);
+        if (history == null) {
+            return Collections.emptyList();
+        }
+
+        final int count = history.count;
+        final int[] positions = history.positions;
+        final ByteBuffer[] currentChunks = chunks;
+        final String[] currentAccountIds = accountIds;
+        final Currency[] currentCurrencies = currencies;
+
+        final List<LedgerEntry> entries = new ArrayList<>();
+        for (int i = firstAtOrAfter(positions, count, currentChunks, fromMillis); i < count && entries.size() < limit; i++) {
+            final int position = positions[i];
+            final ByteBuffer chunk = currentChunks[position >>> CHUNK_SHIFT];
+            final int row = position & CHUNK_MASK;
+            final long timestamp = chunk.getLong(TIMESTAMPS + row * 8);
+            if (timestamp >= toMillis) {
+                break;
+            }
+
+            entries.add(new LedgerEntry(position, Instant.ofEpochMilli(timestamp).toString(),
+                    currentAccountIds[chunk.getInt(FROM_ACCOUNTS + row * 4)],
+                    currentAccountIds[chunk.getInt(TO_ACCOUNTS + row * 4)],
+                    amount(chunk, AMOUNTS, SCALES, row, position, largeAmounts),
+                    currency(currentCurrencies, chunk.getShort(CURRENCIES + row * 2)),
+                    amount(chunk, CREDIT_AMOUNTS, CREDIT_SCALES, row, position, largeCreditAmounts),
+                    currency(currentCurrencies, chunk.getShort(CREDIT_CURRENCIES + row * 2))));
+        }
+        return entries;
+    }
+
+    /**
+     * Readers still holding the previous chunks and indexes finish their query against them.
+     */
+    public synchronized void clear() {
+        histories.clear();
+        largeAmounts.clear();
+        largeCreditAmounts.clear();
+        chunks = new ByteBuffer[16];
+        accountIds = new String[1024];
+        accountCount = 0;
+        size = 0;
+    }
+
+    private static void putAmount(ByteBuffer chunk, int amounts, int scales, int row, BigDecimal amount, int position,
+                                  Map<Integer, BigDecimal> large) {
+        final boolean fits = amount.scale() > LARGE_AMOUNT && amount.scale() <= Byte.MAX_VALUE
+                && amount.unscaledValue().bitLength() < Long.SIZE;
+        chunk.putLong(amounts + row * 8, fits ? amount.unscaledValue().longValue() : 0);
+        chunk.put(scales + row, fits ? (byte) amount.scale() : LARGE_AMOUNT);
+        if (!fits) {
+            large.put(position, amount);
+        }
+    }
+
+    private static BigDecimal amount(ByteBuffer chunk, int amounts, int scales, int row, int position,
+                                     Map<Integer, BigDecimal> large) {
+        final byte scale = chunk.get(scales + row);
+        return scale == LARGE_AMOUNT ? large.get(position) : BigDecimal.valueOf(chunk.getLong(amounts + row * 8), scale);
+    }
+
+    /**
+     * Currencies are never dropped, not even by {@link #clear()}, as there are only a few hundred of them.
+     */
+    private short currencyIndex(Currency currency) {
+        if (currency == null) {
+            return NO_CURRENCY;
+        }
+        Short index = currencyIndexes.get(currency);
+        if (index == null) {
+            Currency[] current = currencies;
+            if (currencyCount == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[currencyCount] = currency;
+            currencies = current;
+            index = (short) currencyCount++;
+            currencyIndexes.put(currency, index);
+        }
+        return index;
+    }
+
+    private static Currency currency(Currency[] currencies, short index) {
+        return index == NO_CURRENCY ? null : currencies[index];
+    }
+
+    private History history(String accountId) {
+        History history = histories.get(accountId);
+        if (history == null) {
+            String[] current = accountIds;
+            if (accountCount == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[accountCount] = accountId;
+            accountIds = current;
+            history = new History(accountCount++);
+            histories.put(accountId, history);
+        }
+        return history;
+    }
+
+    private ByteBuffer chunkFor(int position) {
+        final int chunkIndex = position >>> CHUNK_SHIFT;
+        ByteBuffer[] current = chunks;
+        if (chunkIndex >= current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        if (current[chunkIndex] == null) {
+            current[chunkIndex] = (offHeap ? ByteBuffer.allocateDirect(CHUNK_BYTES) : ByteBuffer.allocate(CHUNK_BYTES))
+                    .order(ByteOrder.nativeOrder());
+        }
+        chunks = current;
+        return current[chunkIndex];
+    }
+
+    /**
+     * Positions grow with timestamps, so the index is sorted by time and can be searched.
+     */
+    private static int firstAtOrAfter(int[] positions, int count, ByteBuffer[] chunks, long fromMillis) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            final int position = positions[middle];
+            if (chunks[position >>> CHUNK_SHIFT].getLong(TIMESTAMPS + (position & CHUNK_MASK) * 8) < fromMillis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Positions of the events an account took part in. Only the ledger's writer adds to it; a grown array is
+     * published before the count that needs it.
+     */
+    private static final class History {
+
+        private final int accountIndex;
+
+        private volatile int[] positions = new int[4];
+
+        private volatile int count;
+
+        History(int accountIndex) {
+            this.accountIndex = accountIndex;
+        }
+
+        void add(int position) {
+            int[] current = positions;
+            if (count == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+                positions = current;
+            }
+            current[count] = position;
+            count = count + 1;
+        }
+    }
+}
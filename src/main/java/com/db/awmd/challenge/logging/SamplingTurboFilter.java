@@ -0,0 +1,42 @@
+package com.db.awmd.challenge.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Lets through only a random fraction of the INFO and lower events of the configured loggers. WARN and ERROR events
+ * always pass. Runs before the message is formatted, so a dropped event costs one random number.
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    private final Set<String> loggerNames = new HashSet<>();
+
+    private double rate = 1.0;
+
+    public void addLoggerName(String loggerName) {
+        loggerNames.add(loggerName);
+    }
+
+    /**
+     * Fraction of events to keep, from 0 to 1.
+     */
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (!isStarted() || rate >= 1.0 || level == null || level.isGreaterOrEqual(Level.WARN)
+                || !loggerNames.contains(logger.getName())) {
+            return FilterReply.NEUTRAL;
+        }
+        return ThreadLocalRandom.current().nextDouble() < rate ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+}
@@ -0,0 +1,95 @@
+package com.db.awmd.challenge.metrics;
+
+import com.db.awmd.challenge.exception.AccountCreditException;
+import com.db.awmd.challenge.exception.AccountDebitException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.model.OperationMetrics;
+import com.db.awmd.challenge.model.ServiceMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, throughput and failure counts for the account operations. Everything is preallocated, so recording on
+ * the request path allocates nothing.
+ */
+@Component
+public class MetricsRegistry {
+
+    public enum Operation {
+        CREATE_ACCOUNT("createAccount"), GET_ACCOUNT("getAccount"), TRANSFER("transfer");
+
+        private final String metricName;
+
+        Operation(String metricName) {
+            this.metricName = metricName;
+        }
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+
+    private final RateCounter[] rates = new RateCounter[OPERATIONS.length];
+
+    private final LongAdder debitFailures = new LongAdder();
+
+    private final LongAdder creditFailures = new LongAdder();
+
+    private final LongAdder duplicateAccountIds = new LongAdder();
+
+    public MetricsRegistry() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latencies[i] = new LatencyHistogram();
+            rates[i] = new RateCounter();
+        }
+    }
+
+    /**
+     * Records one completed operation that started at {@code startNanos}, as read from {@link System#nanoTime()}.
+     */
+    public void record(Operation operation, long startNanos) {
+        latencies[operation.ordinal()].record(System.nanoTime() - startNanos);
+        rates[operation.ordinal()].record();
+    }
+
+    public void recordFailure(AccountDebitException ade) {
+        debitFailures.increment();
+    }
+
+    public void recordFailure(AccountCreditException ace) {
+        creditFailures.increment();
+    }
+
+    public void recordFailure(DuplicateAccountIdException daie) {
+        duplicateAccountIds.increment();
+    }
+
+    public ServiceMetrics getMetrics() {
+        final Map<String, OperationMetrics> operations = new LinkedHashMap<>();
+        for (Operation operation : OPERATIONS) {
+            final LatencyHistogram latency = latencies[operation.ordinal()];
+            operations.put(operation.metricName, new OperationMetrics(latency.getCount(),
+                    rates[operation.ordinal()].getRatePerSecond(),
+                    micros(latency.getMean()),
+                    micros(latency.getValueAtPercentile(50)),
+                    micros(latency.getValueAtPercentile(90)),
+                    micros(latency.getValueAtPercentile(99)),
+                    micros(latency.getValueAtPercentile(99.9)),
+                    micros(latency.getMax())));
+        }
+
+        final Map<String, Long> exceptions = new LinkedHashMap<>();
+        exceptions.put(AccountDebitException.class.getSimpleName(), debitFailures.sum());
+        exceptions.put(AccountCreditException.class.getSimpleName(), creditFailures.sum());
+        exceptions.put(DuplicateAccountIdException.class.getSimpleName(), duplicateAccountIds.sum());
+
+        return new ServiceMetrics(operations, exceptions);
+    }
+
+    private static double micros(double nanos) {
+        return nanos / 1000;
+    }
+}
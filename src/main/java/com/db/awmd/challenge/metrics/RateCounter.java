@@ -0,0 +1,36 @@
+package com.db.awmd.challenge.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events per wall-clock second. Two slots alternate between the current and the previous second, so the
+ * rate reported is always that of the last complete second. Recording allocates nothing.
+ */
+public final class RateCounter {
+
+    private final AtomicLongArray seconds = new AtomicLongArray(2);
+
+    private final AtomicLongArray counts = new AtomicLongArray(2);
+
+    public void record() {
+        final long second = currentSecond();
+        final int slot = (int) (second & 1);
+        final long slotSecond = seconds.get(slot);
+        // The first thread into a new second resets the slot; events racing with the reset may be lost.
+        if (slotSecond != second && seconds.compareAndSet(slot, slotSecond, second)) {
+            counts.set(slot, 0);
+        }
+        counts.incrementAndGet(slot);
+    }
+
+    public long getRatePerSecond() {
+        final long previous = currentSecond() - 1;
+        final int slot = (int) (previous & 1);
+        return seconds.get(slot) == previous ? counts.get(slot) : 0;
+    }
+
+    private static long currentSecond() {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+}
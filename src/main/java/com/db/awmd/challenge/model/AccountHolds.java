@@ -0,0 +1,24 @@
+package com.db.awmd.challenge.model;
+
+import com.db.awmd.challenge.domain.Hold;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * An account's balance split into what is on hold and what is still available.
+ */
+@Data
+public class AccountHolds {
+
+    private final String accountId;
+
+    private final BigDecimal balance;
+
+    private final BigDecimal heldBalance;
+
+    private final BigDecimal availableBalance;
+
+    private final List<Hold> holds;
+}
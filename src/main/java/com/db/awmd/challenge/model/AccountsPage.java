@@ -0,0 +1,18 @@
+package com.db.awmd.challenge.model;
+
+import com.db.awmd.challenge.domain.Account;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of the account listing. {@code nextCursor} fetches the page after this one and is {@code null} once the
+ * listing has caught up with the last account created.
+ */
+@Data
+public class AccountsPage {
+
+    private final List<Account> accounts;
+
+    private final String nextCursor;
+}
@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.model;
+
+import lombok.Data;
+
+@Data
+public class AdmissionMetrics {
+
+    private final long admitted;
+
+    private final long accountRateLimited;
+
+    private final long globalRateLimited;
+
+    private final long concurrencyLimited;
+
+    private final int concurrencyLimit;
+
+    private final int inFlight;
+
+    private final int trackedAccounts;
+}
@@ -0,0 +1,31 @@
+package com.db.awmd.challenge.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+@Data
+public class BatchTransferCommand {
+
+    @NotNull
+    @NotEmpty
+    @Valid
+    private List<TransferCommand> transfers;
+
+    /**
+     * When set, opposing transfers between the same pair of accounts are collapsed into a single net transfer.
+     */
+    private boolean netting;
+
+    @JsonCreator
+    public BatchTransferCommand(@JsonProperty("transfers") final List<TransferCommand> transfers,
+                                @JsonProperty("netting") final boolean netting) {
+        this.transfers = transfers;
+        this.netting = netting;
+    }
+}
@@ -0,0 +1,24 @@
+package com.db.awmd.challenge.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk account creation. Counts cover every account; only the first rejections are listed
+ * individually, so the report stays small however large the upload. {@code error} is set when the body could not
+ * be read to the end, in which case the accounts before the error were still processed.
+ */
+@Data
+public class BulkCreateReport {
+
+    private final long received;
+
+    private final long created;
+
+    private final long rejected;
+
+    private final List<RejectedAccount> rejectedAccounts;
+
+    private final String error;
+}
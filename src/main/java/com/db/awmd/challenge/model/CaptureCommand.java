@@ -0,0 +1,32 @@
+package com.db.awmd.challenge.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+
+/**
+ * Part or all of a hold to transfer to {@code toAccountId}.
+ */
+@Data
+public class CaptureCommand {
+
+    @NotNull
+    @NotEmpty
+    private String toAccountId;
+
+    @NotNull
+    @DecimalMin(value = "0", inclusive = false, message = "Amount to be captured should be greater than zero.")
+    private BigDecimal amount;
+
+    @JsonCreator
+    public CaptureCommand(@JsonProperty("toAccountId") final String toAccountId,
+                          @JsonProperty("amount") final BigDecimal amount) {
+        this.toAccountId = toAccountId;
+        this.amount = amount;
+    }
+}
@@ -0,0 +1,30 @@
+package com.db.awmd.challenge.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.Map;
+
+/**
+ * Exchange rates as units of each currency per one unit of {@code base}.
+ */
+@Data
+public class ExchangeRates {
+
+    @NotNull
+    private final Currency base;
+
+    @NotNull
+    private final Map<Currency, BigDecimal> rates;
+
+    @JsonCreator
+    public ExchangeRates(@JsonProperty("base") final Currency base,
+                         @JsonProperty("rates") final Map<Currency, BigDecimal> rates) {
+        this.base = base;
+        this.rates = rates;
+    }
+}
@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.model;
+
+import lombok.Data;
+
+/**
+ * A follower as its primary sees it. {@code ackedSequence} and {@code lagSequences} are {@code -1} until the
+ * follower has acknowledged a record.
+ */
+@Data
+public class FollowerStatus {
+
+    private final String address;
+
+    private final long ackedSequence;
+
+    private final long lagSequences;
+
+    private final long queuedBytes;
+}
@@ -0,0 +1,32 @@
+package com.db.awmd.challenge.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+
+/**
+ * Funds to hold until {@code expiresAt}, an ISO-8601 instant such as {@code 2030-01-31T17:00:00Z}.
+ */
+@Data
+public class HoldCommand {
+
+    @NotNull
+    @DecimalMin(value = "0", inclusive = false, message = "Amount to be held should be greater than zero.")
+    private BigDecimal amount;
+
+    @NotNull
+    @NotEmpty
+    private String expiresAt;
+
+    @JsonCreator
+    public HoldCommand(@JsonProperty("amount") final BigDecimal amount,
+                       @JsonProperty("expiresAt") final String expiresAt) {
+        this.amount = amount;
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,15 @@
+package com.db.awmd.challenge.model;
+
+import lombok.Data;
+
+@Data
+public class IdempotencyMetrics {
+
+    private final int size;
+
+    private final long hits;
+
+    private final long misses;
+
+    private final long evictions;
+}
@@ -0,0 +1,31 @@
+package com.db.awmd.challenge.model;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * A completed transfer as kept by the transfer ledger. {@code sequence} is its position in the ledger. The debited
+ * {@code amount} is in {@code currency}, that of the source account; the credited account received
+ * {@code creditAmount} in {@code creditCurrency}.
+ */
+@Data
+public class LedgerEntry {
+
+    private final long sequence;
+
+    private final String timestamp;
+
+    private final String fromAccountId;
+
+    private final String toAccountId;
+
+    private final BigDecimal amount;
+
+    private final Currency currency;
+
+    private final BigDecimal creditAmount;
+
+    private final Currency creditCurrency;
+}
@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.model;
+
+import lombok.Data;
+
+@Data
+public class NotificationMetrics {
+
+    private final int queueDepth;
+
+    private final long enqueued;
+
+    private final long dispatched;
+
+    private final long dropped;
+
+    private final long spilled;
+
+    private final long lastLagMillis;
+
+    private final long maxLagMillis;
+}
@@ -0,0 +1,23 @@
+package com.db.awmd.challenge.model;
+
+import lombok.Data;
+
+@Data
+public class OperationMetrics {
+
+    private final long count;
+
+    private final long ratePerSecond;
+
+    private final double meanMicros;
+
+    private final double p50Micros;
+
+    private final double p90Micros;
+
+    private final double p99Micros;
+
+    private final double p999Micros;
+
+    private final double maxMicros;
+}
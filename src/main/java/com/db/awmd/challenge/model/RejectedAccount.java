@@ -0,0 +1,16 @@
+package com.db.awmd.challenge.model;
+
+import lombok.Data;
+
+/**
+ * An account of a bulk creation that was not created, addressed by its position in the submitted body.
+ */
+@Data
+public class RejectedAccount {
+
+    private final long index;
+
+    private final String accountId;
+
+    private final String reason;
+}
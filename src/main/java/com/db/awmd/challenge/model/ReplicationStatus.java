@@ -0,0 +1,25 @@
+package com.db.awmd.challenge.model;
+
+import com.db.awmd.challenge.replication.ReplicationRole;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * For a primary, {@code sequence} is the last journal record written and {@code followers} those connected. For a
+ * follower, {@code sequence} is the last record applied, {@code -1} before the first copy of the accounts, and
+ * {@code stalenessMillis} how long ago it last had everything the primary had announced.
+ */
+@Data
+public class ReplicationStatus {
+
+    private final ReplicationRole role;
+
+    private final long sequence;
+
+    private final Long stalenessMillis;
+
+    private final Boolean connected;
+
+    private final List<FollowerStatus> followers;
+}
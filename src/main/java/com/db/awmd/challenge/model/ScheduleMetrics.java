@@ -0,0 +1,15 @@
+package com.db.awmd.challenge.model;
+
+import lombok.Data;
+
+@Data
+public class ScheduleMetrics {
+
+    private final long pending;
+
+    private final long executed;
+
+    private final long failed;
+
+    private final long cancelled;
+}
@@ -0,0 +1,33 @@
+package com.db.awmd.challenge.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * A transfer waiting for its execution time. {@code id} identifies it for cancelling.
+ */
+@Data
+public class ScheduledTransfer {
+
+    private final long id;
+
+    @JsonIgnore
+    private final long executeAtMillis;
+
+    private final String fromAccountId;
+
+    private final String toAccountId;
+
+    private final BigDecimal amount;
+
+    public String getExecuteAt() {
+        return Instant.ofEpochMilli(executeAtMillis).toString();
+    }
+
+    public TransferCommand toTransferCommand() {
+        return new TransferCommand(fromAccountId, toAccountId, amount);
+    }
+}
@@ -0,0 +1,48 @@
+package com.db.awmd.challenge.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+
+/**
+ * A transfer to execute at {@code executeAt}, an ISO-8601 instant such as {@code 2030-01-31T17:00:00Z}.
+ */
+@Data
+public class ScheduledTransferCommand {
+
+    @NotNull
+    @NotEmpty
+    private String fromAccountId;
+
+    @NotNull
+    @NotEmpty
+    private String toAccountId;
+
+    @NotNull
+    @Min(value = 0, message = "Amount to be transfered should be greater than zero.")
+    private BigDecimal amount;
+
+    @NotNull
+    @NotEmpty
+    private String executeAt;
+
+    @JsonCreator
+    public ScheduledTransferCommand(@JsonProperty("fromAccountId") final String fromAccountId,
+                                    @JsonProperty("toAccountId") final String toAccountId,
+                                    @JsonProperty("amount") final BigDecimal amount,
+                                    @JsonProperty("executeAt") final String executeAt) {
+        this.fromAccountId = fromAccountId;
+        this.toAccountId = toAccountId;
+        this.amount = amount;
+        this.executeAt = executeAt;
+    }
+
+    public TransferCommand toTransferCommand() {
+        return new TransferCommand(fromAccountId, toAccountId, amount);
+    }
+}
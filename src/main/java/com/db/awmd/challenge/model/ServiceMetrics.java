@@ -0,0 +1,13 @@
+package com.db.awmd.challenge.model;
+
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+public class ServiceMetrics {
+
+    private final Map<String, OperationMetrics> operations;
+
+    private final Map<String, Long> exceptions;
+}
@@ -0,0 +1,38 @@
+package com.db.awmd.challenge.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/**
+ * Outcome of a single transfer of a batch, addressed by its position in the submitted list.
+ */
+@Data
+public class TransferItemResult {
+
+    public enum Status {
+        SUCCESS, FAILED
+    }
+
+    private final int index;
+
+    private final Status status;
+
+    private final String message;
+
+    /**
+     * For a transfer refused by the rate limits, and so never attempted, how long until it may be retried; otherwise 0.
+     */
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private final long retryAfterMillis;
+
+    public TransferItemResult(int index, Status status, String message) {
+        this(index, status, message, 0);
+    }
+
+    public TransferItemResult(int index, Status status, String message, long retryAfterMillis) {
+        this.index = index;
+        this.status = status;
+        this.message = message;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+}
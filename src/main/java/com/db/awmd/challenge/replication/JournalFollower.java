@@ -0,0 +1,244 @@
+package com.db.awmd.challenge.replication;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.journal.JournalRecord;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the accounts a replica of a primary's by applying the journal it ships (see {@link JournalShipper}). On
+ * every connection the accounts are copied afresh; reads keep being served from the previous replica until the copy
+ * is complete. Records are applied one frame at a time as they arrive, and one acknowledgement goes back for all the
+ * frames a read brings in.
+ * <p>
+ * Staleness is measured on this node's clock only: it is the time since every record the primary had announced was
+ * applied, which heartbeats keep small while the primary is reachable and the follower keeps up. A lost primary is
+ * retried every {@code reconnectMillis}.
+ */
+@Slf4j
+final class JournalFollower {
+
+    private static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+
+    private final AccountsRepositoryInMemory accountsRepository;
+
+    private final String host;
+
+    private final int port;
+
+    private final long reconnectMillis;
+
+    private final LongSupplier clock;
+
+    private volatile boolean running;
+
+    private volatile boolean connected;
+
+    private volatile boolean copyComplete;
+
+    private volatile long appliedSequence = -1;
+
+    private volatile long primarySequence = -1;
+
+    private volatile long caughtUpAtMillis = -1;
+
+    private volatile SocketChannel channel;
+
+    private Thread followerThread;
+
+    JournalFollower(AccountsRepositoryInMemory accountsRepository, String host, int port, long reconnectMillis,
+                    LongSupplier clock) {
+        this.accountsRepository = accountsRepository;
+        this.host = host;
+        this.port = port;
+        this.reconnectMillis = reconnectMillis;
+        this.clock = clock;
+    }
+
+    synchronized void start() {
+        running = true;
+        followerThread = new Thread(this::followLoop, "replication-follower");
+        followerThread.setDaemon(true);
+        followerThread.start();
+    }
+
+    /**
+     * Stops following. Whatever frame is being applied is finished first, so the accounts end on a whole batch.
+     *
+     * @return the sequence of the last record applied, or {@code -1} if the accounts were never copied
+     */
+    synchronized long stop() throws InterruptedException {
+        running = false;
+        final SocketChannel current = channel;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ioe) {
+                log.debug("Exception while closing the replication channel.", ioe);
+            }
+        }
+        if (followerThread != null) {
+            followerThread.interrupt();
+            followerThread.join(TimeUnit.SECONDS.toMillis(5));
+            followerThread = null;
+        }
+        return appliedSequence;
+    }
+
+    boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Whether the accounts have been copied from a primary at least once.
+     */
+    boolean isSynced() {
+        return appliedSequence >= 0;
+    }
+
+    long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Milliseconds since the replica last had everything the primary had announced, or {@link Long#MAX_VALUE} if
+     * it never had.
+     */
+    long getStalenessMillis() {
+        final long caughtUpAt = caughtUpAtMillis;
+        return caughtUpAt < 0 ? Long.MAX_VALUE : Math.max(0, clock.getAsLong() - caughtUpAt);
+    }
+
+    private void followLoop() {
+        while (running) {
+            try (SocketChannel socketChannel = SocketChannel.open()) {
+                channel = socketChannel;
+                if (!running) {
+                    return;
+                }
+                socketChannel.socket().connect(new InetSocketAddress(host, port), (int) Math.max(reconnectMillis, 1000));
+                socketChannel.socket().setTcpNoDelay(true);
+                connected = true;
+                log.info("Following primary {}:{}", host, port);
+                follow(socketChannel);
+            } catch (IOException | RuntimeException e) {
+                if (running) {
+                    log.warn("Lost primary {}:{}, retrying in {} ms: {}", host, port, reconnectMillis, e.toString());
+                }
+            } finally {
+                connected = false;
+                copyComplete = false;
+                channel = null;
+            }
+
+            try {
+                Thread.sleep(reconnectMillis);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void follow(SocketChannel socketChannel) throws IOException {
+        final List<Account> copy = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        while (running) {
+            if (socketChannel.read(buffer) < 0) {
+                throw new EOFException("Primary closed the connection");
+            }
+            buffer.flip();
+
+            final long appliedBefore = appliedSequence;
+            while (buffer.remaining() >= ReplicationFrames.HEADER_BYTES) {
+                final int start = buffer.position();
+                final int length = buffer.getInt(start);
+                if (length < 1 || length > MAX_FRAME_BYTES) {
+                    throw new IOException("Invalid replication frame length " + length);
+                }
+                if (buffer.remaining() < ReplicationFrames.LENGTH_BYTES + length) {
+                    break;
+                }
+
+                final ByteBuffer body = buffer.duplicate();
+                body.limit(start + ReplicationFrames.LENGTH_BYTES + length);
+                body.position(start + ReplicationFrames.HEADER_BYTES);
+                handle(buffer.get(start + ReplicationFrames.LENGTH_BYTES), body, copy);
+                buffer.position(start + ReplicationFrames.LENGTH_BYTES + length);
+            }
+
+            buffer.compact();
+            if (!buffer.hasRemaining()) {
+                final ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2,
+                        ReplicationFrames.LENGTH_BYTES + buffer.getInt(0)));
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+
+            final long applied = appliedSequence;
+            if (applied != appliedBefore) {
+                final ByteBuffer ack = ReplicationFrames.sequenceFrame(ReplicationFrames.ACK, applied);
+                while (ack.hasRemaining()) {
+                    socketChannel.write(ack);
+                }
+            }
+        }
+    }
+
+    private void handle(byte type, ByteBuffer body, List<Account> copy) throws IOException {
+        switch (type) {
+            case ReplicationFrames.ACCOUNTS:
+                if (copyComplete) {
+                    throw new IOException("Accounts sent after the copy was complete");
+                }
+                ReplicationFrames.readAccounts(body, copy::add);
+                break;
+            case ReplicationFrames.SYNCED:
+                final long syncedSequence = body.getLong();
+                accountsRepository.loadReplica(copy);
+                log.info("Copied {} accounts from primary {}:{} up to sequence {}", copy.size(), host, port,
+                        syncedSequence);
+                copy.clear();
+                copyComplete = true;
+                primarySequence = syncedSequence;
+                appliedSequence = syncedSequence;
+                break;
+            case ReplicationFrames.RECORDS:
+                if (!copyComplete) {
+                    throw new IOException("Records sent before the accounts");
+                }
+                final long lastSequence = body.getLong();
+                while (body.hasRemaining()) {
+                    final JournalRecord record = TransferJournal.decode(body);
+                    if (record == null) {
+                        throw new IOException("Corrupt journal records up to sequence " + lastSequence);
+                    }
+                    accountsRepository.applyReplicated(record);
+                }
+                primarySequence = Math.max(primarySequence, lastSequence);
+                appliedSequence = lastSequence;
+                break;
+            case ReplicationFrames.HEARTBEAT:
+                primarySequence = Math.max(primarySequence, body.getLong());
+                break;
+            default:
+                throw new IOException("Unknown replication frame type " + type);
+        }
+
+        if (copyComplete && appliedSequence >= primarySequence) {
+            caughtUpAtMillis = clock.getAsLong();
+        }
+    }
+}
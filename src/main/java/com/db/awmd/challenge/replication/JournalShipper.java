@@ -0,0 +1,350 @@
+package com.db.awmd.challenge.replication;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.model.FollowerStatus;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Ships a primary's journal to its followers over TCP (see {@link ReplicationFrames}). A follower that connects is
+ * first sent a copy of every account, then each batch of records as the journal writes it. A group commit of many
+ * transfers thus travels as one frame, and frames go out back to back without waiting on the follower, whose
+ * acknowledgements only feed the status. While there is nothing to send, a heartbeat every {@code heartbeatMillis}
+ * tells the follower it is up to date.
+ * <p>
+ * Each follower has a sender thread, a thread reading its acknowledgements and a queue of frames that the journal
+ * adds to without blocking. A follower that falls more than {@code maxQueuedBytes} behind, and every follower when
+ * the journal is reset, is disconnected and copies the accounts afresh when it reconnects.
+ */
+@Slf4j
+final class JournalShipper {
+
+    private static final int ACCOUNTS_FRAME_BYTES = 256 * 1024;
+
+    private static final int MAX_GATHER = 64;
+
+    private final AccountsRepositoryInMemory accountsRepository;
+
+    private final TransferJournal journal;
+
+    private final int port;
+
+    private final long heartbeatMillis;
+
+    private final long maxQueuedBytes;
+
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+
+    private ServerSocketChannel serverChannel;
+
+    private Thread acceptorThread;
+
+    JournalShipper(AccountsRepositoryInMemory accountsRepository, TransferJournal journal, int port,
+                   long heartbeatMillis, long maxQueuedBytes) {
+        this.accountsRepository = accountsRepository;
+        this.journal = journal;
+        this.port = port;
+        this.heartbeatMillis = heartbeatMillis;
+        this.maxQueuedBytes = maxQueuedBytes;
+    }
+
+    synchronized void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        running = true;
+        acceptorThread = daemon(this::acceptLoop, "replication-acceptor");
+        log.info("Shipping the journal to followers on port {}", getLocalPort());
+    }
+
+    synchronized void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        closeQuietly(serverChannel);
+        acceptorThread.join(TimeUnit.SECONDS.toMillis(5));
+        for (Session session : sessions) {
+            session.close();
+        }
+    }
+
+    /**
+     * The port actually bound, which differs from the configured one when that is 0.
+     */
+    int getLocalPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    List<FollowerStatus> getFollowers() {
+        final long lastSequence = journal.getWrittenSequence();
+        final List<FollowerStatus> followers = new ArrayList<>(sessions.size());
+        for (Session session : sessions) {
+            final long acked = session.ackedSequence;
+            followers.add(new FollowerStatus(session.address, acked, acked < 0 ? -1 : lastSequence - acked,
+                    session.getQueuedBytes()));
+        }
+        return followers;
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                final SocketChannel channel = serverChannel.accept();
+                channel.socket().setTcpNoDelay(true);
+                final Session session = new Session(channel);
+                sessions.add(session);
+                session.start();
+            } catch (IOException ioe) {
+                if (running) {
+                    log.warn("Failed to accept a follower", ioe);
+                }
+            }
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        final Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException ioe) {
+            log.debug("Exception while closing a replication channel.", ioe);
+        }
+    }
+
+    private static void write(SocketChannel channel, ByteBuffer[] frames, int count) throws IOException {
+        final ByteBuffer last = frames[count - 1];
+        while (last.hasRemaining()) {
+            channel.write(frames, 0, count);
+        }
+    }
+
+    private final class Session implements TransferJournal.Listener {
+
+        private final SocketChannel channel;
+
+        private final String address;
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        /**
+         * Frames for the sender, guarded by this session like the fields after it.
+         */
+        private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+
+        private long queuedBytes;
+
+        private long queuedSequence;
+
+        private boolean cutOff;
+
+        private volatile long ackedSequence = -1;
+
+        Session(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.address = String.valueOf(channel.getRemoteAddress());
+        }
+
+        void start() {
+            daemon(this::send, "replication-sender " + address);
+            daemon(this::readAcks, "replication-acks " + address);
+            log.info("Follower {} connected", address);
+        }
+
+        synchronized long getQueuedBytes() {
+            return queuedBytes;
+        }
+
+        /**
+         * Copies the batch into a frame of its own, since the journal reuses its buffer.
+         */
+        @Override
+        public void written(ByteBuffer records, long lastSequence) {
+            final ByteBuffer frame = ReplicationFrames.recordsFrame(records, lastSequence);
+            synchronized (this) {
+                if (cutOff) {
+                    return;
+                }
+                if (queuedBytes + frame.remaining() > maxQueuedBytes) {
+                    log.warn("Disconnecting follower {}, which is more than {} bytes behind", address, maxQueuedBytes);
+                    cutOff = true;
+                } else {
+                    queue.add(frame);
+                    queuedBytes += frame.remaining();
+                    queuedSequence = lastSequence;
+                }
+                notifyAll();
+            }
+        }
+
+        @Override
+        public synchronized void reset(long lastSequence) {
+            log.info("Disconnecting follower {} as the journal was reset", address);
+            cutOff = true;
+            notifyAll();
+        }
+
+        private void send() {
+            try {
+                final AccountsWriter accountsWriter = new AccountsWriter(channel);
+                final long syncedSequence = accountsRepository.replicate(this, accountsWriter);
+                accountsWriter.flush();
+                write(channel, new ByteBuffer[]{ReplicationFrames.sequenceFrame(ReplicationFrames.SYNCED,
+                        syncedSequence)}, 1);
+                log.info("Copied {} accounts to follower {} up to sequence {}", accountsWriter.total, address,
+                        syncedSequence);
+
+                final ByteBuffer[] frames = new ByteBuffer[MAX_GATHER];
+                while (true) {
+                    int count = 0;
+                    final long sentSequence;
+                    synchronized (this) {
+                        long remaining = TimeUnit.MILLISECONDS.toNanos(heartbeatMillis);
+                        final long deadline = System.nanoTime() + remaining;
+                        while (queue.isEmpty() && !cutOff && remaining > 0) {
+                            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                            remaining = deadline - System.nanoTime();
+                        }
+                        if (cutOff) {
+                            return;
+                        }
+                        while (count < MAX_GATHER && !queue.isEmpty()) {
+                            final ByteBuffer frame = queue.poll();
+                            queuedBytes -= frame.remaining();
+                            frames[count++] = frame;
+                        }
+                        sentSequence = Math.max(queuedSequence, syncedSequence);
+                    }
+                    if (count == 0) {
+                        frames[count++] = ReplicationFrames.sequenceFrame(ReplicationFrames.HEARTBEAT, sentSequence);
+                    }
+                    write(channel, frames, count);
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | UncheckedIOException e) {
+                if (!closed.get()) {
+                    log.info("Lost follower {}: {}", address, e.toString());
+                }
+            } catch (RuntimeException re) {
+                log.error("Exception while shipping the journal to follower {}.", address, re);
+            } finally {
+                close();
+            }
+        }
+
+        private void readAcks() {
+            final ByteBuffer frame = ByteBuffer.allocate(ReplicationFrames.SEQUENCE_FRAME_BYTES);
+            try {
+                while (!closed.get()) {
+                    frame.clear();
+                    while (frame.hasRemaining()) {
+                        if (channel.read(frame) < 0) {
+                            throw new EOFException("Follower closed the connection");
+                        }
+                    }
+                    frame.flip();
+                    if (frame.getInt() != 1 + 8 || frame.get() != ReplicationFrames.ACK) {
+                        throw new IOException("Unexpected frame from follower");
+                    }
+                    ackedSequence = frame.getLong();
+                }
+            } catch (IOException ioe) {
+                if (!closed.get()) {
+                    log.info("Lost follower {}: {}", address, ioe.toString());
+                }
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            journal.removeListener(this);
+            synchronized (this) {
+                cutOff = true;
+                queue.clear();
+                queuedBytes = 0;
+                notifyAll();
+            }
+            closeQuietly(channel);
+            sessions.remove(this);
+            log.info("Follower {} disconnected", address);
+        }
+    }
+
+    /**
+     * Packs accounts into {@link ReplicationFrames#ACCOUNTS} frames, writing each once it is full.
+     */
+    private static final class AccountsWriter implements Consumer<Account> {
+
+        private final SocketChannel channel;
+
+        private ByteBuffer buffer = ByteBuffer.allocate(ACCOUNTS_FRAME_BYTES);
+
+        private int count;
+
+        private long total;
+
+        AccountsWriter(SocketChannel channel) {
+            this.channel = channel;
+            ReplicationFrames.beginAccounts(buffer);
+        }
+
+        @Override
+        public void accept(Account account) {
+            final int size = ReplicationFrames.encodedSize(account);
+            if (buffer.remaining() < size) {
+                flush();
+                if (buffer.remaining() < size) {
+                    buffer = ByteBuffer.allocate(ReplicationFrames.HEADER_BYTES + 4 + size);
+                    ReplicationFrames.beginAccounts(buffer);
+                }
+            }
+            ReplicationFrames.putAccount(buffer, account);
+            count++;
+            total++;
+        }
+
+        void flush() {
+            if (count == 0) {
+                return;
+            }
+            ReplicationFrames.endAccounts(buffer, count);
+            try {
+                write(channel, new ByteBuffer[]{buffer}, 1);
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+            ReplicationFrames.beginAccounts(buffer);
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.db.awmd.challenge.replication;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Hold;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Frames exchanged between a primary and its followers, big-endian. Every frame is
+ * <pre>
+ * int   length of the rest of the frame
+ * byte  type
+ * </pre>
+ * followed by a body that depends on the type. From the primary:
+ * <ul>
+ * <li>{@link #ACCOUNTS}: {@code int} count, then that many accounts in the order they were created, each as
+ * <pre>
+ * short account id length, account id (UTF-8)
+ * short currency length, currency (ASCII)
+ * int   balance scale
+ * short unscaled balance length, unscaled balance (two's complement)
+ * long  version
+ * short hold count, then per hold: id length and id (UTF-8), amount scale, unscaled amount length and unscaled
+ *       amount, long expiry (epoch milliseconds)
+ * </pre></li>
+ * <li>{@link #SYNCED}: {@code long} sequence of the last record the accounts sent so far include, ending the copy
+ * of the accounts.</li>
+ * <li>{@link #RECORDS}: {@code long} sequence of the last record, then journal records exactly as written to a
+ * segment.</li>
+ * <li>{@link #HEARTBEAT}: {@code long} sequence of the last record sent, while there is nothing else to send.</li>
+ * </ul>
+ * From a follower, {@link #ACK}: {@code long} sequence of the last record applied.
+ */
+final class ReplicationFrames {
+
+    static final byte ACCOUNTS = 0;
+
+    static final byte SYNCED = 1;
+
+    static final byte RECORDS = 2;
+
+    static final byte HEARTBEAT = 3;
+
+    static final byte ACK = 4;
+
+    static final int LENGTH_BYTES = 4;
+
+    /**
+     * Length prefix and type.
+     */
+    static final int HEADER_BYTES = LENGTH_BYTES + 1;
+
+    static final int SEQUENCE_FRAME_BYTES = HEADER_BYTES + 8;
+
+    private ReplicationFrames() {
+    }
+
+    /**
+     * A {@link #SYNCED}, {@link #HEARTBEAT} or {@link #ACK} frame, ready to write.
+     */
+    static ByteBuffer sequenceFrame(byte type, long sequence) {
+        final ByteBuffer frame = ByteBuffer.allocate(SEQUENCE_FRAME_BYTES);
+        frame.putInt(1 + 8).put(type).putLong(sequence);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * A {@link #RECORDS} frame holding a copy of {@code records}, ready to write.
+     */
+    static ByteBuffer recordsFrame(ByteBuffer records, long lastSequence) {
+        final ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + 8 + records.remaining());
+        frame.putInt(1 + 8 + records.remaining()).put(RECORDS).putLong(lastSequence).put(records);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Starts an {@link #ACCOUNTS} frame; {@link #endAccounts(ByteBuffer, int)} fills in its length and count.
+     */
+    static void beginAccounts(ByteBuffer buffer) {
+        buffer.clear();
+        buffer.putInt(0).put(ACCOUNTS).putInt(0);
+    }
+
+    static void endAccounts(ByteBuffer buffer, int count) {
+        buffer.putInt(0, buffer.position() - LENGTH_BYTES);
+        buffer.putInt(HEADER_BYTES, count);
+        buffer.flip();
+    }
+
+    static int encodedSize(Account account) {
+        int size = 2 + utf8(account.getAccountId()).length + 2 + account.getCurrency().getCurrencyCode().length()
+                + decimalSize(account.getBalance()) + 8 + 2;
+        for (Hold hold : account.getHolds()) {
+            size += 2 + utf8(hold.getHoldId()).length + decimalSize(hold.getAmount()) + 8;
+        }
+        return size;
+    }
+
+    static void putAccount(ByteBuffer buffer, Account account) {
+        putBytes(buffer, utf8(account.getAccountId()));
+        putBytes(buffer, account.getCurrency().getCurrencyCode().getBytes(StandardCharsets.US_ASCII));
+        putDecimal(buffer, account.getBalance());
+        buffer.putLong(account.getVersion());
+        buffer.putShort((short) account.getHolds().size());
+        for (Hold hold : account.getHolds()) {
+            putBytes(buffer, utf8(hold.getHoldId()));
+            putDecimal(buffer, hold.getAmount());
+            buffer.putLong(hold.getExpiresAtMillis());
+        }
+    }
+
+    /**
+     * Reads the accounts of an {@link #ACCOUNTS} frame body.
+     */
+    static void readAccounts(ByteBuffer body, Consumer<Account> action) {
+        final int count = body.getInt();
+        for (int i = 0; i < count; i++) {
+            final String accountId = new String(readBytes(body), StandardCharsets.UTF_8);
+            final Currency currency = Currency.getInstance(new String(readBytes(body), StandardCharsets.US_ASCII));
+            final BigDecimal balance = readDecimal(body);
+            final long version = body.getLong();
+            final int holdCount = body.getShort() & 0xFFFF;
+            List<Hold> holds = Collections.emptyList();
+            if (holdCount > 0) {
+                holds = new ArrayList<>(holdCount);
+                for (int h = 0; h < holdCount; h++) {
+                    holds.add(new Hold(new String(readBytes(body), StandardCharsets.UTF_8), readDecimal(body),
+                            body.getLong()));
+                }
+                holds = Collections.unmodifiableList(holds);
+            }
+            action.accept(new Account(accountId, balance, currency, version, holds));
+        }
+    }
+
+    private static int decimalSize(BigDecimal decimal) {
+        return 4 + 2 + decimal.unscaledValue().bitLength() / 8 + 1;
+    }
+
+    private static void putDecimal(ByteBuffer buffer, BigDecimal decimal) {
+        buffer.putInt(decimal.scale());
+        putBytes(buffer, decimal.unscaledValue().toByteArray());
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer buffer) {
+        final int scale = buffer.getInt();
+        return new BigDecimal(new BigInteger(readBytes(buffer)), scale);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
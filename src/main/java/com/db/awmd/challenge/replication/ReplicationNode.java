@@ -0,0 +1,173 @@
+package com.db.awmd.challenge.replication;
+
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.model.ReplicationStatus;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * This node's part in replication, set by {@code replication.role}. A {@link ReplicationRole#PRIMARY} ships its
+ * journal to followers on {@code replication.port}, so it needs {@code journal.durability} other than NONE. A
+ * {@link ReplicationRole#FOLLOWER} keeps its accounts a read-only replica of the primary at
+ * {@code replication.primary-host} and {@code replication.primary-port}; account reads are refused once it is more
+ * than {@code replication.max-staleness-millis} behind. Promoting a follower makes it a primary that carries on from
+ * the last record it applied. Only the in-memory account store replicates.
+ */
+@Slf4j
+@Component
+public class ReplicationNode {
+
+    private final AccountsRepositoryInMemory accountsRepository;
+
+    private final TransferJournal journal;
+
+    private final int port;
+
+    private final String primaryHost;
+
+    private final int primaryPort;
+
+    private final long heartbeatMillis;
+
+    private final long maxStalenessMillis;
+
+    private final long maxQueuedBytes;
+
+    private volatile ReplicationRole role;
+
+    private volatile JournalFollower follower;
+
+    private JournalShipper shipper;
+
+    @Autowired
+    public ReplicationNode(final AccountsRepository accountsRepository,
+                           final TransferJournal journal,
+                           @Value("${replication.role:STANDALONE}") final ReplicationRole role,
+                           @Value("${replication.port:18082}") final int port,
+                           @Value("${replication.primary-host:localhost}") final String primaryHost,
+                           @Value("${replication.primary-port:18082}") final int primaryPort,
+                           @Value("${replication.heartbeat-millis:50}") final long heartbeatMillis,
+                           @Value("${replication.max-staleness-millis:1000}") final long maxStalenessMillis,
+                           @Value("${replication.max-queued-bytes:67108864}") final long maxQueuedBytes) {
+        this.accountsRepository = accountsRepository instanceof AccountsRepositoryInMemory
+                ? (AccountsRepositoryInMemory) accountsRepository : null;
+        this.journal = journal;
+        this.role = role;
+        this.port = port;
+        this.primaryHost = primaryHost;
+        this.primaryPort = primaryPort;
+        this.heartbeatMillis = heartbeatMillis;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.maxQueuedBytes = maxQueuedBytes;
+    }
+
+    @PostConstruct
+    public synchronized void start() throws IOException {
+        if (role == ReplicationRole.STANDALONE) {
+            return;
+        }
+        if (accountsRepository == null) {
+            throw new IllegalStateException("Replication needs the in-memory account store");
+        }
+
+        if (role == ReplicationRole.PRIMARY) {
+            if (!journal.isEnabled()) {
+                throw new IllegalStateException("A replication primary needs journal.durability other than NONE");
+            }
+            startShipping();
+        } else {
+            accountsRepository.setReadOnly(true);
+            follower = new JournalFollower(accountsRepository, primaryHost, primaryPort,
+                    Math.max(heartbeatMillis * 10, 100), System::currentTimeMillis);
+            follower.start();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        if (follower != null) {
+            follower.stop();
+        }
+        if (shipper != null) {
+            shipper.stop();
+        }
+    }
+
+    public ReplicationRole getRole() {
+        return role;
+    }
+
+    /**
+     * How far behind the primary the accounts may be, in milliseconds: {@code 0} unless this is a follower, and
+     * {@link Long#MAX_VALUE} for a follower that has not copied them yet.
+     */
+    public long getStalenessMillis() {
+        final JournalFollower current = follower;
+        return current == null ? 0 : current.getStalenessMillis();
+    }
+
+    public long getMaxStalenessMillis() {
+        return maxStalenessMillis;
+    }
+
+    /**
+     * The port followers connect to, once this node is a primary.
+     */
+    public synchronized int getShippingPort() throws IOException {
+        if (shipper == null) {
+            throw new IllegalStateException("This node is not shipping its journal");
+        }
+        return shipper.getLocalPort();
+    }
+
+    public synchronized ReplicationStatus getStatus() {
+        if (follower != null) {
+            final long stalenessMillis = follower.getStalenessMillis();
+            return new ReplicationStatus(role, follower.getAppliedSequence(),
+                    stalenessMillis == Long.MAX_VALUE ? null : stalenessMillis, follower.isConnected(), null);
+        }
+        return new ReplicationStatus(role, journal.getWrittenSequence(), null, null,
+                shipper == null ? Collections.emptyList() : shipper.getFollowers());
+    }
+
+    /**
+     * Stops following and takes changes from now on, carrying on the journal from the last record applied. The
+     * node then ships its own journal to whichever followers connect.
+     *
+     * @throws IllegalStateException if this is not a follower, or it has not copied the primary's accounts yet
+     */
+    public synchronized ReplicationStatus promote() throws IOException, InterruptedException {
+        if (role != ReplicationRole.FOLLOWER) {
+            throw new IllegalStateException("Only a follower can be promoted; this node is " + role);
+        }
+        if (!follower.isSynced()) {
+            throw new IllegalStateException("The follower has not copied the primary's accounts yet");
+        }
+
+        final long lastSequence = follower.stop();
+        follower = null;
+        accountsRepository.promote(lastSequence);
+        role = ReplicationRole.PRIMARY;
+        if (journal.isEnabled()) {
+            startShipping();
+        } else {
+            log.warn("Promoted without a journal, so no follower can replicate this node");
+        }
+        log.info("Promoted to primary at sequence {}", lastSequence);
+        return getStatus();
+    }
+
+    private void startShipping() throws IOException {
+        shipper = new JournalShipper(accountsRepository, journal, port, heartbeatMillis, maxQueuedBytes);
+        shipper.start();
+    }
+}
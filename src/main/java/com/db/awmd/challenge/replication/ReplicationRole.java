@@ -0,0 +1,16 @@
+package com.db.awmd.challenge.replication;
+
+public enum ReplicationRole {
+    /**
+     * Neither ships nor follows a journal.
+     */
+    STANDALONE,
+    /**
+     * Takes every change and ships its journal to followers.
+     */
+    PRIMARY,
+    /**
+     * Serves reads from a replica of a primary's accounts and refuses changes.
+     */
+    FOLLOWER
+}
@@ -0,0 +1,117 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Account ids in the order the accounts were created. Accounts are never removed one by one, so an account keeps
+ * its position for as long as it exists, and a position makes a stable cursor for paging through all accounts.
+ * <p>
+ * Appends are serialized; reads take no lock. An id is written before the size that covers it is published, so
+ * every position below {@link #size()} can be read. Stores append an id only once its account can be looked up.
+ */
+public final class AccountIdLog {
+
+    private static final int CHUNK_SHIFT = 12;
+
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile String[][] chunks = new String[16][];
+
+    private volatile int size;
+
+    /**
+     * @return the position of the id
+     */
+    public synchronized int append(String accountId) {
+        final int position = size;
+        final int chunkIndex = position >>> CHUNK_SHIFT;
+        String[][] current = chunks;
+        if (chunkIndex >= current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        if (current[chunkIndex] == null) {
+            current[chunkIndex] = new String[CHUNK_SIZE];
+        }
+        current[chunkIndex][position & CHUNK_MASK] = accountId;
+        chunks = current;
+        size = position + 1;
+        return position;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        chunks = new String[16][];
+        size = 0;
+    }
+
+    /**
+     * Up to {@code limit} accounts from position {@code from} on, looked up one at a time. The page ends early if
+     * the accounts are cleared meanwhile.
+     */
+    public List<Account> page(int from, int limit, Function<String, Account> lookup) {
+        final int end = (int) Math.min((long) from + limit, size);
+        final String[][] current = chunks;
+        final List<Account> accounts = new ArrayList<>(Math.max(0, end - from));
+        for (int position = from; position < end; position++) {
+            final Account account = lookup(current, position, lookup);
+            if (account == null) {
+                break;
+            }
+            accounts.add(account);
+        }
+        return accounts;
+    }
+
+    /**
+     * Every account in creation order, looked up as the iterator reaches it. Accounts created after this is called
+     * are left out, and like a page the iteration ends early if the accounts are cleared meanwhile.
+     */
+    public Iterator<Account> iterator(Function<String, Account> lookup) {
+        final int end = size;
+        final String[][] current = chunks;
+        return new Iterator<Account>() {
+
+            private int position;
+
+            private Account next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Account next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                final Account account = next;
+                next = advance();
+                return account;
+            }
+
+            private Account advance() {
+                return position < end ? lookup(current, position++, lookup) : null;
+            }
+        };
+    }
+
+    private static Account lookup(String[][] current, int position, Function<String, Account> lookup) {
+        final int chunkIndex = position >>> CHUNK_SHIFT;
+        final String accountId = chunkIndex < current.length && current[chunkIndex] != null
+                ? current[chunkIndex][position & CHUNK_MASK] : null;
+        return accountId != null ? lookup.apply(accountId) : null;
+    }
+}
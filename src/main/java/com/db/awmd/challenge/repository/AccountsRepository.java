@@ -1,19 +1,109 @@
 package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.exception.CurrencyConversionException;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 
 import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.ObjIntConsumer;
 
 public interface AccountsRepository {
 
     void createAccount(Account account) throws DuplicateAccountIdException;
 
+    /**
+     * Creates every account of the batch that can be created. For each one that cannot, {@code rejected} is called
+     * with the exception {@link #createAccount(Account)} would have thrown and the account's position in the batch.
+     */
+    default void createAccounts(List<Account> accounts, ObjIntConsumer<RuntimeException> rejected) {
+        for (int i = 0; i < accounts.size(); i++) {
+            try {
+                createAccount(accounts.get(i));
+            } catch (DuplicateAccountIdException | IllegalArgumentException e) {
+                rejected.accept(e, i);
+            }
+        }
+    }
+
     Account getAccount(String accountId);
 
+    /**
+     * Currency of the account, or {@code null} if it does not exist.
+     */
+    default Currency getCurrency(String accountId) {
+        final Account account = getAccount(accountId);
+        return account == null ? null : account.getCurrency();
+    }
+
+    /**
+     * Number of accounts created so far, which is also the position the next account will take.
+     */
+    int getAccountCount();
+
+    /**
+     * Up to {@code limit} accounts in creation order, starting at position {@code from}. New accounts are only ever
+     * added at the end, so paging by position neither skips nor repeats an account. Each account is read
+     * separately, so the page is not a snapshot of all its balances at one instant.
+     */
+    List<Account> getAccounts(int from, int limit);
+
     void clearAccounts();
 
     Account debitAmount(String fromAccountId, BigDecimal amount);
 
     Account creditAmount(String toAccountId, BigDecimal amount);
+
+    /**
+     * Debits {@code fromAccountId} and credits {@code toAccountId} as one atomic step. Both accounts are
+     * validated before anything is mutated, so a failed transfer never leaves money in flight.
+     */
+    TransferResult transfer(String fromAccountId, String toAccountId, BigDecimal amount);
+
+    /**
+     * Same as {@link #transfer(String, String, BigDecimal)}, crediting {@code creditAmount} instead of the debited
+     * amount, for a transfer between accounts held in different currencies.
+     *
+     * @throws CurrencyConversionException if the store only holds accounts in one currency
+     */
+    TransferResult transfer(String fromAccountId, String toAccountId, BigDecimal debitAmount, BigDecimal creditAmount);
+
+    /**
+     * Whether {@link #transferAsync(String, String, BigDecimal)} hands the transfer to threads of the store's own
+     * instead of running it on the calling thread.
+     */
+    default boolean isAsync() {
+        return false;
+    }
+
+    /**
+     * Same as {@link #transfer(String, String, BigDecimal)}, with the outcome delivered through a future. Stores
+     * that do not queue their work run the transfer on the calling thread and return a completed future.
+     */
+    default CompletableFuture<TransferResult> transferAsync(String fromAccountId, String toAccountId, BigDecimal amount) {
+        final CompletableFuture<TransferResult> result = new CompletableFuture<>();
+        try {
+            result.complete(transfer(fromAccountId, toAccountId, amount));
+        } catch (RuntimeException re) {
+            result.completeExceptionally(re);
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #transfer(String, String, BigDecimal, BigDecimal)}, with the outcome delivered through a future.
+     */
+    default CompletableFuture<TransferResult> transferAsync(String fromAccountId, String toAccountId,
+                                                            BigDecimal debitAmount, BigDecimal creditAmount) {
+        final CompletableFuture<TransferResult> result = new CompletableFuture<>();
+        try {
+            result.complete(transfer(fromAccountId, toAccountId, debitAmount, creditAmount));
+        } catch (RuntimeException re) {
+            result.completeExceptionally(re);
+        }
+        return result;
+    }
 }
@@ -1,28 +1,260 @@
 package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Hold;
+import com.db.awmd.challenge.domain.TransferResult;
 import com.db.awmd.challenge.exception.AccountCreditException;
 import com.db.awmd.challenge.exception.AccountDebitException;
 import com.db.awmd.challenge.exception.AccountNotPresentException;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.HoldNotPresentException;
+import com.db.awmd.challenge.exception.ReadOnlyReplicaException;
+import com.db.awmd.challenge.journal.JournalRecord;
+import com.db.awmd.challenge.journal.Snapshot;
+import com.db.awmd.challenge.journal.SnapshotStore;
+import com.db.awmd.challenge.journal.TransferJournal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
+import javax.annotation.PostConstruct;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.ObjIntConsumer;
+import java.util.function.UnaryOperator;
 
+@Slf4j
 @Repository
-public class AccountsRepositoryInMemory implements AccountsRepository {
+@ConditionalOnProperty(name = "accounts.store", havingValue = "in-memory", matchIfMissing = true)
+public class AccountsRepositoryInMemory implements HoldingAccountsRepository {
 
-    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    /**
+     * Number of lock stripes guarding balance mutations. Must be a power of two.
+     */
+    private static final int LOCK_STRIPES = 256;
+
+    /**
+     * Only replaced by {@link #recover()}, which presizes it for the snapshot being loaded, and by
+     * {@link #loadReplica(Collection)}.
+     */
+    private volatile Map<String, Account> accounts;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final AccountIdLog accountIds = new AccountIdLog();
+
+    private final TransferJournal journal;
+
+    private final SnapshotStore snapshots;
+
+    /**
+     * Time against which holds expire.
+     */
+    private LongSupplier clock = System::currentTimeMillis;
+
+    /**
+     * Set while the accounts are a replica of another node's, which alone changes them.
+     */
+    private volatile boolean readOnly;
+
+    public AccountsRepositoryInMemory() {
+        this(TransferJournal.disabled());
+    }
+
+    public AccountsRepositoryInMemory(final TransferJournal journal) {
+        this(journal, SnapshotStore.disabled());
+    }
+
+    public AccountsRepositoryInMemory(final TransferJournal journal, final SnapshotStore snapshots) {
+        this(journal, snapshots, 16);
+    }
+
+    /**
+     * @param initialCapacity number of accounts the map is sized for up front, so loading a known number of
+     *                        accounts does not keep resizing it
+     */
+    @Autowired
+    public AccountsRepositoryInMemory(final TransferJournal journal, final SnapshotStore snapshots,
+                                      @Value("${accounts.initial-capacity:16}") final int initialCapacity) {
+        this.journal = journal;
+        this.snapshots = snapshots;
+        this.accounts = new ConcurrentHashMap<>(initialCapacity);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Rebuilds the accounts from the latest snapshot and the journal records after it. Records describe mutations
+     * that were already validated, so they are applied as they are, except where an account's version shows the
+     * snapshot already holds them.
+     */
+    @PostConstruct
+    public void recover() {
+        long coveredSequence = 0;
+        final Snapshot snapshot = journal.isEnabled() ? snapshots.latest() : null;
+        if (snapshot != null) {
+            final long start = System.nanoTime();
+            final Map<String, Account> loaded = new ConcurrentHashMap<>((int) Math.min(snapshot.getAccountCount(), 1 << 30));
+            final String[] creationOrder = new String[(int) snapshot.getAccountCount()];
+            snapshot.forEachAccount((account, position) -> {
+                loaded.put(account.getAccountId(), account);
+                creationOrder[position] = account.getAccountId();
+            });
+            accounts = loaded;
+            for (String accountId : creationOrder) {
+                accountIds.append(accountId);
+            }
+            coveredSequence = snapshot.getBoundarySequence() - 1;
+            log.info("Loaded {} accounts from snapshot in {} ms", loaded.size(), (System.nanoTime() - start) / 1_000_000);
+        }
+        journal.open(coveredSequence, this::apply);
+    }
+
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public boolean isSnapshotEnabled() {
+        return journal.isEnabled() && snapshots.isEnabled();
+    }
+
+    /**
+     * Writes a snapshot of every account and drops the journal segments it covers, without stopping writers.
+     * <p>
+     * Rolling the journal fixes a boundary sequence. Each mutation appends its record and updates the map under its
+     * stripe lock, so once every stripe has been locked in turn, all records before the boundary are visible in the
+     * map. Accounts are then read one by one while writers carry on; any later change is either missed or captured
+     * with its version, and replay uses that version to apply each tail record exactly once.
+     */
+    public void snapshot() {
+        if (!isSnapshotEnabled() || readOnly) {
+            return;
+        }
+
+        final long boundary = journal.roll();
+        for (Object lock : locks) {
+            synchronized (lock) {
+                // Waits out any mutation that appended before the boundary.
+            }
+        }
+        snapshots.write(boundary, accountIds.iterator(accounts::get));
+        journal.truncateBefore(boundary);
+    }
+
+    /**
+     * Hands {@code listener} every journal record written from now on, and {@code action} every account in creation
+     * order, so that
+     * replaying the records over the accounts with the usual version check gives the current accounts, as it does
+     * for a snapshot. The records queue up in the listener while the accounts are walked, which happens without
+     * stopping writers.
+     *
+     * @return the sequence of the last record the accounts are known to include; the listener gets those after it
+     */
+    public long replicate(TransferJournal.Listener listener, Consumer<Account> action) {
+        if (!journal.isEnabled()) {
+            throw new IllegalStateException("Replicating the accounts needs the journal");
+        }
+
+        final long lastSequence = journal.addListener(listener);
+        for (Object lock : locks) {
+            synchronized (lock) {
+                // Waits out any mutation that appended before the listener started.
+            }
+        }
+        accountIds.iterator(accounts::get).forEachRemaining(action);
+        return lastSequence;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Makes the accounts a replica: every change but {@link #loadReplica(Collection)} and
+     * {@link #applyReplicated(JournalRecord)} fails with {@link ReadOnlyReplicaException}.
+     */
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Replaces every account with those copied from the primary by {@link #replicate}, keeping the order they come
+     * in as the creation order.
+     */
+    public void loadReplica(Collection<Account> replica) {
+        final Map<String, Account> loaded = new ConcurrentHashMap<>(Math.max(16, replica.size()));
+        for (Account account : replica) {
+            loaded.put(account.getAccountId(), account);
+        }
+        accounts = loaded;
+        accountIds.clear();
+        for (Account account : replica) {
+            accountIds.append(account.getAccountId());
+        }
+    }
+
+    /**
+     * Applies a record shipped from the primary over the accounts it sent, skipping it where an account's version
+     * shows the copy already includes it. Records must come in sequence order, from a single thread.
+     */
+    public void applyReplicated(JournalRecord record) {
+        apply(record);
+    }
+
+    /**
+     * Turns a replica into a writable store that carries on from the primary's last record. The journal restarts
+     * numbering after {@code lastSequence}, and with snapshots enabled the accounts are written out at once, so a
+     * restart recovers them; without snapshots only changes made from now on survive one.
+     */
+    public void promote(long lastSequence) {
+        journal.continueAfter(lastSequence);
+        snapshots.reset();
+        readOnly = false;
+        if (isSnapshotEnabled()) {
+            snapshot();
+        } else if (journal.isEnabled()) {
+            log.warn("Promoted without snapshots; the replicated accounts will not survive a restart");
+        }
+    }
 
     @Override
     public void createAccount(Account account) throws DuplicateAccountIdException {
-        Account previousAccount = accounts.putIfAbsent(account.getAccountId(), account);
-        if (previousAccount != null) {
+        final long sequence = insert(account);
+        if (sequence < 0) {
             throw new DuplicateAccountIdException(
                     "Account id " + account.getAccountId() + " already exists!");
         }
+        journal.awaitDurable(sequence);
+    }
+
+    /**
+     * Waits for the journal once for the whole batch rather than once per account.
+     */
+    @Override
+    public void createAccounts(List<Account> batch, ObjIntConsumer<RuntimeException> rejected) {
+        long lastSequence = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            final Account account = batch.get(i);
+            final long sequence = insert(account);
+            if (sequence < 0) {
+                rejected.accept(new DuplicateAccountIdException(
+                        "Account id " + account.getAccountId() + " already exists!"), i);
+            } else {
+                lastSequence = Math.max(lastSequence, sequence);
+            }
+        }
+        journal.awaitDurable(lastSequence);
     }
 
     @Override
@@ -30,45 +262,420 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
         return accounts.get(accountId);
     }
 
+    @Override
+    public int getAccountCount() {
+        return accountIds.size();
+    }
+
+    @Override
+    public List<Account> getAccounts(int from, int limit) {
+        return accountIds.page(from, limit, accounts::get);
+    }
+
     @Override
     public void clearAccounts() {
         accounts.clear();
+        accountIds.clear();
+        journal.reset();
+        snapshots.reset();
     }
 
     @Override
     public Account debitAmount(String fromAccountId, BigDecimal amount) {
-        Account account = accounts.computeIfPresent(fromAccountId, (key, acc) -> {
-            final BigDecimal newBalance = acc.getBalance().subtract(amount);
+        checkWritable();
+        final Account debitedAccount;
+        final long sequence;
+        synchronized (locks[stripeOf(fromAccountId)]) {
+            final Account account = withoutExpiredHolds(accounts.get(fromAccountId));
+            if (account == null) {
+                throw debitAccountNotPresent(fromAccountId);
+            }
+
+            final BigDecimal newBalance = balanceAfterDebit(account, amount);
+            sequence = journal.append(JournalRecord.Type.DEBIT, fromAccountId, null, amount);
+            debitedAccount = account.withBalance(newBalance, nextVersion(account, sequence));
+            accounts.put(fromAccountId, debitedAccount);
+        }
+        journal.awaitDurable(sequence);
+        return debitedAccount;
+    }
 
-            if (newBalance.compareTo(BigDecimal.ZERO) < 0) {
-                throw new AccountDebitException(
-                        String.format("After debit, account will have balance of %s. Account cannot have negative balance",
-                                newBalance));
+    @Override
+    public Account creditAmount(String toAccountId, BigDecimal amount) {
+        checkWritable();
+        final Account creditedAccount;
+        final long sequence;
+        synchronized (locks[stripeOf(toAccountId)]) {
+            final Account account = accounts.get(toAccountId);
+            if (account == null) {
+                throw creditAccountNotPresent(toAccountId);
             }
 
-            return new Account(key, newBalance);
-        });
+            sequence = journal.append(JournalRecord.Type.CREDIT, toAccountId, null, amount);
+            creditedAccount = account.withBalance(account.getBalance().add(amount), nextVersion(account, sequence));
+            accounts.put(toAccountId, creditedAccount);
+        }
+        journal.awaitDurable(sequence);
+        return creditedAccount;
+    }
 
-        if (account == null) {
-            Throwable accountNotPresentException = new AccountNotPresentException(String.format("Account with id %s is not present.", fromAccountId));
-            throw new AccountDebitException(String.format("Account with id %s is not present.", fromAccountId), accountNotPresentException);
+    @Override
+    public TransferResult transfer(String fromAccountId, String toAccountId, BigDecimal amount) {
+        return transfer(fromAccountId, toAccountId, amount, amount);
+    }
+
+    /**
+     * Both stripes are always locked lowest index first, so two opposing transfers cannot deadlock.
+     */
+    @Override
+    public TransferResult transfer(String fromAccountId, String toAccountId, BigDecimal debitAmount,
+                                   BigDecimal creditAmount) {
+        checkWritable();
+        final TransferResult transferResult;
+        final long sequence;
+        final int fromStripe = stripeOf(fromAccountId);
+        final int toStripe = stripeOf(toAccountId);
+
+        synchronized (locks[Math.min(fromStripe, toStripe)]) {
+            synchronized (locks[Math.max(fromStripe, toStripe)]) {
+                final Account fromAccount = withoutExpiredHolds(accounts.get(fromAccountId));
+                if (fromAccount == null) {
+                    throw debitAccountNotPresent(fromAccountId);
+                }
+
+                final Account toAccount = accounts.get(toAccountId);
+                if (toAccount == null) {
+                    throw creditAccountNotPresent(toAccountId);
+                }
+
+                final BigDecimal fromBalance = balanceAfterDebit(fromAccount, debitAmount);
+                if (fromAccountId.equals(toAccountId)) {
+                    return new TransferResult(fromAccount, toAccount);
+                }
+
+                sequence = journal.append(JournalRecord.Type.TRANSFER, fromAccountId, toAccountId, debitAmount, null,
+                        creditAmount.equals(debitAmount) ? null : creditAmount);
+                final Account debitedAccount = fromAccount.withBalance(fromBalance, nextVersion(fromAccount, sequence));
+                final Account creditedAccount = toAccount.withBalance(toAccount.getBalance().add(creditAmount),
+                        nextVersion(toAccount, sequence));
+                accounts.put(fromAccountId, debitedAccount);
+                accounts.put(toAccountId, creditedAccount);
+                transferResult = new TransferResult(debitedAccount, creditedAccount);
+            }
         }
+        journal.awaitDurable(sequence);
+        return transferResult;
+    }
+
+    @Override
+    public Account placeHold(String accountId, String holdId, BigDecimal amount, long expiresAtMillis) {
+        checkWritable();
+        final Account heldAccount;
+        final long sequence;
+        synchronized (locks[stripeOf(accountId)]) {
+            final Account account = withoutExpiredHolds(accounts.get(accountId));
+            if (account == null) {
+                throw debitAccountNotPresent(accountId);
+            }
+            if (account.getHold(holdId) != null) {
+                throw new IllegalArgumentException(String.format("Account %s already has hold %s", accountId, holdId));
+            }
+            final BigDecimal available = account.getAvailableBalance();
+            if (available.compareTo(amount) < 0) {
+                throw new AccountDebitException(String.format("Account %s has %s available, less than the %s to hold",
+                        accountId, available, amount));
+            }
 
-        return account;
+            sequence = journal.append(JournalRecord.Type.HOLD, accountId, null, amount, null, null, holdId, expiresAtMillis);
+            heldAccount = account.withHolds(account.getBalance(),
+                    added(account.getHolds(), new Hold(holdId, amount, expiresAtMillis)), nextVersion(account, sequence));
+            accounts.put(accountId, heldAccount);
+        }
+        journal.awaitDurable(sequence);
+        return heldAccount;
     }
 
     @Override
-    public Account creditAmount(String toAccountId, BigDecimal amount) {
-        Account account = accounts.computeIfPresent(toAccountId, (key, acc) -> {
-            final BigDecimal newBalance = acc.getBalance().add(amount);
-            return new Account(key, newBalance);
-        });
+    public TransferResult captureHold(String accountId, String holdId, String toAccountId, BigDecimal debitAmount,
+                                      BigDecimal creditAmount) {
+        checkWritable();
+        if (accountId.equals(toAccountId)) {
+            throw new IllegalArgumentException("A hold cannot be captured into the account it is on");
+        }
+
+        final TransferResult transferResult;
+        final long sequence;
+        final int fromStripe = stripeOf(accountId);
+        final int toStripe = stripeOf(toAccountId);
+
+        synchronized (locks[Math.min(fromStripe, toStripe)]) {
+            synchronized (locks[Math.max(fromStripe, toStripe)]) {
+                final Account fromAccount = withoutExpiredHolds(accounts.get(accountId));
+                if (fromAccount == null) {
+                    throw debitAccountNotPresent(accountId);
+                }
+                final Hold hold = fromAccount.getHold(holdId);
+                if (hold == null) {
+                    throw holdNotPresent(accountId, holdId);
+                }
+
+                final Account toAccount = accounts.get(toAccountId);
+                if (toAccount == null) {
+                    throw creditAccountNotPresent(toAccountId);
+                }
+
+                final BigDecimal left = hold.getAmount().subtract(debitAmount);
+                if (left.signum() < 0) {
+                    throw new AccountDebitException(String.format("Capture of %s exceeds the %s left on hold %s",
+                            debitAmount, hold.getAmount(), holdId));
+                }
+
+                sequence = journal.append(JournalRecord.Type.CAPTURE, accountId, toAccountId, debitAmount, null,
+                        creditAmount.equals(debitAmount) ? null : creditAmount, holdId, 0);
+                final Account debitedAccount = fromAccount.withHolds(fromAccount.getBalance().subtract(debitAmount),
+                        replaced(fromAccount.getHolds(), hold, left.signum() == 0 ? null : hold.withAmount(left)),
+                        nextVersion(fromAccount, sequence));
+                final Account creditedAccount = toAccount.withBalance(toAccount.getBalance().add(creditAmount),
+                        nextVersion(toAccount, sequence));
+                accounts.put(accountId, debitedAccount);
+                accounts.put(toAccountId, creditedAccount);
+                transferResult = new TransferResult(debitedAccount, creditedAccount);
+            }
+        }
+        journal.awaitDurable(sequence);
+        return transferResult;
+    }
+
+    @Override
+    public Account releaseHold(String accountId, String holdId) {
+        checkWritable();
+        final Account releasedAccount;
+        final long sequence;
+        synchronized (locks[stripeOf(accountId)]) {
+            final Account account = withoutExpiredHolds(accounts.get(accountId));
+            if (account == null) {
+                throw debitAccountNotPresent(accountId);
+            }
+            final Hold hold = account.getHold(holdId);
+            if (hold == null) {
+                throw holdNotPresent(accountId, holdId);
+            }
+
+            sequence = journal.append(JournalRecord.Type.RELEASE, accountId, null, hold.getAmount(), null, null, holdId, 0);
+            releasedAccount = account.withHolds(account.getBalance(), replaced(account.getHolds(), hold, null),
+                    nextVersion(account, sequence));
+            accounts.put(accountId, releasedAccount);
+        }
+        journal.awaitDurable(sequence);
+        return releasedAccount;
+    }
+
+    /**
+     * Walks the accounts without any lock and only locks the stripe of an account found with an expired hold.
+     */
+    @Override
+    public int expireHolds(long nowMillis) {
+        if (readOnly) {
+            return 0;
+        }
+
+        int released = 0;
+        for (Account candidate : accounts.values()) {
+            if (!hasExpiredHold(candidate, nowMillis)) {
+                continue;
+            }
+            synchronized (locks[stripeOf(candidate.getAccountId())]) {
+                final Account account = accounts.get(candidate.getAccountId());
+                if (account != null) {
+                    released += account.getHolds().size() - withoutExpiredHolds(account, nowMillis).getHolds().size();
+                }
+            }
+        }
+        return released;
+    }
+
+    /**
+     * Releases the expired holds of an account whose stripe is locked, so they no longer reduce what it has
+     * available. Expiry is only noticed when an account is touched like this or swept by {@link #expireHolds(long)}.
+     */
+    private Account withoutExpiredHolds(Account account) {
+        return account == null || account.getHolds().isEmpty() ? account : withoutExpiredHolds(account, clock.getAsLong());
+    }
+
+    private Account withoutExpiredHolds(Account account, long nowMillis) {
+        final List<Hold> holds = account.getHolds();
+        List<Hold> kept = null;
+        long sequence = 0;
+        for (int i = 0; i < holds.size(); i++) {
+            final Hold hold = holds.get(i);
+            if (hold.isExpired(nowMillis)) {
+                if (kept == null) {
+                    kept = new ArrayList<>(holds.subList(0, i));
+                }
+                sequence = journal.append(JournalRecord.Type.RELEASE, account.getAccountId(), null, hold.getAmount(),
+                        null, null, hold.getHoldId(), 0);
+            } else if (kept != null) {
+                kept.add(hold);
+            }
+        }
+        if (kept == null) {
+            return account;
+        }
 
-        if (account == null) {
-            Throwable accountNotPresentException = new AccountNotPresentException(String.format("Account with id %s is not present.", toAccountId));
-            throw new AccountCreditException(String.format("Exception while crediting the account with key %s", toAccountId), accountNotPresentException);
+        final Account released = account.withHolds(account.getBalance(),
+                kept.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(kept), nextVersion(account, sequence));
+        accounts.put(account.getAccountId(), released);
+        return released;
+    }
+
+    private static boolean hasExpiredHold(Account account, long nowMillis) {
+        for (Hold hold : account.getHolds()) {
+            if (hold.isExpired(nowMillis)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Hold> added(List<Hold> holds, Hold hold) {
+        final List<Hold> added = new ArrayList<>(holds.size() + 1);
+        added.addAll(holds);
+        added.add(hold);
+        return Collections.unmodifiableList(added);
+    }
+
+    /**
+     * The holds with {@code hold} swapped for {@code replacement}, or dropped if that is {@code null}.
+     */
+    private static List<Hold> replaced(List<Hold> holds, Hold hold, Hold replacement) {
+        final List<Hold> replaced = new ArrayList<>(holds.size());
+        for (Hold current : holds) {
+            if (current != hold) {
+                replaced.add(current);
+            } else if (replacement != null) {
+                replaced.add(replacement);
+            }
+        }
+        return replaced.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(replaced);
+    }
+
+    /**
+     * @return the journal sequence of the creation, or {@code -1} if the account already exists
+     */
+    private long insert(Account account) {
+        checkWritable();
+        synchronized (locks[stripeOf(account.getAccountId())]) {
+            if (accounts.containsKey(account.getAccountId())) {
+                return -1;
+            }
+            final long sequence = journal.append(JournalRecord.Type.CREATE, account.getAccountId(), null,
+                    account.getBalance(), account.getCurrency().getCurrencyCode(), null);
+            accounts.put(account.getAccountId(), sequence == 0
+                    ? account : account.withBalance(account.getBalance(), sequence));
+            accountIds.append(account.getAccountId());
+            return sequence;
+        }
+    }
+
+    private void apply(JournalRecord record) {
+        final long sequence = record.getSequence();
+        switch (record.getType()) {
+            case CREATE:
+                if (!accounts.containsKey(record.getAccountId())) {
+                    accountIds.append(record.getAccountId());
+                }
+                accounts.compute(record.getAccountId(), (id, account) -> account != null && account.getVersion() >= sequence
+                        ? account : new Account(id, record.getAmount(), record.getCurrency() == null
+                        ? Account.DEFAULT_CURRENCY : Currency.getInstance(record.getCurrency()), sequence));
+                break;
+            case DEBIT:
+                applyDelta(record.getAccountId(), record.getAmount().negate(), sequence);
+                break;
+            case CREDIT:
+                applyDelta(record.getAccountId(), record.getAmount(), sequence);
+                break;
+            case TRANSFER:
+                applyDelta(record.getAccountId(), record.getAmount().negate(), sequence);
+                applyDelta(record.getToAccountId(), record.getCreditedAmount(), sequence);
+                break;
+            case HOLD:
+                applyChange(record.getAccountId(), sequence, account -> account.withHolds(account.getBalance(),
+                        added(account.getHolds(), new Hold(record.getHoldId(), record.getAmount(), record.getExpiresAtMillis())),
+                        sequence));
+                break;
+            case CAPTURE:
+                applyChange(record.getAccountId(), sequence, account -> {
+                    final Hold hold = account.getHold(record.getHoldId());
+                    final BigDecimal left = hold == null ? BigDecimal.ZERO : hold.getAmount().subtract(record.getAmount());
+                    return account.withHolds(account.getBalance().subtract(record.getAmount()),
+                            replaced(account.getHolds(), hold, left.signum() > 0 ? hold.withAmount(left) : null), sequence);
+                });
+                applyDelta(record.getToAccountId(), record.getCreditedAmount(), sequence);
+                break;
+            case RELEASE:
+                applyChange(record.getAccountId(), sequence, account -> account.withHolds(account.getBalance(),
+                        replaced(account.getHolds(), account.getHold(record.getHoldId()), null), sequence));
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type " + record.getType());
+        }
+    }
+
+    private void applyDelta(String accountId, BigDecimal delta, long sequence) {
+        applyChange(accountId, sequence, account -> account.withBalance(account.getBalance().add(delta), sequence));
+    }
+
+    private void applyChange(String accountId, long sequence, UnaryOperator<Account> change) {
+        accounts.computeIfPresent(accountId, (id, account) -> account.getVersion() >= sequence
+                ? account : change.apply(account));
+    }
+
+    /**
+     * The journal sequence of the change, or with journaling off one more than the account's current version.
+     */
+    private static long nextVersion(Account account, long sequence) {
+        return sequence != 0 ? sequence : account.getVersion() + 1;
+    }
+
+    private static int stripeOf(String accountId) {
+        final int hash = accountId.hashCode();
+        return (hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1);
+    }
+
+    private static BigDecimal balanceAfterDebit(Account account, BigDecimal amount) {
+        final BigDecimal newBalance = account.getBalance().subtract(amount);
+
+        if (newBalance.compareTo(BigDecimal.ZERO) < 0) {
+            throw new AccountDebitException(
+                    String.format("After debit, account will have balance of %s. Account cannot have negative balance",
+                            newBalance));
+        }
+        if (!account.getHolds().isEmpty() && newBalance.compareTo(account.getHeldBalance()) < 0) {
+            throw new AccountDebitException(
+                    String.format("After debit, account will have balance of %s, less than the %s on hold",
+                            newBalance, account.getHeldBalance()));
         }
 
-        return account;
+        return newBalance;
+    }
+
+    private static AccountDebitException debitAccountNotPresent(String fromAccountId) {
+        Throwable accountNotPresentException = new AccountNotPresentException(String.format("Account with id %s is not present.", fromAccountId));
+        return new AccountDebitException(String.format("Account with id %s is not present.", fromAccountId), accountNotPresentException);
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new ReadOnlyReplicaException("Accounts are a read-only replica of the primary");
+        }
+    }
+
+    private static HoldNotPresentException holdNotPresent(String accountId, String holdId) {
+        return new HoldNotPresentException(String.format("Hold %s of account %s is not present.", holdId, accountId));
+    }
+
+    private static AccountCreditException creditAccountNotPresent(String toAccountId) {
+        Throwable accountNotPresentException = new AccountNotPresentException(String.format("Account with id %s is not present.", toAccountId));
+        return new AccountCreditException(String.format("Exception while crediting the account with key %s", toAccountId), accountNotPresentException);
     }
 }
@@ -0,0 +1,684 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.exception.AccountCreditException;
+import com.db.awmd.challenge.exception.AccountDebitException;
+import com.db.awmd.challenge.exception.AccountNotPresentException;
+import com.db.awmd.challenge.exception.CurrencyConversionException;
+import com.db.awmd.challenge.exception.AccountStoreException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+import static com.db.awmd.challenge.repository.MinorUnits.fromMinorUnits;
+import static com.db.awmd.challenge.repository.MinorUnits.openingBalance;
+import static com.db.awmd.challenge.repository.MinorUnits.toMinorUnits;
+
+/**
+ * Keeps every account in a memory-mapped file, so neither ids nor balances are on the heap and the garbage
+ * collector never sees them. Reopening the file after a restart brings all accounts back without loading anything.
+ * <p>
+ * Layout, in native byte order:
+ * <pre>
+ * header  int magic, int format version, int scale, int table capacity, int max accounts, int account count,
+ *         long end of ids, padded to 64 bytes
+ * intents per lock: long from entry, long its new balance, long to entry, long its new balance, int pending,
+ *         padded to 40 bytes; the whole header is {@value #HEADER_BYTES} bytes
+ * table   open addressing with linear probing, one 16-byte entry per slot:
+ *         long balance in minor units, int id hash, int position + 1 (0 marks a free slot)
+ * order   per position in creation order: long offset of the account's id record
+ * ids     per account, 8-byte aligned: int slot, short length, 2 bytes padding, id (UTF-8)
+ * </pre>
+ * The table has at least a third of its slots free, so probes stay short. Accounts are never removed one by one,
+ * so a probe can stop at the first free slot. Creation is serialized and publishes a new account by raising the
+ * account count last, in the file and in a volatile field; lookups take no lock, and treat an entry whose position
+ * is beyond the count they read as free. Balances are read and written under striped locks, as in
+ * {@link AccountsRepositoryPrimitive}, and an account's version is likewise its balance in minor units.
+ * <p>
+ * Enabled with {@code accounts.store=mapped} (the {@code mapped} profile). Writes reach the page cache at once, so
+ * they survive the process stopping or crashing; {@link #close()} forces them to disk, and without it a machine
+ * failure loses what the OS has not written back yet. A transfer writes both new balances into the intent record of
+ * its lower lock before it changes either, and clears the record after both; a record still pending when the file
+ * is opened again is applied then, so a crash between the two legs neither loses nor creates money. As in
+ * {@link AccountsRepositoryPrimitive}, all accounts are in {@link Account#DEFAULT_CURRENCY}.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "accounts.store", havingValue = "mapped")
+public class AccountsRepositoryMapped implements AccountsRepository {
+
+    static final int HEADER_BYTES = 4096;
+
+    static final int MAX_ID_BYTES = 1024;
+
+    private static final int MAGIC = 0x4143434D;
+
+    private static final int FORMAT_VERSION = 2;
+
+    private static final long MAGIC_OFFSET = 0;
+
+    private static final long FORMAT_OFFSET = 4;
+
+    private static final long SCALE_OFFSET = 8;
+
+    private static final long CAPACITY_OFFSET = 12;
+
+    private static final long MAX_ACCOUNTS_OFFSET = 16;
+
+    private static final long COUNT_OFFSET = 20;
+
+    private static final long ID_END_OFFSET = 24;
+
+    private static final long INTENTS_OFFSET = 64;
+
+    private static final int INTENT_BYTES = 40;
+
+    private static final long INTENT_FROM_ENTRY = 0;
+
+    private static final long INTENT_FROM_BALANCE = 8;
+
+    private static final long INTENT_TO_ENTRY = 16;
+
+    private static final long INTENT_TO_BALANCE = 24;
+
+    private static final long INTENT_PENDING = 32;
+
+    private static final int ENTRY_SHIFT = 4;
+
+    private static final long ENTRY_BALANCE = 0;
+
+    private static final long ENTRY_HASH = 8;
+
+    private static final long ENTRY_POSITION = 12;
+
+    private static final long ID_SLOT = 0;
+
+    private static final long ID_LENGTH = 4;
+
+    private static final long ID_BYTES = 8;
+
+    /**
+     * Number of locks guarding the balances in the table, and of intent records. Must be a power of two.
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    private static final int LOCK_MASK = LOCK_STRIPES - 1;
+
+    private final Path path;
+
+    private final MappedFile file;
+
+    private final int scale;
+
+    private final int maxAccounts;
+
+    private final int mask;
+
+    private final long orderStart;
+
+    private final long idsStart;
+
+    private final Stripe[] stripes = new Stripe[LOCK_STRIPES];
+
+    /**
+     * The count in the file, for lookups: everything written to the file before it was raised is visible to a
+     * thread that reads it.
+     */
+    private volatile int accountCount;
+
+    private volatile int fence;
+
+    private Runnable betweenLegs = () -> {
+    };
+
+    public AccountsRepositoryMapped(final Path path, final int maxAccounts) {
+        this(path.toString(), maxAccounts, 32, 2);
+    }
+
+    /**
+     * An existing file is reopened as it is; {@code maxAccounts} and {@code averageIdBytes} only size a new one.
+     *
+     * @param averageIdBytes UTF-8 length of an average account id, which sizes the space reserved for ids
+     */
+    @Autowired
+    public AccountsRepositoryMapped(@Value("${accounts.mapped.file:data/accounts.dat}") final String fileName,
+                                    @Value("${accounts.mapped.max-accounts:1000000}") final int maxAccounts,
+                                    @Value("${accounts.mapped.average-id-bytes:32}") final int averageIdBytes,
+                                    @Value("${accounts.mapped.scale:2}") final int scale) {
+        this.path = Paths.get(fileName);
+        try {
+            final Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            final boolean exists = Files.exists(path) && Files.size(path) > 0;
+            this.file = MappedFile.open(path, exists ? 0 : fileSize(maxAccounts, averageIdBytes));
+        } catch (IOException ioe) {
+            throw new AccountStoreException("Cannot map account file " + path, ioe);
+        }
+
+        if (file.getInt(MAGIC_OFFSET) == 0) {
+            initialize(maxAccounts, scale);
+        } else if (file.getInt(MAGIC_OFFSET) != MAGIC || file.getInt(FORMAT_OFFSET) != FORMAT_VERSION) {
+            throw new AccountStoreException(path + " is not an account file of format " + FORMAT_VERSION);
+        } else if (file.getInt(SCALE_OFFSET) != scale) {
+            throw new AccountStoreException(String.format("%s holds balances with %d decimal places, not %d",
+                    path, file.getInt(SCALE_OFFSET), scale));
+        }
+
+        this.scale = scale;
+        this.maxAccounts = file.getInt(MAX_ACCOUNTS_OFFSET);
+        this.mask = file.getInt(CAPACITY_OFFSET) - 1;
+        this.orderStart = HEADER_BYTES + ((long) (mask + 1) << ENTRY_SHIFT);
+        this.idsStart = orderStart + (long) maxAccounts * 8;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.accountCount = file.getInt(COUNT_OFFSET);
+        final int completed = completeInterruptedTransfers();
+        if (completed > 0) {
+            log.warn("Completed {} transfers interrupted when {} was last open", completed, path);
+        }
+        log.info("Mapped {} of at most {} accounts from {}", getAccountCount(), this.maxAccounts, path);
+    }
+
+    /**
+     * Bytes of a new file: the table at most two thirds full, and ids of the average length, plus room for ids
+     * skipped to the next window rather than split across two.
+     */
+    static long fileSize(int maxAccounts, int averageIdBytes) {
+        final long ids = (long) maxAccounts * align(ID_BYTES + averageIdBytes);
+        final long windowSlack = (ids / MappedFile.WINDOW_SIZE + 1) * align(ID_BYTES + MAX_ID_BYTES);
+        return HEADER_BYTES + ((long) tableCapacity(maxAccounts) << ENTRY_SHIFT) + (long) maxAccounts * 8
+                + ids + windowSlack;
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        final long balance = openingBalance(account, scale);
+        final byte[] id = encode(account.getAccountId());
+
+        synchronized (this) {
+            if (!insert(account.getAccountId(), id, balance)) {
+                throw new DuplicateAccountIdException(
+                        "Account id " + account.getAccountId() + " already exists!");
+            }
+        }
+    }
+
+    /**
+     * Converts balances and ids first, then takes the creation lock once for the whole batch.
+     */
+    @Override
+    public void createAccounts(List<Account> batch, ObjIntConsumer<RuntimeException> rejected) {
+        final long[] balances = new long[batch.size()];
+        final byte[][] ids = new byte[batch.size()][];
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                balances[i] = openingBalance(batch.get(i), scale);
+                ids[i] = encode(batch.get(i).getAccountId());
+            } catch (IllegalArgumentException iae) {
+                rejected.accept(iae, i);
+            }
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < batch.size(); i++) {
+                if (ids[i] != null && !insert(batch.get(i).getAccountId(), ids[i], balances[i])) {
+                    rejected.accept(new DuplicateAccountIdException(
+                            "Account id " + batch.get(i).getAccountId() + " already exists!"), i);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        final long entry = find(accountId);
+        return entry < 0 ? null : account(accountId, balance(entry));
+    }
+
+    @Override
+    public Currency getCurrency(String accountId) {
+        return find(accountId) < 0 ? null : Account.DEFAULT_CURRENCY;
+    }
+
+    @Override
+    public int getAccountCount() {
+        return accountCount;
+    }
+
+    @Override
+    public List<Account> getAccounts(int from, int limit) {
+        final int end = (int) Math.min((long) from + limit, getAccountCount());
+        final List<Account> accounts = new ArrayList<>(Math.max(0, end - from));
+        for (int position = from; position < end; position++) {
+            final long record = file.getLong(orderStart + (long) position * 8);
+            final long entry = entryOffset(file.getInt(record + ID_SLOT));
+            accounts.add(account(readId(record), balance(entry)));
+        }
+        return accounts;
+    }
+
+    /**
+     * Frees every slot. Readers running meanwhile may still see accounts from before.
+     */
+    @Override
+    public synchronized void clearAccounts() {
+        file.clear(HEADER_BYTES, (long) (mask + 1) << ENTRY_SHIFT);
+        file.putLong(ID_END_OFFSET, idsStart);
+        fence();
+        file.putInt(COUNT_OFFSET, 0);
+        accountCount = 0;
+    }
+
+    @Override
+    public Account debitAmount(String fromAccountId, BigDecimal amount) {
+        final long minorUnits = toMinorUnits(amount, scale);
+        final long entry = entryForDebit(fromAccountId);
+        final long balance;
+        synchronized (lockOf(entry)) {
+            balance = checkCovered(entry, minorUnits) - minorUnits;
+            file.putLong(entry + ENTRY_BALANCE, balance);
+        }
+        return account(fromAccountId, balance);
+    }
+
+    @Override
+    public Account creditAmount(String toAccountId, BigDecimal amount) {
+        final long minorUnits = toMinorUnits(amount, scale);
+        final long entry = entryForCredit(toAccountId);
+        final long balance;
+        synchronized (lockOf(entry)) {
+            balance = checkCreditable(entry, minorUnits) + minorUnits;
+            file.putLong(entry + ENTRY_BALANCE, balance);
+        }
+        return account(toAccountId, balance);
+    }
+
+    /**
+     * Locks are always taken lowest index first, so two opposing transfers cannot deadlock. Both legs are checked
+     * before either balance changes.
+     */
+    @Override
+    public TransferResult transfer(String fromAccountId, String toAccountId, BigDecimal amount) {
+        final long minorUnits = toMinorUnits(amount, scale);
+        final long fromEntry = entryForDebit(fromAccountId);
+        final long toEntry = entryForCredit(toAccountId);
+        final int fromLock = lockIndex(fromEntry);
+        final int toLock = lockIndex(toEntry);
+
+        final long fromBalance;
+        final long toBalance;
+        final int lowerLock = Math.min(fromLock, toLock);
+        synchronized (stripes[lowerLock]) {
+            synchronized (stripes[Math.max(fromLock, toLock)]) {
+                if (fromEntry == toEntry) {
+                    fromBalance = checkCovered(fromEntry, minorUnits);
+                    toBalance = fromBalance;
+                } else {
+                    fromBalance = checkCovered(fromEntry, minorUnits) - minorUnits;
+                    toBalance = checkCreditable(toEntry, minorUnits) + minorUnits;
+                    apply(lowerLock, fromEntry, fromBalance, toEntry, toBalance);
+                }
+            }
+        }
+
+        return new TransferResult(account(fromAccountId, fromBalance), account(toAccountId, toBalance));
+    }
+
+    /**
+     * Every account here is in {@link Account#DEFAULT_CURRENCY}, so no transfer converts between currencies.
+     *
+     * @throws CurrencyConversionException always
+     */
+    @Override
+    public TransferResult transfer(String fromAccountId, String toAccountId, BigDecimal debitAmount,
+                                   BigDecimal creditAmount) {
+        throw new CurrencyConversionException(String.format(
+                "Cannot convert between currencies, this store holds every account in %s", Account.DEFAULT_CURRENCY));
+    }
+
+    /**
+     * Writes every change to disk and releases the file. The store must not be used afterwards.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        try {
+            file.force();
+            file.close();
+        } catch (IOException ioe) {
+            throw new AccountStoreException("Cannot close account file " + path, ioe);
+        }
+    }
+
+    /**
+     * Test hook run between the two legs of a transfer.
+     */
+    void setBetweenLegs(Runnable betweenLegs) {
+        this.betweenLegs = betweenLegs;
+    }
+
+    /**
+     * Called with both locks held. Only the holder of {@code lock} writes its intent record, which names both new
+     * balances before either is written; the fences keep the writes reaching the page cache in that order.
+     */
+    private void apply(int lock, long fromEntry, long fromBalance, long toEntry, long toBalance) {
+        final Stripe stripe = stripes[lock];
+        final long intent = intentOffset(lock);
+        file.putLong(intent + INTENT_FROM_ENTRY, fromEntry);
+        file.putLong(intent + INTENT_FROM_BALANCE, fromBalance);
+        file.putLong(intent + INTENT_TO_ENTRY, toEntry);
+        file.putLong(intent + INTENT_TO_BALANCE, toBalance);
+        stripe.fence();
+        file.putInt(intent + INTENT_PENDING, 1);
+        stripe.fence();
+        file.putLong(fromEntry + ENTRY_BALANCE, fromBalance);
+        betweenLegs.run();
+        file.putLong(toEntry + ENTRY_BALANCE, toBalance);
+        stripe.fence();
+        file.putInt(intent + INTENT_PENDING, 0);
+    }
+
+    /**
+     * Writes the balances of every intent left pending, whether the crash came before, between or after the legs.
+     * Nothing else changed those balances before the crash, as the transfer held their locks.
+     *
+     * @return the number of transfers completed
+     */
+    private int completeInterruptedTransfers() {
+        int completed = 0;
+        for (int lock = 0; lock < LOCK_STRIPES; lock++) {
+            final long intent = intentOffset(lock);
+            if (file.getInt(intent + INTENT_PENDING) != 0) {
+                file.putLong(file.getLong(intent + INTENT_FROM_ENTRY) + ENTRY_BALANCE,
+                        file.getLong(intent + INTENT_FROM_BALANCE));
+                file.putLong(file.getLong(intent + INTENT_TO_ENTRY) + ENTRY_BALANCE,
+                        file.getLong(intent + INTENT_TO_BALANCE));
+                fence();
+                file.putInt(intent + INTENT_PENDING, 0);
+                completed++;
+            }
+        }
+        return completed;
+    }
+
+    private void initialize(int maxAccounts, int scale) {
+        file.putInt(FORMAT_OFFSET, FORMAT_VERSION);
+        file.putInt(SCALE_OFFSET, scale);
+        file.putInt(CAPACITY_OFFSET, tableCapacity(maxAccounts));
+        file.putInt(MAX_ACCOUNTS_OFFSET, maxAccounts);
+        file.putLong(ID_END_OFFSET, HEADER_BYTES + ((long) tableCapacity(maxAccounts) << ENTRY_SHIFT)
+                + (long) maxAccounts * 8);
+        fence();
+        file.putInt(MAGIC_OFFSET, MAGIC);
+    }
+
+    /**
+     * Called with the creation lock held. Writes the id record and the entry, then publishes them by raising the
+     * count. An entry left beyond the count by a crash is free, and is overwritten.
+     *
+     * @return false if the account already exists
+     */
+    private boolean insert(String accountId, byte[] id, long balance) {
+        final int hash = hash(accountId);
+        final int count = accountCount;
+        int slot = hash & mask;
+        long entry;
+        while (!isFree(entry = entryOffset(slot), count)) {
+            if (matches(entry, hash, accountId)) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        final int position = count;
+        if (position == maxAccounts) {
+            throw new AccountStoreException(String.format("%s is full with %d accounts", path, maxAccounts));
+        }
+        final long record = idRecordFor(id.length);
+        file.putInt(record + ID_SLOT, slot);
+        file.putShort(record + ID_LENGTH, (short) id.length);
+        for (int i = 0; i < id.length; i++) {
+            file.putByte(record + ID_BYTES + i, id[i]);
+        }
+
+        file.putLong(orderStart + (long) position * 8, record);
+        file.putLong(entry + ENTRY_BALANCE, balance);
+        file.putInt(entry + ENTRY_HASH, hash);
+        file.putInt(entry + ENTRY_POSITION, position + 1);
+        file.putLong(ID_END_OFFSET, record + align(ID_BYTES + id.length));
+        fence();
+        file.putInt(COUNT_OFFSET, position + 1);
+        accountCount = position + 1;
+        return true;
+    }
+
+    /**
+     * Moves to the next window if the record would straddle two.
+     */
+    private long idRecordFor(int idBytes) {
+        final long length = align(ID_BYTES + idBytes);
+        long record = file.getLong(ID_END_OFFSET);
+        if (record >>> MappedFile.WINDOW_SHIFT != (record + length - 1) >>> MappedFile.WINDOW_SHIFT) {
+            record = (record >>> MappedFile.WINDOW_SHIFT) + 1 << MappedFile.WINDOW_SHIFT;
+        }
+        if (record + length > file.size()) {
+            throw new AccountStoreException(String.format("%s has no room left for account ids", path));
+        }
+        return record;
+    }
+
+    /**
+     * @return the offset of the account's entry, or {@code -1} if there is none
+     */
+    private long find(String accountId) {
+        final int count = accountCount;
+        final int hash = hash(accountId);
+        int slot = hash & mask;
+        while (true) {
+            final long entry = entryOffset(slot);
+            if (isFree(entry, count)) {
+                return -1;
+            }
+            if (matches(entry, hash, accountId)) {
+                return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean isFree(long entry, int count) {
+        final int position = file.getInt(entry + ENTRY_POSITION);
+        return position == 0 || position > count;
+    }
+
+    /**
+     * Compares ASCII ids character by character, so the common case allocates nothing.
+     */
+    private boolean matches(long entry, int hash, String accountId) {
+        if (file.getInt(entry + ENTRY_HASH) != hash) {
+            return false;
+        }
+
+        final int position = file.getInt(entry + ENTRY_POSITION) - 1;
+        final long record = file.getLong(orderStart + (long) position * 8);
+        final int length = file.getShort(record + ID_LENGTH);
+        if (length == accountId.length()) {
+            int i = 0;
+            byte b;
+            while (i < length && (b = file.getByte(record + ID_BYTES + i)) >= 0 && b == accountId.charAt(i)) {
+                i++;
+            }
+            if (i == length) {
+                return true;
+            }
+            if (file.getByte(record + ID_BYTES + i) >= 0 && accountId.charAt(i) < 0x80) {
+                return false;
+            }
+        }
+        return readId(record).equals(accountId);
+    }
+
+    private String readId(long record) {
+        final byte[] id = new byte[file.getShort(record + ID_LENGTH)];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = file.getByte(record + ID_BYTES + i);
+        }
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    private long entryForDebit(String fromAccountId) {
+        final long entry = find(fromAccountId);
+        if (entry < 0) {
+            throw debitAccountNotPresent(fromAccountId);
+        }
+        return entry;
+    }
+
+    private long entryForCredit(String toAccountId) {
+        final long entry = find(toAccountId);
+        if (entry < 0) {
+            throw creditAccountNotPresent(toAccountId);
+        }
+        return entry;
+    }
+
+    private long balance(long entry) {
+        synchronized (lockOf(entry)) {
+            return file.getLong(entry + ENTRY_BALANCE);
+        }
+    }
+
+    /**
+     * Called with the entry's lock held.
+     */
+    private long checkCovered(long entry, long minorUnits) {
+        final long balance = file.getLong(entry + ENTRY_BALANCE);
+        if (balance < minorUnits) {
+            throw negativeBalance(balance - minorUnits);
+        }
+        return balance;
+    }
+
+    /**
+     * Called with the entry's lock held.
+     */
+    private long checkCreditable(long entry, long minorUnits) {
+        final long balance = file.getLong(entry + ENTRY_BALANCE);
+        if (balance > Long.MAX_VALUE - minorUnits) {
+            throw balanceOverflow();
+        }
+        return balance;
+    }
+
+    private Stripe lockOf(long entry) {
+        return stripes[lockIndex(entry)];
+    }
+
+    private static int lockIndex(long entry) {
+        return (int) ((entry - HEADER_BYTES) >>> ENTRY_SHIFT) & LOCK_MASK;
+    }
+
+    /**
+     * Keeps the writes to the file made before it ahead of those made after it, so a process that stops in between
+     * leaves the earlier ones in the page cache without the later ones. A volatile write followed by a volatile
+     * read is the one ordering Java 8 offers for this without {@code Unsafe}.
+     */
+    private void fence() {
+        fence = 0;
+        final int ignored = fence;
+    }
+
+    private Account account(String accountId, long minorUnits) {
+        return new Account(accountId, fromMinorUnits(minorUnits, scale), minorUnits);
+    }
+
+    private static long intentOffset(int lock) {
+        return INTENTS_OFFSET + (long) lock * INTENT_BYTES;
+    }
+
+    private static long entryOffset(int slot) {
+        return HEADER_BYTES + ((long) slot << ENTRY_SHIFT);
+    }
+
+    private static int tableCapacity(int maxAccounts) {
+        final long wanted = (long) maxAccounts * 3 / 2 + 1;
+        if (wanted > 1 << 30) {
+            throw new IllegalArgumentException("At most " + (1 << 30) / 3 * 2 + " accounts fit one file");
+        }
+        return Integer.highestOneBit((int) wanted - 1) << 1;
+    }
+
+    private static int hash(String accountId) {
+        final int hash = accountId.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    private static byte[] encode(String accountId) {
+        final byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException(
+                    String.format("Account id longer than %d bytes: %s", MAX_ID_BYTES, accountId));
+        }
+        return id;
+    }
+
+    private AccountDebitException negativeBalance(long newBalance) {
+        return new AccountDebitException(
+                String.format("After debit, account will have balance of %s. Account cannot have negative balance",
+                        fromMinorUnits(newBalance, scale)));
+    }
+
+    private AccountCreditException balanceOverflow() {
+        return new AccountCreditException(String.format(
+                "After credit, account will have balance above %s. Account cannot hold a larger balance",
+                fromMinorUnits(Long.MAX_VALUE, scale)));
+    }
+
+    private static AccountDebitException debitAccountNotPresent(String fromAccountId) {
+        Throwable accountNotPresentException = new AccountNotPresentException(String.format("Account with id %s is not present.", fromAccountId));
+        return new AccountDebitException(String.format("Account with id %s is not present.", fromAccountId), accountNotPresentException);
+    }
+
+    private static AccountCreditException creditAccountNotPresent(String toAccountId) {
+        Throwable accountNotPresentException = new AccountNotPresentException(String.format("Account with id %s is not present.", toAccountId));
+        return new AccountCreditException(String.format("Exception while crediting the account with key %s", toAccountId), accountNotPresentException);
+    }
+
+    /**
+     * Lock for the balances of the entries mapped to it and for the intent record of the same index.
+     */
+    private static final class Stripe {
+
+        private volatile int fence;
+
+        /**
+         * Same as {@link AccountsRepositoryMapped#fence()}, on a field that only threads holding this lock write.
+         */
+        void fence() {
+            fence = 0;
+            final int ignored = fence;
+        }
+    }
+}
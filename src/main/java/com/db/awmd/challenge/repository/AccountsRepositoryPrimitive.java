@@ -0,0 +1,492 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.exception.AccountCreditException;
+import com.db.awmd.challenge.exception.AccountDebitException;
+import com.db.awmd.challenge.exception.AccountNotPresentException;
+import com.db.awmd.challenge.exception.CurrencyConversionException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ObjIntConsumer;
+
+import static com.db.awmd.challenge.repository.MinorUnits.fromMinorUnits;
+import static com.db.awmd.challenge.repository.MinorUnits.openingBalance;
+import static com.db.awmd.challenge.repository.MinorUnits.toMinorUnits;
+
+/**
+ * Keeps balances as {@code long} minor units in chunked {@link AtomicLongArray}s. Every account id is interned to a
+ * slot on creation; debits, credits and transfers update their slots under striped locks, and the balances
+ * themselves never create garbage. {@link Account} objects are only built for what an operation returns, so a
+ * transfer allocates its {@link TransferResult} and nothing else. Reads take no lock.
+ * <p>
+ * Enabled with {@code accounts.store=primitive} (the {@code primitive} profile). Amounts must fit the configured
+ * scale and balances must stay within {@code Long.MAX_VALUE} minor units; a credit that would take a balance past
+ * that fails with {@link AccountCreditException}. All accounts are in {@link Account#DEFAULT_CURRENCY}, so there is
+ * nothing to convert between them.
+ * <p>
+ * Accounts marked striped keep their balance in a {@link StripedBalance}, so a hot account can take concurrent
+ * credits without every thread updating the same slot or lock. The ids in {@code accounts.primitive.striped-accounts}
+ * are striped as soon as they are created. A transfer between two striped accounts is the one transfer that is not a
+ * single atomic step: if the credit finds no room, which only happens within a few transfers of the maximum
+ * balance, the debited amount is put back.
+ * <p>
+ * An account's version is its balance in minor units. The balance alone determines the account's state, and a
+ * separate counter would cost every update a second atomic write.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "accounts.store", havingValue = "primitive")
+public class AccountsRepositoryPrimitive implements AccountsRepository {
+
+    private static final int CHUNK_SHIFT = 12;
+
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * Number of locks guarding updates of plain slots. Must be a power of two.
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    private static final int LOCK_MASK = LOCK_STRIPES - 1;
+
+    private final int scale;
+
+    private final int stripes;
+
+    private final Set<String> stripedAccountIds;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    /**
+     * Slot of each account. A striped account maps to {@code ~i} instead, for the balance at index {@code i} of
+     * {@link #stripedBalances}.
+     */
+    private final Map<String, Integer> slots;
+
+    /**
+     * Copied on write under the creation lock.
+     */
+    private volatile StripedBalance[] stripedBalances = new StripedBalance[0];
+
+    /**
+     * Position of each account is also its slot.
+     */
+    private final AccountIdLog accountIds = new AccountIdLog();
+
+    private volatile AtomicLongArray[] chunks = new AtomicLongArray[16];
+
+    private int nextSlot;
+
+    public AccountsRepositoryPrimitive() {
+        this(2, 0);
+    }
+
+    public AccountsRepositoryPrimitive(final int scale, final int stripes) {
+        this(scale, stripes, 16, new String[0]);
+    }
+
+    /**
+     * @param stripes           cells per striped account; 0 uses the number of available processors, rounded up to
+     *                          a power of two
+     * @param initialCapacity   number of accounts the id index is sized for up front
+     * @param stripedAccountIds accounts to stripe on creation
+     */
+    @Autowired
+    public AccountsRepositoryPrimitive(@Value("${accounts.primitive.scale:2}") final int scale,
+                                       @Value("${accounts.primitive.stripes:0}") final int stripes,
+                                       @Value("${accounts.initial-capacity:16}") final int initialCapacity,
+                                       @Value("${accounts.primitive.striped-accounts:}") final String[] stripedAccountIds) {
+        this.scale = scale;
+        this.stripedAccountIds = new HashSet<>(Arrays.asList(stripedAccountIds));
+        this.slots = new ConcurrentHashMap<>(initialCapacity);
+        final int requested = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors();
+        this.stripes = Math.max(2, Integer.highestOneBit(requested - 1) << 1);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        final long balance = openingBalance(account, scale);
+
+        synchronized (this) {
+            if (!insert(account.getAccountId(), balance)) {
+                throw new DuplicateAccountIdException(
+                        "Account id " + account.getAccountId() + " already exists!");
+            }
+        }
+    }
+
+    /**
+     * Converts the balances first, then takes the creation lock once for the whole batch.
+     */
+    @Override
+    public void createAccounts(List<Account> batch, ObjIntConsumer<RuntimeException> rejected) {
+        final long[] balances = new long[batch.size()];
+        final boolean[] convertible = new boolean[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                balances[i] = openingBalance(batch.get(i), scale);
+                convertible[i] = true;
+            } catch (IllegalArgumentException iae) {
+                rejected.accept(iae, i);
+            }
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < batch.size(); i++) {
+                if (convertible[i] && !insert(batch.get(i).getAccountId(), balances[i])) {
+                    rejected.accept(new DuplicateAccountIdException(
+                            "Account id " + batch.get(i).getAccountId() + " already exists!"), i);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        final Integer slot = slots.get(accountId);
+        return slot == null ? null : account(accountId, balanceOf(slot));
+    }
+
+    @Override
+    public Currency getCurrency(String accountId) {
+        return slots.containsKey(accountId) ? Account.DEFAULT_CURRENCY : null;
+    }
+
+    @Override
+    public int getAccountCount() {
+        return accountIds.size();
+    }
+
+    @Override
+    public List<Account> getAccounts(int from, int limit) {
+        return accountIds.page(from, limit, this::getAccount);
+    }
+
+    /**
+     * Spreads the balance of a heavily used account over several cells, so concurrent credits to it do not contend.
+     * Reads return the sum of the cells.
+     *
+     * @throws IllegalArgumentException if the balance is more than the first cell may hold
+     */
+    public synchronized void markStriped(String accountId) {
+        final Integer slot = slots.get(accountId);
+        if (slot == null) {
+            throw new AccountNotPresentException(String.format("Account with id %s is not present.", accountId));
+        }
+
+        if (slot >= 0 && !stripe(accountId, slot)) {
+            throw new IllegalArgumentException(String.format(
+                    "Account %s holds more than a balance striped %d ways can", accountId, stripes));
+        }
+    }
+
+    @Override
+    public synchronized void clearAccounts() {
+        stripedBalances = new StripedBalance[0];
+        slots.clear();
+        accountIds.clear();
+        chunks = new AtomicLongArray[16];
+        nextSlot = 0;
+    }
+
+    @Override
+    public Account debitAmount(String fromAccountId, BigDecimal amount) {
+        final long minorUnits = toMinorUnits(amount, scale);
+        while (true) {
+            final int slot = slotForDebit(fromAccountId);
+            if (slot < 0) {
+                return account(fromAccountId, debitStriped(slot, minorUnits));
+            }
+
+            synchronized (lockOf(slot)) {
+                if (isCurrent(fromAccountId, slot)) {
+                    final long balance = checkCovered(slot, minorUnits) - minorUnits;
+                    set(slot, balance);
+                    return account(fromAccountId, balance);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Account creditAmount(String toAccountId, BigDecimal amount) {
+        final long minorUnits = toMinorUnits(amount, scale);
+        while (true) {
+            final int slot = slotForCredit(toAccountId);
+            if (slot < 0) {
+                return account(toAccountId, creditStriped(slot, minorUnits));
+            }
+
+            synchronized (lockOf(slot)) {
+                if (isCurrent(toAccountId, slot)) {
+                    final long balance = checkCreditable(slot, minorUnits) + minorUnits;
+                    set(slot, balance);
+                    return account(toAccountId, balance);
+                }
+            }
+        }
+    }
+
+    /**
+     * Locks the plain slots of both accounts, lowest lock first, and checks both legs before changing either, so
+     * the debit and the credit happen together. A striped account takes no lock; its leg is the one that is tried
+     * first, and the plain leg, already known to succeed, follows.
+     */
+    @Override
+    public TransferResult transfer(String fromAccountId, String toAccountId, BigDecimal amount) {
+        final long minorUnits = toMinorUnits(amount, scale);
+        while (true) {
+            final int fromSlot = slotForDebit(fromAccountId);
+            final int toSlot = slotForCredit(toAccountId);
+
+            if (fromSlot == toSlot) {
+                final long balance = checkCovered(fromSlot, minorUnits);
+                return new TransferResult(account(fromAccountId, balance), account(toAccountId, balance));
+            }
+            if (fromSlot < 0 && toSlot < 0) {
+                return transferStriped(fromAccountId, fromSlot, toAccountId, toSlot, minorUnits);
+            }
+
+            final int fromLock = (fromSlot < 0 ? toSlot : fromSlot) & LOCK_MASK;
+            final int toLock = (toSlot < 0 ? fromSlot : toSlot) & LOCK_MASK;
+            synchronized (locks[Math.min(fromLock, toLock)]) {
+                synchronized (locks[Math.max(fromLock, toLock)]) {
+                    if (isCurrent(fromAccountId, fromSlot) && isCurrent(toAccountId, toSlot)) {
+                        return transferLocked(fromAccountId, fromSlot, toAccountId, toSlot, minorUnits);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Every account here is in {@link Account#DEFAULT_CURRENCY}, so no transfer converts between currencies.
+     *
+     * @throws CurrencyConversionException always
+     */
+    @Override
+    public TransferResult transfer(String fromAccountId, String toAccountId, BigDecimal debitAmount,
+                                   BigDecimal creditAmount) {
+        throw new CurrencyConversionException(String.format(
+                "Cannot convert between currencies, this store holds every account in %s", Account.DEFAULT_CURRENCY));
+    }
+
+    /**
+     * Called with the locks of both plain slots held.
+     */
+    private TransferResult transferLocked(String fromAccountId, int fromSlot, String toAccountId, int toSlot,
+                                          long minorUnits) {
+        final long fromBalance;
+        final long toBalance;
+        if (fromSlot < 0) {
+            toBalance = checkCreditable(toSlot, minorUnits) + minorUnits;
+            fromBalance = debitStriped(fromSlot, minorUnits);
+            set(toSlot, toBalance);
+        } else if (toSlot < 0) {
+            fromBalance = checkCovered(fromSlot, minorUnits) - minorUnits;
+            toBalance = creditStriped(toSlot, minorUnits);
+            set(fromSlot, fromBalance);
+        } else {
+            fromBalance = checkCovered(fromSlot, minorUnits) - minorUnits;
+            toBalance = checkCreditable(toSlot, minorUnits) + minorUnits;
+            set(fromSlot, fromBalance);
+            set(toSlot, toBalance);
+        }
+        return new TransferResult(account(fromAccountId, fromBalance), account(toAccountId, toBalance));
+    }
+
+    /**
+     * Striped balances take concurrent updates without a lock, so nothing can hold the credit's room while the
+     * debit runs. A credit that finds no room, which takes a balance within a few transfers of the maximum, puts
+     * the debited amount back.
+     */
+    private TransferResult transferStriped(String fromAccountId, int fromSlot, String toAccountId, int toSlot,
+                                           long minorUnits) {
+        final long fromBalance = debitStriped(fromSlot, minorUnits);
+        final StripedBalance to = stripedBalances[~toSlot];
+        if (!to.credit(minorUnits)) {
+            stripedBalances[~fromSlot].putBack(minorUnits);
+            throw balanceOverflow();
+        }
+        return new TransferResult(account(fromAccountId, fromBalance), account(toAccountId, to.sum()));
+    }
+
+    /**
+     * Called with the creation lock held.
+     *
+     * @return false if the account already exists
+     */
+    private boolean insert(String accountId, long balance) {
+        if (slots.containsKey(accountId)) {
+            return false;
+        }
+
+        final int slot = nextSlot++;
+        chunkFor(slot).set(slot & CHUNK_MASK, balance);
+        slots.put(accountId, slot);
+        accountIds.append(accountId);
+        if (stripedAccountIds.contains(accountId) && !stripe(accountId, slot)) {
+            log.warn("Not striping account {}, whose balance is more than a balance striped {} ways can hold",
+                    accountId, stripes);
+        }
+        return true;
+    }
+
+    /**
+     * Called with the creation lock held.
+     *
+     * @return false, leaving the account as it is, if its balance does not fit the first cell
+     */
+    private boolean stripe(String accountId, int slot) {
+        final StripedBalance stripedBalance = new StripedBalance(chunks[slot >>> CHUNK_SHIFT], slot & CHUNK_MASK,
+                stripes);
+        // Updates of the plain slot hold its lock and then check the slot is still current, so none of them runs
+        // once the account is striped.
+        synchronized (lockOf(slot)) {
+            if (!stripedBalance.withinCaps()) {
+                return false;
+            }
+            final StripedBalance[] current = Arrays.copyOf(stripedBalances, stripedBalances.length + 1);
+            current[current.length - 1] = stripedBalance;
+            stripedBalances = current;
+            slots.put(accountId, ~(current.length - 1));
+            return true;
+        }
+    }
+
+    private int slotForDebit(String fromAccountId) {
+        final Integer slot = slots.get(fromAccountId);
+        if (slot == null) {
+            throw debitAccountNotPresent(fromAccountId);
+        }
+        return slot;
+    }
+
+    private int slotForCredit(String toAccountId) {
+        final Integer slot = slots.get(toAccountId);
+        if (slot == null) {
+            throw creditAccountNotPresent(toAccountId);
+        }
+        return slot;
+    }
+
+    private Account account(String accountId, long minorUnits) {
+        return new Account(accountId, fromMinorUnits(minorUnits, scale), minorUnits);
+    }
+
+    private long balanceOf(int slot) {
+        return slot < 0 ? stripedBalances[~slot].sum() : chunks[slot >>> CHUNK_SHIFT].get(slot & CHUNK_MASK);
+    }
+
+    private Object lockOf(int slot) {
+        return locks[slot & LOCK_MASK];
+    }
+
+    /**
+     * Whether the account still has the slot it was looked up with, rather than having been striped since.
+     */
+    private boolean isCurrent(String accountId, int slot) {
+        final Integer current = slots.get(accountId);
+        return slot < 0 || current != null && current == slot;
+    }
+
+    private long checkCovered(int slot, long minorUnits) {
+        final long balance = balanceOf(slot);
+        if (balance < minorUnits) {
+            throw negativeBalance(balance - minorUnits);
+        }
+        return balance;
+    }
+
+    /**
+     * Called with the slot's lock held.
+     */
+    private long checkCreditable(int slot, long minorUnits) {
+        final long balance = balanceOf(slot);
+        if (balance > Long.MAX_VALUE - minorUnits) {
+            throw balanceOverflow();
+        }
+        return balance;
+    }
+
+    /**
+     * Called with the slot's lock held, which every update of a plain slot takes.
+     */
+    private void set(int slot, long balance) {
+        chunks[slot >>> CHUNK_SHIFT].set(slot & CHUNK_MASK, balance);
+    }
+
+    private long debitStriped(int slot, long minorUnits) {
+        final StripedBalance stripedBalance = stripedBalances[~slot];
+        if (!stripedBalance.debit(minorUnits)) {
+            throw negativeBalance(stripedBalance.sum() - minorUnits);
+        }
+        return stripedBalance.sum();
+    }
+
+    private long creditStriped(int slot, long minorUnits) {
+        final StripedBalance stripedBalance = stripedBalances[~slot];
+        if (!stripedBalance.credit(minorUnits)) {
+            throw balanceOverflow();
+        }
+        return stripedBalance.sum();
+    }
+
+    /**
+     * Called with the creation lock held.
+     */
+    private AtomicLongArray chunkFor(int slot) {
+        final int chunkIndex = slot >>> CHUNK_SHIFT;
+        AtomicLongArray[] current = chunks;
+        if (chunkIndex >= current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        if (current[chunkIndex] == null) {
+            current[chunkIndex] = new AtomicLongArray(CHUNK_SIZE);
+        }
+        chunks = current;
+        return current[chunkIndex];
+    }
+
+    private AccountDebitException negativeBalance(long newBalance) {
+        return new AccountDebitException(
+                String.format("After debit, account will have balance of %s. Account cannot have negative balance",
+                        fromMinorUnits(newBalance, scale)));
+    }
+
+    private AccountCreditException balanceOverflow() {
+        return new AccountCreditException(String.format(
+                "After credit, account will have balance above %s. Account cannot hold a larger balance",
+                fromMinorUnits(Long.MAX_VALUE, scale)));
+    }
+
+    private static AccountDebitException debitAccountNotPresent(String fromAccountId) {
+        Throwable accountNotPresentException = new AccountNotPresentException(String.format("Account with id %s is not present.", fromAccountId));
+        return new AccountDebitException(String.format("Account with id %s is not present.", fromAccountId), accountNotPresentException);
+    }
+
+    private static AccountCreditException creditAccountNotPresent(String toAccountId) {
+        Throwable accountNotPresentException = new AccountNotPresentException(String.format("Account with id %s is not present.", toAccountId));
+        return new AccountCreditException(String.format("Exception while crediting the account with key %s", toAccountId), accountNotPresentException);
+    }
+}
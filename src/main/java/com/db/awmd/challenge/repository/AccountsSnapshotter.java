@@ -0,0 +1,69 @@
+package com.db.awmd.challenge.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically snapshots the in-memory accounts so that startup only replays the journal written since.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "accounts.store", havingValue = "in-memory", matchIfMissing = true)
+public class AccountsSnapshotter {
+
+    private final AccountsRepositoryInMemory accountsRepository;
+
+    private final long intervalMillis;
+
+    private ScheduledExecutorService executor;
+
+    @Autowired
+    public AccountsSnapshotter(final AccountsRepositoryInMemory accountsRepository,
+                               @Value("${journal.snapshot.interval-millis:300000}") final long intervalMillis) {
+        this.accountsRepository = accountsRepository;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (intervalMillis <= 0 || !accountsRepository.isSnapshotEnabled()) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "accounts-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::snapshot, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lets a snapshot in progress finish, so no half-written file is left behind.
+     */
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            executor = null;
+        }
+    }
+
+    private void snapshot() {
+        try {
+            accountsRepository.snapshot();
+        } catch (RuntimeException re) {
+            log.error("Exception while writing the accounts snapshot.", re);
+        }
+    }
+}
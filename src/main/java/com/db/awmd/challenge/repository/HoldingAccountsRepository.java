@@ -0,0 +1,48 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferResult;
+
+import java.math.BigDecimal;
+
+/**
+ * A store that can set part of an account's balance aside. Only {@link AccountsRepositoryInMemory} can, so the hold
+ * endpoints exist only with {@code accounts.store=in-memory}.
+ */
+public interface HoldingAccountsRepository extends AccountsRepository {
+
+    /**
+     * Sets {@code amount} of the account's available balance aside until {@code expiresAtMillis}. Transfers and
+     * debits can only take what is not held.
+     *
+     * @return the account with the hold
+     * @throws com.db.awmd.challenge.exception.AccountDebitException if the account does not exist or has less than
+     * {@code amount} available
+     */
+    Account placeHold(String accountId, String holdId, BigDecimal amount, long expiresAtMillis);
+
+    /**
+     * Moves {@code debitAmount} of a hold to {@code toAccountId}, which receives {@code creditAmount}, as one atomic
+     * step. What is left of the hold stays held.
+     *
+     * @throws com.db.awmd.challenge.exception.HoldNotPresentException if the hold does not exist or has expired
+     * @throws com.db.awmd.challenge.exception.AccountDebitException if {@code debitAmount} is more than the hold
+     */
+    TransferResult captureHold(String accountId, String holdId, String toAccountId, BigDecimal debitAmount,
+                               BigDecimal creditAmount);
+
+    /**
+     * Gives back what is left of a hold.
+     *
+     * @return the account without the hold
+     * @throws com.db.awmd.challenge.exception.HoldNotPresentException if the hold does not exist or has expired
+     */
+    Account releaseHold(String accountId, String holdId);
+
+    /**
+     * Releases every hold that expired by {@code nowMillis}.
+     *
+     * @return the number of holds released
+     */
+    int expireHolds(long nowMillis);
+}
@@ -0,0 +1,140 @@
+package com.db.awmd.challenge.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file mapped into memory in windows of 1 GiB and addressed by {@code long} offsets, so it can be larger than one
+ * {@link MappedByteBuffer}. Values are read and written in place with the buffers' absolute accessors, which give
+ * no atomicity or ordering beyond plain field access: callers guard shared values with their own locks, and order
+ * writes that must reach the page cache in sequence themselves.
+ * <p>
+ * Ints and longs must be aligned to their size, and no value may straddle a window boundary. Values are in native
+ * byte order, so a file only moves between machines of the same endianness.
+ */
+final class MappedFile implements Closeable {
+
+    static final int WINDOW_SHIFT = 30;
+
+    static final long WINDOW_SIZE = 1L << WINDOW_SHIFT;
+
+    private static final long WINDOW_MASK = WINDOW_SIZE - 1;
+
+    private static final byte[] ZEROS = new byte[4096];
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer[] windows;
+
+    private final long size;
+
+    private MappedFile(FileChannel channel, MappedByteBuffer[] windows, long size) {
+        this.channel = channel;
+        this.windows = windows;
+        this.size = size;
+    }
+
+    /**
+     * Maps the file, creating it or growing it to {@code size} bytes first. New bytes read as zero and take no disk
+     * space until written on file systems with sparse files.
+     */
+    static MappedFile open(Path path, long size) throws IOException {
+        final FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            final long fileSize = Math.max(size, channel.size());
+            final MappedByteBuffer[] windows = new MappedByteBuffer[(int) ((fileSize + WINDOW_MASK) >>> WINDOW_SHIFT)];
+            for (int i = 0; i < windows.length; i++) {
+                final long position = (long) i << WINDOW_SHIFT;
+                windows[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.min(WINDOW_SIZE, fileSize - position));
+                windows[i].order(ByteOrder.nativeOrder());
+            }
+            return new MappedFile(channel, windows, fileSize);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    int getInt(long offset) {
+        return window(offset).getInt(index(offset));
+    }
+
+    void putInt(long offset, int value) {
+        window(offset).putInt(index(offset), value);
+    }
+
+    long getLong(long offset) {
+        return window(offset).getLong(index(offset));
+    }
+
+    void putLong(long offset, long value) {
+        window(offset).putLong(index(offset), value);
+    }
+
+    short getShort(long offset) {
+        return window(offset).getShort(index(offset));
+    }
+
+    void putShort(long offset, short value) {
+        window(offset).putShort(index(offset), value);
+    }
+
+    byte getByte(long offset) {
+        return window(offset).get(index(offset));
+    }
+
+    void putByte(long offset, byte value) {
+        window(offset).put(index(offset), value);
+    }
+
+    /**
+     * Sets {@code length} bytes from {@code offset} on to zero, across windows if needed.
+     */
+    void clear(long offset, long length) {
+        long position = offset;
+        final long end = offset + length;
+        while (position < end) {
+            final ByteBuffer window = window(position).duplicate();
+            window.position(index(position));
+            final int chunk = (int) Math.min(Math.min(end - position, ZEROS.length), window.remaining());
+            window.put(ZEROS, 0, chunk);
+            position += chunk;
+        }
+    }
+
+    /**
+     * Writes every changed page to the storage device.
+     */
+    void force() {
+        for (MappedByteBuffer window : windows) {
+            window.force();
+        }
+    }
+
+    /**
+     * The mappings stay valid until they are garbage collected, so callers must stop accessing the file first.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private MappedByteBuffer window(long offset) {
+        return windows[(int) (offset >>> WINDOW_SHIFT)];
+    }
+
+    private static int index(long offset) {
+        return (int) (offset & WINDOW_MASK);
+    }
+}
@@ -0,0 +1,52 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+
+import java.math.BigDecimal;
+
+/**
+ * Conversions between {@link BigDecimal} amounts and balances held as a {@code long} count of minor units
+ * (for example cents at scale 2).
+ */
+final class MinorUnits {
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+            10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+            1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L};
+
+    private MinorUnits() {
+    }
+
+    /**
+     * Whole amounts are multiplied out without creating anything; others go through one intermediate
+     * {@link BigDecimal}, but no {@link java.math.BigInteger} when they fit a {@code long}.
+     */
+    static long toMinorUnits(BigDecimal amount, int scale) {
+        try {
+            if (amount.scale() <= 0 && scale < POWERS_OF_TEN.length) {
+                return Math.multiplyExact(amount.longValueExact(), POWERS_OF_TEN[scale]);
+            }
+            return amount.movePointRight(scale).longValueExact();
+        } catch (ArithmeticException ae) {
+            throw new IllegalArgumentException(
+                    String.format("Amount %s cannot be represented with %d decimal places", amount, scale), ae);
+        }
+    }
+
+    /**
+     * The opening balance of a new account, for the stores that only hold accounts in
+     * {@link Account#DEFAULT_CURRENCY}.
+     */
+    static long openingBalance(Account account, int scale) {
+        if (!Account.DEFAULT_CURRENCY.equals(account.getCurrency())) {
+            throw new IllegalArgumentException(String.format("Account %s is in %s, but this store only holds %s accounts",
+                    account.getAccountId(), account.getCurrency(), Account.DEFAULT_CURRENCY));
+        }
+        return toMinorUnits(account.getBalance(), scale);
+    }
+
+    static BigDecimal fromMinorUnits(long minorUnits, int scale) {
+        return BigDecimal.valueOf(minorUnits, scale);
+    }
+}
@@ -0,0 +1,191 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The balance of a hot account, split over several cells in the manner of
+ * {@link java.util.concurrent.atomic.LongAdder}. Each thread credits and debits its own cell, so concurrent updates
+ * do not contend on one memory location. The account's original slot stays the first cell, so updates that resolved
+ * the slot before the account was striped still land in the balance.
+ * <p>
+ * Every cell is kept non-negative on its own, which keeps the total non-negative. A debit larger than its cell
+ * holds gathers the rest from the other cells under a lock; if they do not hold enough either, everything gathered
+ * is put back and the debit fails. A credit landing on a cell the gatherer already visited can make such a debit
+ * fail even though the total briefly covered it.
+ * <p>
+ * Every cell is also capped so that the caps add up to {@code Long.MAX_VALUE}, which keeps the total from
+ * overflowing. A credit goes to the first cell, starting from the thread's own, with room for all of it, and fails
+ * if none has; the total can then be short of the maximum by up to the amount credited.
+ */
+final class StripedBalance {
+
+    /**
+     * Longs per 64-byte cache line, so neighbouring cells never share a line.
+     */
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray baseChunk;
+
+    private final int baseIndex;
+
+    /**
+     * Cells 1 to {@code mask}, each at the start of its own cache line. Cell 0 is the account's slot.
+     */
+    private final AtomicLongArray cells;
+
+    private final int mask;
+
+    private final long cellCap;
+
+    /**
+     * The first cell takes what the other caps leave of {@code Long.MAX_VALUE}.
+     */
+    private final long baseCap;
+
+    /**
+     * @param stripes number of cells including the slot, a power of two
+     */
+    StripedBalance(AtomicLongArray baseChunk, int baseIndex, int stripes) {
+        this.baseChunk = baseChunk;
+        this.baseIndex = baseIndex;
+        this.cells = new AtomicLongArray(stripes * PADDING);
+        this.mask = stripes - 1;
+        this.cellCap = Long.MAX_VALUE / stripes;
+        this.baseCap = Long.MAX_VALUE - mask * cellCap;
+    }
+
+    /**
+     * Not an atomic snapshot while updates are running.
+     */
+    long sum() {
+        long sum = baseChunk.get(baseIndex);
+        for (int cell = 1; cell <= mask; cell++) {
+            sum += cells.get(cell * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * @return false, with the balance unchanged, if no cell has room for {@code minorUnits}
+     */
+    boolean credit(long minorUnits) {
+        final int local = localCell();
+        for (int i = 0; i <= mask; i++) {
+            if (add((local + i) & mask, minorUnits)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the slot's balance fits the first cell's cap, as it must before the account is striped.
+     */
+    boolean withinCaps() {
+        return get(0) <= baseCap;
+    }
+
+    /**
+     * Whether some cell has room for {@code minorUnits} right now.
+     */
+    boolean canCredit(long minorUnits) {
+        for (int cell = 0; cell <= mask; cell++) {
+            if (get(cell) <= cap(cell) - minorUnits) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return false, with the balance unchanged, if the account does not hold {@code minorUnits}
+     */
+    boolean debit(long minorUnits) {
+        final int local = localCell();
+        final long taken = take(local, minorUnits);
+        return taken == minorUnits || gather(local, minorUnits, taken);
+    }
+
+    private synchronized boolean gather(int local, long minorUnits, long taken) {
+        long gathered = taken;
+        for (int i = 0; i <= mask && gathered < minorUnits; i++) {
+            gathered += take((local + i) & mask, minorUnits - gathered);
+        }
+
+        if (gathered < minorUnits) {
+            putBack(gathered);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Takes up to {@code minorUnits} out of one cell without taking it below zero, and returns what was taken.
+     */
+    private long take(int cell, long minorUnits) {
+        final AtomicLongArray array = cell == 0 ? baseChunk : cells;
+        final int index = cell == 0 ? baseIndex : cell * PADDING;
+
+        while (true) {
+            final long balance = array.get(index);
+            final long taken = Math.min(balance, minorUnits);
+            if (taken <= 0) {
+                return 0;
+            }
+            if (array.compareAndSet(index, balance, balance - taken)) {
+                return taken;
+            }
+        }
+    }
+
+    /**
+     * Adds {@code minorUnits} to one cell unless that would take it past its cap.
+     */
+    private boolean add(int cell, long minorUnits) {
+        final AtomicLongArray array = cell == 0 ? baseChunk : cells;
+        final int index = cell == 0 ? baseIndex : cell * PADDING;
+
+        while (true) {
+            final long balance = array.get(index);
+            if (balance > cap(cell) - minorUnits) {
+                return false;
+            }
+            if (array.compareAndSet(index, balance, balance + minorUnits)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Spreads what a failed debit gathered, or a debit whose transfer failed, over the cells' room. The amount was
+     * in the cells a moment ago, so only credits racing in near the maximum can leave part of it over, which then
+     * goes to the first cell regardless.
+     */
+    void putBack(long minorUnits) {
+        long remaining = minorUnits;
+        for (int cell = 0; cell <= mask && remaining > 0; cell++) {
+            final long room = Math.min(remaining, cap(cell) - get(cell));
+            if (room > 0 && add(cell, room)) {
+                remaining -= room;
+            }
+        }
+        if (remaining > 0) {
+            baseChunk.addAndGet(baseIndex, remaining);
+        }
+    }
+
+    private long get(int cell) {
+        return cell == 0 ? baseChunk.get(baseIndex) : cells.get(cell * PADDING);
+    }
+
+    private long cap(int cell) {
+        return cell == 0 ? baseCap : cellCap;
+    }
+
+    /**
+     * Thread ids are handed out sequentially, so threads started together get distinct cells.
+     */
+    private int localCell() {
+        return (int) Thread.currentThread().getId() & mask;
+    }
+}
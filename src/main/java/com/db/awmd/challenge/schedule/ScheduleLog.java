@@ -0,0 +1,252 @@
+package com.db.awmd.challenge.schedule;
+
+import com.db.awmd.challenge.exception.JournalException;
+import com.db.awmd.challenge.model.ScheduledTransfer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of scheduled transfers, so that pending ones survive a restart. A transfer is written when it is
+ * scheduled, and a removal when it is cancelled or released. Opening the file replays it and rewrites it with only
+ * the transfers still pending, so it stays in proportion to them. The removal of the highest id ever used is kept
+ * as well, so ids are not handed out again after a restart.
+ * <p>
+ * Layout of a record:
+ * <pre>
+ * int   body length
+ * int   CRC32 of the body
+ * byte  type
+ * long  id
+ * </pre>
+ * followed, for a scheduled transfer, by
+ * <pre>
+ * long  execution time (epoch milliseconds)
+ * short from-account id length, from-account id (UTF-8)
+ * short to-account id length, to-account id (UTF-8)
+ * int   amount scale
+ * short unscaled amount length, unscaled amount (two's complement)
+ * </pre>
+ * Reading stops at the first record torn by a crash.
+ */
+@Slf4j
+final class ScheduleLog {
+
+    private static final byte SCHEDULED = 0;
+
+    private static final byte REMOVED = 1;
+
+    private static final int HEADER_BYTES = 8;
+
+    private static final int REMOVED_BYTES = HEADER_BYTES + 1 + 8;
+
+    private final Path file;
+
+    private final boolean fsync;
+
+    private FileChannel channel;
+
+    private long maxId;
+
+    ScheduleLog(Path file, boolean fsync) {
+        this.file = file;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Reads the transfers still pending and compacts the file down to them.
+     *
+     * @return the pending transfers by id, in the order they were scheduled
+     */
+    synchronized Map<Long, ScheduledTransfer> open() {
+        try {
+            final Map<Long, ScheduledTransfer> pending = Files.exists(file) ? read() : new LinkedHashMap<>();
+
+            final Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel compacted = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (ScheduledTransfer scheduledTransfer : pending.values()) {
+                    write(compacted, encode(scheduledTransfer));
+                }
+                if (maxId > 0 && !pending.containsKey(maxId)) {
+                    final ByteBuffer watermark = ByteBuffer.allocate(REMOVED_BYTES);
+                    putRemoved(watermark, maxId);
+                    watermark.flip();
+                    write(compacted, watermark);
+                }
+                compacted.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            log.info("Loaded {} pending scheduled transfers from {}", pending.size(), file);
+            return pending;
+        } catch (IOException ioe) {
+            throw new JournalException("Cannot open scheduled transfers in " + file, ioe);
+        }
+    }
+
+    /**
+     * The highest id found by {@link #open()}.
+     */
+    synchronized long getMaxId() {
+        return maxId;
+    }
+
+    synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ioe) {
+            log.warn("Failed to close scheduled transfers in {}", file, ioe);
+        }
+        channel = null;
+    }
+
+    void scheduled(ScheduledTransfer scheduledTransfer) {
+        append(encode(scheduledTransfer));
+    }
+
+    void removed(long id) {
+        final ByteBuffer buffer = ByteBuffer.allocate(REMOVED_BYTES);
+        putRemoved(buffer, id);
+        buffer.flip();
+        append(buffer);
+    }
+
+    /**
+     * Records the removal of several transfers with one write.
+     */
+    void removed(Collection<ScheduledTransfer> scheduledTransfers) {
+        if (scheduledTransfers.isEmpty()) {
+            return;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(REMOVED_BYTES * scheduledTransfers.size());
+        for (ScheduledTransfer scheduledTransfer : scheduledTransfers) {
+            putRemoved(buffer, scheduledTransfer.getId());
+        }
+        buffer.flip();
+        append(buffer);
+    }
+
+    private synchronized void append(ByteBuffer buffer) {
+        try {
+            write(channel, buffer);
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException ioe) {
+            throw new JournalException("Cannot write scheduled transfers to " + file, ioe);
+        }
+    }
+
+    private Map<Long, ScheduledTransfer> read() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        final Map<Long, ScheduledTransfer> pending = new LinkedHashMap<>();
+        final CRC32 crc = new CRC32();
+        while (buffer.remaining() >= HEADER_BYTES) {
+            final int start = buffer.position();
+            final int length = buffer.getInt(start);
+            if (length < 9 || length > buffer.remaining() - HEADER_BYTES) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.array(), start + HEADER_BYTES, length);
+            if ((int) crc.getValue() != buffer.getInt(start + 4)) {
+                break;
+            }
+
+            buffer.position(start + HEADER_BYTES);
+            final byte type = buffer.get();
+            final long id = buffer.getLong();
+            maxId = Math.max(maxId, id);
+            if (type == SCHEDULED) {
+                final long executeAtMillis = buffer.getLong();
+                final String fromAccountId = new String(readBytes(buffer), StandardCharsets.UTF_8);
+                final String toAccountId = new String(readBytes(buffer), StandardCharsets.UTF_8);
+                final int scale = buffer.getInt();
+                final BigDecimal amount = new BigDecimal(new BigInteger(readBytes(buffer)), scale);
+                pending.put(id, new ScheduledTransfer(id, executeAtMillis, fromAccountId, toAccountId, amount));
+            } else {
+                pending.remove(id);
+            }
+            buffer.position(start + HEADER_BYTES + length);
+        }
+        if (buffer.hasRemaining()) {
+            log.warn("Ignoring {} bytes of torn scheduled transfer records at the end of {}", buffer.remaining(), file);
+        }
+        return pending;
+    }
+
+    private static ByteBuffer encode(ScheduledTransfer scheduledTransfer) {
+        final byte[] from = scheduledTransfer.getFromAccountId().getBytes(StandardCharsets.UTF_8);
+        final byte[] to = scheduledTransfer.getToAccountId().getBytes(StandardCharsets.UTF_8);
+        final byte[] unscaled = scheduledTransfer.getAmount().unscaledValue().toByteArray();
+        final int length = 1 + 8 + 8 + 2 + from.length + 2 + to.length + 4 + 2 + unscaled.length;
+
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + length);
+        buffer.putInt(length);
+        buffer.putInt(0);
+        buffer.put(SCHEDULED);
+        buffer.putLong(scheduledTransfer.getId());
+        buffer.putLong(scheduledTransfer.getExecuteAtMillis());
+        putBytes(buffer, from);
+        putBytes(buffer, to);
+        buffer.putInt(scheduledTransfer.getAmount().scale());
+        putBytes(buffer, unscaled);
+        buffer.putInt(4, checksum(buffer.array(), 0, length));
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void putRemoved(ByteBuffer buffer, long id) {
+        final int start = buffer.position();
+        buffer.putInt(1 + 8);
+        buffer.putInt(0);
+        buffer.put(REMOVED);
+        buffer.putLong(id);
+        buffer.putInt(start + 4, checksum(buffer.array(), start, 1 + 8));
+    }
+
+    private static int checksum(byte[] array, int start, int length) {
+        final CRC32 crc = new CRC32();
+        crc.update(array, start + HEADER_BYTES, length);
+        return (int) crc.getValue();
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.db.awmd.challenge.schedule;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: {@value #LEVELS} wheels of {@value #SLOTS} slots each, where a slot of the lowest wheel
+ * covers one tick and a slot of every higher wheel covers all of the wheel below it. A timeout goes into the lowest
+ * wheel its deadline fits in; whenever a wheel turns over, the next slot of the wheel above is emptied into the
+ * lower wheels. Each timeout moves down at most once per level, and a slot is an intrusive doubly linked list, so
+ * scheduling and cancelling are constant time whatever the number of timeouts held.
+ * <p>
+ * The wheels reach {@code 2^36} ticks ahead. A timeout further out waits in the highest wheel and is placed again
+ * each time its slot comes round.
+ * <p>
+ * Not thread-safe.
+ */
+public final class TimingWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+
+    private static final int SLOTS = 1 << SLOT_BITS;
+
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private static final int LEVELS = 6;
+
+    private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final Timeout<T>[] slots;
+
+    private long currentTick;
+
+    private int size;
+
+    /**
+     * @param currentTick the tick that counts as already expired
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long currentTick) {
+        this.slots = (Timeout<T>[]) new Timeout[LEVELS * SLOTS];
+        this.currentTick = currentTick;
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a timeout that expires once the wheel reaches {@code deadline}, or on the next tick if that has passed.
+     */
+    public Timeout<T> schedule(long deadline, T value) {
+        final Timeout<T> timeout = new Timeout<>(deadline, value);
+        place(timeout, Math.max(deadline, currentTick + 1));
+        size++;
+        return timeout;
+    }
+
+    /**
+     * @return whether the timeout was still pending
+     */
+    public boolean cancel(Timeout<T> timeout) {
+        if (timeout.slot < 0) {
+            return false;
+        }
+        unlink(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Turns the wheel up to {@code tick}, handing the value of every timeout due by then to {@code expired}. Timeouts
+     * come out tick by tick, in no particular order within a tick.
+     *
+     * @return the number of timeouts expired
+     */
+    public int advance(long tick, Consumer<? super T> expired) {
+        int count = 0;
+        while (currentTick < tick) {
+            if (size == 0) {
+                currentTick = tick;
+                break;
+            }
+
+            final long next = ++currentTick;
+            final int turned = Math.min(LEVELS - 1, Long.numberOfTrailingZeros(next) / SLOT_BITS);
+            for (int level = turned; level > 0; level--) {
+                cascade(level, (int) (next >>> (SLOT_BITS * level)) & SLOT_MASK);
+            }
+            count += expire((int) next & SLOT_MASK, expired);
+        }
+        return count;
+    }
+
+    private void place(Timeout<T> timeout, long at) {
+        final long delta = Math.min(at - currentTick, MAX_DELTA);
+        final int level = delta < SLOTS ? 0 : (63 - Long.numberOfLeadingZeros(delta)) / SLOT_BITS;
+        final int slot = level * SLOTS + ((int) ((currentTick + delta) >>> (SLOT_BITS * level)) & SLOT_MASK);
+
+        final Timeout<T> head = slots[slot];
+        timeout.slot = slot;
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        slots[slot] = timeout;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.slot = -1;
+        timeout.prev = null;
+        timeout.next = null;
+    }
+
+    private void cascade(int level, int index) {
+        final int slot = level * SLOTS + index;
+        Timeout<T> timeout = slots[slot];
+        slots[slot] = null;
+        while (timeout != null) {
+            final Timeout<T> next = timeout.next;
+            place(timeout, Math.max(timeout.deadline, currentTick));
+            timeout = next;
+        }
+    }
+
+    private int expire(int slot, Consumer<? super T> expired) {
+        int count = 0;
+        Timeout<T> timeout = slots[slot];
+        slots[slot] = null;
+        while (timeout != null) {
+            final Timeout<T> next = timeout.next;
+            timeout.slot = -1;
+            timeout.prev = null;
+            timeout.next = null;
+            size--;
+            count++;
+            expired.accept(timeout.value);
+            timeout = next;
+        }
+        return count;
+    }
+
+    public static final class Timeout<T> {
+
+        private final long deadline;
+
+        private final T value;
+
+        private int slot = -1;
+
+        private Timeout<T> prev;
+
+        private Timeout<T> next;
+
+        private Timeout(long deadline, T value) {
+            this.deadline = deadline;
+            this.value = value;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public boolean isPending() {
+            return slot >= 0;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.db.awmd.challenge.schedule;
+
+import com.db.awmd.challenge.model.ScheduleMetrics;
+import com.db.awmd.challenge.model.ScheduledTransfer;
+import com.db.awmd.challenge.model.TransferCommand;
+import com.db.awmd.challenge.model.TransferItemResult;
+import com.db.awmd.challenge.service.BatchTransferService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds transfers booked for a later time in a {@link TimingWheel} and hands them to the
+ * {@link BatchTransferService} once they are due. A ticker thread turns the wheel every {@code schedule.tick-millis},
+ * so a transfer runs within about one tick after its execution time, and due transfers go out in batches of at
+ * most {@code schedule.max-batch}.
+ * <p>
+ * Pending transfers are kept in {@code schedule.file} and come back after a restart; any that fell due meanwhile
+ * run on the first tick. A transfer is removed from the file before it is executed, so a crash in between loses
+ * it rather than running it twice. An empty {@code schedule.file} keeps the schedule in memory only.
+ * <p>
+ * Released transfers go through the same rate limits as any other, so a sweep with more transfers from one account
+ * than its burst has some refused. Those were never attempted, and go back on the schedule, file included, for when
+ * the limit says they may be retried.
+ */
+@Slf4j
+@Component
+public class TransferScheduler {
+
+    private final BatchTransferService batchTransferService;
+
+    private final ScheduleLog scheduleLog;
+
+    private final long tickMillis;
+
+    private final int maxBatch;
+
+    private final LongSupplier clock;
+
+    private final AtomicLong lastId = new AtomicLong();
+
+    private final LongAdder executed = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder cancelled = new LongAdder();
+
+    /**
+     * Guarded by this scheduler, like {@link #wheel}.
+     */
+    private final Map<Long, TimingWheel.Timeout<ScheduledTransfer>> pending = new HashMap<>();
+
+    private TimingWheel<ScheduledTransfer> wheel;
+
+    private volatile boolean running;
+
+    private Thread tickerThread;
+
+    @Autowired
+    public TransferScheduler(final BatchTransferService batchTransferService,
+                             @Value("${schedule.file:data/scheduled-transfers.log}") final String file,
+                             @Value("${schedule.fsync:true}") final boolean fsync,
+                             @Value("${schedule.tick-millis:100}") final long tickMillis,
+                             @Value("${schedule.max-batch:1024}") final int maxBatch) {
+        this(batchTransferService, file.isEmpty() ? null : new ScheduleLog(Paths.get(file), fsync), tickMillis,
+                maxBatch, System::currentTimeMillis);
+    }
+
+    TransferScheduler(BatchTransferService batchTransferService, ScheduleLog scheduleLog, long tickMillis,
+                      int maxBatch, LongSupplier clock) {
+        this.batchTransferService = batchTransferService;
+        this.scheduleLog = scheduleLog;
+        this.tickMillis = tickMillis;
+        this.maxBatch = maxBatch;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        open();
+        running = true;
+        tickerThread = new Thread(this::tickLoop, "transfer-scheduler");
+        tickerThread.setDaemon(true);
+        tickerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        final Thread ticker;
+        synchronized (this) {
+            running = false;
+            ticker = tickerThread;
+            tickerThread = null;
+        }
+        if (ticker != null) {
+            ticker.interrupt();
+            ticker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        if (scheduleLog != null) {
+            scheduleLog.close();
+        }
+    }
+
+    /**
+     * Loads the pending transfers, without starting the ticker.
+     */
+    synchronized void open() {
+        wheel = new TimingWheel<>(currentTick());
+        pending.clear();
+        if (scheduleLog != null) {
+            for (ScheduledTransfer scheduledTransfer : scheduleLog.open().values()) {
+                add(scheduledTransfer);
+            }
+            lastId.set(scheduleLog.getMaxId());
+        }
+    }
+
+    /**
+     * Books {@code transferCommand} for {@code executeAtMillis}. A time already past runs on the next tick.
+     */
+    public ScheduledTransfer schedule(TransferCommand transferCommand, long executeAtMillis) {
+        final ScheduledTransfer scheduledTransfer = new ScheduledTransfer(lastId.incrementAndGet(), executeAtMillis,
+                transferCommand.getFromAccountId(), transferCommand.getToAccountId(), transferCommand.getAmount());
+        if (scheduleLog != null) {
+            scheduleLog.scheduled(scheduledTransfer);
+        }
+        synchronized (this) {
+            add(scheduledTransfer);
+        }
+        return scheduledTransfer;
+    }
+
+    /**
+     * @return whether the transfer was still pending
+     */
+    public boolean cancel(long id) {
+        synchronized (this) {
+            final TimingWheel.Timeout<ScheduledTransfer> timeout = pending.remove(id);
+            if (timeout == null) {
+                return false;
+            }
+            wheel.cancel(timeout);
+        }
+        if (scheduleLog != null) {
+            scheduleLog.removed(id);
+        }
+        cancelled.increment();
+        return true;
+    }
+
+    public synchronized ScheduledTransfer getScheduled(long id) {
+        final TimingWheel.Timeout<ScheduledTransfer> timeout = pending.get(id);
+        return timeout == null ? null : timeout.getValue();
+    }
+
+    public ScheduleMetrics getMetrics() {
+        final int pendingCount;
+        synchronized (this) {
+            pendingCount = pending.size();
+        }
+        return new ScheduleMetrics(pendingCount, executed.sum(), failed.sum(), cancelled.sum());
+    }
+
+    /**
+     * Executes every transfer due by now.
+     *
+     * @return the number of transfers released
+     */
+    int releaseDue() {
+        final List<ScheduledTransfer> due = new ArrayList<>();
+        synchronized (this) {
+            wheel.advance(currentTick(), due::add);
+            for (ScheduledTransfer scheduledTransfer : due) {
+                pending.remove(scheduledTransfer.getId());
+            }
+        }
+
+        for (int from = 0; from < due.size(); from += maxBatch) {
+            release(due.subList(from, Math.min(due.size(), from + maxBatch)));
+        }
+        return due.size();
+    }
+
+    private void release(List<ScheduledTransfer> batch) {
+        if (scheduleLog != null) {
+            scheduleLog.removed(batch);
+        }
+
+        final List<TransferCommand> transferCommands = new ArrayList<>(batch.size());
+        for (ScheduledTransfer scheduledTransfer : batch) {
+            transferCommands.add(scheduledTransfer.toTransferCommand());
+        }
+        final List<TransferItemResult> results;
+        try {
+            results = batchTransferService.transferAll(transferCommands, false);
+        } catch (RuntimeException e) {
+            failed.add(batch.size());
+            log.error("Failed to execute {} scheduled transfers", batch.size(), e);
+            return;
+        }
+
+        final long now = clock.getAsLong();
+        for (TransferItemResult result : results) {
+            if (result.getStatus() == TransferItemResult.Status.SUCCESS) {
+                executed.increment();
+            } else if (result.getRetryAfterMillis() > 0) {
+                retry(batch.get(result.getIndex()), now + result.getRetryAfterMillis());
+            } else {
+                failed.increment();
+                log.warn("Scheduled transfer {} failed: {}", batch.get(result.getIndex()).getId(), result.getMessage());
+            }
+        }
+        log.debug("Released {} scheduled transfers", batch.size());
+    }
+
+    private void retry(ScheduledTransfer throttled, long executeAtMillis) {
+        final ScheduledTransfer scheduledTransfer = new ScheduledTransfer(throttled.getId(), executeAtMillis,
+                throttled.getFromAccountId(), throttled.getToAccountId(), throttled.getAmount());
+        if (scheduleLog != null) {
+            scheduleLog.scheduled(scheduledTransfer);
+        }
+        synchronized (this) {
+            add(scheduledTransfer);
+        }
+        log.debug("Scheduled transfer {} was throttled; retrying at {}", scheduledTransfer.getId(),
+                scheduledTransfer.getExecuteAt());
+    }
+
+    private void add(ScheduledTransfer scheduledTransfer) {
+        final long deadline = Math.floorDiv(scheduledTransfer.getExecuteAtMillis() + tickMillis - 1, tickMillis);
+        pending.put(scheduledTransfer.getId(), wheel.schedule(deadline, scheduledTransfer));
+    }
+
+    private long currentTick() {
+        return Math.floorDiv(clock.getAsLong(), tickMillis);
+    }
+
+    private void tickLoop() {
+        while (running) {
+            try {
+                Thread.sleep(tickMillis - Math.floorMod(clock.getAsLong(), tickMillis));
+                releaseDue();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Failed to release scheduled transfers", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.model.AccountCacheMetrics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serialized JSON of recently read accounts, so reading an account that has not changed skips Jackson. Each account
+ * has one entry, holding the JSON of the version last serialized. An entry is only used while the account still
+ * has that version, balance and currency; those are compared too because versions start over when an account is
+ * recreated.
+ * <p>
+ * Once the cache is full, entries are evicted by second chance, an approximation of LRU: a read marks its entry,
+ * and eviction, walking entries in insertion order, moves a marked entry to the back once instead of evicting it.
+ * Accounts that are polled continuously stay cached while accounts read once are evicted first.
+ */
+@Component
+public class AccountJsonCache {
+
+    /**
+     * The JSON of one version of an account, and the entity tag that identifies it.
+     */
+    public static final class Json {
+
+        private final long version;
+
+        private final BigDecimal balance;
+
+        private final Currency currency;
+
+        private final byte[] bytes;
+
+        private final String eTag;
+
+        Json(Account account, byte[] bytes) {
+            this.version = account.getVersion();
+            this.balance = account.getBalance();
+            this.currency = account.getCurrency();
+            this.bytes = bytes;
+            this.eTag = "\"" + Long.toHexString(version) + '-' + Integer.toHexString(Arrays.hashCode(bytes)) + '"';
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        boolean matches(Account account) {
+            return version == account.getVersion() && balance.equals(account.getBalance())
+                    && currency == account.getCurrency();
+        }
+    }
+
+    private static final class Node {
+
+        final String accountId;
+
+        volatile Json json;
+
+        volatile boolean referenced;
+
+        Node(String accountId, Json json) {
+            this.accountId = accountId;
+            this.json = json;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Node> nodes = new ConcurrentHashMap<>();
+
+    private final Queue<Node> evictionOrder = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final int maxEntries;
+
+    private final ObjectWriter accountWriter;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public AccountJsonCache(final ObjectMapper objectMapper,
+                            @Value("${accounts.json-cache.max-entries:100000}") final int maxEntries) {
+        this.accountWriter = objectMapper.writerFor(Account.class);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * The JSON of the account as given, from the cache if it holds this version.
+     */
+    public Json get(Account account) {
+        final Node node = nodes.get(account.getAccountId());
+        if (node != null) {
+            final Json json = node.json;
+            if (json.matches(account)) {
+                if (!node.referenced) {
+                    node.referenced = true;
+                }
+                hits.increment();
+                return json;
+            }
+        }
+
+        misses.increment();
+        final Json json = new Json(account, serialize(account));
+        if (node != null) {
+            node.json = json;
+        } else {
+            final Node created = new Node(account.getAccountId(), json);
+            if (nodes.putIfAbsent(account.getAccountId(), created) == null) {
+                track(created);
+            }
+        }
+        return json;
+    }
+
+    public AccountCacheMetrics getMetrics() {
+        return new AccountCacheMetrics(nodes.size(), hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private byte[] serialize(Account account) {
+        try {
+            return accountWriter.writeValueAsBytes(account);
+        } catch (JsonProcessingException jpe) {
+            throw new IllegalStateException("Could not serialize account " + account.getAccountId(), jpe);
+        }
+    }
+
+    /**
+     * Every pass over the queue clears the marks it meets, so eviction always finds an entry within two passes.
+     */
+    private void track(Node node) {
+        evictionOrder.add(node);
+        int size = queued.incrementAndGet();
+
+        while (size > maxEntries) {
+            final Node oldest = evictionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            if (oldest.referenced) {
+                oldest.referenced = false;
+                evictionOrder.add(oldest);
+                continue;
+            }
+            size = queued.decrementAndGet();
+            if (nodes.remove(oldest.accountId, oldest)) {
+                evictions.increment();
+            }
+        }
+    }
+}
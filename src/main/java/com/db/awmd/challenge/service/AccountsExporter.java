@@ -0,0 +1,88 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Streams every account to an output stream, one page of the repository at a time, so an export never holds more
+ * than a page of accounts in memory.
+ * <p>
+ * The export covers exactly the accounts that existed when it started. Each balance is the account's committed
+ * balance at the moment it is written; balances are not frozen at one instant across the whole export.
+ */
+@Component
+public class AccountsExporter {
+
+    public enum Format {
+        NDJSON("application/x-ndjson"), CSV("text/csv");
+
+        private final String mediaType;
+
+        Format(String mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public String getMediaType() {
+            return mediaType;
+        }
+    }
+
+    private static final int PAGE_SIZE = 1024;
+
+    private static final byte[] CSV_HEADER = "accountId,balance,currency\n".getBytes(StandardCharsets.UTF_8);
+
+    private final AccountsRepository accountsRepository;
+
+    private final ObjectWriter accountWriter;
+
+    @Autowired
+    public AccountsExporter(final AccountsRepository accountsRepository, final ObjectMapper objectMapper) {
+        this.accountsRepository = accountsRepository;
+        this.accountWriter = objectMapper.writerFor(Account.class);
+    }
+
+    public void export(Format format, OutputStream outputStream) throws IOException {
+        final OutputStream out = new BufferedOutputStream(outputStream, 64 * 1024);
+        if (format == Format.CSV) {
+            out.write(CSV_HEADER);
+        }
+
+        final int count = accountsRepository.getAccountCount();
+        int position = 0;
+        while (position < count) {
+            final List<Account> page = accountsRepository.getAccounts(position, Math.min(PAGE_SIZE, count - position));
+            if (page.isEmpty()) {
+                break;
+            }
+            for (Account account : page) {
+                if (format == Format.CSV) {
+                    writeCsv(out, account);
+                } else {
+                    out.write(accountWriter.writeValueAsBytes(account));
+                }
+                out.write('\n');
+            }
+            position += page.size();
+        }
+        out.flush();
+    }
+
+    private static void writeCsv(OutputStream out, Account account) throws IOException {
+        final String accountId = account.getAccountId();
+        final boolean quoted = accountId.indexOf(',') >= 0 || accountId.indexOf('"') >= 0
+                || accountId.indexOf('\n') >= 0 || accountId.indexOf('\r') >= 0;
+        final String field = quoted ? '"' + accountId.replace("\"", "\"\"") + '"' : accountId;
+        out.write((field + ',' + account.getBalance().toPlainString() + ',' + account.getCurrency())
+                .getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,27 +1,55 @@
 package com.db.awmd.challenge.service;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.metrics.MetricsRegistry;
 import com.db.awmd.challenge.repository.AccountsRepository;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 public class AccountsService {
 
     @Getter
     private final AccountsRepository accountsRepository;
 
+    private final MetricsRegistry metricsRegistry;
+
     @Autowired
-    public AccountsService(AccountsRepository accountsRepository) {
+    public AccountsService(AccountsRepository accountsRepository, MetricsRegistry metricsRegistry) {
         this.accountsRepository = accountsRepository;
+        this.metricsRegistry = metricsRegistry;
     }
 
     public void createAccount(Account account) {
-        this.accountsRepository.createAccount(account);
+        final long start = System.nanoTime();
+        try {
+            this.accountsRepository.createAccount(account);
+        } catch (DuplicateAccountIdException daie) {
+            metricsRegistry.recordFailure(daie);
+            throw daie;
+        } finally {
+            metricsRegistry.record(MetricsRegistry.Operation.CREATE_ACCOUNT, start);
+        }
     }
 
     public Account getAccount(String accountId) {
-        return this.accountsRepository.getAccount(accountId);
+        final long start = System.nanoTime();
+        try {
+            return this.accountsRepository.getAccount(accountId);
+        } finally {
+            metricsRegistry.record(MetricsRegistry.Operation.GET_ACCOUNT, start);
+        }
+    }
+
+    public int getAccountCount() {
+        return this.accountsRepository.getAccountCount();
+    }
+
+    public List<Account> getAccounts(int from, int limit) {
+        return this.accountsRepository.getAccounts(from, limit);
     }
 }
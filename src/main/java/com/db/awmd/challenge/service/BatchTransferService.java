@@ -0,0 +1,262 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.exception.AccountCreditException;
+import com.db.awmd.challenge.exception.AccountDebitException;
+import com.db.awmd.challenge.exception.AccountNotPresentException;
+import com.db.awmd.challenge.exception.CurrencyConversionException;
+import com.db.awmd.challenge.exception.TransferThrottledException;
+import com.db.awmd.challenge.model.TransferCommand;
+import com.db.awmd.challenge.model.TransferItemResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+
+/**
+ * Applies a batch of transfers. Transfers are grouped by the accounts they touch: groups sharing no account run in
+ * parallel on a dedicated {@link ForkJoinPool}, transfers within a group run in submission order. A transfer that
+ * fails for any reason is reported as FAILED and does not stop the rest of the batch.
+ * <p>
+ * Every transfer is admitted on its own, so a batch with more transfers from one account than the per-account burst
+ * ({@code transfer.rate-limit.per-account-burst}, 100 by default) reports the excess as FAILED with a throttling
+ * message and a retry delay, even though the batch as a whole was accepted.
+ */
+@Slf4j
+@Service
+public class BatchTransferService {
+
+    private final TransferService transferService;
+
+    private final ForkJoinPool pool;
+
+    @Autowired
+    public BatchTransferService(final TransferService transferService,
+                                @Value("${transfer.batch.parallelism:0}") final int parallelism) {
+        this.transferService = transferService;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public List<TransferItemResult> transferAll(final List<TransferCommand> transferCommands, final boolean netting) {
+        final List<PlannedTransfer> plannedTransfers = netting ? net(transferCommands, transferService::isConverting)
+                : plan(transferCommands);
+        final Collection<List<PlannedTransfer>> groups = groupByAccounts(plannedTransfers);
+        final TransferItemResult[] results = new TransferItemResult[transferCommands.size()];
+        log.info("Executing batch of {} transfers in {} independent groups", transferCommands.size(), groups.size());
+
+        if (groups.size() == 1) {
+            execute(groups.iterator().next(), results);
+        } else {
+            final List<Callable<Void>> tasks = new ArrayList<>(groups.size());
+            for (List<PlannedTransfer> group : groups) {
+                tasks.add(() -> {
+                    execute(group, results);
+                    return null;
+                });
+            }
+            awaitAll(pool.invokeAll(tasks));
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private void execute(final List<PlannedTransfer> group, final TransferItemResult[] results) {
+        for (PlannedTransfer plannedTransfer : group) {
+            TransferItemResult.Status status = TransferItemResult.Status.SUCCESS;
+            String message = null;
+            long retryAfterMillis = 0;
+
+            if (plannedTransfer.command == null) {
+                message = "Netted out by opposing transfers.";
+            } else {
+                try {
+                    transferService.transferAmount(plannedTransfer.command);
+                } catch (AccountCreditException | AccountDebitException ae) {
+                    status = TransferItemResult.Status.FAILED;
+                    message = AccountNotPresentException.class.isInstance(ae.getCause())
+                            ? ae.getCause().getMessage() : ae.getMessage();
+                } catch (TransferThrottledException tte) {
+                    status = TransferItemResult.Status.FAILED;
+                    message = tte.getMessage();
+                    retryAfterMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(
+                            tte.getRetryAfterNanos() + TimeUnit.MILLISECONDS.toNanos(1) - 1));
+                } catch (CurrencyConversionException cce) {
+                    status = TransferItemResult.Status.FAILED;
+                    message = cce.getMessage();
+                } catch (RuntimeException re) {
+                    // Transfers before this one may have committed, so their results must still be reported.
+                    log.error("Exception while executing batch transfer {}.", plannedTransfer.command, re);
+                    status = TransferItemResult.Status.FAILED;
+                    message = re.getMessage();
+                }
+            }
+
+            for (Integer index : plannedTransfer.indices) {
+                results[index] = new TransferItemResult(index, status, message, retryAfterMillis);
+            }
+        }
+    }
+
+    private static void awaitAll(final List<Future<Void>> futures) {
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for batch transfers", ie);
+            } catch (ExecutionException ee) {
+                if (ee.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ee.getCause();
+                }
+                throw new IllegalStateException(ee.getCause());
+            }
+        }
+    }
+
+    private static List<PlannedTransfer> plan(final List<TransferCommand> transferCommands) {
+        final List<PlannedTransfer> plannedTransfers = new ArrayList<>(transferCommands.size());
+        for (int i = 0; i < transferCommands.size(); i++) {
+            plannedTransfers.add(new PlannedTransfer(transferCommands.get(i), i));
+        }
+        return plannedTransfers;
+    }
+
+    /**
+     * Collapses all transfers between the same two accounts into one transfer of the net amount, placed at the
+     * position of the first of them. A pair whose flows cancel out completely produces no transfer at all. Transfers
+     * between accounts in different currencies are left as they are, since their amounts are not in one currency.
+     */
+    private static List<PlannedTransfer> net(final List<TransferCommand> transferCommands,
+                                             final BiPredicate<String, String> converting) {
+        final Map<Object, NetPosition> positions = new LinkedHashMap<>();
+
+        for (int i = 0; i < transferCommands.size(); i++) {
+            final TransferCommand transferCommand = transferCommands.get(i);
+            final String from = transferCommand.getFromAccountId();
+            final String to = transferCommand.getToAccountId();
+
+            final Object key = from.equals(to) || converting.test(from, to) ? Integer.valueOf(i)
+                    : from.compareTo(to) < 0 ? new AbstractMap.SimpleImmutableEntry<>(from, to)
+                    : new AbstractMap.SimpleImmutableEntry<>(to, from);
+            final String low = from.compareTo(to) <= 0 ? from : to;
+
+            final NetPosition position = positions.computeIfAbsent(key, k -> new NetPosition(low, from.equals(low) ? to : from));
+            position.amount = from.equals(low)
+                    ? position.amount.add(transferCommand.getAmount())
+                    : position.amount.subtract(transferCommand.getAmount());
+            position.indices.add(i);
+        }
+
+        final List<PlannedTransfer> plannedTransfers = new ArrayList<>(positions.size());
+        for (NetPosition position : positions.values()) {
+            final int sign = position.amount.signum();
+            final TransferCommand netCommand = sign > 0
+                    ? new TransferCommand(position.low, position.high, position.amount)
+                    : sign < 0 ? new TransferCommand(position.high, position.low, position.amount.negate())
+                    : null;
+            plannedTransfers.add(new PlannedTransfer(netCommand, position.indices));
+        }
+        return plannedTransfers;
+    }
+
+    /**
+     * Union-find over account ids: transfers end up in the same group whenever they are connected through a
+     * shared account. Groups and the transfers inside them keep submission order.
+     */
+    private static Collection<List<PlannedTransfer>> groupByAccounts(final List<PlannedTransfer> plannedTransfers) {
+        final Map<String, String> parents = new HashMap<>();
+        for (PlannedTransfer plannedTransfer : plannedTransfers) {
+            if (plannedTransfer.command != null) {
+                union(parents, plannedTransfer.command.getFromAccountId(), plannedTransfer.command.getToAccountId());
+            }
+        }
+
+        final Map<String, List<PlannedTransfer>> groups = new LinkedHashMap<>();
+        for (PlannedTransfer plannedTransfer : plannedTransfers) {
+            final String root = plannedTransfer.command == null ? null : find(parents, plannedTransfer.command.getFromAccountId());
+            groups.computeIfAbsent(root, r -> new ArrayList<>()).add(plannedTransfer);
+        }
+        return groups.values();
+    }
+
+    private static String find(final Map<String, String> parents, final String accountId) {
+        String root = accountId;
+        String parent;
+        while ((parent = parents.get(root)) != null && !parent.equals(root)) {
+            root = parent;
+        }
+
+        String current = accountId;
+        while (!current.equals(root)) {
+            final String next = parents.get(current);
+            parents.put(current, root);
+            current = next;
+        }
+        return root;
+    }
+
+    private static void union(final Map<String, String> parents, final String first, final String second) {
+        parents.putIfAbsent(first, first);
+        parents.putIfAbsent(second, second);
+
+        final String firstRoot = find(parents, first);
+        final String secondRoot = find(parents, second);
+        if (!firstRoot.equals(secondRoot)) {
+            parents.put(secondRoot, firstRoot);
+        }
+    }
+
+    private static final class PlannedTransfer {
+
+        private final TransferCommand command;
+
+        private final List<Integer> indices;
+
+        private PlannedTransfer(final TransferCommand command, final int index) {
+            this(command, Collections.singletonList(index));
+        }
+
+        private PlannedTransfer(final TransferCommand command, final List<Integer> indices) {
+            this.command = command;
+            this.indices = indices;
+        }
+    }
+
+    private static final class NetPosition {
+
+        private final String low;
+
+        private final String high;
+
+        private final List<Integer> indices = new ArrayList<>();
+
+        private BigDecimal amount = BigDecimal.ZERO;
+
+        private NetPosition(final String low, final String high) {
+            this.low = low;
+            this.high = high;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.model.BulkCreateReport;
+import com.db.awmd.challenge.model.RejectedAccount;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Creates accounts from a JSON array or newline-delimited JSON body without reading the body into memory. The
+ * request thread parses accounts into batches; each batch is validated and inserted on a worker while the next
+ * one is parsed, with a bounded number of batches in flight.
+ */
+@Slf4j
+@Service
+public class BulkAccountService {
+
+    static final int BATCH_SIZE = 4096;
+
+    static final int MAX_REPORTED_REJECTIONS = 1000;
+
+    private final AccountsRepository accountsRepository;
+
+    private final ObjectReader accountReader;
+
+    private final Executor executor;
+
+    private final int maxBatchesInFlight;
+
+    @Autowired
+    public BulkAccountService(final AccountsRepository accountsRepository, final ObjectMapper objectMapper) {
+        this(accountsRepository, objectMapper, ForkJoinPool.commonPool(),
+                Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public BulkAccountService(final AccountsRepository accountsRepository, final ObjectMapper objectMapper,
+                              final Executor executor, final int maxBatchesInFlight) {
+        this.accountsRepository = accountsRepository;
+        this.accountReader = objectMapper.readerFor(Account.class);
+        this.executor = executor;
+        this.maxBatchesInFlight = maxBatchesInFlight;
+    }
+
+    /**
+     * A body that is a JSON array is read element by element; any other body is read as a sequence of JSON
+     * values, one account each.
+     */
+    public BulkCreateReport createAccounts(InputStream body) {
+        final long start = System.nanoTime();
+        final Tally tally = new Tally();
+        final Deque<CompletableFuture<Void>> inFlight = new ArrayDeque<>();
+        long received = 0;
+        String error = null;
+
+        List<Account> batch = new ArrayList<>(BATCH_SIZE);
+        try (MappingIterator<Account> accounts = accountReader.readValues(body)) {
+            while (accounts.hasNextValue()) {
+                batch.add(accounts.nextValue());
+                received++;
+                if (batch.size() == BATCH_SIZE) {
+                    submit(batch, received - BATCH_SIZE, tally, inFlight);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+        } catch (IOException | RuntimeJsonMappingException e) {
+            error = String.format("Could not read account at index %d: %s", received, e.getMessage());
+        }
+        if (!batch.isEmpty()) {
+            submit(batch, received - batch.size(), tally, inFlight);
+        }
+
+        for (CompletableFuture<Void> submitted : inFlight) {
+            submitted.join();
+        }
+
+        log.info("Bulk created {} of {} accounts in {} ms", tally.created.sum(), received,
+                (System.nanoTime() - start) / 1_000_000);
+        return new BulkCreateReport(received, tally.created.sum(), received - tally.created.sum(),
+                tally.reported.stream().sorted(Comparator.comparingLong(RejectedAccount::getIndex))
+                        .collect(Collectors.toList()),
+                error);
+    }
+
+    private void submit(List<Account> batch, long firstIndex, Tally tally, Deque<CompletableFuture<Void>> inFlight) {
+        if (inFlight.size() >= maxBatchesInFlight) {
+            inFlight.removeFirst().join();
+        }
+        inFlight.addLast(CompletableFuture.runAsync(() -> insert(batch, firstIndex, tally), executor));
+    }
+
+    private void insert(List<Account> batch, long firstIndex, Tally tally) {
+        final List<Account> valid = new ArrayList<>(batch.size());
+        final int[] positions = new int[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            final Account account = batch.get(i);
+            final String violation = validate(account);
+            if (violation == null) {
+                positions[valid.size()] = i;
+                valid.add(account);
+            } else {
+                tally.reject(firstIndex + i, account.getAccountId(), violation);
+            }
+        }
+
+        final AtomicInteger rejected = new AtomicInteger();
+        accountsRepository.createAccounts(valid, (exception, position) -> {
+            rejected.incrementAndGet();
+            tally.reject(firstIndex + positions[position], valid.get(position).getAccountId(), exception.getMessage());
+        });
+        tally.created.add(valid.size() - rejected.get());
+    }
+
+    /**
+     * The constraints declared on {@link Account}, checked directly: going through a bean {@code Validator} costs
+     * several microseconds per account, more than parsing and inserting it together.
+     */
+    private static String validate(Account account) {
+        if (account.getAccountId() == null || account.getAccountId().isEmpty()) {
+            return "accountId may not be empty";
+        }
+        if (account.getBalance() == null) {
+            return "balance may not be null";
+        }
+        if (account.getBalance().signum() < 0) {
+            return "balance must not be negative";
+        }
+        return null;
+    }
+
+    private static final class Tally {
+
+        final LongAdder created = new LongAdder();
+
+        final Queue<RejectedAccount> reported = new ConcurrentLinkedQueue<>();
+
+        final AtomicInteger reportedCount = new AtomicInteger();
+
+        void reject(long index, String accountId, String reason) {
+            if (reportedCount.incrementAndGet() <= MAX_REPORTED_REJECTIONS) {
+                reported.add(new RejectedAccount(index, accountId, reason));
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Hold;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.exception.HoldNotPresentException;
+import com.db.awmd.challenge.model.AccountHolds;
+import com.db.awmd.challenge.model.TransferCommand;
+import com.db.awmd.challenge.repository.HoldingAccountsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Places, captures and releases holds on accounts. A hold lowers what the account has available for transfers and
+ * other holds until it is captured, released or expires.
+ * <p>
+ * Expired holds are released by the store whenever their account is next used, and otherwise by a sweep every
+ * {@code holds.sweep-interval-millis}, so they do not linger on idle accounts.
+ * <p>
+ * Only the in-memory store holds funds, so with any other store there is no hold service.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "accounts.store", havingValue = "in-memory", matchIfMissing = true)
+public class HoldService {
+
+    private final HoldingAccountsRepository accountsRepository;
+
+    private final TransferService transferService;
+
+    private final long sweepIntervalMillis;
+
+    private ScheduledExecutorService executor;
+
+    @Autowired
+    public HoldService(final HoldingAccountsRepository accountsRepository,
+                       final TransferService transferService,
+                       @Value("${holds.sweep-interval-millis:1000}") final long sweepIntervalMillis) {
+        this.accountsRepository = accountsRepository;
+        this.transferService = transferService;
+        this.sweepIntervalMillis = sweepIntervalMillis;
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (sweepIntervalMillis <= 0) {
+            return;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "hold-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::sweep, sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+            executor = null;
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code expiresAtMillis} has already passed
+     */
+    public Hold placeHold(String accountId, BigDecimal amount, long expiresAtMillis) {
+        if (expiresAtMillis <= System.currentTimeMillis()) {
+            throw new IllegalArgumentException("Hold would expire immediately at " + expiresAtMillis);
+        }
+
+        final String holdId = UUID.randomUUID().toString();
+        final Account account = accountsRepository.placeHold(accountId, holdId, amount, expiresAtMillis);
+        log.debug("Placed hold {} of {} on {}", holdId, amount, accountId);
+        return account.getHold(holdId);
+    }
+
+    /**
+     * Captures {@code amount} of a hold on the account into {@code toAccountId}, converted like the amount of a
+     * transfer, and goes through the same limits, notifications, ledger and audit. Whatever is left of the hold stays
+     * held.
+     *
+     * @throws HoldNotPresentException if the account has no such hold, or it has expired
+     */
+    public TransferResult captureHold(String accountId, String holdId, String toAccountId, BigDecimal amount) {
+        log.info("Capturing {} of hold {} on {} into {}", amount, holdId, accountId, toAccountId);
+        return transferService.transfer(new TransferCommand(accountId, toAccountId, amount),
+                creditAmount -> accountsRepository.captureHold(accountId, holdId, toAccountId, amount, creditAmount));
+    }
+
+    /**
+     * @throws HoldNotPresentException if the account has no such hold, or it has expired
+     */
+    public Account releaseHold(String accountId, String holdId) {
+        final Account account = accountsRepository.releaseHold(accountId, holdId);
+        log.debug("Released hold {} on {}", holdId, accountId);
+        return account;
+    }
+
+    /**
+     * The account's balance and holds, or {@code null} if it does not exist. Holds that have expired but not yet been
+     * released are left out.
+     */
+    public AccountHolds getHolds(String accountId) {
+        final Account account = accountsRepository.getAccount(accountId);
+        if (account == null) {
+            return null;
+        }
+
+        final long now = System.currentTimeMillis();
+        final List<Hold> holds = new ArrayList<>(account.getHolds().size());
+        BigDecimal heldBalance = BigDecimal.ZERO;
+        for (Hold hold : account.getHolds()) {
+            if (!hold.isExpired(now)) {
+                holds.add(hold);
+                heldBalance = heldBalance.add(hold.getAmount());
+            }
+        }
+        return new AccountHolds(accountId, account.getBalance(), heldBalance,
+                account.getBalance().subtract(heldBalance), holds);
+    }
+
+    /**
+     * @return the number of holds released
+     */
+    int sweep() {
+        try {
+            final int released = accountsRepository.expireHolds(System.currentTimeMillis());
+            if (released > 0) {
+                log.debug("Released {} expired holds", released);
+            }
+            return released;
+        } catch (RuntimeException re) {
+            log.error("Exception while releasing expired holds.", re);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.exception.IdempotencyKeyReusedException;
+import com.db.awmd.challenge.model.IdempotencyMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of requests by their client-supplied idempotency key, so a retried request gets the
+ * original result instead of being executed again. Entries expire after a fixed time to live, and once the cache is
+ * full the oldest entries are evicted first.
+ * <p>
+ * A retry that arrives while the original is still running waits for its result. An entry is neither evicted nor
+ * expired while its request runs, so the cache can hold more entries than its size by the number of requests in
+ * flight. A request that fails with an exception is forgotten, so it can be retried.
+ */
+@Component
+public class IdempotencyCache {
+
+    /**
+     * Entries still running that one eviction pass puts back at the tail before it gives up.
+     */
+    private static final int MAX_REQUEUED = 16;
+
+    private static final class Entry {
+
+        final String key;
+
+        final Object request;
+
+        final long expiresAtNanos;
+
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        Entry(String key, Object request, long expiresAtNanos) {
+            this.key = key;
+            this.request = request;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Insertion order, for eviction. May still hold entries that were already replaced or removed from the map.
+     */
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final int maxEntries;
+
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public IdempotencyCache(@Value("${idempotency.cache.max-entries:100000}") final int maxEntries,
+                            @Value("${idempotency.cache.ttl-seconds:3600}") final long ttlSeconds) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /**
+     * Returns the result stored under {@code key}, or runs {@code action} and stores its result.
+     *
+     * @throws IdempotencyKeyReusedException if the key was used for a different request
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Object request, Supplier<T> action) {
+        final long now = System.nanoTime();
+        Entry entry = find(key, request, now);
+        if (entry == null) {
+            final Entry created = new Entry(key, request, now + ttlNanos);
+            entry = acquire(created);
+            if (entry == created) {
+                return run(created, action);
+            }
+        }
+
+        try {
+            return (T) entry.result.join();
+        } catch (CompletionException ce) {
+            if (ce.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ce.getCause();
+            }
+            throw ce;
+        }
+    }
+
+    /**
+     * Same as {@link #execute(String, Object, Supplier)} for an action that completes later. A retry gets the
+     * original future, without waiting for it.
+     *
+     * @throws IdempotencyKeyReusedException if the key was used for a different request
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> executeAsync(String key, Object request, Supplier<CompletableFuture<T>> action) {
+        final long now = System.nanoTime();
+        Entry entry = find(key, request, now);
+        if (entry == null) {
+            final Entry created = new Entry(key, request, now + ttlNanos);
+            entry = acquire(created);
+            if (entry == created) {
+                start(created, action);
+            }
+        }
+
+        return (CompletableFuture<T>) (CompletableFuture<?>) entry.result;
+    }
+
+    public IdempotencyMetrics getMetrics() {
+        return new IdempotencyMetrics(entries.size(), hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    /**
+     * The live entry for {@code key}, or null if there is none. Allocates nothing, so a retry costs a map lookup.
+     */
+    private Entry find(String key, Object request, long now) {
+        final Entry entry = entries.get(key);
+        return entry == null || !isLive(entry, now) ? null : hit(entry, key, request);
+    }
+
+    /**
+     * Returns the live entry for the key of {@code created}, inserting {@code created} if there is none.
+     */
+    private Entry acquire(Entry created) {
+        final long now = created.expiresAtNanos - ttlNanos;
+        Entry entry = entries.get(created.key);
+        while (entry == null || !isLive(entry, now)) {
+            final boolean inserted = entry == null
+                    ? entries.putIfAbsent(created.key, created) == null
+                    : entries.replace(created.key, entry, created);
+            if (inserted) {
+                misses.increment();
+                track(created);
+                return created;
+            }
+            entry = entries.get(created.key);
+        }
+
+        return hit(entry, created.key, created.request);
+    }
+
+    private static boolean isLive(Entry entry, long now) {
+        return entry.expiresAtNanos - now > 0 || !entry.result.isDone();
+    }
+
+    private Entry hit(Entry entry, String key, Object request) {
+        if (!entry.request.equals(request)) {
+            throw new IdempotencyKeyReusedException(
+                    String.format("Idempotency key %s was already used for a different request.", key));
+        }
+
+        hits.increment();
+        return entry;
+    }
+
+    private <T> void start(Entry created, Supplier<CompletableFuture<T>> action) {
+        CompletableFuture<T> result;
+        try {
+            result = action.get();
+        } catch (RuntimeException re) {
+            result = new CompletableFuture<>();
+            result.completeExceptionally(re);
+        }
+        result.whenComplete((value, failure) -> {
+            if (failure != null) {
+                entries.remove(created.key, created);
+                created.result.completeExceptionally(failure);
+            } else {
+                created.result.complete(value);
+            }
+        });
+    }
+
+    private <T> T run(Entry entry, Supplier<T> action) {
+        try {
+            final T result = action.get();
+            entry.result.complete(result);
+            return result;
+        } catch (RuntimeException re) {
+            entries.remove(entry.key, entry);
+            entry.result.completeExceptionally(re);
+            throw re;
+        }
+    }
+
+    /**
+     * Every entry lives for the same time, so insertion order is also expiry order and expired entries are at the
+     * head of the queue. The exception are entries whose request was still running when they reached the head: a
+     * retry must still find them, so they go back to the tail.
+     */
+    private void track(Entry entry) {
+        insertionOrder.add(entry);
+        int size = queued.incrementAndGet();
+
+        final long now = entry.expiresAtNanos - ttlNanos;
+        int requeued = 0;
+        Entry oldest;
+        while (size > maxEntries || (oldest = insertionOrder.peek()) != null && oldest.expiresAtNanos - now <= 0) {
+            oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            if (!oldest.result.isDone()) {
+                insertionOrder.add(oldest);
+                if (++requeued == MAX_REQUEUED) {
+                    return;
+                }
+                continue;
+            }
+            size = queued.decrementAndGet();
+            if (entries.remove(oldest.key, oldest)) {
+                evictions.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.model.NotificationMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decouples transfers from the {@link NotificationService}. Notifications are put on a bounded queue and delivered
+ * by a single dispatcher thread, which sends one notification per account owner for every batch it drains.
+ */
+@Slf4j
+@Component
+public class NotificationDispatcher {
+
+    /**
+     * What to do with a notification when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait for room in the queue, stalling the transfer thread.
+         */
+        BLOCK,
+        /**
+         * Discard the oldest queued notification.
+         */
+        DROP_OLDEST,
+        /**
+         * Move the notification to an in-memory overflow queue behind the main one. Newer notifications join it
+         * until it is drained, so owners still get them in order. Once it holds
+         * {@code notifications.queue.spill-capacity} notifications too, further ones are dropped.
+         */
+        SPILL
+    }
+
+    private final NotificationService notificationService;
+
+    private final BlockingQueue<TransferNotification> queue;
+
+    private final Queue<TransferNotification> overflow = new ConcurrentLinkedQueue<>();
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final int maxBatchSize;
+
+    private final int spillCapacity;
+
+    private final AtomicInteger spilledPending = new AtomicInteger();
+
+    private final LongAdder enqueued = new LongAdder();
+
+    private final LongAdder dispatched = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder spilled = new LongAdder();
+
+    private final AtomicLong lastLagNanos = new AtomicLong();
+
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    /**
+     * One formatter per currency, built on first use. Only used from the dispatcher thread, so neither the map nor
+     * the formatters need to be thread-safe.
+     */
+    private final Map<Currency, NumberFormat> currencyFormats = new HashMap<>();
+
+    private volatile boolean running;
+
+    private Thread dispatcherThread;
+
+    @Autowired
+    public NotificationDispatcher(final NotificationService notificationService,
+                                  @Value("${notifications.queue.capacity:10000}") final int capacity,
+                                  @Value("${notifications.queue.overflow-policy:DROP_OLDEST}") final OverflowPolicy overflowPolicy,
+                                  @Value("${notifications.batch.max-size:256}") final int maxBatchSize,
+                                  @Value("${notifications.queue.spill-capacity:100000}") final int spillCapacity) {
+        this.notificationService = notificationService;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.maxBatchSize = maxBatchSize;
+        this.spillCapacity = spillCapacity;
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        running = true;
+        dispatcherThread = new Thread(this::dispatchLoop, "notification-dispatcher");
+        dispatcherThread.setDaemon(true);
+        dispatcherThread.start();
+    }
+
+    /**
+     * Stops the dispatcher after delivering whatever is still queued.
+     */
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        if (dispatcherThread != null) {
+            dispatcherThread.join(TimeUnit.SECONDS.toMillis(5));
+            dispatcherThread = null;
+        }
+    }
+
+    public void notifyDebited(Account account, BigDecimal amount) {
+        enqueue(new TransferNotification(account, TransferNotification.Kind.DEBITED, amount));
+    }
+
+    public void notifyCredited(Account account, BigDecimal amount) {
+        enqueue(new TransferNotification(account, TransferNotification.Kind.CREDITED, amount));
+    }
+
+    public NotificationMetrics getMetrics() {
+        return new NotificationMetrics(queue.size() + spilledPending.get(), enqueued.sum(), dispatched.sum(),
+                dropped.sum(), spilled.sum(),
+                TimeUnit.NANOSECONDS.toMillis(lastLagNanos.get()), TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get()));
+    }
+
+    private void enqueue(TransferNotification notification) {
+        enqueued.increment();
+        if (spilledPending.get() == 0 && queue.offer(notification)) {
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put(notification);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    dropped.increment();
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(notification)) {
+                    if (queue.poll() != null) {
+                        dropped.increment();
+                    }
+                }
+                break;
+            case SPILL:
+                if (spilledPending.incrementAndGet() > spillCapacity) {
+                    spilledPending.decrementAndGet();
+                    dropped.increment();
+                } else {
+                    overflow.add(notification);
+                    spilled.increment();
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown overflow policy " + overflowPolicy);
+        }
+    }
+
+    private void dispatchLoop() {
+        final List<TransferNotification> batch = new ArrayList<>(maxBatchSize);
+
+        while (running || !queue.isEmpty() || spilledPending.get() > 0) {
+            try {
+                // While anything is spilled, the main queue only holds notifications older than it.
+                queue.drainTo(batch, maxBatchSize);
+                TransferNotification spilledNotification;
+                while (batch.size() < maxBatchSize && (spilledNotification = overflow.poll()) != null) {
+                    spilledPending.decrementAndGet();
+                    batch.add(spilledNotification);
+                }
+                if (batch.isEmpty() && spilledPending.get() == 0) {
+                    final TransferNotification first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                        queue.drainTo(batch, maxBatchSize - 1);
+                    }
+                }
+
+                if (!batch.isEmpty()) {
+                    dispatch(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void dispatch(List<TransferNotification> batch) {
+        final Map<String, List<TransferNotification>> byOwner = new LinkedHashMap<>();
+        for (TransferNotification notification : batch) {
+            byOwner.computeIfAbsent(notification.getAccount().getAccountId(), id -> new ArrayList<>()).add(notification);
+        }
+
+        final long now = System.nanoTime();
+        for (List<TransferNotification> notifications : byOwner.values()) {
+            final StringBuilder description = new StringBuilder();
+            for (TransferNotification notification : notifications) {
+                if (description.length() > 0) {
+                    description.append("; ");
+                }
+                description.append(notification.describe(currencyFormats.computeIfAbsent(
+                        notification.getAccount().getCurrency(), NotificationDispatcher::currencyFormat)));
+
+                final long lag = now - notification.getEnqueuedAtNanos();
+                lastLagNanos.set(lag);
+                maxLagNanos.accumulateAndGet(lag, Math::max);
+            }
+
+            final Account latest = notifications.get(notifications.size() - 1).getAccount();
+            try {
+                notificationService.notifyAboutTransfer(latest, description.toString());
+                dispatched.add(notifications.size());
+            } catch (RuntimeException re) {
+                log.error("Exception while notifying the owner of account {}.", latest.getAccountId(), re);
+            }
+        }
+    }
+
+    /**
+     * Formats amounts as the ISO code followed by the amount with at least the currency's minor digits, such as
+     * {@code EUR 1,234.50} or {@code JPY 1,234}, whatever the default locale of the JVM. Digits beyond the minor
+     * unit are kept rather than rounded away.
+     */
+    static NumberFormat currencyFormat(Currency currency) {
+        final DecimalFormat format = new DecimalFormat("#,##0", DecimalFormatSymbols.getInstance(Locale.ROOT));
+        format.setMinimumFractionDigits(Math.max(0, currency.getDefaultFractionDigits()));
+        format.setMaximumFractionDigits(Integer.MAX_VALUE);
+        format.setPositivePrefix(currency.getCurrencyCode() + ' ');
+        format.setNegativePrefix(currency.getCurrencyCode() + " -");
+        return format;
+    }
+}
@@ -0,0 +1,182 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.model.TransferCommand;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes one JSON line per transfer to an audit file. Transfer threads only enqueue a small event; formatting and
+ * I/O happen on a single writer thread. When the queue is full the event is dropped and counted, so auditing can
+ * never stall a transfer.
+ */
+@Slf4j
+@Component
+public class TransferAuditLog {
+
+    public enum Outcome {
+        SUCCESS, DEBIT_FAILED, CREDIT_FAILED, FAILED
+    }
+
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    private final Path file;
+
+    private final BlockingQueue<Event> queue;
+
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile boolean running;
+
+    private Thread writerThread;
+
+    @Autowired
+    public TransferAuditLog(@Value("${audit.file:logs/transfer-audit.jsonl}") final String file,
+                            @Value("${audit.queue.capacity:65536}") final int capacity) {
+        this.file = file.isEmpty() ? null : Paths.get(file);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * An audit log that records nothing.
+     */
+    public static TransferAuditLog disabled() {
+        return new TransferAuditLog("", 1);
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    @PostConstruct
+    public synchronized void start() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+
+        final Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        final Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        running = true;
+        writerThread = new Thread(() -> writeLoop(writer), "transfer-audit");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Stops the writer after writing whatever is still queued.
+     */
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        if (writerThread != null) {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+            writerThread = null;
+        }
+    }
+
+    public void record(TransferCommand transferCommand, Outcome outcome, long latencyNanos) {
+        if (running && !queue.offer(new Event(System.currentTimeMillis(), transferCommand, outcome, latencyNanos))) {
+            dropped.increment();
+        }
+    }
+
+    private void writeLoop(Writer writer) {
+        final List<Event> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        final StringBuilder line = new StringBuilder(256);
+
+        try (Writer out = writer) {
+            while (running || !queue.isEmpty()) {
+                final Event first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                for (Event event : batch) {
+                    line.setLength(0);
+                    event.appendJson(line);
+                    out.append(line).append('\n');
+                }
+                out.flush();
+                batch.clear();
+            }
+        } catch (IOException ioe) {
+            log.error("Exception while writing the transfer audit log.", ioe);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Event {
+
+        private final long timestampMillis;
+
+        private final TransferCommand transferCommand;
+
+        private final Outcome outcome;
+
+        private final long latencyNanos;
+
+        Event(long timestampMillis, TransferCommand transferCommand, Outcome outcome, long latencyNanos) {
+            this.timestampMillis = timestampMillis;
+            this.transferCommand = transferCommand;
+            this.outcome = outcome;
+            this.latencyNanos = latencyNanos;
+        }
+
+        void appendJson(StringBuilder json) {
+            json.append("{\"timestamp\":\"").append(Instant.ofEpochMilli(timestampMillis)).append('"');
+            json.append(",\"fromAccountId\":");
+            appendString(json, transferCommand.getFromAccountId());
+            json.append(",\"toAccountId\":");
+            appendString(json, transferCommand.getToAccountId());
+            json.append(",\"amount\":").append(transferCommand.getAmount().toPlainString());
+            json.append(",\"outcome\":\"").append(outcome).append('"');
+            json.append(",\"latencyMicros\":").append(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+            json.append('}');
+        }
+
+        private static void appendString(StringBuilder json, String value) {
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    json.append('\\').append(c);
+                } else if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+            json.append('"');
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.db.awmd.challenge.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs what follows a transfer that a store completed on its own threads, such as the sharded engine's shard
+ * threads, so that neither those threads nor the wire protocol's selector that submitted the transfer ever run it.
+ * Unlike the {@link TransferExecutor}, it never hands a task back to the submitting thread: its queue is unbounded.
+ * Each task is short, and with the concurrency limit on, a transfer only leaves the limit once its task has run, so
+ * the queue holds at most as many tasks as the limit admits.
+ * <p>
+ * Not an {@link java.util.concurrent.Executor} itself, so it is never injected where the transfer executor is
+ * expected.
+ */
+@Component
+public class TransferCompletionExecutor {
+
+    private final ExecutorService executor;
+
+    @Autowired
+    public TransferCompletionExecutor(
+            @Value("${transfer.executor.virtual-threads:true}") final boolean preferVirtualThreads) {
+        final ExecutorService virtual = preferVirtualThreads ? TransferExecutor.newVirtualThreadExecutor() : null;
+        this.executor = virtual != null ? virtual : newThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    private TransferCompletionExecutor() {
+        this.executor = null;
+    }
+
+    /**
+     * Runs every task on the calling thread, for callers whose stores complete transfers on that thread anyway.
+     */
+    public static TransferCompletionExecutor direct() {
+        return new TransferCompletionExecutor();
+    }
+
+    public void execute(Runnable task) {
+        if (executor == null) {
+            task.run();
+        } else {
+            executor.execute(task);
+        }
+    }
+
+    /**
+     * Waits for the completions already submitted.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static ExecutorService newThreadPool(int threads) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                task -> {
+                    final Thread thread = new Thread(task, "transfer-completion-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+}
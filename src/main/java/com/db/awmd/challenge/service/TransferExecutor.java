@@ -0,0 +1,82 @@
+package com.db.awmd.challenge.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs transfers off the servlet threads for stores that execute them on the calling thread. Uses a virtual thread
+ * per task when the runtime has them (Java 21 and later), otherwise a fixed pool with a bounded queue. When that
+ * queue is full the submitting thread runs the transfer itself, which pushes back on new requests.
+ */
+@Slf4j
+@Component
+public class TransferExecutor implements Executor {
+
+    private final ExecutorService executor;
+
+    private final boolean virtualThreads;
+
+    @Autowired
+    public TransferExecutor(@Value("${transfer.executor.virtual-threads:true}") final boolean preferVirtualThreads,
+                            @Value("${transfer.executor.threads:64}") final int threads,
+                            @Value("${transfer.executor.queue-capacity:10000}") final int queueCapacity) {
+        final ExecutorService virtual = preferVirtualThreads ? newVirtualThreadExecutor() : null;
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : newThreadPool(threads, queueCapacity);
+        log.info("Transfers run on {}", virtualThreads ? "virtual threads" : threads + " platform threads");
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Stops accepting transfers and waits for those already submitted.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Looked up reflectively so the code still compiles and runs on Java 8.
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException roe) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newThreadPool(int threads, int queueCapacity) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    final Thread thread = new Thread(task, "transfer-worker-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
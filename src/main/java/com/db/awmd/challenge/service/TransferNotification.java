@@ -0,0 +1,44 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+
+/**
+ * A pending notification about one leg of a transfer. The description is only rendered when the notification is
+ * dispatched, off the transfer thread.
+ */
+@Getter
+public class TransferNotification {
+
+    public enum Kind {
+        DEBITED("debited"), CREDITED("credited");
+
+        private final String verb;
+
+        Kind(String verb) {
+            this.verb = verb;
+        }
+    }
+
+    private final Account account;
+
+    private final Kind kind;
+
+    private final BigDecimal amount;
+
+    private final long enqueuedAtNanos;
+
+    public TransferNotification(Account account, Kind kind, BigDecimal amount) {
+        this.account = account;
+        this.kind = kind;
+        this.amount = amount;
+        this.enqueuedAtNanos = System.nanoTime();
+    }
+
+    public String describe(NumberFormat currencyFormat) {
+        return String.format("Account successfully %s by amount %s", kind.verb, currencyFormat.format(amount));
+    }
+}
@@ -1,56 +1,255 @@
 package com.db.awmd.challenge.service;
 
-import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.admission.TransferAdmission;
+import com.db.awmd.challenge.domain.TransferResult;
 import com.db.awmd.challenge.exception.AccountCreditException;
 import com.db.awmd.challenge.exception.AccountDebitException;
+import com.db.awmd.challenge.exception.CurrencyConversionException;
+import com.db.awmd.challenge.exception.TransferThrottledException;
+import com.db.awmd.challenge.fx.FxRates;
+import com.db.awmd.challenge.ledger.TransferLedger;
+import com.db.awmd.challenge.metrics.MetricsRegistry;
+import com.db.awmd.challenge.model.LedgerEntry;
 import com.db.awmd.challenge.model.TransferCommand;
 import com.db.awmd.challenge.repository.AccountsRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.text.NumberFormat;
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 @Slf4j
 @Service
 public class TransferService {
 
-    private final NotificationService notificationService;
+    private final NotificationDispatcher notificationDispatcher;
 
     private final AccountsRepository accountsRepository;
 
+    private final MetricsRegistry metricsRegistry;
+
+    private final TransferAuditLog transferAuditLog;
+
+    private final Executor transferExecutor;
+
+    private final Executor completionExecutor;
+
+    private final TransferLedger transferLedger;
+
+    private final TransferAdmission transferAdmission;
+
+    private final FxRates fxRates;
+
     @Autowired
-    public TransferService(final NotificationService notificationService,
-                           final AccountsRepository accountsRepository) {
-        this.notificationService = notificationService;
+    public TransferService(final NotificationDispatcher notificationDispatcher,
+                           final AccountsRepository accountsRepository,
+                           final MetricsRegistry metricsRegistry,
+                           final TransferAuditLog transferAuditLog,
+                           final Executor transferExecutor,
+                           final TransferCompletionExecutor completionExecutor,
+                           final TransferLedger transferLedger,
+                           final TransferAdmission transferAdmission,
+                           final FxRates fxRates) {
+        this.notificationDispatcher = notificationDispatcher;
         this.accountsRepository = accountsRepository;
+        this.metricsRegistry = metricsRegistry;
+        this.transferAuditLog = transferAuditLog;
+        this.transferExecutor = transferExecutor;
+        this.completionExecutor = completionExecutor::execute;
+        this.transferLedger = transferLedger;
+        this.transferAdmission = transferAdmission;
+        this.fxRates = fxRates;
     }
 
+    /**
+     * The amount is in the currency of the source account. Between accounts in different currencies, the credited
+     * account receives it converted with the exchange rates current when the transfer starts.
+     *
+     * @throws TransferThrottledException if the source account or the service is over its limit; the transfer was
+     * not attempted
+     * @throws CurrencyConversionException if there is no exchange rate between the accounts' currencies
+     */
     public boolean transferAmount(final TransferCommand transferCommand) {
         log.info("Initiating transfer from {} to {} of amount {}", transferCommand.getFromAccountId(),
                 transferCommand.getToAccountId(),
                 transferCommand.getAmount());
 
+        final long start = transferAdmission.admit(transferCommand.getFromAccountId());
         try {
-            final Account debitedAccount = accountsRepository.debitAmount(transferCommand.getFromAccountId(), transferCommand.getAmount());
-            notificationService.notifyAboutTransfer(debitedAccount, String.format("Account successfully debited by amount %s",
-                    NumberFormat.getCurrencyInstance().format(transferCommand.getAmount())));
+            final Credit credit = credit(transferCommand);
+            final TransferResult transferResult = credit.isConverted()
+                    ? accountsRepository.transfer(transferCommand.getFromAccountId(), transferCommand.getToAccountId(),
+                            transferCommand.getAmount(), credit.amount)
+                    : accountsRepository.transfer(transferCommand.getFromAccountId(), transferCommand.getToAccountId(),
+                            transferCommand.getAmount());
+            completed(transferCommand, credit, start, transferResult, null);
+        } catch (RuntimeException re) {
+            completed(transferCommand, null, start, null, re);
+            throw re;
+        }
 
-            final Account creditedAccount = accountsRepository.creditAmount(transferCommand.getToAccountId(), transferCommand.getAmount());
-            notificationService.notifyAboutTransfer(creditedAccount, String.format("Account successfully credited by amount %s",
-                    NumberFormat.getCurrencyInstance().format(transferCommand.getAmount())));
+        return true;
+    }
 
-        } catch (AccountDebitException ade) {
-            log.error("Exception while debiting the account.", ade);
-            throw ade;
-        } catch (AccountCreditException ace) {
-            log.error("Exception while debiting the account.", ace);
-            Account creditedAccount = accountsRepository.creditAmount(transferCommand.getFromAccountId(), transferCommand.getAmount());
-            notificationService.notifyAboutTransfer(creditedAccount, String.format("Account successfully credited by amount %s",
-                    NumberFormat.getCurrencyInstance().format(transferCommand.getAmount())));
-            throw ace;
+    /**
+     * Submits the transfer without waiting for it. The future fails with the same exceptions
+     * {@link #transferAmount(TransferCommand)} throws. Stores that run transfers on the calling thread are called
+     * from the transfer executor, so the caller never blocks on the store. For stores that run transfers themselves,
+     * the notifications, ledger and audit, and whatever the caller chains onto the future, run on the
+     * {@link TransferCompletionExecutor}, never on the store's threads or on the thread that submitted the transfer.
+     */
+    public CompletableFuture<TransferResult> transferAmountAsync(final TransferCommand transferCommand) {
+        log.info("Initiating transfer from {} to {} of amount {}", transferCommand.getFromAccountId(),
+                transferCommand.getToAccountId(),
+                transferCommand.getAmount());
+
+        final long start;
+        try {
+            start = transferAdmission.admit(transferCommand.getFromAccountId());
+        } catch (TransferThrottledException tte) {
+            final CompletableFuture<TransferResult> throttled = new CompletableFuture<>();
+            throttled.completeExceptionally(tte);
+            return throttled;
         }
 
-        return true;
+        final Credit credit;
+        try {
+            credit = credit(transferCommand);
+        } catch (CurrencyConversionException cce) {
+            completed(transferCommand, null, start, null, cce);
+            final CompletableFuture<TransferResult> unconvertible = new CompletableFuture<>();
+            unconvertible.completeExceptionally(cce);
+            return unconvertible;
+        }
+
+        final String fromAccountId = transferCommand.getFromAccountId();
+        final String toAccountId = transferCommand.getToAccountId();
+        final BigDecimal amount = transferCommand.getAmount();
+        final boolean converted = credit.isConverted();
+        final BiConsumer<TransferResult, Throwable> completion = (transferResult, failure) -> completed(
+                transferCommand, credit, start, transferResult,
+                failure instanceof CompletionException ? failure.getCause() : failure);
+        if (accountsRepository.isAsync()) {
+            final CompletableFuture<TransferResult> transfer = converted
+                    ? accountsRepository.transferAsync(fromAccountId, toAccountId, amount, credit.amount)
+                    : accountsRepository.transferAsync(fromAccountId, toAccountId, amount);
+            // The store completes its futures on its own writer threads, which must not run the caller's work.
+            return transfer.whenCompleteAsync(completion, completionExecutor);
+        }
+        return CompletableFuture.supplyAsync(() -> converted
+                ? accountsRepository.transfer(fromAccountId, toAccountId, amount, credit.amount)
+                : accountsRepository.transfer(fromAccountId, toAccountId, amount), transferExecutor)
+                .whenComplete(completion);
+    }
+
+    /**
+     * Runs a transfer that the store carries out its own way, such as capturing a hold, through the same limits,
+     * conversion, notifications, ledger and audit as {@link #transferAmount(TransferCommand)}. {@code transfer} is
+     * given the amount to credit.
+     */
+    TransferResult transfer(final TransferCommand transferCommand,
+                            final Function<BigDecimal, TransferResult> transfer) {
+        final long start = transferAdmission.admit(transferCommand.getFromAccountId());
+        try {
+            final Credit credit = credit(transferCommand);
+            final TransferResult transferResult = transfer.apply(credit.amount);
+            completed(transferCommand, credit, start, transferResult, null);
+            return transferResult;
+        } catch (RuntimeException re) {
+            completed(transferCommand, null, start, null, re);
+            throw re;
+        }
+    }
+
+    /**
+     * Whether transfers between the two accounts convert between currencies. False if either account does not exist.
+     */
+    public boolean isConverting(String fromAccountId, String toAccountId) {
+        final Currency fromCurrency = accountsRepository.getCurrency(fromAccountId);
+        final Currency toCurrency = accountsRepository.getCurrency(toAccountId);
+        return fromCurrency != null && toCurrency != null && !fromCurrency.equals(toCurrency);
+    }
+
+    /**
+     * Completed transfers from or to the account in a time range, oldest first.
+     */
+    public List<LedgerEntry> getTransfers(String accountId, long fromMillis, long toMillis, int limit) {
+        return transferLedger.transfers(accountId, fromMillis, toMillis, limit);
+    }
+
+    /**
+     * What the credited account receives: the amount itself between accounts in the same currency, otherwise the
+     * amount converted with the current rates. Accounts that do not exist are left for the store to report.
+     */
+    private Credit credit(TransferCommand transferCommand) {
+        final Currency fromCurrency = accountsRepository.getCurrency(transferCommand.getFromAccountId());
+        final Currency toCurrency = accountsRepository.getCurrency(transferCommand.getToAccountId());
+        if (fromCurrency == null || toCurrency == null || fromCurrency.equals(toCurrency)) {
+            return new Credit(fromCurrency, toCurrency, transferCommand.getAmount(), false);
+        }
+        return new Credit(fromCurrency, toCurrency, fxRates.convert(transferCommand.getAmount(), fromCurrency,
+                toCurrency), true);
+    }
+
+    /**
+     * Notifies the owners of a successful transfer and adds it to the ledger, and records the outcome either way.
+     * Runs after the store has released the accounts, so none of this holds up other transfers.
+     */
+    private void completed(TransferCommand transferCommand, Credit credit, long start,
+                           TransferResult transferResult, Throwable failure) {
+        final TransferAuditLog.Outcome outcome;
+        if (failure == null) {
+            notificationDispatcher.notifyDebited(transferResult.getFromAccount(), transferCommand.getAmount());
+            notificationDispatcher.notifyCredited(transferResult.getToAccount(), credit.amount);
+            transferLedger.record(transferCommand.getFromAccountId(), transferCommand.getToAccountId(),
+                    transferCommand.getAmount(), credit.fromCurrency, credit.amount, credit.toCurrency);
+            outcome = TransferAuditLog.Outcome.SUCCESS;
+        } else if (failure instanceof AccountDebitException) {
+            metricsRegistry.recordFailure((AccountDebitException) failure);
+            log.error("Exception while debiting the account.", failure);
+            outcome = TransferAuditLog.Outcome.DEBIT_FAILED;
+        } else if (failure instanceof AccountCreditException) {
+            metricsRegistry.recordFailure((AccountCreditException) failure);
+            log.error("Exception while crediting the account.", failure);
+            outcome = TransferAuditLog.Outcome.CREDIT_FAILED;
+        } else {
+            outcome = TransferAuditLog.Outcome.FAILED;
+        }
+
+        transferAdmission.completed(start);
+        metricsRegistry.record(MetricsRegistry.Operation.TRANSFER, start);
+        transferAuditLog.record(transferCommand, outcome, System.nanoTime() - start);
+    }
+
+    /**
+     * The accounts' currencies as looked up when a transfer starts, and what the credited account receives.
+     */
+    private static final class Credit {
+
+        private final Currency fromCurrency;
+
+        private final Currency toCurrency;
+
+        private final BigDecimal amount;
+
+        private final boolean converted;
+
+        Credit(Currency fromCurrency, Currency toCurrency, BigDecimal amount, boolean converted) {
+            this.fromCurrency = fromCurrency;
+            this.toCurrency = toCurrency;
+            this.amount = amount;
+            this.converted = converted;
+        }
+
+        boolean isConverted() {
+            return converted;
+        }
     }
 }
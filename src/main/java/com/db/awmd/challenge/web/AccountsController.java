@@ -4,33 +4,89 @@ import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.exception.AccountCreditException;
 import com.db.awmd.challenge.exception.AccountDebitException;
 import com.db.awmd.challenge.exception.AccountNotPresentException;
+import com.db.awmd.challenge.exception.CurrencyConversionException;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.IdempotencyKeyReusedException;
+import com.db.awmd.challenge.exception.TransferThrottledException;
+import com.db.awmd.challenge.model.AccountsPage;
+import com.db.awmd.challenge.model.BatchTransferCommand;
+import com.db.awmd.challenge.model.BulkCreateReport;
 import com.db.awmd.challenge.model.TransferCommand;
+import com.db.awmd.challenge.model.TransferItemResult;
+import com.db.awmd.challenge.replication.ReplicationNode;
+import com.db.awmd.challenge.replication.ReplicationRole;
+import com.db.awmd.challenge.service.AccountJsonCache;
+import com.db.awmd.challenge.service.AccountsExporter;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.BatchTransferService;
+import com.db.awmd.challenge.service.BulkAccountService;
+import com.db.awmd.challenge.service.IdempotencyCache;
 import com.db.awmd.challenge.service.TransferService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/v1/accounts")
 @Slf4j
 public class AccountsController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * On a follower, how far behind the primary the account read may be, in milliseconds.
+     */
+    static final String STALENESS_HEADER = "X-Staleness-Millis";
+
     private final AccountsService accountsService;
 
     private final TransferService transferService;
 
+    private final BatchTransferService batchTransferService;
+
+    private final IdempotencyCache idempotencyCache;
+
+    private final AccountsExporter accountsExporter;
+
+    private final BulkAccountService bulkAccountService;
+
+    private final AccountJsonCache accountJsonCache;
+
+    private final ReplicationNode replicationNode;
+
     @Autowired
     public AccountsController(final AccountsService accountsService,
-                              final TransferService transferService) {
+                              final TransferService transferService,
+                              final BatchTransferService batchTransferService,
+                              final IdempotencyCache idempotencyCache,
+                              final AccountsExporter accountsExporter,
+                              final BulkAccountService bulkAccountService,
+                              final AccountJsonCache accountJsonCache,
+                              final ReplicationNode replicationNode) {
         this.accountsService = accountsService;
         this.transferService = transferService;
+        this.batchTransferService = batchTransferService;
+        this.idempotencyCache = idempotencyCache;
+        this.accountsExporter = accountsExporter;
+        this.bulkAccountService = bulkAccountService;
+        this.accountJsonCache = accountJsonCache;
+        this.replicationNode = replicationNode;
     }
 
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -39,33 +95,188 @@ public class AccountsController {
 
         try {
             this.accountsService.createAccount(account);
-        } catch (DuplicateAccountIdException daie) {
-            return new ResponseEntity<>(daie.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (DuplicateAccountIdException | IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         }
 
         return new ResponseEntity<>(HttpStatus.CREATED);
     }
 
+    /**
+     * Creates accounts from a JSON array or newline-delimited JSON, streamed from the request body. Accounts that
+     * are invalid or already exist are reported and skipped; the rest are created.
+     */
+    @PostMapping(path = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    public ResponseEntity<BulkCreateReport> createAccounts(InputStream body) {
+        final BulkCreateReport report = bulkAccountService.createAccounts(body);
+        return new ResponseEntity<>(report, report.getError() == null ? HttpStatus.OK : HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Lists accounts in creation order. The cursor of each page is the position of the next account, so paging
+     * through never skips or repeats an account, however many are created meanwhile.
+     */
+    @GetMapping
+    public ResponseEntity<Object> getAccounts(@RequestParam(name = "cursor", required = false) String cursor,
+                                              @RequestParam(name = "limit", defaultValue = "100") int limit) {
+        final int from;
+        try {
+            from = cursor == null ? 0 : Integer.parseInt(cursor);
+        } catch (NumberFormatException nfe) {
+            return new ResponseEntity<>("Invalid cursor " + cursor, HttpStatus.BAD_REQUEST);
+        }
+        if (from < 0 || limit < 1 || limit > MAX_PAGE_SIZE) {
+            return new ResponseEntity<>(String.format("Cursor must not be negative and limit must be between 1 and %d",
+                    MAX_PAGE_SIZE), HttpStatus.BAD_REQUEST);
+        }
+
+        final List<Account> accounts = this.accountsService.getAccounts(from, limit);
+        final int next = from + accounts.size();
+        return new ResponseEntity<>(new AccountsPage(accounts,
+                next < this.accountsService.getAccountCount() ? String.valueOf(next) : null), HttpStatus.OK);
+    }
+
+    /**
+     * Streams every account as NDJSON or CSV without holding them all in memory.
+     */
+    @GetMapping(path = "/export")
+    public ResponseEntity<StreamingResponseBody> exportAccounts(@RequestParam(name = "format", defaultValue = "ndjson") String format) {
+        final AccountsExporter.Format exportFormat;
+        try {
+            exportFormat = AccountsExporter.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException iae) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        log.info("Exporting accounts as {}", exportFormat);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+                .body(out -> accountsExporter.export(exportFormat, out));
+    }
+
+    /**
+     * Serves the account's JSON from {@link AccountJsonCache}, tagged with its version. Spring answers a request
+     * whose {@code If-None-Match} still matches with 304 and no body.
+     * <p>
+     * A follower reports how stale the account may be, and answers 503 once that is beyond its bound.
+     */
     @GetMapping(path = "/{accountId}")
-    public Account getAccount(@PathVariable String accountId) {
-        log.info("Retrieving account for id {}", accountId);
-        return this.accountsService.getAccount(accountId);
+    public ResponseEntity<byte[]> getAccount(@PathVariable String accountId) {
+        log.debug("Retrieving account for id {}", accountId);
+        final boolean follower = replicationNode.getRole() == ReplicationRole.FOLLOWER;
+        final long stalenessMillis = replicationNode.getStalenessMillis();
+        if (stalenessMillis > replicationNode.getMaxStalenessMillis()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+
+        final Account account = this.accountsService.getAccount(accountId);
+        final ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (follower) {
+            response.header(STALENESS_HEADER, String.valueOf(stalenessMillis));
+        }
+        if (account == null) {
+            return response.build();
+        }
+
+        final AccountJsonCache.Json json = accountJsonCache.get(account);
+        return response
+                .eTag(json.getETag())
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .body(json.getBytes());
     }
 
+    /**
+     * Completed transfers from or to the account, oldest first. {@code from} and {@code to} are ISO-8601 instants;
+     * the range includes {@code from} and excludes {@code to}.
+     */
+    @GetMapping(path = "/{accountId}/transfers")
+    public ResponseEntity<Object> getTransfers(@PathVariable String accountId,
+                                               @RequestParam(name = "from", required = false) String from,
+                                               @RequestParam(name = "to", required = false) String to,
+                                               @RequestParam(name = "limit", defaultValue = "100") int limit) {
+        final long fromMillis;
+        final long toMillis;
+        try {
+            fromMillis = from == null ? Long.MIN_VALUE : Instant.parse(from).toEpochMilli();
+            toMillis = to == null ? Long.MAX_VALUE : Instant.parse(to).toEpochMilli();
+        } catch (DateTimeParseException dtpe) {
+            return new ResponseEntity<>("Invalid instant " + dtpe.getParsedString(), HttpStatus.BAD_REQUEST);
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return new ResponseEntity<>(String.format("Limit must be between 1 and %d", MAX_PAGE_SIZE),
+                    HttpStatus.BAD_REQUEST);
+        }
+
+        log.info("Retrieving transfers of account {}", accountId);
+        return new ResponseEntity<>(this.transferService.getTransfers(accountId, fromMillis, toMillis, limit),
+                HttpStatus.OK);
+    }
+
+    /**
+     * Runs the transfer asynchronously, so the servlet thread is released while it is in flight. With an
+     * {@code Idempotency-Key} header, a retry of the same transfer gets the original response and is not executed
+     * again. A transfer refused by rate or concurrency limits gets a 429 with a {@code Retry-After} in seconds; it
+     * was never attempted, so a retry with the same key runs it.
+     */
     @PutMapping(path = "/transfer")
-    public ResponseEntity<Object> transferAmount(@RequestBody @Valid TransferCommand transferCommand) {
+    public DeferredResult<ResponseEntity<Object>> transferAmount(@RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+                                                                 @RequestBody @Valid TransferCommand transferCommand) {
+        final DeferredResult<ResponseEntity<Object>> response = new DeferredResult<>();
 
-        try {
-            boolean requestStatus = transferService.transferAmount(transferCommand);
-            log.info("Amount transfer status : " + requestStatus);
-        } catch (AccountCreditException | AccountDebitException ae) {
-            if (AccountNotPresentException.class.isInstance(ae.getCause())) {
-                return new ResponseEntity<>(ae.getCause().getMessage(), HttpStatus.BAD_REQUEST);
+        final CompletableFuture<ResponseEntity<Object>> transfer;
+        if (idempotencyKey == null) {
+            transfer = transfer(transferCommand);
+        } else {
+            try {
+                transfer = idempotencyCache.executeAsync(idempotencyKey, transferCommand, () -> transfer(transferCommand));
+            } catch (IdempotencyKeyReusedException ikre) {
+                response.setResult(new ResponseEntity<>(ikre.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY));
+                return response;
             }
-
-            return new ResponseEntity<>(ae.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
 
-        return new ResponseEntity<>(HttpStatus.OK);
+        transfer.whenComplete((entity, failure) -> {
+            final Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+            if (cause instanceof TransferThrottledException) {
+                final long retryAfterNanos = ((TransferThrottledException) cause).getRetryAfterNanos();
+                response.setResult(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1,
+                                (retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1))))
+                        .body(cause.getMessage()));
+            } else if (cause != null) {
+                response.setErrorResult(cause);
+            } else {
+                response.setResult(entity);
+            }
+        });
+        return response;
+    }
+
+    @PutMapping(path = "/transfers/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<TransferItemResult> transferAmounts(@RequestBody @Valid BatchTransferCommand batchTransferCommand) {
+        return batchTransferService.transferAll(batchTransferCommand.getTransfers(), batchTransferCommand.isNetting());
+    }
+
+    private CompletableFuture<ResponseEntity<Object>> transfer(TransferCommand transferCommand) {
+        return transferService.transferAmountAsync(transferCommand).handle((transferResult, failure) -> {
+            log.info("Amount transfer status : {}", failure == null);
+            if (failure == null) {
+                return new ResponseEntity<>(HttpStatus.OK);
+            }
+
+            final Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+            if (cause instanceof AccountCreditException || cause instanceof AccountDebitException) {
+                if (AccountNotPresentException.class.isInstance(cause.getCause())) {
+                    return new ResponseEntity<>(cause.getCause().getMessage(), HttpStatus.BAD_REQUEST);
+                }
+
+                return new ResponseEntity<>(cause.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+            if (cause instanceof CurrencyConversionException) {
+                return new ResponseEntity<>(cause.getMessage(), HttpStatus.BAD_REQUEST);
+            }
+
+            throw new CompletionException(cause);
+        });
     }
 }
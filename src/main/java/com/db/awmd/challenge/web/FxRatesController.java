@@ -0,0 +1,51 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.fx.FxRates;
+import com.db.awmd.challenge.fx.RateTable;
+import com.db.awmd.challenge.model.ExchangeRates;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+
+@RestController
+@RequestMapping("/v1/fx/rates")
+@Slf4j
+public class FxRatesController {
+
+    private final FxRates fxRates;
+
+    @Autowired
+    public FxRatesController(final FxRates fxRates) {
+        this.fxRates = fxRates;
+    }
+
+    @GetMapping
+    public ExchangeRates getRates() {
+        return fxRates.getTable().toExchangeRates();
+    }
+
+    /**
+     * Replaces all exchange rates at once. Transfers already converting finish with the rates they started with.
+     */
+    @PutMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> publishRates(@RequestBody @Valid ExchangeRates exchangeRates) {
+        final RateTable table;
+        try {
+            table = RateTable.of(exchangeRates);
+        } catch (IllegalArgumentException iae) {
+            return new ResponseEntity<>(iae.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+
+        fxRates.publish(table);
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+}
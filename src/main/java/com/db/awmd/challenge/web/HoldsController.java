@@ -0,0 +1,106 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.Hold;
+import com.db.awmd.challenge.exception.AccountCreditException;
+import com.db.awmd.challenge.exception.AccountDebitException;
+import com.db.awmd.challenge.exception.AccountNotPresentException;
+import com.db.awmd.challenge.exception.CurrencyConversionException;
+import com.db.awmd.challenge.exception.HoldNotPresentException;
+import com.db.awmd.challenge.model.AccountHolds;
+import com.db.awmd.challenge.model.CaptureCommand;
+import com.db.awmd.challenge.model.HoldCommand;
+import com.db.awmd.challenge.service.HoldService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import java.time.DateTimeException;
+import java.time.Instant;
+
+/**
+ * Only registered with the in-memory store, the one store that holds funds.
+ */
+@RestController
+@RequestMapping("/v1/accounts/{accountId}/holds")
+@ConditionalOnProperty(name = "accounts.store", havingValue = "in-memory", matchIfMissing = true)
+@Slf4j
+public class HoldsController {
+
+    private final HoldService holdService;
+
+    @Autowired
+    public HoldsController(final HoldService holdService) {
+        this.holdService = holdService;
+    }
+
+    /**
+     * Holds part of the account's available balance until {@code expiresAt}.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> placeHold(@PathVariable String accountId, @RequestBody @Valid HoldCommand command) {
+        final long expiresAtMillis;
+        try {
+            expiresAtMillis = Instant.parse(command.getExpiresAt()).toEpochMilli();
+        } catch (DateTimeException | ArithmeticException e) {
+            return new ResponseEntity<>("Invalid instant " + command.getExpiresAt(), HttpStatus.BAD_REQUEST);
+        }
+
+        try {
+            final Hold hold = holdService.placeHold(accountId, command.getAmount(), expiresAtMillis);
+            return new ResponseEntity<>(hold, HttpStatus.CREATED);
+        } catch (AccountDebitException | IllegalArgumentException e) {
+            return badRequest(e);
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<AccountHolds> getHolds(@PathVariable String accountId) {
+        final AccountHolds accountHolds = holdService.getHolds(accountId);
+        return accountHolds == null ? new ResponseEntity<>(HttpStatus.NOT_FOUND)
+                : new ResponseEntity<>(accountHolds, HttpStatus.OK);
+    }
+
+    /**
+     * Transfers part or all of the hold. What is left stays held until captured, released or expired.
+     */
+    @PutMapping(path = "/{holdId}/capture", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> captureHold(@PathVariable String accountId, @PathVariable String holdId,
+                                              @RequestBody @Valid CaptureCommand command) {
+        try {
+            holdService.captureHold(accountId, holdId, command.getToAccountId(), command.getAmount());
+            return new ResponseEntity<>(HttpStatus.OK);
+        } catch (HoldNotPresentException hnpe) {
+            return new ResponseEntity<>(hnpe.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (AccountDebitException | AccountCreditException | CurrencyConversionException
+                | IllegalArgumentException e) {
+            return badRequest(e);
+        }
+    }
+
+    @DeleteMapping(path = "/{holdId}")
+    public ResponseEntity<Object> releaseHold(@PathVariable String accountId, @PathVariable String holdId) {
+        try {
+            holdService.releaseHold(accountId, holdId);
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        } catch (HoldNotPresentException | AccountDebitException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+
+    private static ResponseEntity<Object> badRequest(RuntimeException e) {
+        return new ResponseEntity<>(AccountNotPresentException.class.isInstance(e.getCause())
+                ? e.getCause().getMessage() : e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+}
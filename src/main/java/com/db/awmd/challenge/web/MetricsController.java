@@ -0,0 +1,80 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.admission.TransferAdmission;
+import com.db.awmd.challenge.metrics.MetricsRegistry;
+import com.db.awmd.challenge.model.AccountCacheMetrics;
+import com.db.awmd.challenge.model.AdmissionMetrics;
+import com.db.awmd.challenge.model.IdempotencyMetrics;
+import com.db.awmd.challenge.model.NotificationMetrics;
+import com.db.awmd.challenge.model.ScheduleMetrics;
+import com.db.awmd.challenge.model.ServiceMetrics;
+import com.db.awmd.challenge.schedule.TransferScheduler;
+import com.db.awmd.challenge.service.AccountJsonCache;
+import com.db.awmd.challenge.service.IdempotencyCache;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/v1/metrics")
+public class MetricsController {
+
+    private final MetricsRegistry metricsRegistry;
+
+    private final NotificationDispatcher notificationDispatcher;
+
+    private final IdempotencyCache idempotencyCache;
+
+    private final AccountJsonCache accountJsonCache;
+
+    private final TransferAdmission transferAdmission;
+
+    private final TransferScheduler transferScheduler;
+
+    @Autowired
+    public MetricsController(final MetricsRegistry metricsRegistry,
+                             final NotificationDispatcher notificationDispatcher,
+                             final IdempotencyCache idempotencyCache,
+                             final AccountJsonCache accountJsonCache,
+                             final TransferAdmission transferAdmission,
+                             final TransferScheduler transferScheduler) {
+        this.metricsRegistry = metricsRegistry;
+        this.notificationDispatcher = notificationDispatcher;
+        this.idempotencyCache = idempotencyCache;
+        this.accountJsonCache = accountJsonCache;
+        this.transferAdmission = transferAdmission;
+        this.transferScheduler = transferScheduler;
+    }
+
+    @GetMapping
+    public ServiceMetrics getMetrics() {
+        return metricsRegistry.getMetrics();
+    }
+
+    @GetMapping(path = "/notifications")
+    public NotificationMetrics getNotificationMetrics() {
+        return notificationDispatcher.getMetrics();
+    }
+
+    @GetMapping(path = "/idempotency")
+    public IdempotencyMetrics getIdempotencyMetrics() {
+        return idempotencyCache.getMetrics();
+    }
+
+    @GetMapping(path = "/account-cache")
+    public AccountCacheMetrics getAccountCacheMetrics() {
+        return accountJsonCache.getMetrics();
+    }
+
+    @GetMapping(path = "/admission")
+    public AdmissionMetrics getAdmissionMetrics() {
+        return transferAdmission.getMetrics();
+    }
+
+    @GetMapping(path = "/schedule")
+    public ScheduleMetrics getScheduleMetrics() {
+        return transferScheduler.getMetrics();
+    }
+}
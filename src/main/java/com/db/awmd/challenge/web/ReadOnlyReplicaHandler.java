@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.exception.ReadOnlyReplicaException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/**
+ * Answers any change sent to a follower with 503, whichever endpoint it reached: changes go to the primary.
+ */
+@ControllerAdvice
+public class ReadOnlyReplicaHandler {
+
+    @ExceptionHandler(ReadOnlyReplicaException.class)
+    public ResponseEntity<String> readOnlyReplica(ReadOnlyReplicaException rore) {
+        return new ResponseEntity<>(rore.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+}
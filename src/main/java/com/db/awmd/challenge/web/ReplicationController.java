@@ -0,0 +1,44 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.model.ReplicationStatus;
+import com.db.awmd.challenge.replication.ReplicationNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/v1/replication")
+public class ReplicationController {
+
+    private final ReplicationNode replicationNode;
+
+    @Autowired
+    public ReplicationController(final ReplicationNode replicationNode) {
+        this.replicationNode = replicationNode;
+    }
+
+    @GetMapping
+    public ReplicationStatus getStatus() {
+        return replicationNode.getStatus();
+    }
+
+    /**
+     * Makes this follower the primary. Records the old primary wrote but had not shipped yet are lost to it, so the
+     * old primary must be stopped first and not brought back as a primary.
+     */
+    @PostMapping(path = "/promote")
+    public ResponseEntity<Object> promote() throws IOException, InterruptedException {
+        try {
+            final ReplicationStatus status = replicationNode.promote();
+            return new ResponseEntity<>(status, HttpStatus.OK);
+        } catch (IllegalStateException ise) {
+            return new ResponseEntity<>(ise.getMessage(), HttpStatus.CONFLICT);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.model.ScheduledTransfer;
+import com.db.awmd.challenge.model.ScheduledTransferCommand;
+import com.db.awmd.challenge.schedule.TransferScheduler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import java.time.DateTimeException;
+import java.time.Instant;
+
+@RestController
+@RequestMapping("/v1/accounts/transfers/scheduled")
+@Slf4j
+public class ScheduledTransfersController {
+
+    private final TransferScheduler transferScheduler;
+
+    @Autowired
+    public ScheduledTransfersController(final TransferScheduler transferScheduler) {
+        this.transferScheduler = transferScheduler;
+    }
+
+    /**
+     * Books a transfer for its {@code executeAt} time. Whether the accounts exist and can cover it is only known
+     * once it runs.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> scheduleTransfer(@RequestBody @Valid ScheduledTransferCommand command) {
+        final long executeAtMillis;
+        try {
+            executeAtMillis = Instant.parse(command.getExecuteAt()).toEpochMilli();
+        } catch (DateTimeException | ArithmeticException e) {
+            return new ResponseEntity<>("Invalid instant " + command.getExecuteAt(), HttpStatus.BAD_REQUEST);
+        }
+
+        final ScheduledTransfer scheduledTransfer = transferScheduler.schedule(command.toTransferCommand(), executeAtMillis);
+        log.debug("Scheduled transfer {} for {}", scheduledTransfer.getId(), scheduledTransfer.getExecuteAt());
+        return new ResponseEntity<>(scheduledTransfer, HttpStatus.CREATED);
+    }
+
+    @GetMapping(path = "/{id}")
+    public ResponseEntity<ScheduledTransfer> getScheduledTransfer(@PathVariable long id) {
+        final ScheduledTransfer scheduledTransfer = transferScheduler.getScheduled(id);
+        return scheduledTransfer == null ? new ResponseEntity<>(HttpStatus.NOT_FOUND)
+                : new ResponseEntity<>(scheduledTransfer, HttpStatus.OK);
+    }
+
+    /**
+     * Cancels a transfer that has not run yet.
+     */
+    @DeleteMapping(path = "/{id}")
+    public ResponseEntity<Object> cancelScheduledTransfer(@PathVariable long id) {
+        return new ResponseEntity<>(transferScheduler.cancel(id) ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND);
+    }
+}
@@ -0,0 +1,195 @@
+package com.db.awmd.challenge.wire;
+
+import com.db.awmd.challenge.model.TransferCommand;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Frames of the binary transfer protocol, big-endian. Every frame starts with an {@code int} holding the length of
+ * the rest of the frame.
+ * <p>
+ * Transfer request:
+ * <pre>
+ * int   frame length
+ * long  correlation id, chosen by the client and echoed in the response
+ * short from-account id length, from-account id (UTF-8)
+ * short to-account id length, to-account id (UTF-8)
+ * long  unscaled amount
+ * byte  amount scale
+ * </pre>
+ * Response:
+ * <pre>
+ * int   frame length
+ * long  correlation id
+ * byte  {@link WireStatus} ordinal
+ * int   milliseconds to wait before retrying, for {@link WireStatus#THROTTLED}; 0 otherwise
+ * short message length, message (UTF-8, empty on success)
+ * </pre>
+ * Requests are decoded straight from the connection's buffer: ids are built from its backing array without an
+ * intermediate copy, and the amount needs no parsing.
+ */
+public final class TransferFrameCodec {
+
+    public static final int LENGTH_BYTES = 4;
+
+    /**
+     * Smallest request body: correlation id, two empty ids, amount and scale.
+     */
+    static final int MIN_REQUEST_BYTES = 8 + 2 + 2 + 8 + 1;
+
+    private static final int MAX_MESSAGE_BYTES = 1024;
+
+    private TransferFrameCodec() {
+    }
+
+    /**
+     * Encoded size of a request, including its length prefix.
+     */
+    public static int requestSize(TransferCommand command) {
+        return LENGTH_BYTES + MIN_REQUEST_BYTES + utf8Length(command.getFromAccountId())
+                + utf8Length(command.getToAccountId());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the amount has no exact {@code long} unscaled value and byte scale
+     */
+    public static void encodeRequest(ByteBuffer buffer, long correlationId, TransferCommand command) {
+        final BigDecimal amount = command.getAmount();
+        if (amount.scale() < Byte.MIN_VALUE || amount.scale() > Byte.MAX_VALUE || amount.unscaledValue().bitLength() > 63) {
+            throw new IllegalArgumentException("Amount " + amount + " cannot be sent as a frame");
+        }
+
+        buffer.putInt(requestSize(command) - LENGTH_BYTES);
+        buffer.putLong(correlationId);
+        putString(buffer, command.getFromAccountId());
+        putString(buffer, command.getToAccountId());
+        buffer.putLong(amount.unscaledValue().longValue());
+        buffer.put((byte) amount.scale());
+    }
+
+    /**
+     * Reads the transfer of a request body that starts after the correlation id and ends at the buffer's limit.
+     *
+     * @throws IllegalArgumentException if the body is malformed
+     */
+    public static TransferCommand decodeRequest(ByteBuffer body) {
+        final String fromAccountId = getString(body);
+        final String toAccountId = getString(body);
+        if (body.remaining() != 9) {
+            throw new IllegalArgumentException("Transfer frame has " + body.remaining() + " bytes after the ids, not 9");
+        }
+        final long unscaled = body.getLong();
+        final int scale = body.get();
+        return new TransferCommand(fromAccountId, toAccountId, BigDecimal.valueOf(unscaled, scale));
+    }
+
+    /**
+     * The checks {@code @Valid} applies to a JSON {@link TransferCommand}, written out.
+     *
+     * @return why the command is invalid, or {@code null} if it is valid
+     */
+    public static String validate(TransferCommand command) {
+        if (command.getFromAccountId().isEmpty()) {
+            return "fromAccountId may not be empty";
+        }
+        if (command.getToAccountId().isEmpty()) {
+            return "toAccountId may not be empty";
+        }
+        if (command.getAmount().signum() < 0) {
+            return "Amount to be transfered should be greater than zero.";
+        }
+        return null;
+    }
+
+    static ByteBuffer encodeResponse(long correlationId, WireStatus status, int retryAfterMillis, String message) {
+        byte[] text = message == null ? new byte[0] : message.getBytes(StandardCharsets.UTF_8);
+        if (text.length > MAX_MESSAGE_BYTES) {
+            text = Arrays.copyOf(text, MAX_MESSAGE_BYTES);
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(LENGTH_BYTES + 8 + 1 + 4 + 2 + text.length);
+        buffer.putInt(buffer.capacity() - LENGTH_BYTES);
+        buffer.putLong(correlationId);
+        buffer.put((byte) status.ordinal());
+        buffer.putInt(retryAfterMillis);
+        buffer.putShort((short) text.length);
+        buffer.put(text);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Reads the response at the buffer's position, or returns {@code null} without consuming anything if it is not
+     * complete yet.
+     */
+    public static Response decodeResponse(ByteBuffer buffer) {
+        if (buffer.remaining() < LENGTH_BYTES || buffer.remaining() < LENGTH_BYTES + buffer.getInt(buffer.position())) {
+            return null;
+        }
+        buffer.getInt();
+        final long correlationId = buffer.getLong();
+        final WireStatus status = WireStatus.of(buffer.get());
+        final int retryAfterMillis = buffer.getInt();
+        return new Response(correlationId, status, retryAfterMillis, getString(buffer));
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        if (buffer.remaining() < 2) {
+            throw new IllegalArgumentException("Frame ends inside a string length");
+        }
+        final int length = buffer.getShort() & 0xFFFF;
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("String of " + length + " bytes runs past the end of the frame");
+        }
+
+        final String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        } else {
+            final byte[] bytes = new byte[length];
+            buffer.duplicate().get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    @Data
+    public static class Response {
+
+        private final long correlationId;
+
+        private final WireStatus status;
+
+        private final int retryAfterMillis;
+
+        private final String message;
+    }
+}
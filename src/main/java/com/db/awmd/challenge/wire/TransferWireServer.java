@@ -0,0 +1,369 @@
+package com.db.awmd.challenge.wire;
+
+import com.db.awmd.challenge.exception.AccountCreditException;
+import com.db.awmd.challenge.exception.AccountDebitException;
+import com.db.awmd.challenge.exception.AccountNotPresentException;
+import com.db.awmd.challenge.exception.CurrencyConversionException;
+import com.db.awmd.challenge.exception.TransferThrottledException;
+import com.db.awmd.challenge.model.TransferCommand;
+import com.db.awmd.challenge.service.TransferService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Accepts transfers as binary frames (see {@link TransferFrameCodec}) over persistent TCP connections, as a
+ * cheaper alternative to {@code PUT /v1/accounts/transfer} for clients that send many transfers. Each frame runs
+ * through {@link TransferService#transferAmountAsync(TransferCommand)}, so admission, auditing, notifications and
+ * the ledger behave exactly as for the JSON endpoint.
+ * <p>
+ * One selector thread does all the I/O. Clients may pipeline requests; responses are sent as transfers complete,
+ * which need not be in request order, and carry the request's correlation id. A connection with
+ * {@code maxPipelined} requests whose responses are not written yet, whether the transfer is still in flight or the
+ * client is slow to read, is not read from until some are written. A frame with an impossible length
+ * closes the connection; a well-framed request that does not decode or validate gets an
+ * {@link WireStatus#INVALID} response.
+ * <p>
+ * Enabled with {@code wire.enabled=true}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "wire.enabled", havingValue = "true")
+public class TransferWireServer {
+
+    private static final int MIN_READ_BUFFER_BYTES = 64 * 1024;
+
+    private static final int MAX_GATHER = 64;
+
+    private final TransferService transferService;
+
+    private final int port;
+
+    private final int maxFrameBytes;
+
+    private final int maxPipelined;
+
+    /**
+     * Connections with responses waiting to be written, handed to the selector thread.
+     */
+    private final Queue<Connection> flushQueue = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running;
+
+    private Selector selector;
+
+    private ServerSocketChannel serverChannel;
+
+    private Thread selectorThread;
+
+    @Autowired
+    public TransferWireServer(final TransferService transferService,
+                              @Value("${wire.port:18081}") final int port,
+                              @Value("${wire.max-frame-bytes:1024}") final int maxFrameBytes,
+                              @Value("${wire.max-pipelined:1024}") final int maxPipelined) {
+        this.transferService = transferService;
+        this.port = port;
+        this.maxFrameBytes = maxFrameBytes;
+        this.maxPipelined = maxPipelined;
+    }
+
+    @PostConstruct
+    public synchronized void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        selectorThread = new Thread(this::selectLoop, "transfer-wire");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        log.info("Accepting transfer frames on port {}", getLocalPort());
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException, IOException {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        selector.wakeup();
+        selectorThread.join();
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    /**
+     * The port actually bound, which differs from the configured one when that is 0.
+     */
+    public int getLocalPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    private void selectLoop() {
+        while (running) {
+            try {
+                selector.select();
+                Connection connection;
+                while ((connection = flushQueue.poll()) != null) {
+                    connection.flushScheduled.set(false);
+                    connection.flush();
+                }
+
+                final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    connection = (Connection) key.attachment();
+                    if (key.isReadable()) {
+                        connection.read();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.flush();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Transfer wire server loop failed", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        final Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        log.debug("Accepted transfer connection from {}", channel.getRemoteAddress());
+    }
+
+    static ByteBuffer response(long correlationId, Throwable failure) {
+        final Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+        if (cause == null) {
+            return TransferFrameCodec.encodeResponse(correlationId, WireStatus.OK, 0, null);
+        }
+        if (cause instanceof TransferThrottledException) {
+            final long retryAfterNanos = ((TransferThrottledException) cause).getRetryAfterNanos();
+            final long millis = (retryAfterNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1) / TimeUnit.MILLISECONDS.toNanos(1);
+            return TransferFrameCodec.encodeResponse(correlationId, WireStatus.THROTTLED,
+                    (int) Math.min(Integer.MAX_VALUE, millis), cause.getMessage());
+        }
+        if (cause instanceof AccountCreditException || cause instanceof AccountDebitException) {
+            if (cause.getCause() instanceof AccountNotPresentException) {
+                return TransferFrameCodec.encodeResponse(correlationId, WireStatus.ACCOUNT_NOT_PRESENT, 0,
+                        cause.getCause().getMessage());
+            }
+            return TransferFrameCodec.encodeResponse(correlationId, cause instanceof AccountDebitException
+                    ? WireStatus.DEBIT_FAILED : WireStatus.CREDIT_FAILED, 0, cause.getMessage());
+        }
+        if (cause instanceof CurrencyConversionException) {
+            return TransferFrameCodec.encodeResponse(correlationId, WireStatus.INVALID, 0, cause.getMessage());
+        }
+
+        log.error("Transfer {} failed", correlationId, cause);
+        return TransferFrameCodec.encodeResponse(correlationId, WireStatus.ERROR, 0, cause.getMessage());
+    }
+
+    private final class Connection {
+
+        private final SocketChannel channel;
+
+        /**
+         * On the heap, so account ids are decoded from its backing array.
+         */
+        private final ByteBuffer in = ByteBuffer.allocate(Math.max(MIN_READ_BUFFER_BYTES,
+                TransferFrameCodec.LENGTH_BYTES + maxFrameBytes));
+
+        private final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+        /**
+         * Requests read whose response is not completely written yet. Only used by the selector thread.
+         */
+        private int pending;
+
+        /**
+         * Responses taken from {@link #responses} but not completely written yet. Only used by the selector thread.
+         */
+        private final ArrayDeque<ByteBuffer> unwritten = new ArrayDeque<>();
+
+        private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+
+        private SelectionKey key;
+
+        private volatile boolean closed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read() {
+            try {
+                if (channel.read(in) < 0) {
+                    close();
+                    return;
+                }
+            } catch (IOException ioe) {
+                log.debug("Transfer connection failed on read", ioe);
+                close();
+                return;
+            }
+            processFrames();
+        }
+
+        /**
+         * Handles every complete frame in the read buffer, unless the connection has too many responses pending.
+         */
+        private void processFrames() {
+            in.flip();
+            while (in.remaining() >= TransferFrameCodec.LENGTH_BYTES && pending < maxPipelined) {
+                final int start = in.position();
+                final int length = in.getInt(start);
+                if (length < TransferFrameCodec.MIN_REQUEST_BYTES || length > maxFrameBytes) {
+                    log.warn("Closing transfer connection that sent a frame of {} bytes", length);
+                    close();
+                    return;
+                }
+                final int end = start + TransferFrameCodec.LENGTH_BYTES + length;
+                if (end > in.limit()) {
+                    break;
+                }
+
+                // Narrow the buffer to the frame instead of slicing it, so a frame allocates no view.
+                final int limit = in.limit();
+                in.position(start + TransferFrameCodec.LENGTH_BYTES).limit(end);
+                handleFrame(in);
+                in.limit(limit).position(end);
+            }
+            in.compact();
+
+            if (pending >= maxPipelined) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+        }
+
+        private void handleFrame(ByteBuffer frame) {
+            pending++;
+            final long correlationId = frame.getLong();
+            final TransferCommand command;
+            try {
+                command = TransferFrameCodec.decodeRequest(frame);
+            } catch (IllegalArgumentException iae) {
+                respond(TransferFrameCodec.encodeResponse(correlationId, WireStatus.INVALID, 0, iae.getMessage()));
+                return;
+            }
+            final String invalid = TransferFrameCodec.validate(command);
+            if (invalid != null) {
+                respond(TransferFrameCodec.encodeResponse(correlationId, WireStatus.INVALID, 0, invalid));
+                return;
+            }
+
+            transferService.transferAmountAsync(command).whenComplete((transferResult, failure) ->
+                    respond(response(correlationId, failure)));
+        }
+
+        /**
+         * Queues a response and has the selector thread write it. Called from any thread.
+         */
+        private void respond(ByteBuffer response) {
+            if (closed) {
+                return;
+            }
+            responses.add(response);
+            if (flushScheduled.compareAndSet(false, true)) {
+                flushQueue.add(this);
+                selector.wakeup();
+            }
+        }
+
+        void flush() {
+            if (closed) {
+                return;
+            }
+
+            ByteBuffer response;
+            while ((response = responses.poll()) != null) {
+                unwritten.add(response);
+            }
+            try {
+                while (!unwritten.isEmpty()) {
+                    int count = 0;
+                    for (ByteBuffer buffer : unwritten) {
+                        gather[count++] = buffer;
+                        if (count == MAX_GATHER) {
+                            break;
+                        }
+                    }
+                    final long written = channel.write(gather, 0, count);
+                    while (!unwritten.isEmpty() && !unwritten.peek().hasRemaining()) {
+                        unwritten.poll();
+                        pending--;
+                    }
+                    if (written == 0) {
+                        break;
+                    }
+                }
+            } catch (IOException ioe) {
+                log.debug("Transfer connection failed on write", ioe);
+                close();
+                return;
+            }
+
+            int interest = unwritten.isEmpty()
+                    ? key.interestOps() & ~SelectionKey.OP_WRITE : key.interestOps() | SelectionKey.OP_WRITE;
+            final boolean resumeReading = (interest & SelectionKey.OP_READ) == 0 && pending < maxPipelined;
+            if (resumeReading) {
+                interest |= SelectionKey.OP_READ;
+            }
+            key.interestOps(interest);
+            if (resumeReading) {
+                // Frames already buffered would not raise another read event.
+                processFrames();
+            }
+        }
+
+        private void close() {
+            closed = true;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ioe) {
+                log.debug("Failed to close transfer connection", ioe);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.db.awmd.challenge.wire;
+
+/**
+ * Outcome of a transfer frame, sent as one byte in the response. Each corresponds to a response of
+ * {@code PUT /v1/accounts/transfer}.
+ */
+public enum WireStatus {
+
+    /**
+     * 200.
+     */
+    OK,
+
+    /**
+     * 400 for a command that fails validation.
+     */
+    INVALID,
+
+    /**
+     * 400 for an account that does not exist.
+     */
+    ACCOUNT_NOT_PRESENT,
+
+    /**
+     * 500 for a debit refused by the store, such as one that would leave a negative balance.
+     */
+    DEBIT_FAILED,
+
+    /**
+     * 500 for a credit refused by the store.
+     */
+    CREDIT_FAILED,
+
+    /**
+     * 429; the response carries how long to wait before retrying.
+     */
+    THROTTLED,
+
+    /**
+     * Any other failure.
+     */
+    ERROR;
+
+    private static final WireStatus[] VALUES = values();
+
+    static WireStatus of(int code) {
+        return code >= 0 && code < VALUES.length ? VALUES[code] : ERROR;
+    }
+}
@@ -1,6 +1,7 @@
 package com.db.awmd.challenge;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.ledger.TransferLedger;
 import com.db.awmd.challenge.service.AccountsService;
 import org.junit.Before;
 import org.junit.Test;
@@ -11,13 +12,24 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.web.context.WebApplicationContext;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Currency;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
@@ -31,6 +43,9 @@ public class AccountsControllerTest {
     @Autowired
     private AccountsService accountsService;
 
+    @Autowired
+    private TransferLedger transferLedger;
+
     @Autowired
     private WebApplicationContext webApplicationContext;
 
@@ -99,7 +114,73 @@ public class AccountsControllerTest {
         this.mockMvc.perform(get("/v1/accounts/" + uniqueAccountId))
                 .andExpect(status().isOk())
                 .andExpect(
-                        content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
+                        content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45,\"currency\":\"EUR\"}"));
+    }
+
+    @Test
+    public void getAccount_notModifiedUntilBalanceChanges() throws Exception {
+        accountsService.createAccount(new Account("Id-123", new BigDecimal("100")));
+
+        String eTag = this.mockMvc.perform(get("/v1/accounts/Id-123"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(eTag).isNotEmpty();
+
+        this.mockMvc.perform(get("/v1/accounts/Id-123").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        accountsService.getAccountsRepository().creditAmount("Id-123", BigDecimal.ONE);
+
+        this.mockMvc.perform(get("/v1/accounts/Id-123").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(eTag)))
+                .andExpect(content().string("{\"accountId\":\"Id-123\",\"balance\":101,\"currency\":\"EUR\"}"));
+    }
+
+    @Test
+    public void createAccounts_bulkFromNdjson() throws Exception {
+        accountsService.createAccount(new Account("Id-2", BigDecimal.ONE));
+
+        this.mockMvc.perform(post("/v1/accounts/bulk").contentType("application/x-ndjson")
+                .content("{\"accountId\":\"Id-1\",\"balance\":1000}\n{\"accountId\":\"Id-2\",\"balance\":10}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.rejectedAccounts[0].accountId").value("Id-2"));
+
+        assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("1000");
+    }
+
+    @Test
+    public void getAccounts_pagesInCreationOrder() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            accountsService.createAccount(new Account("Id-" + i, BigDecimal.valueOf(i)));
+        }
+
+        this.mockMvc.perform(get("/v1/accounts?limit=3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accounts[*].accountId").value(contains("Id-0", "Id-1", "Id-2")))
+                .andExpect(jsonPath("$.nextCursor").value("3"));
+        this.mockMvc.perform(get("/v1/accounts?limit=3&cursor=3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accounts[*].accountId").value(contains("Id-3", "Id-4")))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    public void getAccounts_failsOnInvalidCursor() throws Exception {
+        this.mockMvc.perform(get("/v1/accounts?cursor=abc")).andExpect(status().isBadRequest());
+        this.mockMvc.perform(get("/v1/accounts?limit=0")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void exportAccounts_asNdjsonAndCsv() throws Exception {
+        accountsService.createAccount(new Account("Id-1", new BigDecimal("12.50")));
+        accountsService.createAccount(new Account("Id,2", BigDecimal.ZERO));
+
+        assertThat(export("ndjson")).isEqualTo("{\"accountId\":\"Id-1\",\"balance\":12.50,\"currency\":\"EUR\"}\n"
+                + "{\"accountId\":\"Id,2\",\"balance\":0,\"currency\":\"EUR\"}\n");
+        assertThat(export("csv")).isEqualTo("accountId,balance,currency\nId-1,12.50,EUR\n\"Id,2\",0,EUR\n");
     }
 
     @Test
@@ -122,7 +203,7 @@ public class AccountsControllerTest {
 
     @Test
     public void transferAmount_failsDueToAbsentFromAccount() throws Exception {
-        mockMvc.perform(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+        performAsync(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content("{\"fromAccountId\":\"Id-123\", \"toAccountId\": \"Id-234\", \"amount\":1000}"))
                 .andExpect(status().isBadRequest())
                 .andExpect(content().string("Account with id Id-123 is not present."));
@@ -133,7 +214,7 @@ public class AccountsControllerTest {
 
         accountsService.createAccount(new Account("Id-123", BigDecimal.valueOf(1000.00)));
 
-        mockMvc.perform(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+        performAsync(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content("{\"fromAccountId\":\"Id-123\", \"toAccountId\": \"Id-234\", \"amount\":1000}"))
                 .andExpect(status().isBadRequest())
                 .andExpect(content().string("Account with id Id-234 is not present."));
@@ -145,7 +226,7 @@ public class AccountsControllerTest {
         accountsService.createAccount(new Account("Id-123", BigDecimal.valueOf(1000.00)));
         accountsService.createAccount(new Account("Id-234", BigDecimal.valueOf(1000.00)));
 
-        mockMvc.perform(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+        performAsync(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content("{\"fromAccountId\":\"Id-123\", \"toAccountId\": \"Id-234\", \"amount\":2000}"))
                 .andExpect(status().isInternalServerError())
                 .andExpect(content().string("After debit, account will have balance of -1000.0. Account cannot have negative balance"));
@@ -163,7 +244,7 @@ public class AccountsControllerTest {
         accountsService.createAccount(new Account("Id-456", BigDecimal.valueOf(1000.00)));
         accountsService.createAccount(new Account("Id-678", BigDecimal.valueOf(1000.00)));
 
-        mockMvc.perform(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+        performAsync(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content("{\"fromAccountId\":\"Id-456\", \"toAccountId\": \"Id-678\", \"amount\":500}"))
                 .andExpect(status().isOk());
 
@@ -174,16 +255,162 @@ public class AccountsControllerTest {
         assertThat(toAccount.getBalance()).isEqualByComparingTo("1500");
     }
 
+    @Test
+    public void transferAmount_convertsBetweenCurrencies() throws Exception {
+        accountsService.createAccount(new Account("Id-456", BigDecimal.valueOf(1000.00)));
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-678\",\"balance\":1000,\"currency\":\"USD\"}"))
+                .andExpect(status().isCreated());
+
+        performAsync(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"fromAccountId\":\"Id-456\", \"toAccountId\": \"Id-678\", \"amount\":100}"))
+                .andExpect(status().isOk());
+
+        assertThat(accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("900");
+        assertThat(accountsService.getAccount("Id-678").getBalance()).isEqualByComparingTo("1108.50");
+    }
+
+    @Test
+    public void transferAmount_failsWithoutExchangeRate() throws Exception {
+        accountsService.createAccount(new Account("Id-456", BigDecimal.valueOf(1000.00)));
+        accountsService.createAccount(new Account("Id-678", BigDecimal.valueOf(1000.00), Currency.getInstance("SEK")));
+
+        performAsync(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"fromAccountId\":\"Id-456\", \"toAccountId\": \"Id-678\", \"amount\":100}"))
+                .andExpect(status().isBadRequest());
+
+        assertThat(accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("1000");
+    }
+
+    @Test
+    public void getFxRates_andRejectNonPositiveRate() throws Exception {
+        this.mockMvc.perform(get("/v1/fx/rates"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.base").value("EUR"))
+                .andExpect(jsonPath("$.rates.USD").value(1.085));
+
+        this.mockMvc.perform(put("/v1/fx/rates").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"base\":\"EUR\",\"rates\":{\"USD\":0}}")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void scheduledTransfer_canBeReadAndCancelled() throws Exception {
+        final String created = this.mockMvc.perform(post("/v1/accounts/transfers/scheduled").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"fromAccountId\":\"Id-456\",\"toAccountId\":\"Id-678\",\"amount\":25,"
+                        + "\"executeAt\":\"2099-12-31T23:00:00Z\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.executeAt").value("2099-12-31T23:00:00Z"))
+                .andReturn().getResponse().getContentAsString();
+        final String id = created.replaceAll(".*\"id\":(\\d+).*", "$1");
+
+        this.mockMvc.perform(get("/v1/accounts/transfers/scheduled/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.fromAccountId").value("Id-456"))
+                .andExpect(jsonPath("$.amount").value(25));
+        this.mockMvc.perform(delete("/v1/accounts/transfers/scheduled/" + id)).andExpect(status().isNoContent());
+        this.mockMvc.perform(get("/v1/accounts/transfers/scheduled/" + id)).andExpect(status().isNotFound());
+        this.mockMvc.perform(delete("/v1/accounts/transfers/scheduled/" + id)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void scheduledTransfer_runsOnceDue() throws Exception {
+        accountsService.createAccount(new Account("Id-456", BigDecimal.valueOf(1000.00)));
+        accountsService.createAccount(new Account("Id-678", BigDecimal.valueOf(1000.00)));
+
+        this.mockMvc.perform(post("/v1/accounts/transfers/scheduled").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"fromAccountId\":\"Id-456\",\"toAccountId\":\"Id-678\",\"amount\":250,"
+                        + "\"executeAt\":\"" + Instant.now() + "\"}"))
+                .andExpect(status().isCreated());
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (accountsService.getAccount("Id-678").getBalance().compareTo(BigDecimal.valueOf(1000)) == 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("750");
+        assertThat(accountsService.getAccount("Id-678").getBalance()).isEqualByComparingTo("1250");
+    }
+
+    @Test
+    public void scheduledTransfer_failsOnInvalidInstant() throws Exception {
+        this.mockMvc.perform(post("/v1/accounts/transfers/scheduled").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"fromAccountId\":\"Id-456\",\"toAccountId\":\"Id-678\",\"amount\":25,"
+                        + "\"executeAt\":\"tomorrow\"}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void hold_canBeCapturedAndReleased() throws Exception {
+        accountsService.createAccount(new Account("Id-456", BigDecimal.valueOf(1000)));
+        accountsService.createAccount(new Account("Id-678", BigDecimal.valueOf(1000)));
+
+        final String created = this.mockMvc.perform(post("/v1/accounts/Id-456/holds").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amount\":300,\"expiresAt\":\"2099-12-31T23:00:00Z\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.amount").value(300))
+                .andExpect(jsonPath("$.expiresAt").value("2099-12-31T23:00:00Z"))
+                .andReturn().getResponse().getContentAsString();
+        final String holdId = created.replaceAll(".*\"holdId\":\"([^\"]+)\".*", "$1");
+
+        performAsync(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"fromAccountId\":\"Id-456\",\"toAccountId\":\"Id-678\",\"amount\":800}"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(content().string("After debit, account will have balance of 200, less than the 300 on hold"));
+        assertThat(accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("1000");
+
+        this.mockMvc.perform(put("/v1/accounts/Id-456/holds/" + holdId + "/capture").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"toAccountId\":\"Id-678\",\"amount\":100}"))
+                .andExpect(status().isOk());
+        this.mockMvc.perform(put("/v1/accounts/Id-456/holds/" + holdId + "/capture").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"toAccountId\":\"Id-678\",\"amount\":201}"))
+                .andExpect(status().isBadRequest());
+        this.mockMvc.perform(get("/v1/accounts/Id-456/holds"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(900))
+                .andExpect(jsonPath("$.heldBalance").value(200))
+                .andExpect(jsonPath("$.availableBalance").value(700))
+                .andExpect(jsonPath("$.holds[0].holdId").value(holdId));
+        assertThat(accountsService.getAccount("Id-678").getBalance()).isEqualByComparingTo("1100");
+
+        this.mockMvc.perform(delete("/v1/accounts/Id-456/holds/" + holdId)).andExpect(status().isNoContent());
+        this.mockMvc.perform(delete("/v1/accounts/Id-456/holds/" + holdId)).andExpect(status().isNotFound());
+        this.mockMvc.perform(put("/v1/accounts/Id-456/holds/" + holdId + "/capture").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"toAccountId\":\"Id-678\",\"amount\":1}"))
+                .andExpect(status().isNotFound());
+        this.mockMvc.perform(get("/v1/accounts/Id-456/holds"))
+                .andExpect(jsonPath("$.availableBalance").value(900));
+    }
+
+    @Test
+    public void hold_failsBeyondAvailableBalanceOrOnAbsentAccount() throws Exception {
+        accountsService.createAccount(new Account("Id-456", BigDecimal.valueOf(100)));
+
+        this.mockMvc.perform(post("/v1/accounts/Id-456/holds").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amount\":101,\"expiresAt\":\"2099-12-31T23:00:00Z\"}"))
+                .andExpect(status().isBadRequest());
+        this.mockMvc.perform(post("/v1/accounts/Id-456/holds").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amount\":10,\"expiresAt\":\"2000-01-01T00:00:00Z\"}"))
+                .andExpect(status().isBadRequest());
+        this.mockMvc.perform(post("/v1/accounts/Id-456/holds").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amount\":10,\"expiresAt\":\"tomorrow\"}"))
+                .andExpect(status().isBadRequest());
+        this.mockMvc.perform(post("/v1/accounts/Id-999/holds").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"amount\":10,\"expiresAt\":\"2099-12-31T23:00:00Z\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Account with id Id-999 is not present."));
+        this.mockMvc.perform(get("/v1/accounts/Id-999/holds")).andExpect(status().isNotFound());
+    }
+
     @Test
     public void transferAmount_multipleTransferRequest_failsDueToNegativeBalance() throws Exception {
 
         accountsService.createAccount(new Account("Id-456", BigDecimal.valueOf(1000.00)));
         accountsService.createAccount(new Account("Id-678", BigDecimal.valueOf(1000.00)));
 
-        mockMvc.perform(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+        performAsync(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content("{\"fromAccountId\":\"Id-456\", \"toAccountId\": \"Id-678\", \"amount\":500}"))
                 .andExpect(status().isOk());
-        mockMvc.perform(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+        performAsync(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content("{\"fromAccountId\":\"Id-456\", \"toAccountId\": \"Id-678\", \"amount\":1500}"))
                 .andExpect(status().isInternalServerError())
                 .andExpect(content().string("After debit, account will have balance of -1000.0. Account cannot have negative balance"));
@@ -201,10 +428,10 @@ public class AccountsControllerTest {
         accountsService.createAccount(new Account("Id-456", BigDecimal.valueOf(1000.00)));
         accountsService.createAccount(new Account("Id-678", BigDecimal.valueOf(1000.00)));
 
-        mockMvc.perform(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+        performAsync(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content("{\"fromAccountId\":\"Id-456\", \"toAccountId\": \"Id-678\", \"amount\":500}"))
                 .andExpect(status().isOk());
-        mockMvc.perform(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+        performAsync(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
                 .content("{\"fromAccountId\":\"Id-456\", \"toAccountId\": \"Id-678\", \"amount\":100}"))
                 .andExpect(status().isOk());
 
@@ -214,4 +441,131 @@ public class AccountsControllerTest {
         Account toAccount = accountsService.getAccount("Id-678");
         assertThat(toAccount.getBalance()).isEqualByComparingTo("1600");
     }
+
+    @Test
+    public void transferAmount_retryWithIdempotencyKey_transfersOnce() throws Exception {
+
+        accountsService.createAccount(new Account("Id-456", BigDecimal.valueOf(1000.00)));
+        accountsService.createAccount(new Account("Id-678", BigDecimal.valueOf(1000.00)));
+
+        for (int i = 0; i < 3; i++) {
+            performAsync(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                    .header("Idempotency-Key", "retry-once")
+                    .content("{\"fromAccountId\":\"Id-456\", \"toAccountId\": \"Id-678\", \"amount\":500}"))
+                    .andExpect(status().isOk());
+        }
+
+        Account fromAccount = accountsService.getAccount("Id-456");
+        assertThat(fromAccount.getBalance()).isEqualByComparingTo("500");
+
+        Account toAccount = accountsService.getAccount("Id-678");
+        assertThat(toAccount.getBalance()).isEqualByComparingTo("1500");
+    }
+
+    @Test
+    public void transferAmount_idempotencyKeyReusedForDifferentTransfer() throws Exception {
+
+        accountsService.createAccount(new Account("Id-456", BigDecimal.valueOf(1000.00)));
+        accountsService.createAccount(new Account("Id-678", BigDecimal.valueOf(1000.00)));
+
+        performAsync(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .header("Idempotency-Key", "reused")
+                .content("{\"fromAccountId\":\"Id-456\", \"toAccountId\": \"Id-678\", \"amount\":500}"))
+                .andExpect(status().isOk());
+        performAsync(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .header("Idempotency-Key", "reused")
+                .content("{\"fromAccountId\":\"Id-456\", \"toAccountId\": \"Id-678\", \"amount\":100}"))
+                .andExpect(status().isUnprocessableEntity());
+
+        Account fromAccount = accountsService.getAccount("Id-456");
+        assertThat(fromAccount.getBalance()).isEqualByComparingTo("500");
+    }
+
+    @Test
+    public void getMetrics_countsTransfersAndFailures() throws Exception {
+
+        accountsService.createAccount(new Account("Id-456", BigDecimal.valueOf(1000.00)));
+
+        performAsync(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"fromAccountId\":\"Id-456\", \"toAccountId\": \"Id-999\", \"amount\":500}"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/v1/metrics"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.operations.transfer.count").value(greaterThan(0)))
+                .andExpect(jsonPath("$.exceptions.AccountCreditException").value(greaterThan(0)));
+    }
+
+    @Test
+    public void transferAmounts_batch() throws Exception {
+
+        accountsService.createAccount(new Account("Id-456", BigDecimal.valueOf(1000.00)));
+        accountsService.createAccount(new Account("Id-678", BigDecimal.valueOf(1000.00)));
+
+        mockMvc.perform(put("/v1/accounts/transfers/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"transfers\":[{\"fromAccountId\":\"Id-456\", \"toAccountId\": \"Id-678\", \"amount\":500},"
+                        + "{\"fromAccountId\":\"Id-456\", \"toAccountId\": \"Id-999\", \"amount\":100}]}"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"index\":0,\"status\":\"SUCCESS\"},"
+                        + "{\"index\":1,\"status\":\"FAILED\",\"message\":\"Account with id Id-999 is not present.\"}]"));
+
+        Account fromAccount = accountsService.getAccount("Id-456");
+        assertThat(fromAccount.getBalance()).isEqualByComparingTo("500");
+    }
+
+    @Test
+    public void transferAmounts_batch_failsDueToEmptyBatch() throws Exception {
+        mockMvc.perform(put("/v1/accounts/transfers/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"transfers\":[]}")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getTransfers_listsCompletedTransfersOfAccount() throws Exception {
+        transferLedger.clear();
+        accountsService.createAccount(new Account("Id-123", new BigDecimal("1000")));
+        accountsService.createAccount(new Account("Id-234", new BigDecimal("1000")));
+        accountsService.createAccount(new Account("Id-345", new BigDecimal("1000")));
+
+        performAsync(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"fromAccountId\":\"Id-123\", \"toAccountId\": \"Id-234\", \"amount\":100}"))
+                .andExpect(status().isOk());
+        performAsync(put("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"fromAccountId\":\"Id-345\", \"toAccountId\": \"Id-123\", \"amount\":50}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/v1/accounts/Id-123/transfers"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].fromAccountId", contains("Id-123", "Id-345")))
+                .andExpect(jsonPath("$[*].amount", contains(100, 50)))
+                .andExpect(jsonPath("$[*].currency", contains("EUR", "EUR")))
+                .andExpect(jsonPath("$[*].creditAmount", contains(100, 50)))
+                .andExpect(jsonPath("$[*].creditCurrency", contains("EUR", "EUR")));
+        mockMvc.perform(get("/v1/accounts/Id-123/transfers?limit=1&from=1970-01-01T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].toAccountId", contains("Id-234")));
+        mockMvc.perform(get("/v1/accounts/Id-123/transfers?to=1970-01-01T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+        mockMvc.perform(get("/v1/accounts/Id-123/transfers?from=yesterday")).andExpect(status().isBadRequest());
+    }
+
+    /**
+     * The streamed body is written straight to the response while the request is in async mode.
+     */
+    private String export(String format) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get("/v1/accounts/export?format=" + format))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvcResult.getAsyncResult();
+        return mvcResult.getResponse().getContentAsString();
+    }
+
+    /**
+     * Performs a request to an asynchronous endpoint and returns the dispatched response.
+     */
+    private ResultActions performAsync(MockHttpServletRequestBuilder requestBuilder) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(requestBuilder).andExpect(request().asyncStarted()).andReturn();
+        return mockMvc.perform(asyncDispatch(mvcResult));
+    }
 }
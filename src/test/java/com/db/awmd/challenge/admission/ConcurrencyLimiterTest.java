@@ -0,0 +1,63 @@
+package com.db.awmd.challenge.admission;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrencyLimiterTest {
+
+    @Test
+    public void tryAcquire_refusesOverLimit() {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 10);
+
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+
+        limiter.release();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+    }
+
+    @Test
+    public void limit_growsWhileLatencyIsSteadyAndShrinksWhenItRises() {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 5, 100);
+
+        for (int window = 0; window < 10; window++) {
+            runWindow(limiter, 1_000);
+        }
+        final int grown = limiter.getLimit();
+        assertThat(grown).isGreaterThan(20);
+
+        for (int window = 0; window < 10; window++) {
+            runWindow(limiter, 10_000);
+        }
+        assertThat(limiter.getLimit()).isLessThan(grown / 2).isGreaterThanOrEqualTo(5);
+    }
+
+    @Test
+    public void limit_holdsWhenFarFromSaturated() {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(50, 5, 100);
+
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+            limiter.release(1_000);
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(50);
+    }
+
+    /**
+     * Fills the limit and completes every request with the same latency, at least one full window's worth.
+     */
+    private static void runWindow(ConcurrencyLimiter limiter, long latencyNanos) {
+        final int inFlight = Math.max(10, limiter.getLimit());
+        int acquired = 0;
+        while (acquired < inFlight && limiter.tryAcquire()) {
+            acquired++;
+        }
+        for (int i = 0; i < acquired; i++) {
+            limiter.release(latencyNanos);
+        }
+    }
+}
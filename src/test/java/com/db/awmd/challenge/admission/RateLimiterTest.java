@@ -0,0 +1,91 @@
+package com.db.awmd.challenge.admission;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RateLimiterTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void tryAcquire_admitsBurstThenSustainedRate() {
+        final RateLimiter limiter = new RateLimiter(100, 3, 10);
+        final long now = 1_000 * MILLI;
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("Id-1", now)).isZero();
+        }
+        assertThat(limiter.tryAcquire("Id-1", now)).isEqualTo(10 * MILLI);
+        assertThat(limiter.tryAcquire("Id-2", now)).as("other accounts keep their own bucket").isZero();
+
+        assertThat(limiter.tryAcquire("Id-1", now + 10 * MILLI)).isZero();
+        assertThat(limiter.tryAcquire("Id-1", now + 10 * MILLI)).isEqualTo(10 * MILLI);
+    }
+
+    @Test
+    public void release_returnsToken() {
+        final RateLimiter limiter = new RateLimiter(1, 1, 10);
+
+        assertThat(limiter.tryAcquire(0)).isZero();
+        assertThat(limiter.tryAcquire(0)).isPositive();
+        limiter.release();
+        assertThat(limiter.tryAcquire(0)).isZero();
+    }
+
+    @Test
+    public void tryAcquire_forgetsIdleAccountsOverLimit() {
+        final RateLimiter limiter = new RateLimiter(1000, 1, 2);
+
+        limiter.tryAcquire("Id-1", 0);
+        limiter.tryAcquire("Id-2", 0);
+        assertThat(limiter.getTrackedKeys()).isEqualTo(2);
+
+        // Both buckets are full again a millisecond later, so they are dropped.
+        limiter.tryAcquire("Id-3", 2 * MILLI);
+        assertThat(limiter.getTrackedKeys()).isEqualTo(1);
+        assertThat(limiter.tryAcquire("Id-3", 2 * MILLI)).isPositive();
+    }
+
+    @Test
+    public void tryAcquire_refusesNewAccountsWhileNoneIsIdle() {
+        final RateLimiter limiter = new RateLimiter(1000, 1, 2);
+
+        limiter.tryAcquire("Id-1", 0);
+        limiter.tryAcquire("Id-2", MILLI / 2);
+
+        // Id-1 is full again at one millisecond, Id-2 half a millisecond later.
+        assertThat(limiter.tryAcquire("Id-3", MILLI / 4)).isEqualTo(MILLI * 3 / 4);
+        assertThat(limiter.getTrackedKeys()).isEqualTo(2);
+        assertThat(limiter.tryAcquire("Id-3", MILLI)).isZero();
+        assertThat(limiter.getTrackedKeys()).isEqualTo(2);
+    }
+
+    @Test
+    public void tryAcquire_looksAtABoundedNumberOfBucketsPerNewAccount() {
+        final int maxKeys = RateLimiter.EVICTION_SAMPLE * 4;
+        final RateLimiter limiter = new RateLimiter(1000, 1, maxKeys);
+        for (int i = 0; i < maxKeys; i++) {
+            limiter.tryAcquire("Id-" + i, i == maxKeys - 1 ? 0 : 10 * MILLI);
+        }
+
+        // Only one bucket is idle; each new account looks at the next sample until it is found.
+        int refused = 0;
+        while (limiter.tryAcquire("Id-new", MILLI) > 0) {
+            refused++;
+        }
+        assertThat(refused).isLessThan(4);
+        assertThat(limiter.getTrackedKeys()).isEqualTo(maxKeys);
+    }
+
+    @Test
+    public void unlimited_admitsEverything() {
+        final RateLimiter limiter = RateLimiter.unlimited();
+        for (int i = 0; i < 1000; i++) {
+            assertThat(limiter.tryAcquire("Id-1", 0)).isZero();
+        }
+        assertThat(limiter.getTrackedKeys()).isZero();
+    }
+}
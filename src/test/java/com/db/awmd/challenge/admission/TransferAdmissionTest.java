@@ -0,0 +1,47 @@
+package com.db.awmd.challenge.admission;
+
+import com.db.awmd.challenge.exception.TransferThrottledException;
+import com.db.awmd.challenge.model.AdmissionMetrics;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.fail;
+
+public class TransferAdmissionTest {
+
+    @Test
+    public void admit_throttlesRunawayAccountOnly() {
+        final TransferAdmission admission = new TransferAdmission(new RateLimiter(1, 2, 100),
+                RateLimiter.unlimited(), ConcurrencyLimiter.unlimited());
+
+        admission.completed(admission.admit("Id-1"));
+        admission.completed(admission.admit("Id-1"));
+        try {
+            admission.admit("Id-1");
+            fail("Should have throttled the third transfer");
+        } catch (TransferThrottledException tte) {
+            assertThat(tte.getMessage()).contains("Id-1");
+            assertThat(tte.getRetryAfterNanos()).isPositive();
+        }
+        admission.completed(admission.admit("Id-2"));
+
+        final AdmissionMetrics metrics = admission.getMetrics();
+        assertThat(metrics.getAdmitted()).isEqualTo(3);
+        assertThat(metrics.getAccountRateLimited()).isEqualTo(1);
+        assertThat(metrics.getTrackedAccounts()).isEqualTo(2);
+    }
+
+    @Test
+    public void admit_returnsAccountTokenWhenRefusedByConcurrencyLimit() {
+        final TransferAdmission admission = new TransferAdmission(new RateLimiter(1, 1, 100),
+                RateLimiter.unlimited(), new ConcurrencyLimiter(1, 1, 1));
+
+        final long admittedAt = admission.admit("Id-1");
+        assertThatThrownBy(() -> admission.admit("Id-2")).hasMessage("Too many transfers in progress");
+        admission.completed(admittedAt);
+
+        assertThat(admission.admit("Id-2")).isPositive();
+        assertThat(admission.getMetrics().getConcurrencyLimited()).isEqualTo(1);
+    }
+}
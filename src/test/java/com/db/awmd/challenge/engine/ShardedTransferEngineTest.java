@@ -0,0 +1,155 @@
+package com.db.awmd.challenge.engine;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.exception.AccountCreditException;
+import com.db.awmd.challenge.exception.AccountDebitException;
+import com.db.awmd.challenge.exception.AccountNotPresentException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ShardedTransferEngineTest {
+
+    private ShardedTransferEngine engine;
+
+    @Before
+    public void setUp() {
+        engine = new ShardedTransferEngine(4, 1024);
+        engine.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        engine.stop();
+    }
+
+    @Test
+    public void createAccount_failsOnDuplicateId() {
+        engine.createAccount(new Account("Id-1", BigDecimal.TEN));
+
+        assertThatThrownBy(() -> engine.createAccount(new Account("Id-1", BigDecimal.ONE)))
+                .isInstanceOf(DuplicateAccountIdException.class);
+        assertThat(engine.getAccount("Id-1").getBalance()).isEqualByComparingTo("10");
+    }
+
+    @Test
+    public void transfer_withinAndAcrossShards() {
+        String[] sameShard = idsOnSameShard();
+        String otherShard = idOnOtherShard(sameShard[0]);
+        engine.createAccount(new Account(sameShard[0], BigDecimal.valueOf(100)));
+        engine.createAccount(new Account(sameShard[1], BigDecimal.valueOf(100)));
+        engine.createAccount(new Account(otherShard, BigDecimal.valueOf(100)));
+
+        TransferResult local = engine.transfer(sameShard[0], sameShard[1], BigDecimal.TEN);
+        assertThat(local.getFromAccount().getBalance()).isEqualByComparingTo("90");
+        assertThat(local.getToAccount().getBalance()).isEqualByComparingTo("110");
+
+        TransferResult crossShard = engine.transfer(sameShard[0], otherShard, BigDecimal.TEN);
+        assertThat(crossShard.getFromAccount().getBalance()).isEqualByComparingTo("80");
+        assertThat(crossShard.getToAccount().getBalance()).isEqualByComparingTo("110");
+        assertThat(engine.getAccount(otherShard).getBalance()).isEqualByComparingTo("110");
+    }
+
+    @Test
+    public void transfer_acrossShardsCreditsConvertedAmount() {
+        String from = "Id-1";
+        String to = idOnOtherShard(from);
+        engine.createAccount(new Account(from, BigDecimal.valueOf(100)));
+        engine.createAccount(new Account(to, BigDecimal.valueOf(100), Currency.getInstance("GBP")));
+
+        TransferResult result = engine.transfer(from, to, BigDecimal.TEN, new BigDecimal("8.56"));
+        assertThat(result.getFromAccount().getBalance()).isEqualByComparingTo("90");
+        assertThat(result.getToAccount().getBalance()).isEqualByComparingTo("108.56");
+        assertThat(engine.getAccount(to).getCurrency()).isEqualTo(Currency.getInstance("GBP"));
+    }
+
+    @Test
+    public void transfer_failsOnNegativeBalance() {
+        String from = "Id-1";
+        String to = idOnOtherShard(from);
+        engine.createAccount(new Account(from, BigDecimal.TEN));
+        engine.createAccount(new Account(to, BigDecimal.TEN));
+
+        assertThatThrownBy(() -> engine.transfer(from, to, BigDecimal.valueOf(11)))
+                .isInstanceOf(AccountDebitException.class)
+                .hasMessageContaining("Account cannot have negative balance");
+        assertThat(engine.getAccount(from).getBalance()).isEqualByComparingTo("10");
+    }
+
+    @Test
+    public void transfer_acrossShardsAbortsOnAbsentToAccount() {
+        String from = "Id-1";
+        String to = idOnOtherShard(from);
+        engine.createAccount(new Account(from, BigDecimal.TEN));
+
+        assertThatThrownBy(() -> engine.transfer(from, to, BigDecimal.ONE))
+                .isInstanceOf(AccountCreditException.class)
+                .hasCauseInstanceOf(AccountNotPresentException.class);
+        // The reserved amount is back before the failure is reported.
+        assertThat(engine.getAccount(from).getBalance()).isEqualByComparingTo("10");
+    }
+
+    @Test
+    public void transferAsync_concurrentTransfersConserveMoney() throws Exception {
+        int accounts = 64;
+        for (int i = 0; i < accounts; i++) {
+            engine.createAccount(new Account("Id-" + i, BigDecimal.valueOf(1000)));
+        }
+
+        List<CompletableFuture<TransferResult>> transfers = new ArrayList<>();
+        List<Thread> clients = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int seed = t;
+            Thread client = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    String from = "Id-" + ((i * 31 + seed) % accounts);
+                    String to = "Id-" + ((i * 17 + seed * 7 + 1) % accounts);
+                    synchronized (transfers) {
+                        transfers.add(engine.transferAsync(from, to, BigDecimal.ONE));
+                    }
+                }
+            });
+            clients.add(client);
+            client.start();
+        }
+        for (Thread client : clients) {
+            client.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        CompletableFuture.allOf(transfers.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < accounts; i++) {
+            total = total.add(engine.getAccount("Id-" + i).getBalance());
+        }
+        assertThat(total).isEqualByComparingTo(BigDecimal.valueOf(1000L * accounts));
+    }
+
+    private String[] idsOnSameShard() {
+        String first = "Id-0";
+        for (int i = 1; ; i++) {
+            if (engine.shardOf("Id-" + i) == engine.shardOf(first)) {
+                return new String[]{first, "Id-" + i};
+            }
+        }
+    }
+
+    private String idOnOtherShard(String accountId) {
+        for (int i = 0; ; i++) {
+            if (engine.shardOf("Other-" + i) != engine.shardOf(accountId)) {
+                return "Other-" + i;
+            }
+        }
+    }
+}
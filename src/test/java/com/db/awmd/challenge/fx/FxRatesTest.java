@@ -0,0 +1,71 @@
+package com.db.awmd.challenge.fx;
+
+import com.db.awmd.challenge.exception.CurrencyConversionException;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class FxRatesTest {
+
+    private static final Currency EUR = Currency.getInstance("EUR");
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final Currency GBP = Currency.getInstance("GBP");
+    private static final Currency JPY = Currency.getInstance("JPY");
+
+    private final FxRates fxRates = new FxRates("EUR", "USD=1.0850, GBP=0.8560,JPY=162.50");
+
+    @Test
+    public void convert_roundsToTheTargetCurrencysDigits() {
+        assertThat(fxRates.convert(new BigDecimal("100"), EUR, USD)).isEqualByComparingTo("108.50");
+        assertThat(fxRates.convert(new BigDecimal("10.01"), EUR, JPY)).isEqualTo(new BigDecimal("1627"));
+        assertThat(fxRates.convert(new BigDecimal("108.50"), USD, EUR)).isEqualTo(new BigDecimal("100.00"));
+    }
+
+    @Test
+    public void convert_goesThroughTheBaseBetweenOtherCurrencies() {
+        assertThat(fxRates.convert(new BigDecimal("10.85"), USD, GBP)).isEqualTo(new BigDecimal("8.56"));
+    }
+
+    @Test
+    public void convert_returnsTheSameAmountWithinACurrency() {
+        final BigDecimal amount = new BigDecimal("12.345");
+
+        assertThat(fxRates.convert(amount, USD, USD)).isSameAs(amount);
+    }
+
+    @Test
+    public void convert_failsWithoutARate() {
+        try {
+            fxRates.convert(BigDecimal.ONE, EUR, Currency.getInstance("CHF"));
+            fail("Conversion without a rate should have failed");
+        } catch (CurrencyConversionException cce) {
+            assertThat(cce.getMessage()).isEqualTo("No exchange rate from EUR to CHF");
+        }
+    }
+
+    @Test
+    public void rateTable_rejectsNonPositiveRates() {
+        try {
+            new RateTable(EUR, Collections.singletonMap(USD, BigDecimal.ZERO));
+            fail("A zero rate should have been rejected");
+        } catch (IllegalArgumentException iae) {
+            assertThat(iae.getMessage()).contains("USD");
+        }
+    }
+
+    @Test
+    public void publish_leavesTablesAlreadyReadUnchanged() {
+        final RateTable before = fxRates.getTable();
+
+        fxRates.publish(new RateTable(EUR, Collections.singletonMap(USD, new BigDecimal("1.2"))));
+
+        assertThat(before.convert(new BigDecimal("100"), EUR, USD)).isEqualTo(new BigDecimal("108.50"));
+        assertThat(fxRates.convert(new BigDecimal("100"), EUR, USD)).isEqualTo(new BigDecimal("120.00"));
+        assertThat(fxRates.getTable().rate(EUR, GBP)).isNull();
+    }
+}
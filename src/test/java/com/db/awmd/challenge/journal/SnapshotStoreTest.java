@@ -0,0 +1,176 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Hold;
+import com.db.awmd.challenge.exception.JournalException;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SnapshotStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void snapshot_truncatesJournalAndRecoversWithTail() throws Exception {
+        TransferJournal journal = journal(DurabilityMode.PER_OP_FSYNC);
+        AccountsRepositoryInMemory repo = repository(journal);
+        repo.createAccount(new Account("Id-1", BigDecimal.valueOf(100)));
+        repo.createAccount(new Account("Id-2", BigDecimal.valueOf(100)));
+        repo.transfer("Id-1", "Id-2", BigDecimal.TEN);
+
+        repo.snapshot();
+        assertThat(files("journal")).hasSize(1);
+        assertThat(files("snapshots")).hasSize(1);
+
+        repo.transfer("Id-2", "Id-1", BigDecimal.ONE);
+        repo.createAccount(new Account("Id-3", BigDecimal.valueOf(5)));
+        journal.close();
+
+        AccountsRepositoryInMemory recovered = repository(journal(DurabilityMode.PER_OP_FSYNC));
+        assertThat(recovered.getAccount("Id-1").getBalance()).isEqualByComparingTo("91");
+        assertThat(recovered.getAccount("Id-2").getBalance()).isEqualByComparingTo("109");
+        assertThat(recovered.getAccount("Id-3").getBalance()).isEqualByComparingTo("5");
+
+        // Sequence numbers carry on after the snapshot, so later records are not mistaken for covered ones.
+        recovered.transfer("Id-3", "Id-1", BigDecimal.ONE);
+        recovered.snapshot();
+        assertThat(repository(journal(DurabilityMode.PER_OP_FSYNC)).getAccount("Id-1").getBalance())
+                .isEqualByComparingTo("92");
+    }
+
+    @Test
+    public void snapshot_whileTransfersRun() throws Exception {
+        TransferJournal journal = journal(DurabilityMode.GROUP_COMMIT);
+        AccountsRepositoryInMemory repo = repository(journal);
+        for (int i = 0; i < 10; i++) {
+            repo.createAccount(new Account("Id-" + i, BigDecimal.valueOf(1000)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            final String from = "Id-" + (i % 10);
+            final String to = "Id-" + ((i * 7 + 3) % 10);
+            if (!from.equals(to)) {
+                futures.add(executor.submit(() -> repo.transfer(from, to, BigDecimal.ONE)));
+            }
+            if (i % 1000 == 500) {
+                futures.add(executor.submit(repo::snapshot));
+            }
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        journal.close();
+
+        AccountsRepositoryInMemory recovered = repository(journal(DurabilityMode.GROUP_COMMIT));
+        for (int i = 0; i < 10; i++) {
+            assertThat(recovered.getAccount("Id-" + i)).isEqualTo(repo.getAccount("Id-" + i));
+        }
+    }
+
+    @Test
+    public void write_roundTripsAccountsAcrossBlocks() {
+        SnapshotStore store = new SnapshotStore(folder.getRoot().getPath());
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < SnapshotStore.ACCOUNTS_PER_BLOCK + 100; i++) {
+            accounts.add(new Account("Id-" + i, BigDecimal.valueOf(i, 2), i));
+        }
+        accounts.add(new Account("Id-large", new BigDecimal("123456789012345678901234.56"), 7));
+        accounts.add(new Account("Id-zero", BigDecimal.ZERO, 8));
+        accounts.add(new Account("Id-usd", new BigDecimal("5.25"), Currency.getInstance("USD"), 9));
+        accounts.add(new Account("Id-jpy", BigDecimal.valueOf(500), Currency.getInstance("JPY"), 10));
+        accounts.add(new Account("Id-held", BigDecimal.valueOf(500), Currency.getInstance("USD"), 11,
+                Arrays.asList(new Hold("hold-1", new BigDecimal("12.50"), 1234567890123L),
+                        new Hold("hold-2", BigDecimal.ONE, 5))));
+
+        store.write(42, accounts.iterator());
+
+        Snapshot snapshot = store.latest();
+        assertThat(snapshot.getBoundarySequence()).isEqualTo(42);
+        assertThat(snapshot.getAccountCount()).isEqualTo(accounts.size());
+
+        Map<String, Account> loaded = new ConcurrentHashMap<>();
+        snapshot.forEachAccount(account -> loaded.put(account.getAccountId(), account));
+        assertThat(loaded).hasSize(accounts.size());
+        for (Account account : accounts) {
+            assertThat(loaded.get(account.getAccountId())).isEqualTo(account);
+        }
+
+        Account[] ordered = new Account[accounts.size()];
+        snapshot.forEachAccount((account, position) -> ordered[position] = account);
+        assertThat(ordered).containsExactly(accounts.toArray(new Account[0]));
+    }
+
+    @Test
+    public void snapshot_keepsCreationOrderForPaging() throws Exception {
+        TransferJournal journal = journal(DurabilityMode.PER_OP_FSYNC);
+        AccountsRepositoryInMemory repo = repository(journal);
+        for (int i = 0; i < 100; i++) {
+            repo.createAccount(new Account("Id-" + (i * 37 % 100), BigDecimal.valueOf(i)));
+        }
+        repo.snapshot();
+        repo.createAccount(new Account("Id-after", BigDecimal.ONE));
+        journal.close();
+
+        AccountsRepositoryInMemory recovered = repository(journal(DurabilityMode.PER_OP_FSYNC));
+        assertThat(recovered.getAccounts(0, 200)).isEqualTo(repo.getAccounts(0, 200));
+    }
+
+    @Test
+    public void forEachAccount_rejectsCorruptBlock() throws Exception {
+        SnapshotStore store = new SnapshotStore(folder.getRoot().getPath());
+        List<Account> accounts = new ArrayList<>();
+        accounts.add(new Account("Id-1", BigDecimal.TEN, 1));
+        store.write(2, accounts.iterator());
+
+        Path file = Files.list(folder.getRoot().toPath()).findFirst().get();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), SnapshotStore.HEADER_BYTES + 2);
+        }
+
+        assertThatThrownBy(() -> store.latest().forEachAccount(account -> {
+        })).isInstanceOf(JournalException.class);
+    }
+
+    private AccountsRepositoryInMemory repository(TransferJournal journal) {
+        AccountsRepositoryInMemory repo = new AccountsRepositoryInMemory(journal,
+                new SnapshotStore(new File(folder.getRoot(), "snapshots").getPath()));
+        repo.recover();
+        return repo;
+    }
+
+    private TransferJournal journal(DurabilityMode durabilityMode) {
+        return new TransferJournal(durabilityMode, new File(folder.getRoot(), "journal").getPath(), 500, 64, 4096);
+    }
+
+    private List<Path> files(String directory) throws Exception {
+        return Files.list(new File(folder.getRoot(), directory).toPath()).sorted().collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,238 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.JournalException;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class TransferJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replay_restoresBalancesWithGroupCommit() throws Exception {
+        assertBalancesSurviveRestart(DurabilityMode.GROUP_COMMIT);
+    }
+
+    @Test
+    public void replay_restoresBalancesWithPerOpFsync() throws Exception {
+        assertBalancesSurviveRestart(DurabilityMode.PER_OP_FSYNC);
+    }
+
+    @Test
+    public void replay_restoresBalancesWithAsyncWrites() throws Exception {
+        assertBalancesSurviveRestart(DurabilityMode.ASYNC);
+    }
+
+    @Test
+    public void replay_concurrentTransfersAcrossSegments() throws Exception {
+        TransferJournal journal = journal(DurabilityMode.GROUP_COMMIT, 4096);
+        AccountsRepositoryInMemory repo = new AccountsRepositoryInMemory(journal);
+        repo.recover();
+        for (int i = 0; i < 10; i++) {
+            repo.createAccount(new Account("Id-" + i, BigDecimal.valueOf(1000)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            final String from = "Id-" + (i % 10);
+            final String to = "Id-" + ((i * 7 + 3) % 10);
+            if (!from.equals(to)) {
+                futures.add(executor.submit(() -> repo.transfer(from, to, BigDecimal.ONE)));
+            }
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        journal.close();
+
+        assertThat(segments().size()).isGreaterThan(1);
+        AccountsRepositoryInMemory recovered = reopen(DurabilityMode.GROUP_COMMIT);
+        for (int i = 0; i < 10; i++) {
+            assertThat(recovered.getAccount("Id-" + i)).isEqualTo(repo.getAccount("Id-" + i));
+        }
+    }
+
+    @Test
+    public void failedWrite_stopsTheJournal() throws Exception {
+        TransferJournal journal = journal(DurabilityMode.GROUP_COMMIT, Long.MAX_VALUE);
+        AccountsRepositoryInMemory repo = new AccountsRepositoryInMemory(journal);
+        repo.recover();
+        repo.createAccount(new Account("Id-1", BigDecimal.valueOf(100)));
+        repo.createAccount(new Account("Id-2", BigDecimal.valueOf(100)));
+        long writtenSequence = journal.getWrittenSequence();
+
+        journal.closeSegment();
+        try {
+            repo.transfer("Id-1", "Id-2", BigDecimal.TEN);
+            fail("Should have failed to write the transfer");
+        } catch (JournalException je) {
+            assertThat(je.getMessage()).startsWith("Cannot write journal");
+        }
+
+        // Nothing is written past the failed batch, and nothing more is accepted.
+        try {
+            repo.transfer("Id-2", "Id-1", BigDecimal.ONE);
+            fail("Should have refused a record after the failure");
+        } catch (JournalException je) {
+            assertThat(je.getMessage()).isEqualTo("Journal stopped after a failed write");
+        }
+        assertThat(repo.getAccount("Id-2").getBalance()).isEqualByComparingTo("110");
+        assertThat(journal.getWrittenSequence()).isEqualTo(writtenSequence);
+        journal.close();
+
+        AccountsRepositoryInMemory recovered = reopen(DurabilityMode.GROUP_COMMIT);
+        assertThat(recovered.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+        assertThat(recovered.getAccount("Id-2").getBalance()).isEqualByComparingTo("100");
+    }
+
+    @Test
+    public void replay_stopsAtTornRecord() throws Exception {
+        TransferJournal journal = journal(DurabilityMode.PER_OP_FSYNC, Long.MAX_VALUE);
+        AccountsRepositoryInMemory repo = new AccountsRepositoryInMemory(journal);
+        repo.recover();
+        repo.createAccount(new Account("Id-1", BigDecimal.valueOf(100)));
+        repo.createAccount(new Account("Id-2", BigDecimal.valueOf(100)));
+        repo.transfer("Id-1", "Id-2", BigDecimal.TEN);
+        journal.close();
+
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        AccountsRepositoryInMemory recovered = reopen(DurabilityMode.PER_OP_FSYNC);
+        assertThat(recovered.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+        assertThat(recovered.getAccount("Id-2").getBalance()).isEqualByComparingTo("100");
+
+        // New records go to a fresh segment after the intact ones.
+        recovered.transfer("Id-2", "Id-1", BigDecimal.ONE);
+        assertThat(reopen(DurabilityMode.PER_OP_FSYNC).getAccount("Id-1").getBalance()).isEqualByComparingTo("101");
+    }
+
+    @Test
+    public void replay_failsOnCorruptRecordBeforeLaterSegments() throws Exception {
+        TransferJournal journal = journal(DurabilityMode.PER_OP_FSYNC, 256);
+        AccountsRepositoryInMemory repo = new AccountsRepositoryInMemory(journal);
+        repo.recover();
+        repo.createAccount(new Account("Id-1", BigDecimal.valueOf(100)));
+        repo.createAccount(new Account("Id-2", BigDecimal.valueOf(100)));
+        for (int i = 0; i < 20; i++) {
+            repo.transfer("Id-1", "Id-2", BigDecimal.ONE);
+        }
+        journal.close();
+        assertThat(segments().size()).isGreaterThan(2);
+
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer middle = ByteBuffer.allocate(1);
+            channel.read(middle, channel.size() / 2);
+            middle.put(0, (byte) ~middle.get(0)).rewind();
+            channel.write(middle, channel.size() / 2);
+        }
+
+        try {
+            reopen(DurabilityMode.PER_OP_FSYNC);
+            fail("Should have refused to replay over the corrupt record");
+        } catch (JournalException je) {
+            assertThat(je.getMessage()).contains("is missing records");
+        }
+    }
+
+    @Test
+    public void replay_restoresCurrenciesAndConvertedCredits() throws Exception {
+        TransferJournal journal = journal(DurabilityMode.PER_OP_FSYNC, Long.MAX_VALUE);
+        AccountsRepositoryInMemory repo = new AccountsRepositoryInMemory(journal);
+        repo.recover();
+        repo.createAccount(new Account("Id-eur", BigDecimal.valueOf(100)));
+        repo.createAccount(new Account("Id-usd", BigDecimal.valueOf(100), Currency.getInstance("USD")));
+        repo.transfer("Id-eur", "Id-usd", BigDecimal.TEN, new BigDecimal("10.85"));
+        repo.transfer("Id-usd", "Id-eur", BigDecimal.ONE, new BigDecimal("0.92"));
+        journal.close();
+
+        AccountsRepositoryInMemory recovered = reopen(DurabilityMode.PER_OP_FSYNC);
+        assertThat(recovered.getAccount("Id-eur")).isEqualTo(repo.getAccount("Id-eur"));
+        assertThat(recovered.getAccount("Id-usd")).isEqualTo(repo.getAccount("Id-usd"));
+        assertThat(recovered.getAccount("Id-usd").getCurrency()).isEqualTo(Currency.getInstance("USD"));
+        assertThat(recovered.getAccount("Id-usd").getBalance()).isEqualByComparingTo("109.85");
+        assertThat(recovered.getAccount("Id-eur").getBalance()).isEqualByComparingTo("90.92");
+    }
+
+    @Test
+    public void replay_restoresHolds() throws Exception {
+        TransferJournal journal = journal(DurabilityMode.PER_OP_FSYNC, Long.MAX_VALUE);
+        AccountsRepositoryInMemory repo = new AccountsRepositoryInMemory(journal);
+        repo.recover();
+        repo.createAccount(new Account("Id-1", BigDecimal.valueOf(100)));
+        repo.createAccount(new Account("Id-2", BigDecimal.valueOf(100)));
+        long expiresAt = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        repo.placeHold("Id-1", "hold-1", BigDecimal.valueOf(30), expiresAt);
+        repo.placeHold("Id-1", "hold-2", BigDecimal.valueOf(20), expiresAt);
+        repo.placeHold("Id-2", "hold-3", BigDecimal.valueOf(5), expiresAt);
+        repo.captureHold("Id-1", "hold-1", "Id-2", BigDecimal.valueOf(12), BigDecimal.valueOf(12));
+        repo.releaseHold("Id-1", "hold-2");
+        journal.close();
+
+        AccountsRepositoryInMemory recovered = reopen(DurabilityMode.PER_OP_FSYNC);
+        assertThat(recovered.getAccount("Id-1")).isEqualTo(repo.getAccount("Id-1"));
+        assertThat(recovered.getAccount("Id-2")).isEqualTo(repo.getAccount("Id-2"));
+        assertThat(recovered.getAccount("Id-1").getHold("hold-1").getAmount()).isEqualByComparingTo("18");
+        assertThat(recovered.getAccount("Id-1").getHold("hold-1").getExpiresAtMillis()).isEqualTo(expiresAt);
+        assertThat(recovered.getAccount("Id-1").getBalance()).isEqualByComparingTo("88");
+        assertThat(recovered.getAccount("Id-2").getAvailableBalance()).isEqualByComparingTo("107");
+    }
+
+    private void assertBalancesSurviveRestart(DurabilityMode durabilityMode) throws Exception {
+        TransferJournal journal = journal(durabilityMode, Long.MAX_VALUE);
+        AccountsRepositoryInMemory repo = new AccountsRepositoryInMemory(journal);
+        repo.recover();
+
+        repo.createAccount(new Account("Id-1", new BigDecimal("1000.50")));
+        repo.createAccount(new Account("Id-2", BigDecimal.valueOf(1000)));
+        repo.transfer("Id-1", "Id-2", new BigDecimal("200.25"));
+        repo.debitAmount("Id-2", BigDecimal.valueOf(100));
+        repo.creditAmount("Id-1", BigDecimal.valueOf(50));
+        journal.close();
+
+        AccountsRepositoryInMemory recovered = reopen(durabilityMode);
+        assertThat(recovered.getAccount("Id-1").getBalance()).isEqualByComparingTo("850.25");
+        assertThat(recovered.getAccount("Id-2").getBalance()).isEqualByComparingTo("1100.25");
+    }
+
+    private AccountsRepositoryInMemory reopen(DurabilityMode durabilityMode) {
+        AccountsRepositoryInMemory repo = new AccountsRepositoryInMemory(journal(durabilityMode, Long.MAX_VALUE));
+        repo.recover();
+        return repo;
+    }
+
+    private TransferJournal journal(DurabilityMode durabilityMode, long segmentSizeBytes) {
+        return new TransferJournal(durabilityMode, folder.getRoot().getPath(), 500, 64, segmentSizeBytes);
+    }
+
+    private List<Path> segments() throws Exception {
+        return Files.list(folder.getRoot().toPath()).sorted().collect(Collectors.toList());
+    }
+}
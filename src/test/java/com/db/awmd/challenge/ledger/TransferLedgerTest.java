@@ -0,0 +1,105 @@
+package com.db.awmd.challenge.ledger;
+
+import com.db.awmd.challenge.model.LedgerEntry;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Currency;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransferLedgerTest {
+
+    private static final Currency EUR = Currency.getInstance("EUR");
+
+    @Test
+    public void transfers_indexedByBothAccounts() {
+        final TransferLedger ledger = new TransferLedger(100, false);
+        record(ledger, "Id-1", "Id-2", new BigDecimal("10.50"));
+        record(ledger, "Id-2", "Id-3", new BigDecimal("3"));
+        record(ledger, "Id-3", "Id-1", new BigDecimal("1.25"));
+
+        final List<LedgerEntry> transfers = ledger.transfers("Id-1", Long.MIN_VALUE, Long.MAX_VALUE, 10);
+        assertThat(transfers).extracting(LedgerEntry::getSequence).containsExactly(0L, 2L);
+        assertThat(transfers.get(0).getFromAccountId()).isEqualTo("Id-1");
+        assertThat(transfers.get(0).getToAccountId()).isEqualTo("Id-2");
+        assertThat(transfers.get(0).getAmount()).isEqualTo(new BigDecimal("10.50"));
+        assertThat(transfers.get(1).getAmount()).isEqualTo(new BigDecimal("1.25"));
+
+        assertThat(ledger.transfers("Id-2", Long.MIN_VALUE, Long.MAX_VALUE, 1))
+                .extracting(LedgerEntry::getSequence).containsExactly(0L);
+        assertThat(ledger.transfers("Id-4", Long.MIN_VALUE, Long.MAX_VALUE, 10)).isEmpty();
+    }
+
+    @Test
+    public void transfers_filtersByTimeRange() throws Exception {
+        final TransferLedger ledger = new TransferLedger(100, false);
+        record(ledger, "Id-1", "Id-2", BigDecimal.ONE);
+        Thread.sleep(5);
+        record(ledger, "Id-1", "Id-2", BigDecimal.TEN);
+
+        final List<LedgerEntry> all = ledger.transfers("Id-1", Long.MIN_VALUE, Long.MAX_VALUE, 10);
+        final long second = Instant.parse(all.get(1).getTimestamp()).toEpochMilli();
+        assertThat(second).isGreaterThan(Instant.parse(all.get(0).getTimestamp()).toEpochMilli());
+
+        assertThat(ledger.transfers("Id-1", second, Long.MAX_VALUE, 10))
+                .extracting(LedgerEntry::getAmount).containsExactly(BigDecimal.TEN);
+        assertThat(ledger.transfers("Id-1", Long.MIN_VALUE, second, 10))
+                .extracting(LedgerEntry::getAmount).containsExactly(BigDecimal.ONE);
+    }
+
+    @Test
+    public void record_acrossChunksOffHeap() {
+        final int events = TransferLedger.CHUNK_SIZE * 2 + 3;
+        final TransferLedger ledger = new TransferLedger(events, true);
+        for (int i = 0; i < events; i++) {
+            record(ledger, "Id-" + (i % 100), "Hot", BigDecimal.valueOf(i, 2));
+        }
+
+        final List<LedgerEntry> transfers = ledger.transfers("Hot", Long.MIN_VALUE, Long.MAX_VALUE, events);
+        assertThat(transfers).hasSize(events);
+        for (int i = 0; i < events; i++) {
+            assertThat(transfers.get(i).getSequence()).isEqualTo(i);
+            assertThat(transfers.get(i).getFromAccountId()).isEqualTo("Id-" + (i % 100));
+            assertThat(transfers.get(i).getAmount()).isEqualTo(BigDecimal.valueOf(i, 2));
+        }
+    }
+
+    @Test
+    public void record_keepsCreditedAmountAndBothCurrencies() {
+        final TransferLedger ledger = new TransferLedger(100, true);
+        final Currency jpy = Currency.getInstance("JPY");
+        final BigDecimal large = new BigDecimal("123456789012345678901234567890");
+        ledger.record("Id-1", "Id-2", new BigDecimal("10.50"), EUR, BigDecimal.valueOf(1706), jpy);
+        ledger.record("Id-2", "Id-1", BigDecimal.ONE, jpy, large, EUR);
+
+        final List<LedgerEntry> transfers = ledger.transfers("Id-1", Long.MIN_VALUE, Long.MAX_VALUE, 10);
+        assertThat(transfers.get(0).getAmount()).isEqualTo(new BigDecimal("10.50"));
+        assertThat(transfers.get(0).getCurrency()).isEqualTo(EUR);
+        assertThat(transfers.get(0).getCreditAmount()).isEqualTo(BigDecimal.valueOf(1706));
+        assertThat(transfers.get(0).getCreditCurrency()).isEqualTo(jpy);
+        assertThat(transfers.get(1).getCurrency()).isEqualTo(jpy);
+        assertThat(transfers.get(1).getCreditAmount()).isEqualTo(large);
+        assertThat(transfers.get(1).getCreditCurrency()).isEqualTo(EUR);
+    }
+
+    @Test
+    public void record_keepsLargeAmountsAndDropsBeyondMaxEvents() {
+        final TransferLedger ledger = new TransferLedger(2, false);
+        final BigDecimal large = new BigDecimal("123456789012345678901234567890.12");
+        record(ledger, "Id-1", "Id-2", large);
+        record(ledger, "Id-1", "Id-1", BigDecimal.ONE);
+        record(ledger, "Id-1", "Id-2", BigDecimal.TEN);
+
+        assertThat(ledger.transfers("Id-1", Long.MIN_VALUE, Long.MAX_VALUE, 10))
+                .extracting(LedgerEntry::getAmount).containsExactly(large, BigDecimal.ONE);
+        assertThat(ledger.getSize()).isEqualTo(2);
+        assertThat(ledger.getDropped()).isEqualTo(1);
+    }
+
+    private static void record(TransferLedger ledger, String fromAccountId, String toAccountId, BigDecimal amount) {
+        ledger.record(fromAccountId, toAccountId, amount, EUR, amount, EUR);
+    }
+}
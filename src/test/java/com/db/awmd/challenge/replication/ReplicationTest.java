@@ -0,0 +1,182 @@
+package com.db.awmd.challenge.replication;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.ReadOnlyReplicaException;
+import com.db.awmd.challenge.journal.DurabilityMode;
+import com.db.awmd.challenge.journal.SnapshotStore;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ReplicationTest {
+
+    private static final int ACCOUNTS = 50;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private TransferJournal primaryJournal;
+
+    private AccountsRepositoryInMemory primary;
+
+    private JournalShipper shipper;
+
+    private AccountsRepositoryInMemory replica;
+
+    private JournalFollower follower;
+
+    @Before
+    public void setUp() throws Exception {
+        primaryJournal = journal(folder.newFolder("primary"));
+        primary = new AccountsRepositoryInMemory(primaryJournal);
+        primary.recover();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            primary.createAccount(new Account("Id-" + i, BigDecimal.valueOf(10_000)));
+        }
+        primary.createAccount(new Account("Id-usd", BigDecimal.valueOf(100), Currency.getInstance("USD")));
+        primary.placeHold("Id-0", "hold-1", BigDecimal.valueOf(250), System.currentTimeMillis() + 3_600_000);
+
+        shipper = new JournalShipper(primary, primaryJournal, 0, 10, 64 * 1024 * 1024);
+        shipper.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (follower != null) {
+            follower.stop();
+        }
+        shipper.stop();
+        primaryJournal.close();
+    }
+
+    @Test
+    public void follower_copiesAccountsThenAppliesShippedRecords() throws Exception {
+        startFollower(new AccountsRepositoryInMemory());
+        await(follower::isSynced);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int seed = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    primary.transfer("Id-" + (seed + i) % ACCOUNTS, "Id-" + (seed + 7 * i + 1) % ACCOUNTS,
+                            BigDecimal.valueOf(i % 13 + 1));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        primary.captureHold("Id-0", "hold-1", "Id-usd", BigDecimal.valueOf(100), new BigDecimal("108.50"));
+        primary.createAccount(new Account("Id-late", BigDecimal.ONE));
+
+        await(() -> follower.getAppliedSequence() == primaryJournal.getWrittenSequence());
+        assertThat(replica.getAccountCount()).isEqualTo(primary.getAccountCount());
+        // Pages come in the order the primary created the accounts.
+        assertThat(replica.getAccounts(0, replica.getAccountCount()))
+                .isEqualTo(primary.getAccounts(0, primary.getAccountCount()));
+        assertThat(replica.getAccount("Id-0").getHold("hold-1").getAmount()).isEqualByComparingTo("150");
+        await(() -> shipper.getFollowers().get(0).getLagSequences() == 0);
+    }
+
+    @Test
+    public void follower_refusesChangesAndReportsStaleness() throws Exception {
+        startFollower(new AccountsRepositoryInMemory());
+        assertThat(follower.getStalenessMillis()).isEqualTo(Long.MAX_VALUE);
+        await(follower::isSynced);
+
+        assertThat(follower.getStalenessMillis()).isZero();
+        assertThatThrownBy(() -> replica.transfer("Id-1", "Id-2", BigDecimal.ONE))
+                .isInstanceOf(ReadOnlyReplicaException.class);
+        assertThatThrownBy(() -> replica.createAccount(new Account("Id-new")))
+                .isInstanceOf(ReadOnlyReplicaException.class);
+        assertThat(replica.expireHolds(Long.MAX_VALUE)).isZero();
+
+        shipper.stop();
+        await(() -> !follower.isConnected());
+        now.addAndGet(5000);
+        assertThat(follower.getStalenessMillis()).isEqualTo(5000);
+        assertThat(replica.getAccount("Id-1").getBalance()).isEqualByComparingTo("10000");
+    }
+
+    @Test
+    public void promote_carriesOnFromTheLastRecordApplied() throws Exception {
+        final File followerDirectory = folder.newFolder("follower");
+        final TransferJournal followerJournal = journal(new File(followerDirectory, "journal"));
+        final SnapshotStore followerSnapshots = new SnapshotStore(new File(followerDirectory, "snapshots").getPath());
+        startFollower(new AccountsRepositoryInMemory(followerJournal, followerSnapshots));
+        primary.transfer("Id-1", "Id-2", BigDecimal.valueOf(40));
+        await(() -> follower.getAppliedSequence() == primaryJournal.getWrittenSequence());
+
+        final long lastSequence = follower.stop();
+        follower = null;
+        replica.promote(lastSequence);
+        replica.transfer("Id-2", "Id-3", BigDecimal.valueOf(15));
+        assertThat(replica.getAccount("Id-2").getVersion()).isEqualTo(lastSequence + 1);
+        followerJournal.close();
+
+        final AccountsRepositoryInMemory recovered = new AccountsRepositoryInMemory(
+                journal(new File(followerDirectory, "journal")), followerSnapshots);
+        recovered.recover();
+        assertThat(recovered.getAccount("Id-1").getBalance()).isEqualByComparingTo("9960");
+        assertThat(recovered.getAccount("Id-2").getBalance()).isEqualByComparingTo("10025");
+        assertThat(recovered.getAccount("Id-3").getBalance()).isEqualByComparingTo("10015");
+        assertThat(recovered.getAccount("Id-0").getAvailableBalance()).isEqualByComparingTo("9750");
+        assertThat(recovered.getAccountCount()).isEqualTo(ACCOUNTS + 1);
+    }
+
+    @Test
+    public void journalReset_makesFollowerCopyTheAccountsAgain() throws Exception {
+        startFollower(new AccountsRepositoryInMemory());
+        await(follower::isSynced);
+
+        primary.clearAccounts();
+        primary.createAccount(new Account("Id-fresh", BigDecimal.TEN));
+
+        await(() -> replica.getAccountCount() == 1 && replica.getAccount("Id-fresh") != null);
+        assertThat(replica.getAccount("Id-1")).isNull();
+    }
+
+    private void startFollower(AccountsRepositoryInMemory repository) throws Exception {
+        replica = repository;
+        replica.recover();
+        replica.setReadOnly(true);
+        follower = new JournalFollower(replica, "localhost", shipper.getLocalPort(), 50, now::get);
+        follower.start();
+    }
+
+    private static TransferJournal journal(File directory) {
+        return new TransferJournal(DurabilityMode.GROUP_COMMIT, directory.getPath(), 500, 64, Long.MAX_VALUE);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
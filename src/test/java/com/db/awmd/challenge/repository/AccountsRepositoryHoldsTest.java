@@ -0,0 +1,138 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.exception.AccountDebitException;
+import com.db.awmd.challenge.exception.HoldNotPresentException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AccountsRepositoryHoldsTest {
+    private static final String ACCOUNT_ID = "ID-123";
+    private static final String TO_ACCOUNT_ID = "ID-234";
+
+    private final AtomicLong now = new AtomicLong(1000);
+
+    private AccountsRepositoryInMemory repo;
+
+    @Before
+    public void setUp() {
+        repo = new AccountsRepositoryInMemory();
+        repo.setClock(now::get);
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.valueOf(100)));
+        repo.createAccount(new Account(TO_ACCOUNT_ID, BigDecimal.valueOf(10)));
+    }
+
+    @Test
+    public void placeHold_reducesAvailableBalanceOnly() {
+        Account account = repo.placeHold(ACCOUNT_ID, "h-1", BigDecimal.valueOf(60), 2000);
+
+        assertThat(account.getBalance()).isEqualByComparingTo("100");
+        assertThat(account.getHeldBalance()).isEqualByComparingTo("60");
+        assertThat(account.getAvailableBalance()).isEqualByComparingTo("40");
+        assertThat(repo.getAccount(ACCOUNT_ID).getHold("h-1").getAmount()).isEqualByComparingTo("60");
+    }
+
+    @Test
+    public void placeHold_failsBeyondAvailableBalance() {
+        repo.placeHold(ACCOUNT_ID, "h-1", BigDecimal.valueOf(60), 2000);
+
+        assertThatThrownBy(() -> repo.placeHold(ACCOUNT_ID, "h-2", BigDecimal.valueOf(50), 2000))
+                .isInstanceOf(AccountDebitException.class)
+                .hasMessageContaining("40 available");
+        assertThat(repo.getAccount(ACCOUNT_ID).getHolds()).hasSize(1);
+    }
+
+    @Test
+    public void transfer_cannotSpendHeldFunds() {
+        repo.placeHold(ACCOUNT_ID, "h-1", BigDecimal.valueOf(60), 2000);
+
+        assertThatThrownBy(() -> repo.transfer(ACCOUNT_ID, TO_ACCOUNT_ID, BigDecimal.valueOf(50)))
+                .isInstanceOf(AccountDebitException.class)
+                .hasMessageContaining("on hold");
+        assertThatThrownBy(() -> repo.debitAmount(ACCOUNT_ID, BigDecimal.valueOf(41)))
+                .isInstanceOf(AccountDebitException.class);
+
+        repo.transfer(ACCOUNT_ID, TO_ACCOUNT_ID, BigDecimal.valueOf(40));
+        assertThat(repo.getAccount(ACCOUNT_ID).getAvailableBalance()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    public void captureHold_partiallyThenFully() {
+        repo.placeHold(ACCOUNT_ID, "h-1", BigDecimal.valueOf(60), 2000);
+
+        TransferResult result = repo.captureHold(ACCOUNT_ID, "h-1", TO_ACCOUNT_ID, BigDecimal.valueOf(25),
+                BigDecimal.valueOf(25));
+        assertThat(result.getFromAccount().getBalance()).isEqualByComparingTo("75");
+        assertThat(result.getFromAccount().getHold("h-1").getAmount()).isEqualByComparingTo("35");
+        assertThat(result.getToAccount().getBalance()).isEqualByComparingTo("35");
+
+        assertThatThrownBy(() -> repo.captureHold(ACCOUNT_ID, "h-1", TO_ACCOUNT_ID, BigDecimal.valueOf(36),
+                BigDecimal.valueOf(36)))
+                .isInstanceOf(AccountDebitException.class)
+                .hasMessageContaining("exceeds");
+
+        result = repo.captureHold(ACCOUNT_ID, "h-1", TO_ACCOUNT_ID, BigDecimal.valueOf(35), BigDecimal.valueOf(35));
+        assertThat(result.getFromAccount().getBalance()).isEqualByComparingTo("40");
+        assertThat(result.getFromAccount().getHolds()).isEmpty();
+        assertThat(result.getFromAccount().getAvailableBalance()).isEqualByComparingTo("40");
+        assertThat(repo.getAccount(TO_ACCOUNT_ID).getBalance()).isEqualByComparingTo("70");
+    }
+
+    @Test
+    public void releaseHold_restoresAvailableBalance() {
+        repo.placeHold(ACCOUNT_ID, "h-1", BigDecimal.valueOf(60), 2000);
+
+        Account account = repo.releaseHold(ACCOUNT_ID, "h-1");
+        assertThat(account.getHolds()).isEmpty();
+        assertThat(account.getAvailableBalance()).isEqualByComparingTo("100");
+
+        assertThatThrownBy(() -> repo.releaseHold(ACCOUNT_ID, "h-1")).isInstanceOf(HoldNotPresentException.class);
+        assertThatThrownBy(() -> repo.captureHold(ACCOUNT_ID, "h-1", TO_ACCOUNT_ID, BigDecimal.ONE, BigDecimal.ONE))
+                .isInstanceOf(HoldNotPresentException.class);
+    }
+
+    @Test
+    public void expiredHold_isReleasedWhenTheAccountIsNextUsed() {
+        repo.placeHold(ACCOUNT_ID, "h-1", BigDecimal.valueOf(60), 2000);
+        now.set(2000);
+
+        repo.transfer(ACCOUNT_ID, TO_ACCOUNT_ID, BigDecimal.valueOf(90));
+
+        assertThat(repo.getAccount(ACCOUNT_ID).getHolds()).isEmpty();
+        assertThat(repo.getAccount(ACCOUNT_ID).getBalance()).isEqualByComparingTo("10");
+        assertThatThrownBy(() -> repo.captureHold(ACCOUNT_ID, "h-1", TO_ACCOUNT_ID, BigDecimal.ONE, BigDecimal.ONE))
+                .isInstanceOf(HoldNotPresentException.class);
+    }
+
+    @Test
+    public void expireHolds_releasesOnlyExpiredHolds() {
+        repo.placeHold(ACCOUNT_ID, "h-1", BigDecimal.valueOf(10), 2000);
+        repo.placeHold(ACCOUNT_ID, "h-2", BigDecimal.valueOf(20), 3000);
+        repo.placeHold(TO_ACCOUNT_ID, "h-3", BigDecimal.valueOf(5), 1500);
+        long version = repo.getAccount(ACCOUNT_ID).getVersion();
+
+        assertThat(repo.expireHolds(1999)).isEqualTo(1);
+        assertThat(repo.getAccount(ACCOUNT_ID).getVersion()).isEqualTo(version);
+        assertThat(repo.getAccount(TO_ACCOUNT_ID).getHolds()).isEmpty();
+
+        assertThat(repo.expireHolds(2000)).isEqualTo(1);
+        assertThat(repo.getAccount(ACCOUNT_ID).getHolds()).extracting("holdId").containsExactly("h-2");
+        assertThat(repo.getAccount(ACCOUNT_ID).getHeldBalance()).isEqualByComparingTo("20");
+        assertThat(repo.expireHolds(2000)).isEqualTo(0);
+    }
+
+    @Test
+    public void captureHold_rejectsCaptureIntoSameAccount() {
+        repo.placeHold(ACCOUNT_ID, "h-1", BigDecimal.valueOf(60), 2000);
+
+        assertThatThrownBy(() -> repo.captureHold(ACCOUNT_ID, "h-1", ACCOUNT_ID, BigDecimal.ONE, BigDecimal.ONE))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -1,6 +1,7 @@
 package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferResult;
 import com.db.awmd.challenge.exception.AccountCreditException;
 import com.db.awmd.challenge.exception.AccountDebitException;
 import com.db.awmd.challenge.exception.AccountNotPresentException;
@@ -10,29 +11,39 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
-import org.mockito.InjectMocks;
-import org.mockito.MockitoAnnotations;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.Assert.*;
-import static org.mockito.MockitoAnnotations.initMocks;
 
 public class AccountsRepositoryInMemoryTest {
     private static final String ACCOUNT_ID = "ID-123";
+    private static final String TO_ACCOUNT_ID = "ID-234";
 
-    @InjectMocks
-    private AccountsRepositoryInMemory repo;
+    protected AccountsRepository repo;
 
     @Rule
     public ExpectedException expectedException = ExpectedException.none();
 
     @Before
     public void setUp() throws Exception {
-        initMocks(this);
-        repo.clearAccounts();
+        repo = createRepository();
+    }
+
+    /**
+     * Other stores run this same suite by overriding this.
+     */
+    protected AccountsRepository createRepository() throws Exception {
+        return new AccountsRepositoryInMemory();
     }
 
     @Test
@@ -89,4 +100,122 @@ public class AccountsRepositoryInMemoryTest {
         Account accountFromMap = repo.getAccount(ACCOUNT_ID);
         assertThat(accountFromMap.getBalance()).isEqualByComparingTo("1500.0");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void transfer_failsOnAbsentFromAccount() {
+        repo.createAccount(new Account(TO_ACCOUNT_ID, BigDecimal.valueOf(1000)));
+
+        expectedException.expect(AccountDebitException.class);
+        expectedException.expectCause(IsInstanceOf.<Throwable>instanceOf(AccountNotPresentException.class));
+
+        repo.transfer(ACCOUNT_ID, TO_ACCOUNT_ID, BigDecimal.valueOf(100));
+    }
+
+    @Test
+    public void transfer_failsOnAbsentToAccountWithoutDebiting() {
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.valueOf(1000)));
+
+        try {
+            repo.transfer(ACCOUNT_ID, TO_ACCOUNT_ID, BigDecimal.valueOf(100));
+            Assertions.fail("Should have failed when crediting an absent account");
+        } catch (AccountCreditException ace) {
+            assertThat(ace.getCause()).isInstanceOf(AccountNotPresentException.class);
+        }
+
+        assertThat(repo.getAccount(ACCOUNT_ID).getBalance()).isEqualByComparingTo("1000");
+    }
+
+    @Test
+    public void transfer_failsDueToNegativeBalance() {
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.valueOf(500)));
+        repo.createAccount(new Account(TO_ACCOUNT_ID, BigDecimal.valueOf(500)));
+
+        try {
+            repo.transfer(ACCOUNT_ID, TO_ACCOUNT_ID, BigDecimal.valueOf(1000));
+            Assertions.fail("Should have failed due to negative balance");
+        } catch (AccountDebitException ade) {
+            assertThat(ade.getMessage()).contains("Account cannot have negative balance");
+        }
+
+        assertThat(repo.getAccount(ACCOUNT_ID).getBalance()).isEqualByComparingTo("500");
+        assertThat(repo.getAccount(TO_ACCOUNT_ID).getBalance()).isEqualByComparingTo("500");
+    }
+
+    @Test
+    public void transfer_success() {
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.valueOf(1000)));
+        repo.createAccount(new Account(TO_ACCOUNT_ID, BigDecimal.valueOf(1000)));
+
+        TransferResult result = repo.transfer(ACCOUNT_ID, TO_ACCOUNT_ID, BigDecimal.valueOf(300));
+        assertThat(result.getFromAccount().getBalance()).isEqualByComparingTo("700");
+        assertThat(result.getToAccount().getBalance()).isEqualByComparingTo("1300");
+
+        assertThat(repo.getAccount(ACCOUNT_ID).getBalance()).isEqualByComparingTo("700");
+        assertThat(repo.getAccount(TO_ACCOUNT_ID).getBalance()).isEqualByComparingTo("1300");
+    }
+
+    @Test
+    public void transfer_creditsConvertedAmountInTheAccountsCurrency() {
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.valueOf(1000)));
+        repo.createAccount(new Account(TO_ACCOUNT_ID, BigDecimal.valueOf(1000), Currency.getInstance("USD")));
+
+        TransferResult result = repo.transfer(ACCOUNT_ID, TO_ACCOUNT_ID, BigDecimal.valueOf(100), new BigDecimal("108.50"));
+        assertThat(result.getFromAccount().getBalance()).isEqualByComparingTo("900");
+        assertThat(result.getToAccount().getBalance()).isEqualByComparingTo("1108.50");
+        assertThat(repo.getAccount(TO_ACCOUNT_ID).getCurrency()).isEqualTo(Currency.getInstance("USD"));
+        assertThat(repo.getCurrency(ACCOUNT_ID)).isEqualTo(Account.DEFAULT_CURRENCY);
+    }
+
+    @Test
+    public void versionChangesWithEveryBalanceChange() {
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.valueOf(1000)));
+        repo.createAccount(new Account(TO_ACCOUNT_ID, BigDecimal.valueOf(1000)));
+        final long created = repo.getAccount(ACCOUNT_ID).getVersion();
+
+        repo.debitAmount(ACCOUNT_ID, BigDecimal.ONE);
+        repo.creditAmount(ACCOUNT_ID, BigDecimal.ONE);
+        final TransferResult result = repo.transfer(ACCOUNT_ID, TO_ACCOUNT_ID, BigDecimal.ONE);
+
+        assertThat(result.getFromAccount().getVersion()).isEqualTo(created + 3);
+        assertThat(result.getToAccount().getVersion()).isEqualTo(created + 1);
+        assertThat(repo.getAccount(ACCOUNT_ID).getVersion()).isEqualTo(created + 3);
+    }
+
+    @Test
+    public void transfer_opposingConcurrentTransfersConserveBalance() throws Exception {
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.valueOf(1000)));
+        repo.createAccount(new Account(TO_ACCOUNT_ID, BigDecimal.valueOf(1000)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final boolean forward = i % 2 == 0;
+            futures.add(executor.submit(() -> forward
+                    ? repo.transfer(ACCOUNT_ID, TO_ACCOUNT_ID, BigDecimal.ONE)
+                    : repo.transfer(TO_ACCOUNT_ID, ACCOUNT_ID, BigDecimal.ONE)));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(repo.getAccount(ACCOUNT_ID).getBalance()).isEqualByComparingTo("1000");
+        assertThat(repo.getAccount(TO_ACCOUNT_ID).getBalance()).isEqualByComparingTo("1000");
+    }
+
+    @Test
+    public void getAccounts_pagesInCreationOrder() {
+        for (int i = 0; i < 5; i++) {
+            repo.createAccount(new Account("Id-" + i, BigDecimal.valueOf(i)));
+        }
+
+        List<Account> firstPage = repo.getAccounts(0, 3);
+        repo.createAccount(new Account("Id-5", BigDecimal.ONE));
+        List<Account> secondPage = repo.getAccounts(firstPage.size(), 3);
+
+        assertThat(firstPage).extracting(Account::getAccountId).containsExactly("Id-0", "Id-1", "Id-2");
+        assertThat(secondPage).extracting(Account::getAccountId).containsExactly("Id-3", "Id-4", "Id-5");
+        assertThat(repo.getAccounts(6, 3)).isEmpty();
+        assertThat(repo.getAccountCount()).isEqualTo(6);
+    }
+}
@@ -0,0 +1,197 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.exception.AccountCreditException;
+import com.db.awmd.challenge.exception.AccountStoreException;
+import com.db.awmd.challenge.exception.CurrencyConversionException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+/**
+ * Runs the in-memory store's suite against the mapped store, plus what only a file-backed store does.
+ */
+public class AccountsRepositoryMappedTest extends AccountsRepositoryInMemoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Override
+    protected AccountsRepository createRepository() throws Exception {
+        file = new File(folder.getRoot(), "accounts.dat");
+        return new AccountsRepositoryMapped(file.toPath(), 1000);
+    }
+
+    @After
+    public void tearDown() {
+        ((AccountsRepositoryMapped) repo).close();
+    }
+
+    /**
+     * The mapped store uses the balance in minor units as the version.
+     */
+    @Override
+    @Test
+    public void versionChangesWithEveryBalanceChange() {
+        repo.createAccount(new Account("Id-1", new BigDecimal("10.00")));
+        repo.createAccount(new Account("Id-2", BigDecimal.ZERO));
+
+        final TransferResult result = repo.transfer("Id-1", "Id-2", new BigDecimal("0.25"));
+
+        assertThat(result.getFromAccount().getVersion()).isEqualTo(975);
+        assertThat(result.getToAccount().getVersion()).isEqualTo(25);
+        assertThat(repo.getAccount("Id-1").getVersion()).isEqualTo(975);
+    }
+
+    /**
+     * The mapped store only holds accounts in the default currency.
+     */
+    @Override
+    @Test
+    public void transfer_creditsConvertedAmountInTheAccountsCurrency() {
+        try {
+            repo.createAccount(new Account("Id-1", BigDecimal.TEN, Currency.getInstance("USD")));
+            fail("Should have refused an account in another currency");
+        } catch (IllegalArgumentException iae) {
+            assertThat(iae.getMessage()).contains("only holds EUR accounts");
+        }
+        assertThat(repo.getAccountCount()).isZero();
+
+        repo.createAccount(new Account("Id-1", BigDecimal.TEN));
+        repo.createAccount(new Account("Id-2", BigDecimal.TEN));
+        try {
+            repo.transfer("Id-1", "Id-2", BigDecimal.ONE, new BigDecimal("1.08"));
+            fail("Should have refused to convert between currencies");
+        } catch (CurrencyConversionException cce) {
+            assertThat(repo.getAccount("Id-1").getBalance()).isEqualByComparingTo("10");
+        }
+    }
+
+    @Test
+    public void transfer_failsOnCreditPastTheMaximumWithoutDebiting() {
+        repo.createAccount(new Account("Id-1", BigDecimal.valueOf(1000)));
+        repo.createAccount(new Account("Id-2", new BigDecimal("92233720368547758.00")));
+
+        try {
+            repo.transfer("Id-1", "Id-2", BigDecimal.ONE);
+            fail("Should have failed when the credit overflows");
+        } catch (AccountCreditException ace) {
+            assertThat(ace.getMessage()).contains("Account cannot hold a larger balance");
+        }
+
+        assertThat(repo.getAccount("Id-1").getBalance()).isEqualByComparingTo("1000");
+        assertThat(repo.getAccount("Id-2").getBalance()).isEqualByComparingTo("92233720368547758.00");
+    }
+
+    @Test
+    public void reopen_keepsAccountsAndBalances() {
+        repo.createAccount(new Account("Id-1", new BigDecimal("100")));
+        repo.createAccount(new Account("Konto-ä", new BigDecimal("50")));
+        repo.transfer("Id-1", "Konto-ä", new BigDecimal("12.34"));
+        ((AccountsRepositoryMapped) repo).close();
+
+        repo = new AccountsRepositoryMapped(file.toPath(), 10);
+
+        assertThat(repo.getAccountCount()).isEqualTo(2);
+        assertThat(repo.getAccount("Id-1").getBalance()).isEqualByComparingTo("87.66");
+        assertThat(repo.getAccount("Konto-ä").getBalance()).isEqualByComparingTo("62.34");
+        assertThat(repo.getAccounts(0, 10)).extracting(Account::getAccountId).containsExactly("Id-1", "Konto-ä");
+
+        repo.createAccount(new Account("Id-2", BigDecimal.ONE));
+        assertThat(repo.getAccount("Id-2").getBalance()).isEqualByComparingTo("1");
+    }
+
+    @Test
+    public void reopen_completesTransferInterruptedBetweenItsLegs() {
+        repo.createAccount(new Account("Id-1", new BigDecimal("100")));
+        repo.createAccount(new Account("Id-2", new BigDecimal("50")));
+        ((AccountsRepositoryMapped) repo).setBetweenLegs(() -> {
+            throw new IllegalStateException("Process stopped");
+        });
+
+        try {
+            repo.transfer("Id-1", "Id-2", BigDecimal.TEN);
+            fail("Should have stopped between the debit and the credit");
+        } catch (IllegalStateException ise) {
+            assertThat(repo.getAccount("Id-1").getBalance()).isEqualByComparingTo("90");
+            assertThat(repo.getAccount("Id-2").getBalance()).isEqualByComparingTo("50");
+        }
+        ((AccountsRepositoryMapped) repo).close();
+
+        repo = new AccountsRepositoryMapped(file.toPath(), 10);
+
+        assertThat(repo.getAccount("Id-1").getBalance()).isEqualByComparingTo("90");
+        assertThat(repo.getAccount("Id-2").getBalance()).isEqualByComparingTo("60");
+        repo.transfer("Id-2", "Id-1", BigDecimal.TEN);
+        ((AccountsRepositoryMapped) repo).close();
+
+        repo = new AccountsRepositoryMapped(file.toPath(), 10);
+
+        assertThat(repo.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+        assertThat(repo.getAccount("Id-2").getBalance()).isEqualByComparingTo("50");
+    }
+
+    @Test
+    public void reopen_failsOnDifferentScale() {
+        ((AccountsRepositoryMapped) repo).close();
+
+        try {
+            new AccountsRepositoryMapped(file.toString(), 1000, 32, 4);
+            fail("Should have refused a file with a different scale");
+        } catch (AccountStoreException ase) {
+            assertThat(ase.getMessage()).contains("2 decimal places, not 4");
+        }
+        repo = new AccountsRepositoryMapped(file.toPath(), 1000);
+    }
+
+    @Test
+    public void createAccount_fillsStoreAndThenFails() {
+        for (int i = 0; i < 1000; i++) {
+            repo.createAccount(new Account("Id-" + i, BigDecimal.valueOf(i)));
+        }
+
+        try {
+            repo.createAccount(new Account("Id-1", BigDecimal.ONE));
+            fail("Should have failed on a duplicate");
+        } catch (DuplicateAccountIdException daie) {
+            assertThat(daie.getMessage()).contains("Id-1");
+        }
+        try {
+            repo.createAccount(new Account("Id-1000", BigDecimal.ONE));
+            fail("Should have failed when full");
+        } catch (AccountStoreException ase) {
+            assertThat(ase.getMessage()).contains("full");
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(repo.getAccount("Id-" + i).getBalance()).isEqualByComparingTo(BigDecimal.valueOf(i));
+        }
+        assertThat(repo.getAccount("Id-1000")).isNull();
+    }
+
+    @Test
+    public void clearAccounts_freesEverySlot() {
+        repo.createAccount(new Account("Id-1", BigDecimal.ONE));
+        repo.clearAccounts();
+
+        assertThat(repo.getAccount("Id-1")).isNull();
+        assertThat(repo.getAccountCount()).isZero();
+
+        repo.createAccount(new Account("Id-2", BigDecimal.TEN));
+        final List<Account> accounts = repo.getAccounts(0, 10);
+        assertThat(accounts).extracting(Account::getAccountId).containsExactly("Id-2");
+    }
+}
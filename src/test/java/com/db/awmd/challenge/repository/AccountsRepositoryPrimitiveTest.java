@@ -0,0 +1,340 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.exception.AccountCreditException;
+import com.db.awmd.challenge.exception.AccountDebitException;
+import com.db.awmd.challenge.exception.AccountNotPresentException;
+import com.db.awmd.challenge.exception.CurrencyConversionException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.sun.management.ThreadMXBean;
+import org.hamcrest.core.IsInstanceOf;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class AccountsRepositoryPrimitiveTest {
+
+    private static final String ACCOUNT_ID = "ID-123";
+    private static final String TO_ACCOUNT_ID = "ID-234";
+    private static final int ITERATIONS = 100_000;
+    private static final BigDecimal THREE = BigDecimal.valueOf(3);
+
+    private AccountsRepositoryPrimitive repo;
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Before
+    public void setUp() {
+        repo = new AccountsRepositoryPrimitive();
+    }
+
+    @Test
+    public void createAccount_failsOnDuplicateId() {
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.valueOf(100)));
+
+        expectedException.expect(DuplicateAccountIdException.class);
+        expectedException.expectMessage("Account id " + ACCOUNT_ID + " already exists!");
+
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.valueOf(100)));
+    }
+
+    @Test
+    public void createAccount_failsOnAmountFinerThanScale() {
+        expectedException.expect(IllegalArgumentException.class);
+
+        repo.createAccount(new Account(ACCOUNT_ID, new BigDecimal("1.001")));
+    }
+
+    @Test
+    public void createAccount_failsOnWholeAmountPastTheMaximum() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("cannot be represented");
+
+        repo.createAccount(new Account(ACCOUNT_ID, new BigDecimal("100000000000000000")));
+    }
+
+    @Test
+    public void createAccount_failsOnCurrencyOtherThanDefault() {
+        expectedException.expect(IllegalArgumentException.class);
+        expectedException.expectMessage("only holds EUR accounts");
+
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.ONE, Currency.getInstance("USD")));
+    }
+
+    @Test
+    public void transfer_refusesToConvertBetweenCurrencies() {
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.TEN));
+        repo.createAccount(new Account("Id-2", BigDecimal.TEN));
+        expectedException.expect(CurrencyConversionException.class);
+
+        repo.transfer(ACCOUNT_ID, "Id-2", BigDecimal.ONE, new BigDecimal("1.08"));
+    }
+
+    @Test
+    public void getAccount_convertsMinorUnits() {
+        repo.createAccount(new Account(ACCOUNT_ID, new BigDecimal("123.45")));
+
+        assertThat(repo.getAccount(ACCOUNT_ID).getBalance()).isEqualByComparingTo("123.45");
+        assertThat(repo.getAccount(TO_ACCOUNT_ID)).isNull();
+    }
+
+    @Test
+    public void debitAmount_failsDueToNegativeBalance() {
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.valueOf(500)));
+
+        expectedException.expect(AccountDebitException.class);
+        expectedException.expectMessage("Account cannot have negative balance");
+
+        repo.debitAmount(ACCOUNT_ID, BigDecimal.valueOf(1000));
+    }
+
+    @Test
+    public void creditAmount_failsDueToAbsentToAccount() {
+        expectedException.expect(AccountCreditException.class);
+        expectedException.expectCause(IsInstanceOf.<Throwable>instanceOf(AccountNotPresentException.class));
+
+        repo.creditAmount(ACCOUNT_ID, BigDecimal.valueOf(1000));
+    }
+
+    @Test
+    public void transfer_failsOnAbsentToAccountWithoutDebiting() {
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.valueOf(1000)));
+
+        try {
+            repo.transfer(ACCOUNT_ID, TO_ACCOUNT_ID, BigDecimal.valueOf(100));
+            fail("Should have failed when crediting an absent account");
+        } catch (AccountCreditException ace) {
+            assertThat(ace.getCause()).isInstanceOf(AccountNotPresentException.class);
+        }
+
+        assertThat(repo.getAccount(ACCOUNT_ID).getBalance()).isEqualByComparingTo("1000");
+    }
+
+    @Test
+    public void transfer_success() {
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.valueOf(1000)));
+        repo.createAccount(new Account(TO_ACCOUNT_ID, BigDecimal.valueOf(1000)));
+
+        TransferResult result = repo.transfer(ACCOUNT_ID, TO_ACCOUNT_ID, new BigDecimal("300.25"));
+        assertThat(result.getFromAccount().getBalance()).isEqualByComparingTo("699.75");
+        assertThat(result.getToAccount().getBalance()).isEqualByComparingTo("1300.25");
+    }
+
+    @Test
+    public void transfer_allocatesOnlyWhatItReturns() {
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.valueOf(1000)));
+        repo.createAccount(new Account(TO_ACCOUNT_ID, BigDecimal.valueOf(1000)));
+
+        ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < 3; i++) {
+            transferBackAndForth();
+        }
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        transferBackAndForth();
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        // The TransferResult, its two Accounts and their balances take 184 bytes with compressed oops; once compiled,
+        // the conversion of the amount and the update itself take none.
+        assertThat(allocated / (2 * ITERATIONS)).isLessThanOrEqualTo(256);
+        assertThat(repo.getAccount(ACCOUNT_ID).getBalance()).isEqualByComparingTo("1000");
+    }
+
+    @Test
+    public void transfer_growsPastOneChunk() {
+        for (int i = 0; i < 10_000; i++) {
+            repo.createAccount(new Account("Id-" + i, BigDecimal.ONE));
+        }
+
+        repo.transfer("Id-0", "Id-9999", BigDecimal.ONE);
+        assertThat(repo.getAccount("Id-0").getBalance()).isEqualByComparingTo("0");
+        assertThat(repo.getAccount("Id-9999").getBalance()).isEqualByComparingTo("2");
+    }
+
+    @Test
+    public void transfer_failsOnCreditPastTheMaximumWithoutDebiting() {
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.valueOf(1000)));
+        repo.createAccount(new Account(TO_ACCOUNT_ID, new BigDecimal("92233720368547758.00")));
+
+        try {
+            repo.transfer(ACCOUNT_ID, TO_ACCOUNT_ID, BigDecimal.ONE);
+            fail("Should have failed when the credit overflows");
+        } catch (AccountCreditException ace) {
+            assertThat(ace.getMessage()).contains("Account cannot hold a larger balance");
+        }
+
+        assertThat(repo.getAccount(ACCOUNT_ID).getBalance()).isEqualByComparingTo("1000");
+        assertThat(repo.getAccount(TO_ACCOUNT_ID).getBalance()).isEqualByComparingTo("92233720368547758.00");
+    }
+
+    @Test
+    public void creditAmount_failsOnCreditPastTheMaximum() {
+        repo.createAccount(new Account(ACCOUNT_ID, new BigDecimal("92233720368547758.00")));
+        repo.creditAmount(ACCOUNT_ID, new BigDecimal("0.07"));
+
+        expectedException.expect(AccountCreditException.class);
+
+        repo.creditAmount(ACCOUNT_ID, new BigDecimal("0.01"));
+    }
+
+    @Test
+    public void markStriped_creditFailsWhenNoCellHasRoom() {
+        repo = new AccountsRepositoryPrimitive(2, 2);
+        repo.createAccount(new Account(ACCOUNT_ID, new BigDecimal("46116860184273879.00")));
+        repo.createAccount(new Account(TO_ACCOUNT_ID, new BigDecimal("46116860184273879.00")));
+        repo.markStriped(ACCOUNT_ID);
+
+        // Each of the two cells holds at most half of the maximum, so the total can never overflow.
+        repo.transfer(TO_ACCOUNT_ID, ACCOUNT_ID, new BigDecimal("46116860184273879.00"));
+        try {
+            repo.transfer(ACCOUNT_ID, TO_ACCOUNT_ID, BigDecimal.ONE);
+            repo.transfer(TO_ACCOUNT_ID, ACCOUNT_ID, BigDecimal.ONE);
+            repo.creditAmount(ACCOUNT_ID, new BigDecimal("46116860184273879.00"));
+            fail("Should have failed when no cell has room");
+        } catch (AccountCreditException ace) {
+            assertThat(ace.getMessage()).contains("Account cannot hold a larger balance");
+        }
+        assertThat(repo.getAccount(ACCOUNT_ID).getBalance()).isEqualByComparingTo("92233720368547758.00");
+    }
+
+    @Test
+    public void markStriped_transferBetweenStripedAccountsPutsTheDebitBackOnOverflow() {
+        repo = new AccountsRepositoryPrimitive(2, 2);
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.TEN));
+        repo.createAccount(new Account(TO_ACCOUNT_ID, new BigDecimal("46116860184273879.00")));
+        repo.markStriped(ACCOUNT_ID);
+        repo.markStriped(TO_ACCOUNT_ID);
+        repo.creditAmount(TO_ACCOUNT_ID, new BigDecimal("46116860184273879.00"));
+
+        try {
+            repo.transfer(ACCOUNT_ID, TO_ACCOUNT_ID, BigDecimal.ONE);
+            fail("Should have failed when no cell has room");
+        } catch (AccountCreditException ace) {
+            assertThat(ace.getMessage()).contains("Account cannot hold a larger balance");
+        }
+
+        assertThat(repo.getAccount(ACCOUNT_ID).getBalance()).isEqualByComparingTo("10");
+        assertThat(repo.getAccount(TO_ACCOUNT_ID).getBalance()).isEqualByComparingTo("92233720368547758.00");
+    }
+
+    @Test
+    public void markStriped_failsOnBalanceAboveTheFirstCellsCap() {
+        repo = new AccountsRepositoryPrimitive(2, 2);
+        repo.createAccount(new Account(ACCOUNT_ID, new BigDecimal("92233720368547758.00")));
+
+        expectedException.expect(IllegalArgumentException.class);
+
+        repo.markStriped(ACCOUNT_ID);
+    }
+
+    @Test
+    public void markStriped_debitGathersCreditsFromOtherThreads() throws Exception {
+        repo = new AccountsRepositoryPrimitive(2, 4);
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.valueOf(10)));
+        repo.markStriped(ACCOUNT_ID);
+
+        runOnThreads(4, () -> {
+            for (int i = 0; i < 1000; i++) {
+                repo.creditAmount(ACCOUNT_ID, new BigDecimal("0.01"));
+            }
+        });
+        assertThat(repo.getAccount(ACCOUNT_ID).getBalance()).isEqualByComparingTo("50");
+
+        // Most of the balance sits in cells of the threads that credited it.
+        repo.debitAmount(ACCOUNT_ID, BigDecimal.valueOf(50));
+        assertThat(repo.getAccount(ACCOUNT_ID).getBalance()).isEqualByComparingTo("0");
+
+        expectedException.expect(AccountDebitException.class);
+        repo.debitAmount(ACCOUNT_ID, new BigDecimal("0.01"));
+    }
+
+    @Test
+    public void markStriped_concurrentTransfersNeverOverdraw() throws Exception {
+        repo = new AccountsRepositoryPrimitive(2, 4);
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.valueOf(100)));
+        for (int i = 0; i < 4; i++) {
+            repo.createAccount(new Account("Id-" + i, BigDecimal.valueOf(100)));
+        }
+        repo.markStriped(ACCOUNT_ID);
+
+        AtomicInteger nextPayer = new AtomicInteger();
+        runOnThreads(4, () -> {
+            String payer = "Id-" + nextPayer.getAndIncrement();
+            for (int i = 0; i < ITERATIONS / 10; i++) {
+                try {
+                    repo.transfer(payer, ACCOUNT_ID, BigDecimal.ONE);
+                    repo.transfer(ACCOUNT_ID, payer, THREE);
+                } catch (AccountDebitException ade) {
+                    // One side ran dry; money keeps moving in the next round.
+                }
+            }
+        });
+
+        BigDecimal total = repo.getAccount(ACCOUNT_ID).getBalance();
+        assertThat(total).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+        for (int i = 0; i < 4; i++) {
+            total = total.add(repo.getAccount("Id-" + i).getBalance());
+        }
+        assertThat(total).isEqualByComparingTo("500");
+    }
+
+    @Test
+    public void createAccount_stripesConfiguredAccounts() {
+        repo = new AccountsRepositoryPrimitive(2, 2, 16, new String[]{ACCOUNT_ID});
+        repo.createAccount(new Account(ACCOUNT_ID, BigDecimal.ZERO));
+        repo.createAccount(new Account(TO_ACCOUNT_ID, BigDecimal.ZERO));
+
+        // More than half the maximum fits a plain balance, but no single cell of a balance striped two ways.
+        repo.creditAmount(TO_ACCOUNT_ID, new BigDecimal("92233720368547758.00"));
+        try {
+            repo.creditAmount(ACCOUNT_ID, new BigDecimal("92233720368547758.00"));
+            fail("Should have failed on the striped account");
+        } catch (AccountCreditException ace) {
+            assertThat(repo.getAccount(ACCOUNT_ID).getBalance()).isEqualByComparingTo("0");
+        }
+    }
+
+    @Test
+    public void markStriped_failsOnAbsentAccount() {
+        expectedException.expect(AccountNotPresentException.class);
+
+        repo.markStriped(ACCOUNT_ID);
+    }
+
+    private static void runOnThreads(int threads, Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(task));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+    private void transferBackAndForth() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            repo.transfer(ACCOUNT_ID, TO_ACCOUNT_ID, BigDecimal.ONE);
+            repo.transfer(TO_ACCOUNT_ID, ACCOUNT_ID, BigDecimal.ONE);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.db.awmd.challenge.schedule;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimingWheelTest {
+
+    @Test
+    public void advance_expiresEveryTimeoutExactlyAtItsDeadline() {
+        final TimingWheel<Long> wheel = new TimingWheel<>(1000);
+        final long[] deadlines = {1001, 1063, 1064, 1065, 1127, 1128, 5095, 5096, 5097, 263_144, 263_145, 300_000};
+        for (long deadline : deadlines) {
+            wheel.schedule(deadline, deadline);
+        }
+
+        final Map<Long, Long> expiredAt = new HashMap<>();
+        for (long tick = 1001; tick <= 300_000; tick++) {
+            final long now = tick;
+            wheel.advance(tick, deadline -> expiredAt.put(deadline, now));
+        }
+
+        assertThat(expiredAt).hasSize(deadlines.length);
+        for (long deadline : deadlines) {
+            assertThat(expiredAt.get(deadline)).isEqualTo(deadline);
+        }
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void advance_catchesUpOnTicksMissedInOneCall() {
+        final TimingWheel<Long> wheel = new TimingWheel<>(0);
+        final Random random = new Random(42);
+        final List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            final long deadline = 1 + random.nextInt(500_000);
+            deadlines.add(deadline);
+            wheel.schedule(deadline, deadline);
+        }
+
+        final List<Long> expired = new ArrayList<>();
+        final long[] lastTick = new long[1];
+        for (long tick = 997; tick < 510_000; tick += 997) {
+            final long previous = lastTick[0];
+            final long now = tick;
+            wheel.advance(tick, deadline -> {
+                assertThat(deadline).isGreaterThan(previous).isLessThanOrEqualTo(now);
+                expired.add(deadline);
+            });
+            lastTick[0] = tick;
+        }
+
+        assertThat(expired).hasSameSizeAs(deadlines).containsOnlyElementsOf(deadlines);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void schedule_expiresPastDeadlineOnNextTick() {
+        final TimingWheel<String> wheel = new TimingWheel<>(100);
+        wheel.schedule(5, "late");
+
+        final List<String> expired = new ArrayList<>();
+        wheel.advance(101, expired::add);
+
+        assertThat(expired).containsExactly("late");
+    }
+
+    @Test
+    public void cancel_removesTimeoutOnce() {
+        final TimingWheel<String> wheel = new TimingWheel<>(0);
+        final TimingWheel.Timeout<String> cancelled = wheel.schedule(10_000, "cancelled");
+        final TimingWheel.Timeout<String> kept = wheel.schedule(10_000, "kept");
+
+        assertThat(wheel.cancel(cancelled)).isTrue();
+        assertThat(wheel.cancel(cancelled)).isFalse();
+        assertThat(cancelled.isPending()).isFalse();
+        assertThat(wheel.size()).isEqualTo(1);
+
+        final List<String> expired = new ArrayList<>();
+        wheel.advance(10_000, expired::add);
+
+        assertThat(expired).containsExactly("kept");
+        assertThat(kept.isPending()).isFalse();
+        assertThat(wheel.cancel(kept)).isFalse();
+    }
+}
@@ -0,0 +1,230 @@
+package com.db.awmd.challenge.schedule;
+
+import com.db.awmd.challenge.admission.ConcurrencyLimiter;
+import com.db.awmd.challenge.admission.RateLimiter;
+import com.db.awmd.challenge.admission.TransferAdmission;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.fx.FxRates;
+import com.db.awmd.challenge.fx.RateTable;
+import com.db.awmd.challenge.ledger.TransferLedger;
+import com.db.awmd.challenge.metrics.MetricsRegistry;
+import com.db.awmd.challenge.model.ScheduledTransfer;
+import com.db.awmd.challenge.model.TransferCommand;
+import com.db.awmd.challenge.model.TransferItemResult;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.BatchTransferService;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.TransferAuditLog;
+import com.db.awmd.challenge.service.TransferCompletionExecutor;
+import com.db.awmd.challenge.service.TransferService;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TransferSchedulerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    private final BatchTransferService batchTransferService = mock(BatchTransferService.class);
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "scheduled.log");
+        when(batchTransferService.transferAll(anyListOf(TransferCommand.class), eq(false))).thenAnswer(invocation -> {
+            final List<?> transferCommands = (List<?>) invocation.getArguments()[0];
+            final List<TransferItemResult> results = new ArrayList<>();
+            for (int i = 0; i < transferCommands.size(); i++) {
+                results.add(new TransferItemResult(i, TransferItemResult.Status.SUCCESS, null));
+            }
+            return results;
+        });
+    }
+
+    private TransferScheduler openScheduler(int maxBatch) {
+        final TransferScheduler scheduler = new TransferScheduler(batchTransferService,
+                new ScheduleLog(file.toPath(), false), 100, maxBatch, clock::get);
+        scheduler.open();
+        return scheduler;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void releaseDue_runsTransferOnceItsTimeHasCome() {
+        final TransferScheduler scheduler = openScheduler(10);
+        final TransferCommand transferCommand = new TransferCommand("Id-1", "Id-2", new BigDecimal("12.50"));
+        scheduler.schedule(transferCommand, 1_000_150);
+
+        clock.set(1_000_199);
+        assertThat(scheduler.releaseDue()).isZero();
+        verify(batchTransferService, never()).transferAll(anyListOf(TransferCommand.class), eq(false));
+
+        clock.set(1_000_200);
+        assertThat(scheduler.releaseDue()).isEqualTo(1);
+        final ArgumentCaptor<List> released = ArgumentCaptor.forClass(List.class);
+        verify(batchTransferService).transferAll(released.capture(), eq(false));
+        assertThat(released.getValue()).containsExactly(transferCommand);
+        assertThat(scheduler.getMetrics().getPending()).isZero();
+        assertThat(scheduler.getMetrics().getExecuted()).isEqualTo(1);
+    }
+
+    @Test
+    public void releaseDue_releasesInBatchesOfAtMostMaxBatch() {
+        final TransferScheduler scheduler = openScheduler(2);
+        for (int i = 0; i < 5; i++) {
+            scheduler.schedule(new TransferCommand("Id-" + i, "Id-x", BigDecimal.ONE), 1_000_000);
+        }
+
+        clock.addAndGet(100);
+
+        assertThat(scheduler.releaseDue()).isEqualTo(5);
+        verify(batchTransferService, times(3)).transferAll(anyListOf(TransferCommand.class), eq(false));
+    }
+
+    @Test
+    public void releaseDue_countsFailedTransfers() {
+        when(batchTransferService.transferAll(anyListOf(TransferCommand.class), eq(false))).thenReturn(
+                Collections.singletonList(new TransferItemResult(0, TransferItemResult.Status.FAILED, "No funds")));
+        final TransferScheduler scheduler = openScheduler(10);
+        scheduler.schedule(new TransferCommand("Id-1", "Id-2", BigDecimal.ONE), 0);
+
+        clock.addAndGet(100);
+        scheduler.releaseDue();
+
+        assertThat(scheduler.getMetrics().getFailed()).isEqualTo(1);
+        assertThat(scheduler.getMetrics().getExecuted()).isZero();
+    }
+
+    @Test
+    public void releaseDue_putsTransfersRefusedByTheAccountRateLimitBackOnTheSchedule() throws Exception {
+        final int transfers = 250;
+        final AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory();
+        accountsRepository.createAccount(new Account("Id-1", BigDecimal.valueOf(transfers)));
+        accountsRepository.createAccount(new Account("Id-2", BigDecimal.ZERO));
+        // The default per-account burst of 100, refilling slowly enough that the sweep outruns it.
+        final TransferService transferService = new TransferService(mock(NotificationDispatcher.class),
+                accountsRepository, new MetricsRegistry(), TransferAuditLog.disabled(), Runnable::run,
+                TransferCompletionExecutor.direct(), TransferLedger.disabled(), new TransferAdmission(new RateLimiter(100, 100, 1000),
+                RateLimiter.unlimited(), ConcurrencyLimiter.unlimited()),
+                new FxRates(RateTable.of(Account.DEFAULT_CURRENCY)));
+        final BatchTransferService limitedBatchTransferService = new BatchTransferService(transferService, 1);
+        try {
+            TransferScheduler scheduler = new TransferScheduler(limitedBatchTransferService,
+                    new ScheduleLog(file.toPath(), false), 100, 1024, clock::get);
+            scheduler.open();
+            for (int i = 0; i < transfers; i++) {
+                scheduler.schedule(new TransferCommand("Id-1", "Id-2", BigDecimal.ONE), 1_000_000);
+            }
+
+            clock.addAndGet(100);
+            assertThat(scheduler.releaseDue()).isEqualTo(transfers);
+            long executed = scheduler.getMetrics().getExecuted();
+            assertThat(executed).isLessThan(transfers);
+            assertThat(scheduler.getMetrics().getFailed()).isZero();
+            assertThat(scheduler.getMetrics().getPending()).isEqualTo(transfers - executed);
+
+            // The refused transfers are back in the file as well.
+            scheduler.stop();
+            scheduler = new TransferScheduler(limitedBatchTransferService, new ScheduleLog(file.toPath(), false), 100,
+                    1024, clock::get);
+            scheduler.open();
+            assertThat(scheduler.getMetrics().getPending()).isEqualTo(transfers - executed);
+
+            final long deadline = System.currentTimeMillis() + 10_000;
+            while (scheduler.getMetrics().getPending() > 0) {
+                assertThat(System.currentTimeMillis()).isLessThan(deadline);
+                Thread.sleep(20);
+                clock.addAndGet(100);
+                scheduler.releaseDue();
+            }
+            executed += scheduler.getMetrics().getExecuted();
+            assertThat(executed).isEqualTo(transfers);
+            assertThat(scheduler.getMetrics().getFailed()).isZero();
+            assertThat(accountsRepository.getAccount("Id-2").getBalance()).isEqualByComparingTo(
+                    BigDecimal.valueOf(transfers));
+        } finally {
+            limitedBatchTransferService.shutdown();
+        }
+    }
+
+    @Test
+    public void cancel_keepsTransferFromRunning() {
+        final TransferScheduler scheduler = openScheduler(10);
+        final ScheduledTransfer scheduledTransfer = scheduler.schedule(
+                new TransferCommand("Id-1", "Id-2", BigDecimal.ONE), 1_000_500);
+
+        assertThat(scheduler.cancel(scheduledTransfer.getId())).isTrue();
+        assertThat(scheduler.cancel(scheduledTransfer.getId())).isFalse();
+        assertThat(scheduler.getScheduled(scheduledTransfer.getId())).isNull();
+
+        clock.addAndGet(1000);
+        assertThat(scheduler.releaseDue()).isZero();
+        assertThat(scheduler.getMetrics().getCancelled()).isEqualTo(1);
+    }
+
+    @Test
+    public void open_restoresPendingTransfersWithoutReusingIds() throws Exception {
+        final TransferScheduler scheduler = openScheduler(10);
+        final ScheduledTransfer released = scheduler.schedule(new TransferCommand("Id-1", "Id-2", BigDecimal.ONE), 1_000_050);
+        final ScheduledTransfer pending = scheduler.schedule(new TransferCommand("Id-1", "Id-Ä", new BigDecimal("0.125")), 2_000_000);
+        final ScheduledTransfer cancelled = scheduler.schedule(new TransferCommand("Id-2", "Id-1", BigDecimal.TEN), 2_000_000);
+        scheduler.cancel(cancelled.getId());
+        clock.addAndGet(100);
+        scheduler.releaseDue();
+        scheduler.stop();
+
+        final TransferScheduler reopened = openScheduler(10);
+
+        assertThat(reopened.getMetrics().getPending()).isEqualTo(1);
+        assertThat(reopened.getScheduled(pending.getId())).isEqualTo(pending);
+        assertThat(reopened.getScheduled(released.getId())).isNull();
+        assertThat(reopened.schedule(new TransferCommand("Id-1", "Id-2", BigDecimal.ONE), 2_000_000).getId())
+                .isGreaterThan(cancelled.getId());
+        reopened.stop();
+
+        final TransferScheduler again = openScheduler(10);
+        assertThat(again.getMetrics().getPending()).isEqualTo(2);
+        again.stop();
+    }
+
+    @Test
+    public void open_ignoresTornRecordAndRunsOverdueTransfers() throws Exception {
+        final TransferScheduler scheduler = openScheduler(10);
+        scheduler.schedule(new TransferCommand("Id-1", "Id-2", BigDecimal.ONE), 1_000_100);
+        scheduler.schedule(new TransferCommand("Id-1", "Id-3", BigDecimal.ONE), 1_000_100);
+        scheduler.stop();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        clock.set(5_000_000);
+        final TransferScheduler reopened = openScheduler(10);
+
+        assertThat(reopened.getMetrics().getPending()).isEqualTo(1);
+        clock.addAndGet(100);
+        assertThat(reopened.releaseDue()).isEqualTo(1);
+    }
+}
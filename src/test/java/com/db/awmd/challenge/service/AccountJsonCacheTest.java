@@ -0,0 +1,48 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccountJsonCacheTest {
+
+    @Test
+    public void get_reusesJsonUntilVersionOrBalanceChanges() {
+        final AccountJsonCache cache = new AccountJsonCache(new ObjectMapper(), 10);
+
+        final AccountJsonCache.Json first = cache.get(new Account("Id-1", new BigDecimal("10"), 1));
+        assertThat(new String(first.getBytes(), StandardCharsets.UTF_8)).isEqualTo("{\"accountId\":\"Id-1\",\"balance\":10,\"currency\":\"EUR\"}");
+        assertThat(cache.get(new Account("Id-1", new BigDecimal("10"), 1))).isSameAs(first);
+
+        final AccountJsonCache.Json changed = cache.get(new Account("Id-1", new BigDecimal("11"), 2));
+        assertThat(new String(changed.getBytes(), StandardCharsets.UTF_8)).isEqualTo("{\"accountId\":\"Id-1\",\"balance\":11,\"currency\":\"EUR\"}");
+        assertThat(changed.getETag()).isNotEqualTo(first.getETag());
+
+        // Recreated with the same version but a different balance.
+        assertThat(cache.get(new Account("Id-1", new BigDecimal("12"), 2))).isNotSameAs(changed);
+
+        assertThat(cache.getMetrics().getHits()).isEqualTo(1);
+        assertThat(cache.getMetrics().getMisses()).isEqualTo(3);
+    }
+
+    @Test
+    public void get_evictsUnreadEntriesBeforeReadOnes() {
+        final AccountJsonCache cache = new AccountJsonCache(new ObjectMapper(), 2);
+        final Account hot = new Account("Hot", BigDecimal.ONE);
+        final AccountJsonCache.Json hotJson = cache.get(hot);
+        cache.get(new Account("Id-1", BigDecimal.ONE));
+        cache.get(hot);
+
+        cache.get(new Account("Id-2", BigDecimal.ONE));
+        cache.get(new Account("Id-3", BigDecimal.ONE));
+
+        assertThat(cache.get(hot)).isSameAs(hotJson);
+        assertThat(cache.getMetrics().getSize()).isEqualTo(2);
+        assertThat(cache.getMetrics().getEvictions()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,140 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.admission.TransferAdmission;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.JournalException;
+import com.db.awmd.challenge.fx.FxRates;
+import com.db.awmd.challenge.fx.RateTable;
+import com.db.awmd.challenge.ledger.TransferLedger;
+import com.db.awmd.challenge.metrics.MetricsRegistry;
+import com.db.awmd.challenge.model.TransferCommand;
+import com.db.awmd.challenge.model.TransferItemResult;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatcher;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+public class BatchTransferServiceTest {
+
+    private AccountsRepository accountsRepository;
+
+    private BatchTransferService batchTransferService;
+
+    @Before
+    public void setUp() {
+        accountsRepository = new AccountsRepositoryInMemory();
+        TransferService transferService = new TransferService(mock(NotificationDispatcher.class), accountsRepository,
+                new MetricsRegistry(), TransferAuditLog.disabled(), Runnable::run, TransferCompletionExecutor.direct(),
+                TransferLedger.disabled(), TransferAdmission.disabled(),
+                new FxRates(RateTable.of(Account.DEFAULT_CURRENCY)));
+        batchTransferService = new BatchTransferService(transferService, 4);
+    }
+
+    @After
+    public void tearDown() {
+        batchTransferService.shutdown();
+    }
+
+    @Test
+    public void transferAll_reportsPerItemResults() {
+        accountsRepository.createAccount(new Account("Id-1", BigDecimal.valueOf(100)));
+        accountsRepository.createAccount(new Account("Id-2", BigDecimal.valueOf(100)));
+
+        List<TransferItemResult> results = batchTransferService.transferAll(Arrays.asList(
+                new TransferCommand("Id-1", "Id-2", BigDecimal.valueOf(60)),
+                new TransferCommand("Id-1", "Id-2", BigDecimal.valueOf(60)),
+                new TransferCommand("Id-1", "Id-3", BigDecimal.valueOf(10))), false);
+
+        assertThat(results).extracting("status").containsExactly(
+                TransferItemResult.Status.SUCCESS, TransferItemResult.Status.FAILED, TransferItemResult.Status.FAILED);
+        assertThat(results.get(2).getMessage()).isEqualTo("Account with id Id-3 is not present.");
+        assertThat(accountsRepository.getAccount("Id-1").getBalance()).isEqualByComparingTo("40");
+        assertThat(accountsRepository.getAccount("Id-2").getBalance()).isEqualByComparingTo("160");
+    }
+
+    @Test
+    public void transferAll_netsOpposingFlows() {
+        accountsRepository.createAccount(new Account("Id-1", BigDecimal.valueOf(50)));
+        accountsRepository.createAccount(new Account("Id-2", BigDecimal.valueOf(0)));
+
+        // Applied one by one the first transfer would overdraw Id-1; netted it is a transfer of 30.
+        List<TransferItemResult> results = batchTransferService.transferAll(Arrays.asList(
+                new TransferCommand("Id-1", "Id-2", BigDecimal.valueOf(100)),
+                new TransferCommand("Id-2", "Id-1", BigDecimal.valueOf(70))), true);
+
+        assertThat(results).extracting("status").containsOnly(TransferItemResult.Status.SUCCESS);
+        assertThat(accountsRepository.getAccount("Id-1").getBalance()).isEqualByComparingTo("20");
+        assertThat(accountsRepository.getAccount("Id-2").getBalance()).isEqualByComparingTo("30");
+    }
+
+    @Test
+    public void transferAll_nettedOutPairTouchesNoAccount() {
+        List<TransferItemResult> results = batchTransferService.transferAll(Arrays.asList(
+                new TransferCommand("Id-1", "Id-2", BigDecimal.TEN),
+                new TransferCommand("Id-2", "Id-1", BigDecimal.TEN)), true);
+
+        assertThat(results).extracting("status").containsOnly(TransferItemResult.Status.SUCCESS);
+        assertThat(results).extracting("message").containsOnly("Netted out by opposing transfers.");
+    }
+
+    @Test
+    public void transferAll_keepsOrderWithinConnectedAccounts() {
+        List<TransferCommand> transferCommands = new ArrayList<>();
+        for (int pair = 0; pair < 50; pair++) {
+            accountsRepository.createAccount(new Account("A-" + pair, BigDecimal.valueOf(10)));
+            accountsRepository.createAccount(new Account("B-" + pair, BigDecimal.ZERO));
+            accountsRepository.createAccount(new Account("C-" + pair, BigDecimal.ZERO));
+        }
+        for (int pair = 0; pair < 50; pair++) {
+            // The second leg only succeeds if it runs after the first one.
+            transferCommands.add(new TransferCommand("A-" + pair, "B-" + pair, BigDecimal.valueOf(10)));
+            transferCommands.add(new TransferCommand("B-" + pair, "C-" + pair, BigDecimal.valueOf(10)));
+        }
+
+        List<TransferItemResult> results = batchTransferService.transferAll(transferCommands, false);
+
+        assertThat(results).hasSize(100);
+        assertThat(results).extracting("status").containsOnly(TransferItemResult.Status.SUCCESS);
+        for (int pair = 0; pair < 50; pair++) {
+            assertThat(accountsRepository.getAccount("C-" + pair).getBalance()).isEqualByComparingTo("10");
+        }
+    }
+
+    @Test
+    public void transferAll_reportsUnexpectedFailuresPerItem() {
+        TransferService transferService = mock(TransferService.class);
+        doThrow(new JournalException("Journal write failed")).when(transferService)
+                .transferAmount(argThat(new ArgumentMatcher<TransferCommand>() {
+                    @Override
+                    public boolean matches(Object argument) {
+                        return "Id-2".equals(((TransferCommand) argument).getFromAccountId());
+                    }
+                }));
+        BatchTransferService service = new BatchTransferService(transferService, 1);
+
+        try {
+            List<TransferItemResult> results = service.transferAll(Arrays.asList(
+                    new TransferCommand("Id-1", "Id-9", BigDecimal.ONE),
+                    new TransferCommand("Id-2", "Id-9", BigDecimal.ONE),
+                    new TransferCommand("Id-3", "Id-9", BigDecimal.ONE)), false);
+
+            assertThat(results).extracting("status").containsExactly(TransferItemResult.Status.SUCCESS,
+                    TransferItemResult.Status.FAILED, TransferItemResult.Status.SUCCESS);
+            assertThat(results.get(1).getMessage()).isEqualTo("Journal write failed");
+        } finally {
+            service.shutdown();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.model.BulkCreateReport;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryPrimitive;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BulkAccountServiceTest {
+
+    private final AccountsRepositoryInMemory accountsRepository = new AccountsRepositoryInMemory();
+
+    private final BulkAccountService bulkAccountService = new BulkAccountService(accountsRepository, new ObjectMapper());
+
+    @Test
+    public void createAccounts_fromJsonArrayReportsDuplicatesAndInvalid() {
+        accountsRepository.createAccount(new Account("Id-2", BigDecimal.ONE));
+
+        BulkCreateReport report = bulkAccountService.createAccounts(body("["
+                + "{\"accountId\":\"Id-1\",\"balance\":10},"
+                + "{\"accountId\":\"Id-2\",\"balance\":20},"
+                + "{\"accountId\":\"\",\"balance\":30},"
+                + "{\"accountId\":\"Id-4\",\"balance\":-1}]"));
+
+        assertThat(report.getReceived()).isEqualTo(4);
+        assertThat(report.getCreated()).isEqualTo(1);
+        assertThat(report.getRejected()).isEqualTo(3);
+        assertThat(report.getError()).isNull();
+        assertThat(report.getRejectedAccounts()).extracting("index").containsExactly(1L, 2L, 3L);
+        assertThat(report.getRejectedAccounts().get(0).getReason()).isEqualTo("Account id Id-2 already exists!");
+        assertThat(accountsRepository.getAccount("Id-1").getBalance()).isEqualByComparingTo("10");
+        assertThat(accountsRepository.getAccount("Id-2").getBalance()).isEqualByComparingTo("1");
+    }
+
+    @Test
+    public void createAccounts_fromNdjsonAcrossBatches() {
+        int count = BulkAccountService.BATCH_SIZE * 3 + 17;
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            ndjson.append("{\"accountId\":\"Id-").append(i).append("\",\"balance\":").append(i).append("}\n");
+        }
+        // A repeated id in a later batch is caught across batches too.
+        ndjson.append("{\"accountId\":\"Id-5\",\"balance\":1}\n");
+
+        BulkCreateReport report = bulkAccountService.createAccounts(body(ndjson.toString()));
+
+        assertThat(report.getCreated()).isEqualTo(count);
+        assertThat(report.getRejectedAccounts()).extracting("index").containsExactly((long) count);
+        assertThat(accountsRepository.getAccountCount()).isEqualTo(count);
+        assertThat(accountsRepository.getAccount("Id-" + (count - 1)).getBalance()).isEqualByComparingTo(String.valueOf(count - 1));
+    }
+
+    @Test
+    public void createAccounts_stopsAtMalformedAccount() {
+        BulkCreateReport report = bulkAccountService.createAccounts(body(
+                "{\"accountId\":\"Id-1\",\"balance\":10}\n{\"accountId\":\"Id-2\",\"balance\":\n"));
+
+        assertThat(report.getReceived()).isEqualTo(1);
+        assertThat(report.getCreated()).isEqualTo(1);
+        assertThat(report.getError()).startsWith("Could not read account at index 1");
+    }
+
+    @Test
+    public void createAccounts_rejectsAmountFinerThanPrimitiveScale() {
+        BulkAccountService primitive = new BulkAccountService(new AccountsRepositoryPrimitive(), new ObjectMapper());
+
+        BulkCreateReport report = primitive.createAccounts(body(
+                "[{\"accountId\":\"Id-1\",\"balance\":1.001},{\"accountId\":\"Id-2\",\"balance\":1.01}]"));
+
+        assertThat(report.getCreated()).isEqualTo(1);
+        assertThat(report.getRejectedAccounts()).extracting("accountId").containsExactly("Id-1");
+    }
+
+    private static ByteArrayInputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
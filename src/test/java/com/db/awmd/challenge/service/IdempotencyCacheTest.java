@@ -0,0 +1,198 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.exception.IdempotencyKeyReusedException;
+import com.sun.management.ThreadMXBean;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class IdempotencyCacheTest {
+
+    @Test
+    public void execute_returnsStoredResultForRetry() {
+        IdempotencyCache cache = new IdempotencyCache(10, 60);
+        AtomicInteger executions = new AtomicInteger();
+
+        assertThat(cache.execute("key", "request", executions::incrementAndGet)).isEqualTo(1);
+        assertThat(cache.execute("key", "request", executions::incrementAndGet)).isEqualTo(1);
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(cache.getMetrics().getHits()).isEqualTo(1);
+        assertThat(cache.getMetrics().getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    public void execute_retryAllocatesNothing() {
+        IdempotencyCache cache = new IdempotencyCache(10, 60);
+        cache.execute("key", "request", () -> 1);
+        cache.executeAsync("async key", "request", () -> CompletableFuture.completedFuture(1));
+
+        ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        retry(cache, 100_000);
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        retry(cache, 100_000);
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        // Integer division absorbs the constant cost of the measurement itself.
+        assertThat(allocated / 100_000).isZero();
+        assertThat(cache.getMetrics().getHits()).isEqualTo(400_000);
+    }
+
+    @Test
+    public void execute_rejectsKeyReusedForDifferentRequest() {
+        IdempotencyCache cache = new IdempotencyCache(10, 60);
+        cache.execute("key", "request", () -> 1);
+
+        assertThatThrownBy(() -> cache.execute("key", "other request", () -> 2))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+    }
+
+    @Test
+    public void execute_forgetsFailedRequest() {
+        IdempotencyCache cache = new IdempotencyCache(10, 60);
+
+        assertThatThrownBy(() -> cache.execute("key", "request", () -> {
+            throw new IllegalStateException("failed");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(cache.execute("key", "request", () -> 2)).isEqualTo(2);
+    }
+
+    @Test
+    public void execute_evictsOldestWhenFull() {
+        IdempotencyCache cache = new IdempotencyCache(2, 60);
+        cache.execute("key-1", "request", () -> 1);
+        cache.execute("key-2", "request", () -> 2);
+        cache.execute("key-3", "request", () -> 3);
+
+        assertThat(cache.getMetrics().getSize()).isEqualTo(2);
+        assertThat(cache.getMetrics().getEvictions()).isEqualTo(1);
+        assertThat(cache.execute("key-1", "request", () -> 4)).isEqualTo(4);
+    }
+
+    @Test
+    public void executeAsync_keepsRequestInFlightWhenFull() {
+        IdempotencyCache cache = new IdempotencyCache(1, 60);
+        CompletableFuture<Integer> original = new CompletableFuture<>();
+        AtomicInteger executions = new AtomicInteger();
+        cache.executeAsync("key-1", "request", () -> {
+            executions.incrementAndGet();
+            return original;
+        });
+        cache.execute("key-2", "request", () -> 2);
+        cache.execute("key-3", "request", () -> 3);
+
+        CompletableFuture<Integer> retry = cache.executeAsync("key-1", "request", () -> {
+            executions.incrementAndGet();
+            return CompletableFuture.completedFuture(4);
+        });
+        original.complete(1);
+
+        assertThat(retry.join()).isEqualTo(1);
+        assertThat(executions.get()).isEqualTo(1);
+
+        cache.execute("key-4", "request", () -> 4);
+        cache.execute("key-5", "request", () -> 5);
+        assertThat(cache.getMetrics().getSize()).isEqualTo(1);
+    }
+
+    @Test
+    public void executeAsync_keepsRequestInFlightPastTtl() {
+        IdempotencyCache cache = new IdempotencyCache(10, 0);
+        CompletableFuture<Integer> original = new CompletableFuture<>();
+        cache.executeAsync("key", "request", () -> original);
+
+        CompletableFuture<Integer> retry = cache.executeAsync("key", "request",
+                () -> CompletableFuture.completedFuture(2));
+        original.complete(1);
+
+        assertThat(retry.join()).isEqualTo(1);
+        assertThat(cache.executeAsync("key", "request", () -> CompletableFuture.completedFuture(3)).join())
+                .isEqualTo(3);
+    }
+
+    @Test
+    public void execute_expiresEntriesAfterTtl() {
+        IdempotencyCache cache = new IdempotencyCache(10, 0);
+        cache.execute("key", "request", () -> 1);
+
+        assertThat(cache.execute("key", "request", () -> 2)).isEqualTo(2);
+    }
+
+    @Test
+    public void execute_concurrentRetryWaitsForOriginal() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(10, 60);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+
+        Future<Integer> original = executor.submit(() -> cache.execute("key", "request", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            return 1;
+        }));
+        started.await(5, TimeUnit.SECONDS);
+
+        executor.schedule(release::countDown, 100, TimeUnit.MILLISECONDS);
+        assertThat(cache.execute("key", "request", () -> 2)).isEqualTo(1);
+        assertThat(original.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        executor.shutdown();
+    }
+
+    @Test
+    public void executeAsync_returnsOriginalFutureForRetryInFlight() {
+        IdempotencyCache cache = new IdempotencyCache(10, 60);
+        CompletableFuture<Integer> original = new CompletableFuture<>();
+        AtomicInteger executions = new AtomicInteger();
+
+        CompletableFuture<Integer> first = cache.executeAsync("key", "request", () -> {
+            executions.incrementAndGet();
+            return original;
+        });
+        CompletableFuture<Integer> retry = cache.executeAsync("key", "request", () -> {
+            executions.incrementAndGet();
+            return CompletableFuture.completedFuture(2);
+        });
+        assertThat(retry.isDone()).isFalse();
+
+        original.complete(1);
+        assertThat(first.join()).isEqualTo(1);
+        assertThat(retry.join()).isEqualTo(1);
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void executeAsync_forgetsFailedRequest() {
+        IdempotencyCache cache = new IdempotencyCache(10, 60);
+        CompletableFuture<Integer> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("failed"));
+
+        assertThatThrownBy(() -> cache.executeAsync("key", "request", () -> failed).join())
+                .hasCauseInstanceOf(IllegalStateException.class);
+
+        assertThat(cache.executeAsync("key", "request", () -> CompletableFuture.completedFuture(2)).join()).isEqualTo(2);
+    }
+
+    private static void retry(IdempotencyCache cache, int times) {
+        for (int i = 0; i < times; i++) {
+            cache.execute("key", "request", () -> 2);
+            cache.executeAsync("async key", "request", () -> CompletableFuture.completedFuture(2));
+        }
+    }
+}
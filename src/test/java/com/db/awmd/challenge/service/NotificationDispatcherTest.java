@@ -0,0 +1,133 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.model.NotificationMetrics;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NotificationDispatcherTest {
+
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void dispatch_batchesPerAccountOwner() throws Exception {
+        NotificationDispatcher dispatcher = new NotificationDispatcher(
+                (account, description) -> delivered.add(account.getAccountId() + ": " + description),
+                100, NotificationDispatcher.OverflowPolicy.BLOCK, 100, 0);
+
+        Account account = new Account("Id-123", BigDecimal.TEN);
+        dispatcher.notifyDebited(account, BigDecimal.ONE);
+        dispatcher.notifyCredited(account, BigDecimal.ONE);
+        dispatcher.notifyCredited(new Account("Id-234", BigDecimal.TEN), BigDecimal.ONE);
+
+        // Queued before the dispatcher starts, so all three land in one batch.
+        dispatcher.start();
+        dispatcher.stop();
+
+        assertThat(delivered).hasSize(2);
+        assertThat(delivered.get(0)).startsWith("Id-123: Account successfully debited by amount")
+                .contains("; Account successfully credited by amount");
+        assertThat(delivered.get(1)).startsWith("Id-234: Account successfully credited by amount");
+        assertThat(dispatcher.getMetrics().getDispatched()).isEqualTo(3);
+        assertThat(dispatcher.getMetrics().getQueueDepth()).isZero();
+    }
+
+    @Test
+    public void dispatch_formatsAmountsInTheAccountsCurrency() throws Exception {
+        NotificationDispatcher dispatcher = new NotificationDispatcher(
+                (account, description) -> delivered.add(description), 100, NotificationDispatcher.OverflowPolicy.BLOCK, 1, 0);
+
+        dispatcher.notifyDebited(new Account("Id-eur", BigDecimal.TEN), new BigDecimal("1234.5"));
+        dispatcher.notifyCredited(new Account("Id-jpy", BigDecimal.TEN, Currency.getInstance("JPY")), BigDecimal.valueOf(1500));
+        dispatcher.notifyCredited(new Account("Id-usd", BigDecimal.TEN, Currency.getInstance("USD")), new BigDecimal("0.125"));
+        dispatcher.start();
+        dispatcher.stop();
+
+        assertThat(delivered).containsExactly("Account successfully debited by amount EUR 1,234.50",
+                "Account successfully credited by amount JPY 1,500",
+                "Account successfully credited by amount USD 0.125");
+    }
+
+    @Test
+    public void enqueue_dropsOldestWhenFullWithoutBlocking() {
+        // Never started, so nothing drains the queue.
+        NotificationDispatcher dispatcher = new NotificationDispatcher(
+                (account, description) -> delivered.add(account.getAccountId()),
+                2, NotificationDispatcher.OverflowPolicy.DROP_OLDEST, 1, 0);
+
+        for (int i = 0; i < 5; i++) {
+            dispatcher.notifyCredited(new Account("Id-" + i, BigDecimal.TEN), BigDecimal.ONE);
+        }
+
+        NotificationMetrics metrics = dispatcher.getMetrics();
+        assertThat(metrics.getEnqueued()).isEqualTo(5);
+        assertThat(metrics.getDropped()).isEqualTo(3);
+        assertThat(metrics.getQueueDepth()).isEqualTo(2);
+    }
+
+    @Test
+    public void enqueue_spillsWhenFull() throws Exception {
+        NotificationDispatcher dispatcher = new NotificationDispatcher(
+                (account, description) -> delivered.add(account.getAccountId()),
+                2, NotificationDispatcher.OverflowPolicy.SPILL, 10, 10);
+
+        for (int i = 0; i < 5; i++) {
+            dispatcher.notifyCredited(new Account("Id-" + i, BigDecimal.TEN), BigDecimal.ONE);
+        }
+        assertThat(dispatcher.getMetrics().getSpilled()).isEqualTo(3);
+        assertThat(dispatcher.getMetrics().getQueueDepth()).isEqualTo(5);
+
+        dispatcher.start();
+        dispatcher.stop();
+
+        assertThat(delivered).containsOnly("Id-0", "Id-1", "Id-2", "Id-3", "Id-4");
+        assertThat(dispatcher.getMetrics().getDropped()).isZero();
+    }
+
+    @Test
+    public void enqueue_keepsLaterNotificationsBehindSpilledOnes() throws Exception {
+        AtomicReference<NotificationDispatcher> dispatcher = new AtomicReference<>();
+        dispatcher.set(new NotificationDispatcher((account, description) -> {
+            delivered.add(account.getAccountId());
+            if (delivered.size() == 1) {
+                dispatcher.get().notifyCredited(new Account("Id-3", BigDecimal.TEN), BigDecimal.ONE);
+            }
+        }, 2, NotificationDispatcher.OverflowPolicy.SPILL, 1, 10));
+
+        for (int i = 0; i < 3; i++) {
+            dispatcher.get().notifyCredited(new Account("Id-" + i, BigDecimal.TEN), BigDecimal.ONE);
+        }
+        dispatcher.get().start();
+        dispatcher.get().stop();
+
+        assertThat(delivered).containsExactly("Id-0", "Id-1", "Id-2", "Id-3");
+        assertThat(dispatcher.get().getMetrics().getSpilled()).isEqualTo(2);
+    }
+
+    @Test
+    public void enqueue_dropsOnceTheSpillQueueIsFull() throws Exception {
+        NotificationDispatcher dispatcher = new NotificationDispatcher(
+                (account, description) -> delivered.add(account.getAccountId()),
+                2, NotificationDispatcher.OverflowPolicy.SPILL, 10, 2);
+
+        for (int i = 0; i < 7; i++) {
+            dispatcher.notifyCredited(new Account("Id-" + i, BigDecimal.TEN), BigDecimal.ONE);
+        }
+        NotificationMetrics metrics = dispatcher.getMetrics();
+        assertThat(metrics.getSpilled()).isEqualTo(2);
+        assertThat(metrics.getDropped()).isEqualTo(3);
+        assertThat(metrics.getQueueDepth()).isEqualTo(4);
+
+        dispatcher.start();
+        dispatcher.stop();
+
+        assertThat(delivered).containsOnly("Id-0", "Id-1", "Id-2", "Id-3");
+    }
+}
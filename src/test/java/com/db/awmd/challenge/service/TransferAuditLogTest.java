@@ -0,0 +1,51 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.model.TransferCommand;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransferAuditLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void record_writesOneJsonLinePerTransfer() throws Exception {
+        File file = new File(folder.getRoot(), "audit/transfers.jsonl");
+        TransferAuditLog auditLog = new TransferAuditLog(file.getPath(), 16);
+        auditLog.start();
+
+        auditLog.record(new TransferCommand("Id-1", "Id-\"2\"", new BigDecimal("10.50")),
+                TransferAuditLog.Outcome.SUCCESS, 12_000);
+        auditLog.record(new TransferCommand("Id-1", "Id-3", BigDecimal.ONE),
+                TransferAuditLog.Outcome.DEBIT_FAILED, 3_000);
+        auditLog.stop();
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).contains("\"fromAccountId\":\"Id-1\"", "\"toAccountId\":\"Id-\\\"2\\\"\"",
+                "\"amount\":10.50", "\"outcome\":\"SUCCESS\"", "\"latencyMicros\":12");
+        assertThat(lines.get(1)).contains("\"outcome\":\"DEBIT_FAILED\"");
+    }
+
+    @Test
+    public void record_dropsWhenQueueIsFull() throws Exception {
+        TransferAuditLog auditLog = new TransferAuditLog(new File(folder.getRoot(), "audit.jsonl").getPath(), 1);
+        auditLog.start();
+        for (int i = 0; i < 10_000; i++) {
+            auditLog.record(new TransferCommand("Id-1", "Id-2", BigDecimal.ONE), TransferAuditLog.Outcome.SUCCESS, 0);
+        }
+        auditLog.stop();
+
+        assertThat(auditLog.getDropped()).isGreaterThan(0);
+    }
+}
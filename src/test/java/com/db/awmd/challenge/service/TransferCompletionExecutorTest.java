@@ -0,0 +1,43 @@
+package com.db.awmd.challenge.service;
+
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransferCompletionExecutorTest {
+
+    @Test
+    public void execute_neverRunsTasksOnTheSubmittingThreadWhileBusy() throws Exception {
+        TransferCompletionExecutor executor = new TransferCompletionExecutor(false);
+        int threads = Runtime.getRuntime().availableProcessors();
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        Set<Thread> ranOn = ConcurrentHashMap.newKeySet();
+        CountDownLatch completed = new CountDownLatch(100_000);
+        for (int i = 0; i < 100_000; i++) {
+            executor.execute(() -> {
+                ranOn.add(Thread.currentThread());
+                completed.countDown();
+            });
+        }
+        release.countDown();
+
+        assertThat(completed.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(ranOn).doesNotContain(Thread.currentThread());
+        executor.stop();
+    }
+}
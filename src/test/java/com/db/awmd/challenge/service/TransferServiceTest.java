@@ -1,9 +1,15 @@
 package com.db.awmd.challenge.service;
 
+import com.db.awmd.challenge.admission.TransferAdmission;
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferResult;
 import com.db.awmd.challenge.exception.AccountCreditException;
 import com.db.awmd.challenge.exception.AccountDebitException;
 import com.db.awmd.challenge.exception.AccountNotPresentException;
+import com.db.awmd.challenge.exception.TransferThrottledException;
+import com.db.awmd.challenge.fx.FxRates;
+import com.db.awmd.challenge.ledger.TransferLedger;
+import com.db.awmd.challenge.metrics.MetricsRegistry;
 import com.db.awmd.challenge.model.TransferCommand;
 import com.db.awmd.challenge.repository.AccountsRepository;
 import org.assertj.core.api.Assertions;
@@ -18,10 +24,17 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -37,23 +50,54 @@ public class TransferServiceTest {
     private TransferService transferService;
 
     @Mock
-    private NotificationService notificationService;
+    private NotificationDispatcher notificationDispatcher;
 
     @Mock
     private AccountsRepository accountsRepository;
 
+    @Mock
+    private MetricsRegistry metricsRegistry;
+
+    @Mock
+    private TransferAuditLog transferAuditLog;
+
+    @Mock
+    private Executor transferExecutor;
+
+    @Mock
+    private TransferCompletionExecutor completionExecutor;
+
+    @Mock
+    private TransferLedger transferLedger;
+
+    @Mock
+    private TransferAdmission transferAdmission;
+
+    @Mock
+    private FxRates fxRates;
+
     @Rule
     public ExpectedException expectedException = ExpectedException.none();
 
     @Before
     public void setUp() {
         initMocks(this);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArguments()[0]).run();
+            return null;
+        }).when(transferExecutor).execute(any(Runnable.class));
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArguments()[0]).run();
+            return null;
+        }).when(completionExecutor).execute(any(Runnable.class));
+        when(accountsRepository.getCurrency(fromAccountId)).thenReturn(Account.DEFAULT_CURRENCY);
+        when(accountsRepository.getCurrency(toAccountId)).thenReturn(Account.DEFAULT_CURRENCY);
     }
 
     @Test
     public void transferAmount_failsOnAbsentFromAccount() {
         Throwable anpe = new AccountNotPresentException(String.format("Account with id %s is not present.", fromAccountId));
-        when(accountsRepository.debitAmount(fromAccountId, amount)).thenThrow(new AccountDebitException("Account debit exception", anpe));
+        when(accountsRepository.transfer(fromAccountId, toAccountId, amount)).thenThrow(new AccountDebitException("Account debit exception", anpe));
 
         expectedException.expect(AccountDebitException.class);
         expectedException.expectCause(IsInstanceOf.<Throwable>instanceOf(AccountNotPresentException.class));
@@ -61,12 +105,11 @@ public class TransferServiceTest {
         final TransferCommand transferCommand = new TransferCommand(fromAccountId, toAccountId, amount);
 
         transferService.transferAmount(transferCommand);
-        verify(accountsRepository, never()).creditAmount(toAccountId, amount);
     }
 
     @Test
     public void transferAmount_failsDueToNegativeBalance() {
-        when(accountsRepository.debitAmount(fromAccountId, amount)).thenThrow(new AccountDebitException("Account cannot have negative balance"));
+        when(accountsRepository.transfer(fromAccountId, toAccountId, amount)).thenThrow(new AccountDebitException("Account cannot have negative balance"));
 
         expectedException.expect(AccountDebitException.class);
         expectedException.expectMessage("Account cannot have negative balance");
@@ -74,38 +117,160 @@ public class TransferServiceTest {
         final TransferCommand transferCommand = new TransferCommand(fromAccountId, toAccountId, amount);
 
         transferService.transferAmount(transferCommand);
-        verify(accountsRepository, never()).creditAmount(toAccountId, amount);
     }
 
     @Test
     public void transferAmount_failsDueToAbsentToAccount() {
-        when(accountsRepository.debitAmount(fromAccountId, amount)).thenReturn(new Account(fromAccountId, amount));
-
         Throwable anpe = new AccountNotPresentException(String.format("Account with id %s is not present.", toAccountId));
-        when(accountsRepository.creditAmount(toAccountId, amount)).thenThrow(new AccountCreditException("Account credit exception", anpe));
+        when(accountsRepository.transfer(fromAccountId, toAccountId, amount)).thenThrow(new AccountCreditException("Account credit exception", anpe));
 
         expectedException.expect(AccountCreditException.class);
         expectedException.expectCause(IsInstanceOf.<Throwable>instanceOf(AccountNotPresentException.class));
 
         final TransferCommand transferCommand = new TransferCommand(fromAccountId, toAccountId, amount);
 
-        transferService.transferAmount(transferCommand);
-        verify(accountsRepository).debitAmount(fromAccountId, amount);
-        verify(accountsRepository).creditAmount(toAccountId, amount);
-        verify(accountsRepository).creditAmount(fromAccountId, amount);
+        try {
+            transferService.transferAmount(transferCommand);
+        } finally {
+            verify(accountsRepository, never()).creditAmount(fromAccountId, amount);
+            verify(notificationDispatcher, never()).notifyDebited(any(Account.class), any(BigDecimal.class));
+            verify(notificationDispatcher, never()).notifyCredited(any(Account.class), any(BigDecimal.class));
+            verify(transferLedger, never()).record(anyString(), anyString(), any(BigDecimal.class), any(Currency.class),
+                    any(BigDecimal.class), any(Currency.class));
+        }
     }
 
     @Test
     public void transferAmount_success() {
-        when(accountsRepository.debitAmount(fromAccountId, amount)).thenReturn(new Account(fromAccountId, amount));
-        when(accountsRepository.creditAmount(toAccountId, amount)).thenReturn(new Account(toAccountId, amount));
+        when(accountsRepository.transfer(fromAccountId, toAccountId, amount))
+                .thenReturn(new TransferResult(new Account(fromAccountId, amount), new Account(toAccountId, amount)));
 
         final TransferCommand transferCommand = new TransferCommand(fromAccountId, toAccountId, amount);
 
         boolean status = transferService.transferAmount(transferCommand);
         assertThat(status).isTrue();
-        verify(accountsRepository).debitAmount(fromAccountId, amount);
-        verify(accountsRepository).creditAmount(toAccountId, amount);
-        verify(accountsRepository, never()).creditAmount(fromAccountId, amount);
+        verify(accountsRepository).transfer(fromAccountId, toAccountId, amount);
+        verify(accountsRepository, never()).debitAmount(fromAccountId, amount);
+        verify(accountsRepository, never()).creditAmount(toAccountId, amount);
+        verify(notificationDispatcher).notifyDebited(new Account(fromAccountId, amount), amount);
+        verify(notificationDispatcher).notifyCredited(new Account(toAccountId, amount), amount);
+        verify(transferLedger).record(fromAccountId, toAccountId, amount, Account.DEFAULT_CURRENCY, amount,
+                Account.DEFAULT_CURRENCY);
+        verify(transferAdmission).completed(any(Long.class));
+    }
+
+    @Test
+    public void transferAmountAsync_throttledTransferNeverReachesStore() {
+        when(transferAdmission.admit(fromAccountId)).thenThrow(new TransferThrottledException("Too many transfers", 5));
+
+        final TransferCommand transferCommand = new TransferCommand(fromAccountId, toAccountId, amount);
+
+        assertThatThrownBy(() -> transferService.transferAmountAsync(transferCommand).join())
+                .hasCauseInstanceOf(TransferThrottledException.class);
+        verify(accountsRepository, never()).transfer(fromAccountId, toAccountId, amount);
+        verify(transferExecutor, never()).execute(any(Runnable.class));
+        verify(transferAdmission, never()).completed(any(Long.class));
+    }
+
+    @Test
+    public void transferAmountAsync_runsOnTransferExecutor() throws Exception {
+        when(accountsRepository.transfer(fromAccountId, toAccountId, amount))
+                .thenReturn(new TransferResult(new Account(fromAccountId, amount), new Account(toAccountId, amount)));
+
+        final TransferCommand transferCommand = new TransferCommand(fromAccountId, toAccountId, amount);
+
+        TransferResult transferResult = transferService.transferAmountAsync(transferCommand).get();
+        assertThat(transferResult.getToAccount()).isEqualTo(new Account(toAccountId, amount));
+        verify(transferExecutor).execute(any(Runnable.class));
+        verify(notificationDispatcher).notifyCredited(new Account(toAccountId, amount), amount);
+    }
+
+    @Test
+    public void transferAmount_creditsConvertedAmountAcrossCurrencies() {
+        final Currency usd = Currency.getInstance("USD");
+        final BigDecimal converted = new BigDecimal("325.50");
+        final Account toAccount = new Account(toAccountId, converted, usd);
+        when(accountsRepository.getCurrency(fromAccountId)).thenReturn(Account.DEFAULT_CURRENCY);
+        when(accountsRepository.getCurrency(toAccountId)).thenReturn(usd);
+        when(fxRates.convert(amount, Account.DEFAULT_CURRENCY, usd)).thenReturn(converted);
+        when(accountsRepository.transfer(fromAccountId, toAccountId, amount, converted))
+                .thenReturn(new TransferResult(new Account(fromAccountId, BigDecimal.ZERO), toAccount));
+
+        transferService.transferAmount(new TransferCommand(fromAccountId, toAccountId, amount));
+
+        verify(accountsRepository, never()).transfer(fromAccountId, toAccountId, amount);
+        verify(notificationDispatcher).notifyCredited(toAccount, converted);
+        verify(transferLedger).record(fromAccountId, toAccountId, amount, Account.DEFAULT_CURRENCY, converted, usd);
+    }
+
+    @Test
+    public void transfer_runsStoreSpecificTransferWithConvertedAmount() {
+        final Currency usd = Currency.getInstance("USD");
+        final BigDecimal converted = new BigDecimal("325.50");
+        final Account toAccount = new Account(toAccountId, converted, usd);
+        when(accountsRepository.getCurrency(toAccountId)).thenReturn(usd);
+        when(fxRates.convert(amount, Account.DEFAULT_CURRENCY, usd)).thenReturn(converted);
+        final List<BigDecimal> credited = new ArrayList<>();
+
+        transferService.transfer(new TransferCommand(fromAccountId, toAccountId, amount), creditAmount -> {
+            credited.add(creditAmount);
+            return new TransferResult(new Account(fromAccountId, BigDecimal.ZERO), toAccount);
+        });
+
+        assertThat(credited).containsExactly(converted);
+        verify(transferAdmission).admit(fromAccountId);
+        verify(notificationDispatcher).notifyCredited(toAccount, converted);
+        verify(transferLedger).record(fromAccountId, toAccountId, amount, Account.DEFAULT_CURRENCY, converted, usd);
+    }
+
+    @Test
+    public void transferAmountAsync_failsWithRepositoryException() {
+        when(accountsRepository.transfer(fromAccountId, toAccountId, amount)).thenThrow(new AccountDebitException("Account cannot have negative balance"));
+
+        final TransferCommand transferCommand = new TransferCommand(fromAccountId, toAccountId, amount);
+
+        assertThatThrownBy(() -> transferService.transferAmountAsync(transferCommand).join())
+                .hasCauseInstanceOf(AccountDebitException.class);
+        verify(notificationDispatcher, never()).notifyDebited(any(Account.class), any(BigDecimal.class));
+    }
+
+    @Test
+    public void transferAmountAsync_usesStoreFutureWhenStoreIsAsync() throws Exception {
+        final TransferResult queued = new TransferResult(new Account(fromAccountId, amount), new Account(toAccountId, amount));
+        when(accountsRepository.isAsync()).thenReturn(true);
+        when(accountsRepository.transferAsync(fromAccountId, toAccountId, amount))
+                .thenReturn(CompletableFuture.completedFuture(queued));
+
+        final TransferCommand transferCommand = new TransferCommand(fromAccountId, toAccountId, amount);
+
+        assertThat(transferService.transferAmountAsync(transferCommand).get()).isSameAs(queued);
+        verify(accountsRepository, never()).transfer(fromAccountId, toAccountId, amount);
+    }
+
+    @Test
+    public void transferAmountAsync_completesOffTheStoresThread() {
+        final List<Runnable> submitted = new ArrayList<>();
+        doAnswer(invocation -> submitted.add((Runnable) invocation.getArguments()[0]))
+                .when(completionExecutor).execute(any(Runnable.class));
+        final CompletableFuture<TransferResult> storeFuture = new CompletableFuture<>();
+        when(accountsRepository.isAsync()).thenReturn(true);
+        when(accountsRepository.transferAsync(fromAccountId, toAccountId, amount)).thenReturn(storeFuture);
+
+        final CompletableFuture<TransferResult> transfer =
+                transferService.transferAmountAsync(new TransferCommand(fromAccountId, toAccountId, amount));
+        // Completing the store's future, as its writer thread would, hands everything after it to the completion
+        // executor.
+        storeFuture.complete(new TransferResult(new Account(fromAccountId, amount), new Account(toAccountId, amount)));
+
+        assertThat(transfer.isDone()).isFalse();
+        verify(notificationDispatcher, never()).notifyCredited(any(Account.class), any(BigDecimal.class));
+        assertThat(submitted).hasSize(1);
+        verify(transferExecutor, never()).execute(any(Runnable.class));
+
+        submitted.get(0).run();
+        assertThat(transfer.join().getToAccount()).isEqualTo(new Account(toAccountId, amount));
+        verify(notificationDispatcher).notifyCredited(new Account(toAccountId, amount), amount);
+        verify(transferLedger).record(fromAccountId, toAccountId, amount, Account.DEFAULT_CURRENCY, amount,
+                Account.DEFAULT_CURRENCY);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,354 @@
+package com.db.awmd.challenge.stress;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides whether a concurrent history of transfers and balance reads could have come from a store that applies
+ * each operation atomically at some instant between its invocation and its response.
+ * <p>
+ * The search tries to place operations one by one in an order that respects real time and replays them against a
+ * sequential model of the accounts. The operations of one thread are already ordered, so a partial order is
+ * identified by how many operations of each thread it has placed. Balances only depend on which transfers were
+ * applied, not in what order, so every such position that has been explored once and failed is never explored
+ * again. That keeps histories of tens of thousands of operations checkable in seconds.
+ * <p>
+ * {@link #checkEachAccount} is the weaker check for stores that debit and credit the two accounts of a transfer in
+ * separate steps: each account on its own must behave like a single balance that is read and updated atomically.
+ */
+public final class LinearizabilityChecker {
+
+    private final int maxStates;
+
+    /**
+     * @param maxStates positions to explore before giving up with an {@link IllegalStateException}
+     */
+    public LinearizabilityChecker(int maxStates) {
+        this.maxStates = maxStates;
+    }
+
+    /**
+     * @param initialBalances balance of every account before the first operation, indexed by account
+     * @param histories the operations of each thread in the order the thread ran them
+     */
+    public Result check(BigDecimal[] initialBalances, List<Operation[]> histories) {
+        final int threads = histories.size();
+        final Operation[][] operations = histories.toArray(new Operation[threads][]);
+        final BigDecimal[] balances = initialBalances.clone();
+        final int[] placed = new int[threads];
+        final int total = Arrays.stream(operations).mapToInt(history -> history.length).sum();
+
+        final int[] chosen = new int[total];
+        final int[] nextCandidate = new int[total + 1];
+        final Set<Position> explored = new HashSet<>();
+        int depth = 0;
+        int deepest = 0;
+        int[] deepestPlaced = placed.clone();
+
+        while (depth < total) {
+            final long earliestResponse = earliestResponse(operations, placed);
+            int thread = nextCandidate[depth];
+            for (; thread < threads; thread++) {
+                if (placed[thread] == operations[thread].length) {
+                    continue;
+                }
+                final Operation operation = operations[thread][placed[thread]];
+                if (operation.invokedAt > earliestResponse || !operation.apply(balances)) {
+                    continue;
+                }
+                placed[thread]++;
+                if (explored.add(new Position(placed))) {
+                    break;
+                }
+                placed[thread]--;
+                operation.undo(balances);
+            }
+
+            if (thread < threads) {
+                if (explored.size() > maxStates) {
+                    throw new IllegalStateException("Gave up after exploring " + maxStates + " orders");
+                }
+                nextCandidate[depth] = thread + 1;
+                chosen[depth++] = thread;
+                nextCandidate[depth] = 0;
+                if (depth > deepest) {
+                    deepest = depth;
+                    deepestPlaced = placed.clone();
+                }
+            } else if (depth == 0) {
+                return Result.violation(deepest, total, stuckAt(operations, deepestPlaced));
+            } else {
+                final int previous = chosen[--depth];
+                operations[previous][--placed[previous]].undo(balances);
+            }
+        }
+        return Result.linearizable(total, balances);
+    }
+
+    /**
+     * Checks the history of every account separately, with each transfer split into its debit and its credit.
+     */
+    public Result checkEachAccount(BigDecimal[] initialBalances, List<Operation[]> histories) {
+        final int accounts = initialBalances.length;
+        final List<List<Operation[]>> projections = new ArrayList<>(accounts);
+        for (int account = 0; account < accounts; account++) {
+            projections.add(new ArrayList<>(histories.size()));
+        }
+        for (Operation[] history : histories) {
+            final List<List<Operation>> byAccount = new ArrayList<>(accounts);
+            for (int account = 0; account < accounts; account++) {
+                byAccount.add(new ArrayList<>());
+            }
+            for (Operation operation : history) {
+                operation.project(byAccount);
+            }
+            for (int account = 0; account < accounts; account++) {
+                projections.get(account).add(byAccount.get(account).toArray(new Operation[0]));
+            }
+        }
+
+        final BigDecimal[] finalBalances = new BigDecimal[accounts];
+        int total = 0;
+        for (int account = 0; account < accounts; account++) {
+            final Result result = check(initialBalances, projections.get(account));
+            if (!result.isLinearizable()) {
+                return Result.violation(total + result.getPlaced(), total + result.getTotal(),
+                        String.format("%n  account %d%s", account, result.getStuckAt()));
+            }
+            finalBalances[account] = result.getFinalBalances()[account];
+            total += result.getTotal();
+        }
+        return Result.linearizable(total, finalBalances);
+    }
+
+    private static long earliestResponse(Operation[][] operations, int[] placed) {
+        long earliest = Long.MAX_VALUE;
+        for (int thread = 0; thread < operations.length; thread++) {
+            if (placed[thread] < operations[thread].length) {
+                earliest = Math.min(earliest, operations[thread][placed[thread]].respondedAt);
+            }
+        }
+        return earliest;
+    }
+
+    private static String stuckAt(Operation[][] operations, int[] placed) {
+        final StringBuilder pending = new StringBuilder();
+        for (int thread = 0; thread < operations.length; thread++) {
+            if (placed[thread] < operations[thread].length) {
+                pending.append(String.format("%n  thread %d: %s", thread, operations[thread][placed[thread]]));
+            }
+        }
+        return pending.toString();
+    }
+
+    /**
+     * One completed call to the store with what it returned. Times are {@link System#nanoTime()} readings taken
+     * right before the call and right after it returned.
+     */
+    public static final class Operation {
+
+        enum Type { TRANSFER, REJECTED_TRANSFER, READ, DEBIT, CREDIT }
+
+        private final Type type;
+
+        private final int fromAccount;
+
+        private final int toAccount;
+
+        private final BigDecimal amount;
+
+        private final BigDecimal fromBalance;
+
+        private final BigDecimal toBalance;
+
+        private final long invokedAt;
+
+        private final long respondedAt;
+
+        private Operation(Type type, int fromAccount, int toAccount, BigDecimal amount,
+                          BigDecimal fromBalance, BigDecimal toBalance, long invokedAt, long respondedAt) {
+            this.type = type;
+            this.fromAccount = fromAccount;
+            this.toAccount = toAccount;
+            this.amount = amount;
+            this.fromBalance = fromBalance;
+            this.toBalance = toBalance;
+            this.invokedAt = invokedAt;
+            this.respondedAt = respondedAt;
+        }
+
+        /**
+         * A transfer that succeeded and reported the balances of both accounts right after it.
+         */
+        public static Operation transfer(int fromAccount, int toAccount, BigDecimal amount,
+                                         BigDecimal fromBalance, BigDecimal toBalance, long invokedAt, long respondedAt) {
+            return new Operation(Type.TRANSFER, fromAccount, toAccount, amount, fromBalance, toBalance,
+                    invokedAt, respondedAt);
+        }
+
+        /**
+         * A transfer refused because the source account did not hold the amount.
+         */
+        public static Operation rejected(int fromAccount, int toAccount, BigDecimal amount,
+                                         long invokedAt, long respondedAt) {
+            return new Operation(Type.REJECTED_TRANSFER, fromAccount, toAccount, amount, null, null,
+                    invokedAt, respondedAt);
+        }
+
+        public static Operation read(int account, BigDecimal balance, long invokedAt, long respondedAt) {
+            return new Operation(Type.READ, account, -1, null, balance, null, invokedAt, respondedAt);
+        }
+
+        Type getType() {
+            return type;
+        }
+
+        BigDecimal getFromBalance() {
+            return fromBalance;
+        }
+
+        BigDecimal getToBalance() {
+            return toBalance;
+        }
+
+        /**
+         * Adds what this operation did to each account to the history of that account.
+         */
+        void project(List<List<Operation>> byAccount) {
+            if (type == Type.TRANSFER) {
+                byAccount.get(fromAccount).add(new Operation(Type.DEBIT, fromAccount, -1, amount, fromBalance, null,
+                        invokedAt, respondedAt));
+                byAccount.get(toAccount).add(new Operation(Type.CREDIT, toAccount, -1, amount, toBalance, null,
+                        invokedAt, respondedAt));
+            } else {
+                byAccount.get(fromAccount).add(this);
+            }
+        }
+
+        /**
+         * Applies the operation to the model if the model would have given the result the store gave.
+         */
+        boolean apply(BigDecimal[] balances) {
+            switch (type) {
+                case TRANSFER:
+                    final BigDecimal from = balances[fromAccount].subtract(amount);
+                    final BigDecimal to = balances[toAccount].add(amount);
+                    if (from.signum() < 0 || from.compareTo(fromBalance) != 0 || to.compareTo(toBalance) != 0) {
+                        return false;
+                    }
+                    balances[fromAccount] = from;
+                    balances[toAccount] = to;
+                    return true;
+                case DEBIT:
+                    return update(balances, amount.negate());
+                case CREDIT:
+                    return update(balances, amount);
+                case REJECTED_TRANSFER:
+                    return balances[fromAccount].compareTo(amount) < 0;
+                default:
+                    return balances[fromAccount].compareTo(fromBalance) == 0;
+            }
+        }
+
+        void undo(BigDecimal[] balances) {
+            switch (type) {
+                case TRANSFER:
+                    balances[fromAccount] = balances[fromAccount].add(amount);
+                    balances[toAccount] = balances[toAccount].subtract(amount);
+                    break;
+                case DEBIT:
+                    balances[fromAccount] = balances[fromAccount].add(amount);
+                    break;
+                case CREDIT:
+                    balances[fromAccount] = balances[fromAccount].subtract(amount);
+                    break;
+                default:
+            }
+        }
+
+        private boolean update(BigDecimal[] balances, BigDecimal delta) {
+            final BigDecimal balance = balances[fromAccount].add(delta);
+            if (balance.signum() < 0 || balance.compareTo(fromBalance) != 0) {
+                return false;
+            }
+            balances[fromAccount] = balance;
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            switch (type) {
+                case TRANSFER:
+                    return String.format("transfer %s from %d to %d -> %s, %s", amount, fromAccount, toAccount,
+                            fromBalance, toBalance);
+                case REJECTED_TRANSFER:
+                    return String.format("transfer %s from %d to %d -> rejected", amount, fromAccount, toAccount);
+                case DEBIT:
+                    return String.format("debit %s from %d -> %s", amount, fromAccount, fromBalance);
+                case CREDIT:
+                    return String.format("credit %s to %d -> %s", amount, fromAccount, fromBalance);
+                default:
+                    return String.format("read %d -> %s", fromAccount, fromBalance);
+            }
+        }
+    }
+
+    @Data
+    public static class Result {
+
+        private final boolean linearizable;
+
+        /**
+         * Operations of the longest order found that the model agrees with.
+         */
+        private final int placed;
+
+        private final int total;
+
+        /**
+         * Balances after every operation of a linearizable history, {@code null} otherwise.
+         */
+        private final BigDecimal[] finalBalances;
+
+        /**
+         * The next operation of every thread where the longest order got stuck, empty for a linearizable history.
+         */
+        private final String stuckAt;
+
+        static Result linearizable(int total, BigDecimal[] finalBalances) {
+            return new Result(true, total, total, finalBalances, "");
+        }
+
+        static Result violation(int placed, int total, String stuckAt) {
+            return new Result(false, placed, total, null, stuckAt);
+        }
+    }
+
+    private static final class Position {
+
+        private final int[] placed;
+
+        private final int hash;
+
+        Position(int[] placed) {
+            this.placed = placed.clone();
+            this.hash = Arrays.hashCode(this.placed);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Position && Arrays.equals(placed, ((Position) other).placed);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.db.awmd.challenge.stress;
+
+import com.db.awmd.challenge.stress.LinearizabilityChecker.Operation;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LinearizabilityCheckerTest {
+
+    private final LinearizabilityChecker checker = new LinearizabilityChecker(1_000);
+
+    private final BigDecimal[] balances = {BigDecimal.TEN, BigDecimal.ZERO};
+
+    @Test
+    public void overlappingOperations_mayTakeEffectInEitherOrder() {
+        // The read overlaps the transfer and saw its effect, although it was invoked first.
+        final Operation[] first = {Operation.read(1, BigDecimal.valueOf(4), 0, 10)};
+        final Operation[] second = {
+                Operation.transfer(0, 1, BigDecimal.valueOf(4), BigDecimal.valueOf(6), BigDecimal.valueOf(4), 5, 8),
+                Operation.rejected(0, 1, BigDecimal.valueOf(7), 9, 12)};
+
+        final LinearizabilityChecker.Result result = checker.check(balances, Arrays.asList(first, second));
+
+        assertThat(result.isLinearizable()).isTrue();
+        assertThat(result.getFinalBalances()).containsExactly(BigDecimal.valueOf(6), BigDecimal.valueOf(4));
+    }
+
+    @Test
+    public void staleRead_isAViolation() {
+        // The read starts after the transfer returned, so it must see the credit.
+        final Operation[] first = {
+                Operation.transfer(0, 1, BigDecimal.valueOf(4), BigDecimal.valueOf(6), BigDecimal.valueOf(4), 0, 5)};
+        final Operation[] second = {Operation.read(1, BigDecimal.ZERO, 6, 8)};
+
+        final LinearizabilityChecker.Result result = checker.check(balances, Arrays.asList(first, second));
+
+        assertThat(result.isLinearizable()).isFalse();
+        assertThat(result.getPlaced()).isEqualTo(1);
+        assertThat(result.getStuckAt()).contains("read 1 -> 0");
+    }
+
+    @Test
+    public void lostUpdate_isAViolation() {
+        // Both debits report a balance computed from the same starting point.
+        final Operation[] first = {
+                Operation.transfer(0, 1, BigDecimal.valueOf(3), BigDecimal.valueOf(7), BigDecimal.valueOf(3), 0, 10)};
+        final Operation[] second = {
+                Operation.transfer(0, 1, BigDecimal.valueOf(2), BigDecimal.valueOf(8), BigDecimal.valueOf(5), 0, 10)};
+
+        assertThat(checker.check(balances, Arrays.asList(first, second)).isLinearizable()).isFalse();
+    }
+}
@@ -0,0 +1,303 @@
+package com.db.awmd.challenge.stress;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.exception.AccountDebitException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs random transfers and balance reads from many threads against one store, records every call with the time
+ * it was made and what it returned, and then checks the run:
+ * <ul>
+ * <li>the balances of all accounts still add up to what they started with,</li>
+ * <li>no transfer or read ever returned a negative balance, and neither does any account at the end,</li>
+ * <li>the history of every account on its own is linearizable, and replaying it ends with what the store holds,</li>
+ * <li>whether the whole history is linearizable, which only stores that apply both sides of a transfer at one
+ * instant can pass.</li>
+ * </ul>
+ * Accounts are picked with a Zipf distribution, so a higher skew concentrates the load on a few hot accounts. Amounts
+ * are large next to the starting balances, so a good share of the transfers are refused for lack of funds.
+ */
+@Slf4j
+public class TransferStressHarness {
+
+    private static final BigDecimal INITIAL_BALANCE = BigDecimal.valueOf(100);
+
+    private static final int MAX_AMOUNT = 60;
+
+    /**
+     * Orders the linearizability check may explore before it gives up.
+     */
+    private static final int MAX_CHECKED_ORDERS = 20_000_000;
+
+    private final int threads;
+
+    private final int accounts;
+
+    private final int operationsPerThread;
+
+    private final double skew;
+
+    private final int readPercent;
+
+    /**
+     * @param skew Zipf exponent of the account choice, 0 for uniform
+     * @param readPercent share of the operations that read a balance instead of transferring
+     */
+    public TransferStressHarness(int threads, int accounts, int operationsPerThread, double skew, int readPercent) {
+        if (accounts < 2) {
+            throw new IllegalArgumentException("Transfers need at least 2 accounts");
+        }
+        this.threads = threads;
+        this.accounts = accounts;
+        this.operationsPerThread = operationsPerThread;
+        this.skew = skew;
+        this.readPercent = readPercent;
+    }
+
+    /**
+     * Sizes from the {@code stress.threads}, {@code stress.accounts}, {@code stress.operations}, {@code stress.skew}
+     * and {@code stress.reads} system properties, with the given defaults for the ones not set.
+     */
+    public static TransferStressHarness fromSystemProperties(int threads, int accounts, int operationsPerThread,
+                                                             double skew, int readPercent) {
+        return new TransferStressHarness(
+                Integer.getInteger("stress.threads", threads),
+                Integer.getInteger("stress.accounts", accounts),
+                Integer.getInteger("stress.operations", operationsPerThread),
+                Double.parseDouble(System.getProperty("stress.skew", Double.toString(skew))),
+                Integer.getInteger("stress.reads", readPercent));
+    }
+
+    /**
+     * Creates the accounts in the empty {@code repository}, runs the load against it and checks the outcome.
+     */
+    public Report run(String name, AccountsRepository repository) throws InterruptedException {
+        final String[] ids = new String[accounts];
+        final BigDecimal[] initialBalances = new BigDecimal[accounts];
+        for (int i = 0; i < accounts; i++) {
+            ids[i] = "Stress-" + i;
+            initialBalances[i] = INITIAL_BALANCE;
+            repository.createAccount(new Account(ids[i], INITIAL_BALANCE));
+        }
+
+        final double[] cumulative = zipf(accounts, skew);
+        final LinearizabilityChecker.Operation[][] histories = new LinearizabilityChecker.Operation[threads][];
+        final List<Throwable> errors = new ArrayList<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    histories[thread] = runWorker(repository, ids, cumulative);
+                } catch (Throwable e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            }, "stress-" + t);
+            workers[t].start();
+        }
+
+        final long startedAt = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        final long elapsed = System.nanoTime() - startedAt;
+        if (!errors.isEmpty()) {
+            throw new AssertionError("A worker failed on an unexpected error", errors.get(0));
+        }
+
+        final BigDecimal[] finalBalances = new BigDecimal[accounts];
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < accounts; i++) {
+            finalBalances[i] = repository.getAccount(ids[i]).getBalance();
+            total = total.add(finalBalances[i]);
+        }
+
+        final Report report = new Report(name, threads, accounts, skew, readPercent);
+        report.setElapsedNanos(elapsed);
+        report.setExpectedTotal(INITIAL_BALANCE.multiply(BigDecimal.valueOf(accounts)));
+        report.setActualTotal(total);
+        for (LinearizabilityChecker.Operation[] history : histories) {
+            for (LinearizabilityChecker.Operation operation : history) {
+                report.count(operation);
+            }
+        }
+        report.setLowestBalance(Arrays.stream(finalBalances).reduce(report.getLowestBalance(), BigDecimal::min));
+
+        final long checkStartedAt = System.nanoTime();
+        final LinearizabilityChecker checker = new LinearizabilityChecker(MAX_CHECKED_ORDERS);
+        final LinearizabilityChecker.Result perAccount = checker.checkEachAccount(initialBalances, Arrays.asList(histories));
+        report.setAccountLinearizability(perAccount);
+        report.setMatchesStore(perAccount.isLinearizable() && equal(perAccount.getFinalBalances(), finalBalances));
+        report.setLinearizability(checker.check(initialBalances, Arrays.asList(histories)));
+        report.setCheckMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - checkStartedAt));
+
+        log.info(report.toString());
+        return report;
+    }
+
+    private LinearizabilityChecker.Operation[] runWorker(AccountsRepository repository, String[] ids,
+                                                         double[] cumulative) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final LinearizabilityChecker.Operation[] history = new LinearizabilityChecker.Operation[operationsPerThread];
+        for (int i = 0; i < operationsPerThread; i++) {
+            final int from = pick(cumulative, random);
+            if (random.nextInt(100) < readPercent) {
+                final long invokedAt = System.nanoTime();
+                final BigDecimal balance = repository.getAccount(ids[from]).getBalance();
+                history[i] = LinearizabilityChecker.Operation.read(from, balance, invokedAt, System.nanoTime());
+                continue;
+            }
+
+            int to = pick(cumulative, random);
+            while (to == from) {
+                to = random.nextInt(accounts);
+            }
+            final BigDecimal amount = BigDecimal.valueOf(1 + random.nextInt(MAX_AMOUNT));
+            final long invokedAt = System.nanoTime();
+            try {
+                final TransferResult result = repository.transfer(ids[from], ids[to], amount);
+                history[i] = LinearizabilityChecker.Operation.transfer(from, to, amount,
+                        result.getFromAccount().getBalance(), result.getToAccount().getBalance(),
+                        invokedAt, System.nanoTime());
+            } catch (AccountDebitException ade) {
+                history[i] = LinearizabilityChecker.Operation.rejected(from, to, amount, invokedAt, System.nanoTime());
+            }
+        }
+        return history;
+    }
+
+    private static double[] zipf(int size, double exponent) {
+        final double[] cumulative = new double[size];
+        double sum = 0;
+        for (int k = 0; k < size; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < size; k++) {
+            cumulative[k] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int pick(double[] cumulative, ThreadLocalRandom random) {
+        final int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+    }
+
+    private static boolean equal(BigDecimal[] expected, BigDecimal[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i].compareTo(actual[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Data
+    public static class Report {
+
+        private final String store;
+
+        private final int threads;
+
+        private final int accounts;
+
+        private final double skew;
+
+        private final int readPercent;
+
+        private long elapsedNanos;
+
+        private long transfers;
+
+        private long rejectedTransfers;
+
+        private long reads;
+
+        private BigDecimal expectedTotal;
+
+        private BigDecimal actualTotal;
+
+        /**
+         * Lowest balance any call returned or any account held at the end.
+         */
+        private BigDecimal lowestBalance = INITIAL_BALANCE;
+
+        /**
+         * Whether the whole history is linearizable, with both sides of every transfer taking effect together.
+         */
+        private LinearizabilityChecker.Result linearizability;
+
+        /**
+         * Whether the history of every account on its own is linearizable.
+         */
+        private LinearizabilityChecker.Result accountLinearizability;
+
+        /**
+         * Whether replaying every account's history in its linearized order ends with the balance the store holds.
+         */
+        private boolean matchesStore;
+
+        private long checkMillis;
+
+        public long getOperations() {
+            return transfers + rejectedTransfers + reads;
+        }
+
+        public double getOperationsPerSecond() {
+            return getOperations() * 1e9 / elapsedNanos;
+        }
+
+        public boolean isConserved() {
+            return expectedTotal.compareTo(actualTotal) == 0;
+        }
+
+        private void count(LinearizabilityChecker.Operation operation) {
+            switch (operation.getType()) {
+                case TRANSFER:
+                    transfers++;
+                    lowestBalance = lowestBalance.min(operation.getFromBalance()).min(operation.getToBalance());
+                    break;
+                case REJECTED_TRANSFER:
+                    rejectedTransfers++;
+                    break;
+                default:
+                    reads++;
+                    lowestBalance = lowestBalance.min(operation.getFromBalance());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d threads, %d accounts, skew %.2f, %d%% reads: %d operations in %d ms "
+                            + "(%.0f ops/s), %d transfers, %d rejected, %d reads; total %s of %s, lowest balance %s, "
+                            + "accounts %s, transfers %s (checked in %d ms)",
+                    store, threads, accounts, skew, readPercent, getOperations(),
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getOperationsPerSecond(), transfers,
+                    rejectedTransfers, reads, actualTotal, expectedTotal, lowestBalance,
+                    describe(accountLinearizability), describe(linearizability), checkMillis);
+        }
+
+        private static String describe(LinearizabilityChecker.Result result) {
+            return result.isLinearizable() ? "linearizable"
+                    : String.format("not linearizable after %d of %d operations, stuck at:%s",
+                    result.getPlaced(), result.getTotal(), result.getStuckAt());
+        }
+    }
+}
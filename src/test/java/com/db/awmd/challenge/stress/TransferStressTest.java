@@ -0,0 +1,95 @@
+package com.db.awmd.challenge.stress;
+
+import com.db.awmd.challenge.engine.ShardedTransferEngine;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryMapped;
+import com.db.awmd.challenge.repository.AccountsRepositoryPrimitive;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Every store has to pass the stress harness before it is used. The defaults keep the suite quick; larger runs
+ * take their sizes from system properties, see {@link TransferStressHarness#fromSystemProperties}.
+ * <p>
+ * The sharded engine moves money across shards in two phases, so for it only each account's history has to be
+ * linearizable.
+ */
+public class TransferStressTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final TransferStressHarness contended = TransferStressHarness.fromSystemProperties(8, 16, 2_000, 1.2, 10);
+
+    private final TransferStressHarness spread = TransferStressHarness.fromSystemProperties(8, 1_000, 2_000, 0, 10);
+
+    @Test
+    public void inMemory() throws Exception {
+        assertAtomic(contended.run("in-memory", new AccountsRepositoryInMemory()));
+        assertAtomic(spread.run("in-memory", new AccountsRepositoryInMemory()));
+    }
+
+    @Test
+    public void primitive() throws Exception {
+        assertAtomic(contended.run("primitive", new AccountsRepositoryPrimitive()));
+        assertAtomic(spread.run("primitive", new AccountsRepositoryPrimitive()));
+    }
+
+    @Test
+    public void mapped() throws Exception {
+        assertAtomic(runMapped(contended, "contended.dat"));
+        assertAtomic(runMapped(spread, "spread.dat"));
+    }
+
+    @Test
+    public void sharded() throws Exception {
+        assertPasses(runSharded(contended, 4));
+        assertPasses(runSharded(spread, 4));
+    }
+
+    @Test
+    public void sharded_singleShardIsAtomic() throws Exception {
+        assertAtomic(runSharded(contended, 1));
+    }
+
+    private TransferStressHarness.Report runMapped(TransferStressHarness harness, String fileName) throws Exception {
+        final File file = new File(folder.getRoot(), fileName);
+        final AccountsRepositoryMapped repository = new AccountsRepositoryMapped(file.toPath(), 10_000);
+        try {
+            return harness.run("mapped", repository);
+        } finally {
+            repository.close();
+        }
+    }
+
+    private static TransferStressHarness.Report runSharded(TransferStressHarness harness, int shards)
+            throws Exception {
+        final ShardedTransferEngine engine = new ShardedTransferEngine(shards, 1024);
+        engine.start();
+        try {
+            return harness.run("sharded", engine);
+        } finally {
+            engine.stop();
+        }
+    }
+
+    private static void assertPasses(TransferStressHarness.Report report) {
+        assertThat(report.isConserved()).as("money conserved: %s", report).isTrue();
+        assertThat(report.getLowestBalance().signum()).as("no negative balance: %s", report).isNotNegative();
+        assertThat(report.getAccountLinearizability().isLinearizable()).as("accounts linearizable: %s", report)
+                .isTrue();
+        assertThat(report.isMatchesStore()).as("store matches history: %s", report).isTrue();
+        assertThat(report.getTransfers()).isPositive();
+    }
+
+    private static void assertAtomic(TransferStressHarness.Report report) {
+        assertPasses(report);
+        assertThat(report.getLinearizability().isLinearizable()).as("transfers linearizable: %s", report).isTrue();
+    }
+}
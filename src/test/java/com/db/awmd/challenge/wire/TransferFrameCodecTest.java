@@ -0,0 +1,57 @@
+package com.db.awmd.challenge.wire;
+
+import com.db.awmd.challenge.model.TransferCommand;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TransferFrameCodecTest {
+
+    @Test
+    public void request_roundTrips() {
+        final TransferCommand command = new TransferCommand("Id-1", "Konto-ä", new BigDecimal("12.34"));
+        final ByteBuffer buffer = ByteBuffer.allocate(TransferFrameCodec.requestSize(command));
+        TransferFrameCodec.encodeRequest(buffer, 42, command);
+        assertThat(buffer.hasRemaining()).isFalse();
+
+        buffer.flip();
+        assertThat(buffer.getInt()).isEqualTo(buffer.remaining());
+        assertThat(buffer.getLong()).isEqualTo(42);
+        final TransferCommand decoded = TransferFrameCodec.decodeRequest(buffer);
+        assertThat(decoded).isEqualTo(command);
+        assertThat(TransferFrameCodec.validate(decoded)).isNull();
+    }
+
+    @Test
+    public void decodeRequest_failsOnIdPastEndOfFrame() {
+        final ByteBuffer body = ByteBuffer.allocate(TransferFrameCodec.MIN_REQUEST_BYTES - 8);
+        body.putShort((short) 100).flip();
+
+        assertThatThrownBy(() -> TransferFrameCodec.decodeRequest(body))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("runs past the end");
+    }
+
+    @Test
+    public void validate_appliesSameRulesAsJsonEndpoint() {
+        assertThat(TransferFrameCodec.validate(new TransferCommand("", "Id-2", BigDecimal.ONE)))
+                .contains("fromAccountId");
+        assertThat(TransferFrameCodec.validate(new TransferCommand("Id-1", "", BigDecimal.ONE)))
+                .contains("toAccountId");
+        assertThat(TransferFrameCodec.validate(new TransferCommand("Id-1", "Id-2", new BigDecimal("-0.01"))))
+                .contains("greater than zero");
+        assertThat(TransferFrameCodec.validate(new TransferCommand("Id-1", "Id-2", BigDecimal.ZERO))).isNull();
+    }
+
+    @Test
+    public void encodeRequest_refusesAmountBeyondLong() {
+        final TransferCommand command = new TransferCommand("Id-1", "Id-2", new BigDecimal("1e30").setScale(0));
+
+        assertThatThrownBy(() -> TransferFrameCodec.encodeRequest(ByteBuffer.allocate(100), 1, command))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
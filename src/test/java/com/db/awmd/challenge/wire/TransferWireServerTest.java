@@ -0,0 +1,187 @@
+package com.db.awmd.challenge.wire;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.exception.AccountDebitException;
+import com.db.awmd.challenge.exception.AccountNotPresentException;
+import com.db.awmd.challenge.exception.TransferThrottledException;
+import com.db.awmd.challenge.model.TransferCommand;
+import com.db.awmd.challenge.service.TransferService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TransferWireServerTest {
+
+    private TransferService transferService;
+
+    private TransferWireServer server;
+
+    private SocketChannel client;
+
+    @Before
+    public void setUp() throws IOException {
+        transferService = mock(TransferService.class);
+        server = new TransferWireServer(transferService, 0, 1024, 2);
+        server.start();
+        client = SocketChannel.open(new InetSocketAddress("localhost", server.getLocalPort()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    public void pipelinedTransfers_answeredByCorrelationId() throws Exception {
+        final TransferCommand ok = new TransferCommand("Id-1", "Id-2", new BigDecimal("10.50"));
+        final TransferCommand overdrawn = new TransferCommand("Id-1", "Id-2", new BigDecimal("1000"));
+        final TransferCommand absent = new TransferCommand("Id-1", "Id-3", BigDecimal.ONE);
+        final TransferCommand throttled = new TransferCommand("Id-4", "Id-2", BigDecimal.ONE);
+        when(transferService.transferAmountAsync(ok)).thenReturn(CompletableFuture.completedFuture(
+                new TransferResult(new Account("Id-1"), new Account("Id-2"))));
+        when(transferService.transferAmountAsync(overdrawn)).thenReturn(failed(
+                new AccountDebitException("Account cannot have negative balance")));
+        when(transferService.transferAmountAsync(absent)).thenReturn(failed(new AccountDebitException("Absent",
+                new AccountNotPresentException("Account with id Id-3 is not present."))));
+        when(transferService.transferAmountAsync(throttled)).thenReturn(failed(
+                new TransferThrottledException("Too many transfers from account Id-4", TimeUnit.MILLISECONDS.toNanos(250))));
+
+        send(1, ok);
+        send(2, overdrawn);
+        send(3, new TransferCommand("Id-1", "Id-2", new BigDecimal("-1")));
+        send(4, absent);
+        send(5, throttled);
+
+        final Map<Long, TransferFrameCodec.Response> responses = receive(5);
+        assertThat(responses.get(1L).getStatus()).isEqualTo(WireStatus.OK);
+        assertThat(responses.get(2L).getStatus()).isEqualTo(WireStatus.DEBIT_FAILED);
+        assertThat(responses.get(2L).getMessage()).isEqualTo("Account cannot have negative balance");
+        assertThat(responses.get(3L).getStatus()).isEqualTo(WireStatus.INVALID);
+        assertThat(responses.get(4L).getStatus()).isEqualTo(WireStatus.ACCOUNT_NOT_PRESENT);
+        assertThat(responses.get(4L).getMessage()).contains("Id-3");
+        assertThat(responses.get(5L).getStatus()).isEqualTo(WireStatus.THROTTLED);
+        assertThat(responses.get(5L).getRetryAfterMillis()).isEqualTo(250);
+    }
+
+    @Test
+    public void pipelineLimit_holdsBackFramesUntilTransfersComplete() throws Exception {
+        final CompletableFuture<TransferResult> slow = new CompletableFuture<>();
+        final TransferCommand first = new TransferCommand("Id-1", "Id-2", BigDecimal.ONE);
+        final TransferCommand second = new TransferCommand("Id-1", "Id-2", BigDecimal.TEN);
+        final TransferCommand third = new TransferCommand("Id-1", "Id-2", BigDecimal.ZERO);
+        when(transferService.transferAmountAsync(first)).thenReturn(slow);
+        when(transferService.transferAmountAsync(second)).thenReturn(slow);
+        when(transferService.transferAmountAsync(third)).thenReturn(CompletableFuture.completedFuture(null));
+
+        send(1, first);
+        send(2, second);
+        send(3, third);
+        Thread.sleep(100);
+        verify(transferService, never()).transferAmountAsync(third);
+
+        slow.complete(new TransferResult(new Account("Id-1"), new Account("Id-2")));
+
+        assertThat(receive(3).values()).extracting(TransferFrameCodec.Response::getStatus)
+                .containsOnly(WireStatus.OK);
+        verify(transferService).transferAmountAsync(third);
+    }
+
+    @Test
+    public void pipelineLimit_countsResponsesTheClientHasNotRead() throws Exception {
+        final int requests = 50_000;
+        final StringBuilder message = new StringBuilder();
+        while (message.length() < 1000) {
+            message.append("Too many transfers from account Id-1. ");
+        }
+        final AtomicInteger started = new AtomicInteger();
+        when(transferService.transferAmountAsync(any(TransferCommand.class))).thenAnswer(invocation -> {
+            started.incrementAndGet();
+            return failed(new TransferThrottledException(message.toString(), 1));
+        });
+
+        final Thread sender = new Thread(() -> {
+            try {
+                for (int i = 0; i < requests; i++) {
+                    send(i, new TransferCommand("Id-1", "Id-2", BigDecimal.ONE));
+                }
+            } catch (IOException ignored) {
+                // Closed by tearDown if the test fails.
+            }
+        });
+        sender.setDaemon(true);
+        sender.start();
+
+        // With nobody reading, the responses back up and the server stops reading requests.
+        int seen = -1;
+        while (seen != started.get()) {
+            seen = started.get();
+            Thread.sleep(200);
+        }
+        assertThat(seen).isLessThan(requests);
+
+        assertThat(receive(requests)).hasSize(requests);
+        assertThat(started.get()).isEqualTo(requests);
+        sender.join(5000);
+    }
+
+    @Test
+    public void oversizedFrame_closesConnection() throws Exception {
+        final ByteBuffer frame = ByteBuffer.allocate(8);
+        frame.putInt(1_000_000).putInt(0).flip();
+        client.write(frame);
+
+        client.socket().setSoTimeout(5000);
+        assertThat(client.socket().getInputStream().read()).isEqualTo(-1);
+        verify(transferService, never()).transferAmountAsync(any(TransferCommand.class));
+    }
+
+    private void send(long correlationId, TransferCommand command) throws IOException {
+        final ByteBuffer frame = ByteBuffer.allocate(TransferFrameCodec.requestSize(command));
+        TransferFrameCodec.encodeRequest(frame, correlationId, command);
+        frame.flip();
+        while (frame.hasRemaining()) {
+            client.write(frame);
+        }
+    }
+
+    private Map<Long, TransferFrameCodec.Response> receive(int count) throws IOException {
+        final Map<Long, TransferFrameCodec.Response> responses = new HashMap<>();
+        final ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (responses.size() < count) {
+            assertThat(client.read(buffer)).isNotNegative();
+            buffer.flip();
+            TransferFrameCodec.Response response;
+            while ((response = TransferFrameCodec.decodeResponse(buffer)) != null) {
+                responses.put(response.getCorrelationId(), response);
+            }
+            buffer.compact();
+        }
+        return responses;
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable failure) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(failure);
+        return future;
+    }
+}